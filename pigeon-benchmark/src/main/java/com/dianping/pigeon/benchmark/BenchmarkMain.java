@@ -0,0 +1,90 @@
+package com.dianping.pigeon.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dianping.pigeon.benchmark.codec.CodecFixture;
+import com.dianping.pigeon.benchmark.codec.Payload;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.SerializerType;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 压测入口，参数与JMH命令行一致，默认带上gc profiler
+ * <p>
+ * 额外支持--threads=1,4,16,64，按给出的线程数依次各跑一遍
+ * <p>
+ * mvn -o -Pbenchmark -pl pigeon-benchmark -am verify -Dbenchmark.args="SerializerBenchmark"
+ */
+public class BenchmarkMain {
+
+    private static final String THREADS_ARG = "--threads=";
+
+    public static void main(String[] args) throws Exception {
+        printMessageSizes();
+
+        String threads = null;
+        List<String> jmhArgs = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith(THREADS_ARG)) {
+                threads = arg.substring(THREADS_ARG.length());
+            } else {
+                jmhArgs.add(arg);
+            }
+        }
+        CommandLineOptions commandLineOptions = new CommandLineOptions(jmhArgs.toArray(new String[jmhArgs.size()]));
+        if (threads == null) {
+            run(commandLineOptions, 0);
+        } else {
+            for (String thread : threads.split(",")) {
+                run(commandLineOptions, Integer.parseInt(thread.trim()));
+            }
+        }
+    }
+
+    private static void run(Options parent, int threads) throws Exception {
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+                .parent(parent)
+                .addProfiler(GCProfiler.class);
+        if (threads > 0) {
+            builder.threads(threads);
+        }
+        new Runner(builder.build()).run();
+    }
+
+    /**
+     * 各序列化方式、各负载的消息字节数，与吞吐无关，只需算一次
+     */
+    private static void printMessageSizes() throws Exception {
+        System.out.println(String.format("%-12s %-12s %12s %12s", "serialize", "payload", "request(B)",
+                "response(B)"));
+        long sequence = 1;
+        for (SerializerType type : SerializerType.values()) {
+            try {
+                SerializerFactory.getSerialize(type.getName());
+            } catch (IllegalArgumentException e) {
+                // 未注册的序列化方式
+                continue;
+            }
+            for (Payload payload : Payload.values()) {
+                String request;
+                String response;
+                try {
+                    CodecFixture fixture = new CodecFixture(type.getName(), payload, sequence++);
+                    request = String.valueOf(fixture.writeRequest());
+                    response = String.valueOf(fixture.writeResponse());
+                } catch (Throwable t) {
+                    request = response = "n/a";
+                }
+                System.out.println(String.format("%-12s %-12s %12s %12s", type.getName(), payload, request,
+                        response));
+            }
+        }
+        System.out.println();
+    }
+}
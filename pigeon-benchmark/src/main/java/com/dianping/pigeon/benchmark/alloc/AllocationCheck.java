@@ -0,0 +1,281 @@
+package com.dianping.pigeon.benchmark.alloc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.util.ThreadNameDeterminer;
+import org.jboss.netty.util.ThreadRenamingRunnable;
+
+import com.dianping.pigeon.benchmark.route.RouteFixture;
+import com.dianping.pigeon.benchmark.rpc.EchoService;
+import com.dianping.pigeon.benchmark.rpc.LoopbackFixture;
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.codec.BufferSerializer;
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.CallMethod;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationSerializable;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.route.DefaultRouteManager;
+import com.dianping.pigeon.remoting.netty.codec.ChannelBufferCodecBuffer;
+import com.dianping.pigeon.remoting.netty.codec.CodecConstants;
+import com.dianping.pigeon.remoting.netty.codec.CodecEvent;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
+
+/**
+ * 分配回归检查：稳态回环同步调用下，调用端、服务端每次调用分配的字节数，超出预算时以非0退出使构建失败
+ * <p>
+ * 调用端、服务端的总量按线程名统计对应线程；encode/decode/route单独在当前线程测量同样的请求，
+ * dispatch为总量减去这几项，即filter链、线程切换、网络收发等其余部分。encode/decode与回环调用走同样的
+ * netty编解码路径：每条消息新建帧缓冲区，pigeon.codec.buffer.enable=true(默认)时经BufferSerializer直接读写帧
+ * <p>
+ * 预算见config/pigeon.properties中的pigeon.benchmark.alloc.*，单位字节/次，可用参数覆盖：
+ * -Dallocation.args="calls=50000 invoker.route=1024"
+ */
+public class AllocationCheck {
+
+    private static final String KEY_PREFIX = "pigeon.benchmark.alloc.";
+
+    private static final String INVOKER_THREAD = "Pigeon-Alloc-Invoker";
+
+    private static final String[] INVOKER_THREADS = { "Pigeon-Netty-Client", "Pigeon-Client-Response" };
+
+    private static final String[] PROVIDER_THREADS = { "Pigeon-Netty-Server", "Pigeon-Server-Request" };
+
+    private static final String SERIALIZE = "hessian";
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private static final boolean isBufferSerializeEnable = configManager.getBooleanValue(
+            CodecConstants.KEY_CODEC_BUFFER_ENABLE, true);
+
+    private final int calls;
+
+    private final byte[] payload;
+
+    private final List<String[]> rows = new ArrayList<String[]>();
+
+    private boolean failed = false;
+
+    public AllocationCheck(int calls, int payloadSize) {
+        this.calls = calls;
+        this.payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index > 0) {
+                configManager.setLocalStringValue(KEY_PREFIX + arg.substring(0, index), arg.substring(index + 1));
+            }
+        }
+        AllocationCheck check = new AllocationCheck(configManager.getIntValue(KEY_PREFIX + "calls", 20000),
+                configManager.getIntValue(KEY_PREFIX + "payloadSize", 128));
+        boolean passed = check.run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    public boolean run() throws Exception {
+        // netty默认把IO线程改名为New I/O worker，保留线程工厂的名字才能区分调用端和服务端
+        ThreadRenamingRunnable.setThreadNameDeterminer(ThreadNameDeterminer.CURRENT);
+        LoopbackFixture.start();
+        final EchoService service = LoopbackFixture.getService(CallMethod.SYNC, SERIALIZE);
+
+        // 预热，使类加载、连接、线程池、缓存等一次性开销不计入
+        call(service, calls);
+
+        AllocationMeter invokerMeter = new AllocationMeter(INVOKER_THREADS);
+        AllocationMeter providerMeter = new AllocationMeter(PROVIDER_THREADS);
+        invokerMeter.start();
+        providerMeter.start();
+        long callerBytes = call(service, calls);
+        long invokerTotal = (callerBytes + invokerMeter.stop()) / calls;
+        long providerTotal = providerMeter.stop() / calls;
+
+        Serializer serializer = SerializerFactory.getSerializer(SerializerFactory.getSerialize(SERIALIZE));
+        InvocationRequest request = newRequest();
+        InvocationResponse response = ProviderUtils.createSuccessResponse(request, payload);
+        ChannelBuffer requestFrame = encode(serializer, request).getBuffer();
+        ChannelBuffer responseFrame = encode(serializer, response).getBuffer();
+
+        long encodeRequest = measureEncode(serializer, request);
+        long encodeResponse = measureEncode(serializer, response);
+        long decodeRequest = measureDecode(serializer, requestFrame, true);
+        long decodeResponse = measureDecode(serializer, responseFrame, false);
+        long route = measureRoute();
+
+        check("invoker", "encode", encodeRequest);
+        check("invoker", "route", route);
+        check("invoker", "dispatch", Math.max(0L, invokerTotal - encodeRequest - decodeResponse - route));
+        check("invoker", "decode", decodeResponse);
+        check("invoker", "total", invokerTotal);
+        check("provider", "decode", decodeRequest);
+        check("provider", "dispatch", Math.max(0L, providerTotal - decodeRequest - encodeResponse));
+        check("provider", "encode", encodeResponse);
+        check("provider", "total", providerTotal);
+
+        print();
+        return !failed;
+    }
+
+    /**
+     * @return 调用线程自身分配的字节数，线程结束后无法再按id查询，所以在线程内统计
+     */
+    private long call(final EchoService service, final int count) throws InterruptedException {
+        final Throwable[] error = new Throwable[1];
+        final long[] allocated = new long[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = AllocationMeter.currentThreadAllocatedBytes();
+                try {
+                    for (int i = 0; i < count; i++) {
+                        service.echo(payload);
+                    }
+                    allocated[0] = AllocationMeter.currentThreadAllocatedBytes() - start;
+                } catch (Throwable t) {
+                    error[0] = t;
+                }
+            }
+        }, INVOKER_THREAD);
+        thread.start();
+        thread.join();
+        if (error[0] != null) {
+            throw new IllegalStateException("loopback call failed", error[0]);
+        }
+        return allocated[0];
+    }
+
+    private InvocationRequest newRequest() {
+        DefaultRequest request = new DefaultRequest(LoopbackFixture.SERVICE_URL, "echo", new Object[] { payload },
+                SerializerFactory.getSerialize(SERIALIZE), Constants.MESSAGE_TYPE_SERVICE, LoopbackFixture.TIMEOUT,
+                new Class<?>[] { byte[].class });
+        request.setSequence(1L);
+        request.setCallType(Constants.CALLTYPE_REPLY);
+        request.setApp(configManager.getAppName());
+        return request;
+    }
+
+    private long measureEncode(Serializer serializer, InvocationSerializable message) throws IOException {
+        for (int i = 0; i < calls; i++) {
+            encode(serializer, message);
+        }
+        long start = AllocationMeter.currentThreadAllocatedBytes();
+        for (int i = 0; i < calls; i++) {
+            encode(serializer, message);
+        }
+        return (AllocationMeter.currentThreadAllocatedBytes() - start) / calls;
+    }
+
+    /**
+     * 与AbstractEncoder.doEncode一致：每条消息新建帧缓冲区，写入帧头、消息体、帧尾
+     */
+    private static CodecEvent encode(Serializer serializer, InvocationSerializable message) throws IOException {
+        ChannelBufferOutputStream os = new ChannelBufferOutputStream(
+                ChannelBuffers.dynamicBuffer(CodecConstants.ESTIMATED_LENGTH));
+        os.write(CodecConstants.MAGIC);
+        os.writeByte(message.getSerialize());
+        os.writeInt(Integer.MAX_VALUE);
+        boolean isRequest = message instanceof InvocationRequest;
+        if (isBufferSerializeEnable && serializer instanceof BufferSerializer) {
+            ChannelBufferCodecBuffer buffer = new ChannelBufferCodecBuffer(os.buffer());
+            if (isRequest) {
+                ((BufferSerializer) serializer).serializeRequest(buffer, message);
+            } else {
+                ((BufferSerializer) serializer).serializeResponse(buffer, message);
+            }
+        } else if (isRequest) {
+            serializer.serializeRequest(os, message);
+        } else {
+            serializer.serializeResponse(os, message);
+        }
+        ChannelBuffer frame = os.buffer();
+        frame.writeLong(message.getSequence());
+        frame.writeBytes(CodecConstants.EXPAND);
+        frame.setInt(CodecConstants.HEAD_LENGTH, frame.readableBytes() - CodecConstants.FRONT_LENGTH);
+        return new CodecEvent(frame, false);
+    }
+
+    private long measureDecode(Serializer serializer, ChannelBuffer frame, boolean isRequest) {
+        for (int i = 0; i < calls; i++) {
+            decode(serializer, frame, isRequest);
+        }
+        long start = AllocationMeter.currentThreadAllocatedBytes();
+        for (int i = 0; i < calls; i++) {
+            decode(serializer, frame, isRequest);
+        }
+        return (AllocationMeter.currentThreadAllocatedBytes() - start) / calls;
+    }
+
+    /**
+     * 与AbstractDecoder.doDecode一致：跳过帧头，切出消息体直接反序列化，接收缓冲区本身不计入
+     */
+    private static Object decode(Serializer serializer, ChannelBuffer frame, boolean isRequest) {
+        frame.readerIndex(CodecConstants.MEGIC_FIELD_LENGTH + 1);
+        int bodyLength = frame.readInt() - CodecConstants.TAIL_LENGTH;
+        ChannelBuffer body = frame.slice(frame.readerIndex(), bodyLength);
+        if (isBufferSerializeEnable && serializer instanceof BufferSerializer) {
+            ChannelBufferCodecBuffer buffer = new ChannelBufferCodecBuffer(body);
+            return isRequest ? ((BufferSerializer) serializer).deserializeRequest(buffer)
+                    : ((BufferSerializer) serializer).deserializeResponse(buffer);
+        }
+        ChannelBufferInputStream is = new ChannelBufferInputStream(body);
+        return isRequest ? serializer.deserializeRequest(is) : serializer.deserializeResponse(is);
+    }
+
+    /**
+     * 10个提供方、不开region路由时的一次路由选择
+     */
+    private long measureRoute() {
+        RouteFixture fixture = new RouteFixture(10);
+        RouteFixture.setRegionEnabled(false);
+        InvokerConfig<EchoService> invokerConfig = new InvokerConfig<EchoService>(RouteFixture.SERVICE_URL,
+                EchoService.class);
+        InvocationRequest request = newRequest();
+        for (int i = 0; i < calls; i++) {
+            DefaultRouteManager.INSTANCE.route(fixture.getClients(), invokerConfig, request);
+        }
+        long start = AllocationMeter.currentThreadAllocatedBytes();
+        for (int i = 0; i < calls; i++) {
+            DefaultRouteManager.INSTANCE.route(fixture.getClients(), invokerConfig, request);
+        }
+        return (AllocationMeter.currentThreadAllocatedBytes() - start) / calls;
+    }
+
+    private void check(String side, String phase, long bytes) {
+        long budget = configManager.getLongValue(KEY_PREFIX + side + "." + phase, -1L);
+        String result;
+        if (budget < 0) {
+            result = "-";
+        } else if (bytes > budget) {
+            result = "FAILED";
+            failed = true;
+        } else {
+            result = "ok";
+        }
+        rows.add(new String[] { side, phase, String.valueOf(bytes), budget < 0 ? "-" : String.valueOf(budget),
+                result });
+    }
+
+    private void print() {
+        System.out.println(String.format("allocation per call, %d calls, %s, payload %d bytes", calls, SERIALIZE,
+                payload.length));
+        System.out.println(String.format("%-10s %-10s %12s %12s %8s", "side", "phase", "bytes/call", "budget",
+                "result"));
+        for (String[] row : rows) {
+            System.out.println(String.format("%-10s %-10s %12s %12s %8s", (Object[]) row));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.dianping.pigeon.benchmark.alloc;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基于ThreadMXBean的线程分配字节数统计，可统计当前线程或按线程名前缀统计一组线程
+ * <p>
+ * 只有HotSpot等实现了com.sun.management.ThreadMXBean的虚拟机可用
+ */
+public class AllocationMeter {
+
+    private static final com.sun.management.ThreadMXBean threadMXBean = getThreadMXBean();
+
+    private final String[] threadPrefixes;
+
+    private Map<Long, Long> startBytes;
+
+    /**
+     * @param threadPrefixes 统计的线程名前缀，为空时只统计当前线程
+     */
+    public AllocationMeter(String... threadPrefixes) {
+        this.threadPrefixes = threadPrefixes;
+    }
+
+    public static long currentThreadAllocatedBytes() {
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public void start() {
+        startBytes = snapshot();
+    }
+
+    /**
+     * @return 从start开始各线程新分配的字节数之和，期间新建的线程从0算起
+     */
+    public long stop() {
+        Map<Long, Long> endBytes = snapshot();
+        long total = 0L;
+        for (Map.Entry<Long, Long> entry : endBytes.entrySet()) {
+            Long start = startBytes.get(entry.getKey());
+            total += entry.getValue() - (start == null ? 0L : start);
+        }
+        return total;
+    }
+
+    private Map<Long, Long> snapshot() {
+        Map<Long, Long> bytes = new HashMap<Long, Long>();
+        if (threadPrefixes.length == 0) {
+            Long id = Thread.currentThread().getId();
+            bytes.put(id, threadMXBean.getThreadAllocatedBytes(id));
+            return bytes;
+        }
+        long[] ids = threadMXBean.getAllThreadIds();
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(ids);
+        for (int i = 0; i < ids.length; i++) {
+            if (infos[i] != null && matches(infos[i].getThreadName())) {
+                long allocated = threadMXBean.getThreadAllocatedBytes(ids[i]);
+                if (allocated >= 0) {
+                    bytes.put(ids[i], allocated);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private boolean matches(String threadName) {
+        for (String prefix : threadPrefixes) {
+            if (threadName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            throw new UnsupportedOperationException("thread allocated bytes is not supported by this jvm");
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        return threadBean;
+    }
+}
@@ -0,0 +1,45 @@
+package com.dianping.pigeon.benchmark.codec;
+
+import com.facebook.swift.codec.ThriftField;
+import com.facebook.swift.codec.ThriftStruct;
+
+/**
+ * 压测用的业务异常
+ */
+@ThriftStruct
+public class BenchException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private int code;
+    private String reason;
+
+    public BenchException() {
+    }
+
+    public BenchException(int code, String reason) {
+        super(reason);
+        this.code = code;
+        this.reason = reason;
+    }
+
+    @ThriftField(1)
+    public int getCode() {
+        return code;
+    }
+
+    @ThriftField
+    public void setCode(int code) {
+        this.code = code;
+    }
+
+    @ThriftField(2)
+    public String getReason() {
+        return reason;
+    }
+
+    @ThriftField
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+}
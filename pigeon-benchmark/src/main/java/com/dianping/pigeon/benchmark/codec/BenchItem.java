@@ -0,0 +1,67 @@
+package com.dianping.pigeon.benchmark.codec;
+
+import com.facebook.swift.codec.ThriftField;
+import com.facebook.swift.codec.ThriftStruct;
+
+import java.io.Serializable;
+
+/**
+ * 压测用的列表元素
+ */
+@ThriftStruct
+public class BenchItem implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String sku;
+    private double price;
+    private int quantity;
+
+    @ThriftField(1)
+    public String getSku() {
+        return sku;
+    }
+
+    @ThriftField
+    public void setSku(String sku) {
+        this.sku = sku;
+    }
+
+    @ThriftField(2)
+    public double getPrice() {
+        return price;
+    }
+
+    @ThriftField
+    public void setPrice(double price) {
+        this.price = price;
+    }
+
+    @ThriftField(3)
+    public int getQuantity() {
+        return quantity;
+    }
+
+    @ThriftField
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BenchItem)) {
+            return false;
+        }
+        BenchItem that = (BenchItem) o;
+        return quantity == that.quantity && Double.compare(that.price, price) == 0
+                && BenchUser.equals(sku, that.sku);
+    }
+
+    @Override
+    public int hashCode() {
+        return sku == null ? quantity : sku.hashCode();
+    }
+}
@@ -0,0 +1,80 @@
+package com.dianping.pigeon.benchmark.codec;
+
+import com.facebook.swift.codec.ThriftField;
+import com.facebook.swift.codec.ThriftStruct;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测用的嵌套对象
+ */
+@ThriftStruct
+public class BenchOrder implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long id;
+    private BenchUser user;
+    private List<BenchItem> items;
+    private Map<String, String> attributes;
+
+    @ThriftField(1)
+    public long getId() {
+        return id;
+    }
+
+    @ThriftField
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    @ThriftField(2)
+    public BenchUser getUser() {
+        return user;
+    }
+
+    @ThriftField
+    public void setUser(BenchUser user) {
+        this.user = user;
+    }
+
+    @ThriftField(3)
+    public List<BenchItem> getItems() {
+        return items;
+    }
+
+    @ThriftField
+    public void setItems(List<BenchItem> items) {
+        this.items = items;
+    }
+
+    @ThriftField(4)
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    @ThriftField
+    public void setAttributes(Map<String, String> attributes) {
+        this.attributes = attributes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BenchOrder)) {
+            return false;
+        }
+        BenchOrder that = (BenchOrder) o;
+        return id == that.id && BenchUser.equals(user, that.user) && BenchUser.equals(items, that.items)
+                && BenchUser.equals(attributes, that.attributes);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (id ^ (id >>> 32));
+    }
+}
@@ -0,0 +1,27 @@
+package com.dianping.pigeon.benchmark.codec;
+
+import com.facebook.swift.codec.ThriftField;
+import com.facebook.swift.service.ThriftMethod;
+import com.facebook.swift.service.ThriftService;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测服务，每个方法对应一种负载
+ */
+@ThriftService("BenchService")
+public interface BenchService {
+
+    @ThriftMethod
+    BenchUser user(@ThriftField(1) BenchUser user) throws BenchException;
+
+    @ThriftMethod
+    List<BenchItem> items(@ThriftField(1) List<BenchItem> items);
+
+    @ThriftMethod
+    Map<String, String> attributes(@ThriftField(1) Map<String, String> attributes);
+
+    @ThriftMethod
+    BenchOrder order(@ThriftField(1) BenchOrder order);
+}
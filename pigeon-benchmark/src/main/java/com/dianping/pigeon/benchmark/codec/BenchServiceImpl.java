@@ -0,0 +1,30 @@
+package com.dianping.pigeon.benchmark.codec;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 原样返回参数
+ */
+public class BenchServiceImpl implements BenchService {
+
+    @Override
+    public BenchUser user(BenchUser user) throws BenchException {
+        return user;
+    }
+
+    @Override
+    public List<BenchItem> items(List<BenchItem> items) {
+        return items;
+    }
+
+    @Override
+    public Map<String, String> attributes(Map<String, String> attributes) {
+        return attributes;
+    }
+
+    @Override
+    public BenchOrder order(BenchOrder order) {
+        return order;
+    }
+}
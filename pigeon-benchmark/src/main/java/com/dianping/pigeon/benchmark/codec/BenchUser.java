@@ -0,0 +1,116 @@
+package com.dianping.pigeon.benchmark.codec;
+
+import com.facebook.swift.codec.ThriftField;
+import com.facebook.swift.codec.ThriftStruct;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 压测用的小对象，同时带有thrift注解，各序列化方式共用
+ */
+@ThriftStruct
+public class BenchUser implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long id;
+    private String name;
+    private String email;
+    private int age;
+    private boolean vip;
+    private double score;
+    private List<String> tags;
+
+    @ThriftField(1)
+    public long getId() {
+        return id;
+    }
+
+    @ThriftField
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    @ThriftField(2)
+    public String getName() {
+        return name;
+    }
+
+    @ThriftField
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @ThriftField(3)
+    public String getEmail() {
+        return email;
+    }
+
+    @ThriftField
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    @ThriftField(4)
+    public int getAge() {
+        return age;
+    }
+
+    @ThriftField
+    public void setAge(int age) {
+        this.age = age;
+    }
+
+    @ThriftField(5)
+    public boolean isVip() {
+        return vip;
+    }
+
+    @ThriftField
+    public void setVip(boolean vip) {
+        this.vip = vip;
+    }
+
+    @ThriftField(6)
+    public double getScore() {
+        return score;
+    }
+
+    @ThriftField
+    public void setScore(double score) {
+        this.score = score;
+    }
+
+    @ThriftField(7)
+    public List<String> getTags() {
+        return tags;
+    }
+
+    @ThriftField
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BenchUser)) {
+            return false;
+        }
+        BenchUser that = (BenchUser) o;
+        return id == that.id && age == that.age && vip == that.vip && Double.compare(that.score, score) == 0
+                && equals(name, that.name) && equals(email, that.email) && equals(tags, that.tags);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (id ^ (id >>> 32));
+    }
+
+    static boolean equals(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
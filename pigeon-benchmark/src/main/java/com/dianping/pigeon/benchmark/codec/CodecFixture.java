@@ -0,0 +1,205 @@
+package com.dianping.pigeon.benchmark.codec;
+
+import com.dianping.pigeon.remoting.common.codec.BufferSerializer;
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.SerializerType;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.domain.generic.GenericRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
+import com.dianping.pigeon.remoting.netty.codec.ChannelBufferCodecBuffer;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
+import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
+import com.dianping.pigeon.remoting.provider.publish.ServicePublisher;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * 某个序列化方式下某种负载的请求、响应对象，以及对应的编解码调用
+ * <p>
+ * 编解码分两种路径：stream为Serializer的InputStream/OutputStream接口；buffer与netty编解码默认
+ * (pigeon.codec.buffer.enable=true)一致，序列化器支持BufferSerializer时直接读写netty的ChannelBuffer，否则退回stream
+ * <p>
+ * thrift需要服务接口已发布、响应对应的请求已登记，protobuf3需要Message参数，这里统一处理
+ */
+public class CodecFixture {
+
+    public static final String PATH_STREAM = "stream";
+
+    public static final String PATH_BUFFER = "buffer";
+
+    public static final String SERVICE_URL = "http://service.dianping.com/benchmark/benchService_1.0.0";
+
+    private static final String APP = "pigeon-benchmark";
+
+    private static final int TIMEOUT = 1000;
+
+    private static volatile boolean published = false;
+
+    private final Serializer serializer;
+
+    // 不支持buffer路径或使用stream路径时为null
+    private final BufferSerializer bufferSerializer;
+
+    private final InvocationRequest request;
+
+    private final InvocationResponse response;
+
+    // 复用输出流，只统计序列化本身的开销
+    private final ByteArrayOutputStream os = new ByteArrayOutputStream(64 * 1024);
+
+    private final ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(64 * 1024);
+
+    public CodecFixture(String serializeName, Payload payload, long sequence) throws Exception {
+        this(serializeName, payload, sequence, PATH_STREAM);
+    }
+
+    public CodecFixture(String serializeName, Payload payload, long sequence, String codecPath) throws Exception {
+        byte serialize = SerializerFactory.getSerialize(serializeName);
+        serializer = SerializerFactory.getSerializer(serialize);
+        if (PATH_BUFFER.equals(codecPath) && serializer instanceof BufferSerializer) {
+            bufferSerializer = (BufferSerializer) serializer;
+        } else if (PATH_BUFFER.equals(codecPath) || PATH_STREAM.equals(codecPath)) {
+            bufferSerializer = null;
+        } else {
+            throw new IllegalArgumentException("unknown codec path:" + codecPath);
+        }
+
+        Object result;
+        if (SerializerType.isThrift(serialize)) {
+            publish();
+            GenericRequest genericRequest = new GenericRequest(SERVICE_URL, payload.getMethodName(),
+                    new Object[] { payload.newParameter() }, serialize, Constants.MESSAGE_TYPE_SERVICE, TIMEOUT);
+            genericRequest.setServiceInterface(BenchService.class);
+            genericRequest.setParameterTypes(new Class<?>[] { payload.getParameterType() });
+            genericRequest.setCallType(Constants.CALLTYPE_REPLY);
+            genericRequest.setSequence(sequence);
+            genericRequest.setApp(APP);
+            request = genericRequest;
+            result = payload.newResult();
+
+            // 解码thrift响应时按sequence找到请求
+            RemoteInvocationBean invocationBean = new RemoteInvocationBean();
+            invocationBean.request = request;
+            ServiceInvocationRepository.getInstance().put(sequence, invocationBean);
+        } else if (SerializerType.isProtobuf3(serialize)) {
+            request = newRequest(payload, serialize, payload.newProtobufParameter(), sequence);
+            result = payload.newProtobufResult();
+        } else {
+            request = newRequest(payload, serialize, payload.newParameter(), sequence);
+            result = payload.newResult();
+        }
+
+        // 与服务端构造响应的方式一致，json的异常以堆栈字符串返回
+        if (payload.isException()) {
+            response = ProviderUtils.createServiceExceptionResponse(request, (Throwable) result);
+        } else {
+            response = ProviderUtils.createSuccessResponse(request, result);
+        }
+    }
+
+    private static DefaultRequest newRequest(Payload payload, byte serialize, Object parameter, long sequence) {
+        DefaultRequest request = new DefaultRequest(SERVICE_URL, payload.getMethodName(), new Object[] { parameter },
+                serialize, Constants.MESSAGE_TYPE_SERVICE, TIMEOUT, new Class<?>[] { parameter.getClass() });
+        request.setSequence(sequence);
+        request.setCallType(Constants.CALLTYPE_REPLY);
+        request.setApp(APP);
+        request.setVersion("1.0.0");
+        return request;
+    }
+
+    private static void publish() throws Exception {
+        if (!published) {
+            synchronized (CodecFixture.class) {
+                if (!published) {
+                    ProviderConfig<BenchService> providerConfig = new ProviderConfig<BenchService>(
+                            BenchService.class, new BenchServiceImpl());
+                    providerConfig.setUrl(SERVICE_URL);
+                    ServicePublisher.addService(providerConfig);
+                    published = true;
+                }
+            }
+        }
+    }
+
+    public InvocationRequest getRequest() {
+        return request;
+    }
+
+    public InvocationResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * 实际使用的编解码路径，序列化器不支持buffer时为stream
+     *
+     * @return
+     */
+    public String getCodecPath() {
+        return bufferSerializer != null ? PATH_BUFFER : PATH_STREAM;
+    }
+
+    public int writeRequest() {
+        if (bufferSerializer != null) {
+            buffer.clear();
+            bufferSerializer.serializeRequest(new ChannelBufferCodecBuffer(buffer), request);
+            return buffer.readableBytes();
+        }
+        os.reset();
+        serializer.serializeRequest(os, request);
+        return os.size();
+    }
+
+    public int writeResponse() {
+        if (bufferSerializer != null) {
+            buffer.clear();
+            bufferSerializer.serializeResponse(new ChannelBufferCodecBuffer(buffer), response);
+            return buffer.readableBytes();
+        }
+        os.reset();
+        serializer.serializeResponse(os, response);
+        return os.size();
+    }
+
+    public byte[] serializeRequest() {
+        writeRequest();
+        return toByteArray();
+    }
+
+    public byte[] serializeResponse() {
+        writeResponse();
+        return toByteArray();
+    }
+
+    private byte[] toByteArray() {
+        if (bufferSerializer != null) {
+            byte[] bytes = new byte[buffer.readableBytes()];
+            buffer.getBytes(buffer.readerIndex(), bytes);
+            return bytes;
+        }
+        return os.toByteArray();
+    }
+
+    public Object deserializeRequest(byte[] bytes) {
+        if (bufferSerializer != null) {
+            return bufferSerializer.deserializeRequest(
+                    new ChannelBufferCodecBuffer(ChannelBuffers.wrappedBuffer(bytes)));
+        }
+        return serializer.deserializeRequest(new ByteArrayInputStream(bytes));
+    }
+
+    public Object deserializeResponse(byte[] bytes) {
+        if (bufferSerializer != null) {
+            return bufferSerializer.deserializeResponse(
+                    new ChannelBufferCodecBuffer(ChannelBuffers.wrappedBuffer(bytes)));
+        }
+        return serializer.deserializeResponse(new ByteArrayInputStream(bytes));
+    }
+}
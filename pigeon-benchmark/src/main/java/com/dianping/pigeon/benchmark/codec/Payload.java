@@ -0,0 +1,225 @@
+package com.dianping.pigeon.benchmark.codec;
+
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Message;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 固定的压测负载，每次生成的内容相同
+ * <p>
+ * protobuf3只能序列化Message，对应的负载用Struct/ListValue表示相同的数据
+ */
+public enum Payload {
+
+    SMALL_POJO("user") {
+        @Override
+        public Object newParameter() {
+            return newUser(1);
+        }
+
+        @Override
+        public Message newProtobufParameter() {
+            return toStruct(newUser(1));
+        }
+    },
+
+    LARGE_LIST("items") {
+        @Override
+        public Object newParameter() {
+            return newItems(LARGE_LIST_SIZE);
+        }
+
+        @Override
+        public Message newProtobufParameter() {
+            return toListValue(newItems(LARGE_LIST_SIZE));
+        }
+    },
+
+    MAP("attributes") {
+        @Override
+        public Object newParameter() {
+            return newAttributes(MAP_SIZE);
+        }
+
+        @Override
+        public Message newProtobufParameter() {
+            return toStruct(newAttributes(MAP_SIZE));
+        }
+    },
+
+    NESTED("order") {
+        @Override
+        public Object newParameter() {
+            return newOrder();
+        }
+
+        @Override
+        public Message newProtobufParameter() {
+            return toStruct(newOrder());
+        }
+    },
+
+    EXCEPTION("user") {
+        @Override
+        public Object newParameter() {
+            return newUser(1);
+        }
+
+        @Override
+        public Message newProtobufParameter() {
+            return toStruct(newUser(1));
+        }
+
+        @Override
+        public Object newResult() {
+            return new BenchException(404, "user 1 not found");
+        }
+
+        @Override
+        public Object newProtobufResult() {
+            return newResult();
+        }
+    };
+
+    private static final int LARGE_LIST_SIZE = 1000;
+
+    private static final int MAP_SIZE = 100;
+
+    private static final int NESTED_ITEMS = 20;
+
+    private final String methodName;
+
+    Payload(String methodName) {
+        this.methodName = methodName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public Class<?> getParameterType() {
+        for (Method method : BenchService.class.getMethods()) {
+            if (method.getName().equals(methodName)) {
+                return method.getParameterTypes()[0];
+            }
+        }
+        throw new IllegalStateException("no method " + methodName + " in " + BenchService.class.getName());
+    }
+
+    public abstract Object newParameter();
+
+    public abstract Message newProtobufParameter();
+
+    /**
+     * 正常情况下服务原样返回参数
+     */
+    public Object newResult() {
+        return newParameter();
+    }
+
+    public Object newProtobufResult() {
+        return newProtobufParameter();
+    }
+
+    public boolean isException() {
+        return newResult() instanceof Throwable;
+    }
+
+    static BenchUser newUser(long id) {
+        BenchUser user = new BenchUser();
+        user.setId(id);
+        user.setName("user-" + id);
+        user.setEmail("user-" + id + "@dianping.com");
+        user.setAge(30);
+        user.setVip(id % 2 == 0);
+        user.setScore(id * 1.5d);
+        user.setTags(Arrays.asList("shanghai", "food", "movie"));
+        return user;
+    }
+
+    static List<BenchItem> newItems(int size) {
+        List<BenchItem> items = new ArrayList<BenchItem>(size);
+        for (int i = 0; i < size; i++) {
+            BenchItem item = new BenchItem();
+            item.setSku("sku-" + i);
+            item.setPrice(9.9d + i);
+            item.setQuantity(i % 5 + 1);
+            items.add(item);
+        }
+        return items;
+    }
+
+    static Map<String, String> newAttributes(int size) {
+        Map<String, String> attributes = new LinkedHashMap<String, String>();
+        for (int i = 0; i < size; i++) {
+            attributes.put("key-" + i, "value-" + i);
+        }
+        return attributes;
+    }
+
+    static BenchOrder newOrder() {
+        BenchOrder order = new BenchOrder();
+        order.setId(10001L);
+        order.setUser(newUser(2));
+        order.setItems(newItems(NESTED_ITEMS));
+        order.setAttributes(newAttributes(10));
+        return order;
+    }
+
+    static Struct toStruct(BenchUser user) {
+        ListValue.Builder tags = ListValue.newBuilder();
+        for (String tag : user.getTags()) {
+            tags.addValues(Value.newBuilder().setStringValue(tag));
+        }
+        return Struct.newBuilder()
+                .putFields("id", Value.newBuilder().setNumberValue(user.getId()).build())
+                .putFields("name", Value.newBuilder().setStringValue(user.getName()).build())
+                .putFields("email", Value.newBuilder().setStringValue(user.getEmail()).build())
+                .putFields("age", Value.newBuilder().setNumberValue(user.getAge()).build())
+                .putFields("vip", Value.newBuilder().setBoolValue(user.isVip()).build())
+                .putFields("score", Value.newBuilder().setNumberValue(user.getScore()).build())
+                .putFields("tags", Value.newBuilder().setListValue(tags).build())
+                .build();
+    }
+
+    static Struct toStruct(BenchItem item) {
+        return Struct.newBuilder()
+                .putFields("sku", Value.newBuilder().setStringValue(item.getSku()).build())
+                .putFields("price", Value.newBuilder().setNumberValue(item.getPrice()).build())
+                .putFields("quantity", Value.newBuilder().setNumberValue(item.getQuantity()).build())
+                .build();
+    }
+
+    static ListValue toListValue(List<BenchItem> items) {
+        ListValue.Builder builder = ListValue.newBuilder();
+        for (BenchItem item : items) {
+            builder.addValues(Value.newBuilder().setStructValue(toStruct(item)));
+        }
+        return builder.build();
+    }
+
+    static Struct toStruct(Map<String, String> attributes) {
+        Struct.Builder builder = Struct.newBuilder();
+        for (Map.Entry<String, String> entry : attributes.entrySet()) {
+            builder.putFields(entry.getKey(), Value.newBuilder().setStringValue(entry.getValue()).build());
+        }
+        return builder.build();
+    }
+
+    static Struct toStruct(BenchOrder order) {
+        return Struct.newBuilder()
+                .putFields("id", Value.newBuilder().setNumberValue(order.getId()).build())
+                .putFields("user", Value.newBuilder().setStructValue(toStruct(order.getUser())).build())
+                .putFields("items", Value.newBuilder().setListValue(toListValue(order.getItems())).build())
+                .putFields("attributes", Value.newBuilder().setStructValue(toStruct(order.getAttributes())).build())
+                .build();
+    }
+}
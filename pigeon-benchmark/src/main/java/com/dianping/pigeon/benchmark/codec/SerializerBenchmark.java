@@ -0,0 +1,75 @@
+package com.dianping.pigeon.benchmark.codec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各序列化方式对固定负载的请求、响应编解码吞吐，序列化和反序列化分开统计
+ * <p>
+ * codecPath=buffer为netty编解码默认使用的BufferSerializer路径，stream为InputStream/OutputStream路径，
+ * 不支持BufferSerializer的序列化方式两者相同
+ * <p>
+ * 每次操作的分配字节数由gc profiler给出(gc.alloc.rate.norm)，消息字节数见BenchmarkMain输出的表格
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({ "hessian", "hessian1", "java", "proto", "fst", "json", "thrift", "protobuf3" })
+    public String serialize;
+
+    @Param({ "SMALL_POJO", "LARGE_LIST", "MAP", "NESTED", "EXCEPTION" })
+    public Payload payload;
+
+    @Param({ CodecFixture.PATH_BUFFER, CodecFixture.PATH_STREAM })
+    public String codecPath;
+
+    private CodecFixture fixture;
+
+    private byte[] requestBytes;
+
+    private byte[] responseBytes;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        fixture = new CodecFixture(serialize, payload, 1L, codecPath);
+        requestBytes = fixture.serializeRequest();
+        responseBytes = fixture.serializeResponse();
+    }
+
+    @Benchmark
+    public int serializeRequest() {
+        return fixture.writeRequest();
+    }
+
+    @Benchmark
+    public Object deserializeRequest() {
+        return fixture.deserializeRequest(requestBytes);
+    }
+
+    @Benchmark
+    public int serializeResponse() {
+        return fixture.writeResponse();
+    }
+
+    @Benchmark
+    public Object deserializeResponse() {
+        return fixture.deserializeResponse(responseBytes);
+    }
+}
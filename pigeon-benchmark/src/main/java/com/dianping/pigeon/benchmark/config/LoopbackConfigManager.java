@@ -0,0 +1,21 @@
+package com.dianping.pigeon.benchmark.config;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.dianping.pigeon.config.file.PropertiesFileConfigManager;
+
+/**
+ * 压测用的配置，服务端注册地址固定为回环地址，可通过pigeon.benchmark.ip修改
+ */
+public class LoopbackConfigManager extends PropertiesFileConfigManager {
+
+    private static final String KEY_BENCHMARK_IP = "pigeon.benchmark.ip";
+
+    private static final String LOOPBACK_IP = "127.0.0.1";
+
+    @Override
+    public String doGetLocalIp() throws Exception {
+        String ip = getLocalStringValue(KEY_BENCHMARK_IP);
+        return StringUtils.isBlank(ip) ? LOOPBACK_IP : ip;
+    }
+}
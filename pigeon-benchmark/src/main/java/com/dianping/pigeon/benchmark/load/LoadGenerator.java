@@ -0,0 +1,199 @@
+package com.dianping.pigeon.benchmark.load;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.dianping.pigeon.benchmark.rpc.LoopbackFixture;
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.threadpool.DefaultThreadFactory;
+
+/**
+ * 命令行压测工具，对一个服务方法按固定速率(开环)或固定并发(闭环)发起同步调用，输出耗时分布和错误统计
+ * <p>
+ * 定速时由单独的线程按计划时间把调用交给concurrency个工作线程，服务变慢时调用在队列中堆积而不是少发，
+ * 耗时从计划时间算起，避免coordinated omission；rate为0时concurrency个线程各自循环调用。
+ * 预热期间的调用不计入结果。定速时吞吐量按计划发完的时间计算，不含最后等待排队调用完成的时间
+ * <p>
+ * 参数为key=value，对应pigeon.benchmark.load.*配置：
+ * jar(逗号分隔)、interface、url、method、types、args(json数组)、rate、concurrency、warmup、duration(秒)、
+ * serialize、timeout；不指定interface时在进程内启动回环服务端压测EchoService.echo，负载大小为payloadSize，
+ * 指定interface时可用loopback=true同时启动回环服务端：
+ * <p>
+ * mvn -o -Pbenchmark -pl pigeon-benchmark exec:exec@load -Dload.args="rate=5000 duration=30"
+ * <p>
+ * mvn -o -Pbenchmark -pl pigeon-benchmark exec:exec@load -Dload.args="jar=/path/api.jar interface=com.xx.UserService
+ * method=getUser args=[1] concurrency=32"
+ */
+public class LoadGenerator {
+
+    private static final String KEY_PREFIX = "pigeon.benchmark.load.";
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private final LoadTarget target;
+
+    private final int rate;
+
+    private final int concurrency;
+
+    private final long warmupMillis;
+
+    private final long durationMillis;
+
+    private final LoadReport report = new LoadReport();
+
+    private final AtomicLong outstanding = new AtomicLong();
+
+    private volatile long measureStartNanos;
+
+    /**
+     * @param rate        每秒调用数，0表示按固定并发压测
+     * @param concurrency 定速时为工作线程数，否则为并发调用线程数
+     */
+    public LoadGenerator(LoadTarget target, int rate, int concurrency, long warmupMillis, long durationMillis) {
+        if (rate < 0 || concurrency <= 0 || durationMillis <= 0) {
+            throw new IllegalArgumentException("invalid load: rate=" + rate + ", concurrency=" + concurrency
+                    + ", duration=" + durationMillis + "ms");
+        }
+        this.target = target;
+        this.rate = rate;
+        this.concurrency = concurrency;
+        this.warmupMillis = Math.max(warmupMillis, 0L);
+        this.durationMillis = durationMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index > 0) {
+                configManager.setLocalStringValue(KEY_PREFIX + arg.substring(0, index), arg.substring(index + 1));
+            }
+        }
+        String serialize = configManager.getStringValue(KEY_PREFIX + "serialize", "hessian");
+        int timeout = configManager.getIntValue(KEY_PREFIX + "timeout", LoopbackFixture.TIMEOUT);
+        String interfaceName = configManager.getStringValue(KEY_PREFIX + "interface");
+        LoadTarget target;
+        if (StringUtils.isBlank(interfaceName)) {
+            target = LoadTarget.loopback(serialize, timeout, configManager.getIntValue(KEY_PREFIX + "payloadSize",
+                    128));
+        } else {
+            if (configManager.getBooleanValue(KEY_PREFIX + "loopback", false)) {
+                LoopbackFixture.start();
+            }
+            target = LoadTarget.create(configManager.getStringValue(KEY_PREFIX + "jar"), interfaceName,
+                    configManager.getStringValue(KEY_PREFIX + "url"),
+                    configManager.getStringValue(KEY_PREFIX + "method"),
+                    configManager.getStringValue(KEY_PREFIX + "types"),
+                    configManager.getStringValue(KEY_PREFIX + "args"), serialize, timeout);
+        }
+        int rate = configManager.getIntValue(KEY_PREFIX + "rate", 0);
+        int concurrency = configManager.getIntValue(KEY_PREFIX + "concurrency", 16);
+        LoadGenerator generator = new LoadGenerator(target, rate, concurrency,
+                TimeUnit.SECONDS.toMillis(configManager.getIntValue(KEY_PREFIX + "warmup", 2)),
+                TimeUnit.SECONDS.toMillis(configManager.getIntValue(KEY_PREFIX + "duration", 10)));
+
+        System.out.println(target.getName() + (rate > 0 ? ", rate: " + rate + "/s, workers: " : ", concurrency: ")
+                + concurrency);
+        LoadReport report = generator.run();
+        report.print(System.out);
+        System.exit(0);
+    }
+
+    public LoadReport run() throws InterruptedException {
+        long startNanos = System.nanoTime();
+        measureStartNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+        long endNanos = measureStartNanos + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        long stopNanos;
+        if (rate > 0) {
+            stopNanos = runFixedRate(startNanos, endNanos);
+        } else {
+            runFixedConcurrency(endNanos);
+            stopNanos = System.nanoTime();
+        }
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(stopNanos - measureStartNanos));
+        return report;
+    }
+
+    /**
+     * @return 最后一个调用按计划发出的时间
+     */
+    private long runFixedRate(long startNanos, long endNanos) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, new DefaultThreadFactory(
+                "Pigeon-Load-Worker", true));
+        long maxOutstanding = 0L;
+        double periodNanos = TimeUnit.SECONDS.toNanos(1) / (double) rate;
+        for (long i = 0; ; i++) {
+            final long intendedNanos = startNanos + (long) (i * periodNanos);
+            if (intendedNanos >= endNanos) {
+                break;
+            }
+            long waitNanos = intendedNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            long current = outstanding.incrementAndGet();
+            if (current > maxOutstanding && intendedNanos >= measureStartNanos) {
+                maxOutstanding = current;
+            }
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        call(intendedNanos);
+                    } finally {
+                        outstanding.decrementAndGet();
+                    }
+                }
+            });
+        }
+        long stopNanos = System.nanoTime();
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        report.setMaxOutstanding(maxOutstanding);
+        return stopNanos;
+    }
+
+    private void runFixedConcurrency(final long endNanos) throws InterruptedException {
+        Thread[] threads = new Thread[concurrency];
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory("Pigeon-Load-Caller", true);
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = threadFactory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    long startNanos;
+                    while ((startNanos = System.nanoTime()) < endNanos) {
+                        call(startNanos);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void call(long startNanos) {
+        Throwable error = null;
+        try {
+            target.call();
+        } catch (Throwable t) {
+            error = t;
+        }
+        if (startNanos < measureStartNanos) {
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        if (error == null) {
+            report.recordSuccess(micros);
+        } else {
+            report.recordError(error, micros);
+        }
+    }
+}
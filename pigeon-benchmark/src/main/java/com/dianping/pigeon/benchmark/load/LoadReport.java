@@ -0,0 +1,131 @@
+package com.dianping.pigeon.benchmark.load;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dianping.pigeon.remoting.common.monitor.trace.LatencyHistogram;
+import com.dianping.pigeon.util.MapUtils;
+
+/**
+ * 压测结果：成功和失败调用各自的耗时分布(微秒)，以及按异常类型统计的失败次数
+ * <p>
+ * 定速压测时耗时从计划发起时间算起，调用端排队的时间也计入，不会因服务变慢少发请求而低估延迟；
+ * 超时等失败调用单独统计耗时，不混入成功调用的分布，也不会从结果中消失
+ */
+public class LoadReport {
+
+    private static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999, 0.9999 };
+
+    private static final long[] BOUNDS = { 100L, 500L, 1000L, 2000L, 5000L, 10000L, 20000L, 50000L, 100000L,
+            200000L, 500000L, 1000000L, 2000000L, 5000000L };
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    private final LatencyHistogram errorHistogram = new LatencyHistogram();
+
+    private final ConcurrentMap<String, AtomicLong> errors = new ConcurrentHashMap<String, AtomicLong>();
+
+    private volatile long elapsedMillis;
+
+    private volatile long maxOutstanding;
+
+    public void recordSuccess(long micros) {
+        histogram.record(micros);
+    }
+
+    public void recordError(Throwable t, long micros) {
+        errorHistogram.record(micros);
+        MapUtils.getOrCreate(errors, t.getClass().getName(), AtomicLong.class).incrementAndGet();
+    }
+
+    public long getSuccess() {
+        return histogram.getTotalCount();
+    }
+
+    public long getFailed() {
+        return errorHistogram.getTotalCount();
+    }
+
+    public Map<String, Long> getErrors() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : errors.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    public LatencyHistogram getErrorHistogram() {
+        return errorHistogram;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return 定速压测时同时在执行或排队的最大调用数，闭环压测时为0
+     */
+    public long getMaxOutstanding() {
+        return maxOutstanding;
+    }
+
+    void setMaxOutstanding(long maxOutstanding) {
+        this.maxOutstanding = maxOutstanding;
+    }
+
+    public double getThroughput() {
+        return elapsedMillis > 0 ? (getSuccess() + getFailed()) * 1000d / elapsedMillis : 0d;
+    }
+
+    public void print(PrintStream out) {
+        long success = getSuccess();
+        long failed = getFailed();
+        out.println(String.format("calls: %d, success: %d, failed: %d, elapsed: %dms, throughput: %.1f/s",
+                success + failed, success, failed, elapsedMillis, getThroughput()));
+        if (maxOutstanding > 0) {
+            out.println("max outstanding: " + maxOutstanding);
+        }
+        out.println();
+        out.println(String.format("%-12s %12s %12s", "percentile", "success(us)", "failed(us)"));
+        for (double percentile : PERCENTILES) {
+            printPercentile(out, String.format("%.2f%%", percentile * 100), percentile);
+        }
+        printPercentile(out, "max", 1);
+        out.println();
+
+        long[] cumulativeCounts = new long[BOUNDS.length];
+        long total = histogram.getCumulativeCounts(BOUNDS, cumulativeCounts);
+        out.println(String.format("%-12s %12s %10s", "<= (us)", "count", "cumulative"));
+        for (int i = 0; i < BOUNDS.length; i++) {
+            out.println(String.format("%-12d %12d %9.3f%%", BOUNDS[i], cumulativeCounts[i],
+                    total > 0 ? cumulativeCounts[i] * 100d / total : 0d));
+        }
+        out.println(String.format("%-12s %12d %9.3f%%", "+inf", total, total > 0 ? 100d : 0d));
+
+        Map<String, Long> errorCounts = getErrors();
+        if (!errorCounts.isEmpty()) {
+            out.println();
+            out.println(String.format("%-60s %12s", "error", "count"));
+            for (Map.Entry<String, Long> entry : errorCounts.entrySet()) {
+                out.println(String.format("%-60s %12d", entry.getKey(), entry.getValue()));
+            }
+        }
+    }
+
+    private void printPercentile(PrintStream out, String name, double percentile) {
+        out.println(String.format("%-12s %12d %12s", name, histogram.getValueAtPercentile(percentile),
+                getFailed() > 0 ? String.valueOf(errorHistogram.getValueAtPercentile(percentile)) : "-"));
+    }
+}
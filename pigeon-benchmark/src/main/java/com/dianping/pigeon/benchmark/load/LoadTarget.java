@@ -0,0 +1,151 @@
+package com.dianping.pigeon.benchmark.load;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.dianping.pigeon.benchmark.rpc.EchoService;
+import com.dianping.pigeon.benchmark.rpc.LoopbackFixture;
+import com.dianping.pigeon.remoting.ServiceFactory;
+import com.dianping.pigeon.remoting.common.domain.CallMethod;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 压测的调用目标：服务接口的同步调用代理、方法和参数
+ * <p>
+ * 接口可从单独的jar加载，参数以json数组给出，按方法的参数类型转换，与console的invoke页面一致
+ */
+public class LoadTarget {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Object service;
+
+    private final Method method;
+
+    private final Object[] args;
+
+    public LoadTarget(Object service, Method method, Object[] args) {
+        this.service = service;
+        this.method = method;
+        this.args = args;
+    }
+
+    /**
+     * 在当前进程内启动回环服务端，调用EchoService.echo
+     */
+    public static LoadTarget loopback(String serialize, int timeout, int payloadSize) throws Exception {
+        LoopbackFixture.start();
+        InvokerConfig<EchoService> invokerConfig = new InvokerConfig<EchoService>(LoopbackFixture.SERVICE_URL,
+                EchoService.class);
+        invokerConfig.setCallType(CallMethod.SYNC.getName());
+        invokerConfig.setSerialize(serialize);
+        invokerConfig.setTimeout(timeout);
+        byte[] payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+        return new LoadTarget(ServiceFactory.getService(invokerConfig),
+                EchoService.class.getMethod("echo", byte[].class), new Object[] { payload });
+    }
+
+    /**
+     * @param jars          接口所在的jar，逗号分隔，为空时从当前classpath加载
+     * @param interfaceName 服务接口类名
+     * @param url           服务url，为空时使用接口类名
+     * @param methodName    方法名
+     * @param types         参数类型，逗号分隔，只在同名同参数个数的方法有多个时需要
+     * @param argsJson      参数的json数组
+     */
+    public static LoadTarget create(String jars, String interfaceName, String url, String methodName, String types,
+                                    String argsJson, String serialize, int timeout) throws Exception {
+        ClassLoader classLoader = createClassLoader(jars);
+        Class<?> serviceInterface = Class.forName(interfaceName, true, classLoader);
+        List<?> values = StringUtils.isBlank(argsJson) ? Collections.emptyList()
+                : mapper.readValue(argsJson, List.class);
+        Method method = findMethod(serviceInterface, methodName, types, values.size());
+        Type[] parameterTypes = method.getGenericParameterTypes();
+        Object[] args = new Object[parameterTypes.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = mapper.convertValue(values.get(i), mapper.getTypeFactory().constructType(parameterTypes[i]));
+        }
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        InvokerConfig<?> invokerConfig = new InvokerConfig(StringUtils.isBlank(url) ? interfaceName : url,
+                serviceInterface);
+        invokerConfig.setCallType(CallMethod.SYNC.getName());
+        invokerConfig.setSerialize(serialize);
+        invokerConfig.setTimeout(timeout);
+        invokerConfig.setClassLoader(classLoader);
+        return new LoadTarget(ServiceFactory.getService(invokerConfig), method, args);
+    }
+
+    private static ClassLoader createClassLoader(String jars) throws Exception {
+        ClassLoader parent = Thread.currentThread().getContextClassLoader();
+        if (StringUtils.isBlank(jars)) {
+            return parent;
+        }
+        List<URL> urls = new ArrayList<URL>();
+        for (String jar : jars.split(",")) {
+            File file = new File(jar.trim());
+            if (!file.exists()) {
+                throw new IllegalArgumentException("jar not found: " + file.getAbsolutePath());
+            }
+            urls.add(file.toURI().toURL());
+        }
+        return new URLClassLoader(urls.toArray(new URL[urls.size()]), parent);
+    }
+
+    private static Method findMethod(Class<?> serviceInterface, String methodName, String types, int argCount) {
+        String[] typeNames = StringUtils.isBlank(types) ? null : types.split(",");
+        List<Method> candidates = new ArrayList<Method>();
+        for (Method method : serviceInterface.getMethods()) {
+            if (!method.getName().equals(methodName) || method.getParameterTypes().length != argCount) {
+                continue;
+            }
+            if (typeNames != null && !matches(method.getParameterTypes(), typeNames)) {
+                continue;
+            }
+            candidates.add(method);
+        }
+        if (candidates.size() != 1) {
+            throw new IllegalArgumentException((candidates.isEmpty() ? "no" : "more than one") + " method "
+                    + methodName + " with " + argCount + " parameters in " + serviceInterface.getName()
+                    + (candidates.isEmpty() ? "" : ", specify types: " + candidates));
+        }
+        return candidates.get(0);
+    }
+
+    private static boolean matches(Class<?>[] parameterTypes, String[] typeNames) {
+        if (parameterTypes.length != typeNames.length) {
+            return false;
+        }
+        for (int i = 0; i < parameterTypes.length; i++) {
+            String typeName = typeNames[i].trim();
+            if (!parameterTypes[i].getName().equals(typeName) && !parameterTypes[i].getSimpleName().equals(typeName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Object call() throws Throwable {
+        try {
+            return method.invoke(service, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    public String getName() {
+        return method.getDeclaringClass().getName() + "#" + method.getName();
+    }
+}
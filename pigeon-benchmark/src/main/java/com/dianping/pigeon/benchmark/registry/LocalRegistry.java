@@ -0,0 +1,409 @@
+package com.dianping.pigeon.benchmark.registry;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.registry.Registry;
+import com.dianping.pigeon.registry.config.RegistryConfig;
+import com.dianping.pigeon.registry.exception.RegistryException;
+import com.dianping.pigeon.registry.util.Constants;
+import com.dianping.pigeon.registry.util.HeartBeatSupport;
+import com.dianping.pigeon.util.VersionUtils;
+
+/**
+ * 压测用的本地注册中心，数据保存在properties文件中，不依赖zookeeper
+ * <p>
+ * 同一文件可被多个进程共享，服务端发布后另一个进程的调用端也能查到地址；
+ * 通过pigeon.registry.customized.active=local启用
+ */
+public class LocalRegistry implements Registry {
+
+    public static final String NAME = "local";
+
+    private static final String KEY_REGISTRY_FILE = "pigeon.registry.local.file";
+
+    private static final String SERVICE_PREFIX = "service.";
+    private static final String WEIGHT_PREFIX = "weight.";
+    private static final String APP_PREFIX = "app.";
+    private static final String VERSION_PREFIX = "version.";
+    private static final String PROTOCOL_PREFIX = "protocol.";
+    private static final String HEARTBEAT_PREFIX = "heartbeat.";
+    private static final String CONSOLE_KEY = "console";
+
+    private static final Logger logger = LoggerLoader.getLogger(LocalRegistry.class);
+
+    private final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private final Properties properties = new Properties();
+
+    private File file;
+
+    private long lastModified = -1;
+
+    private volatile boolean inited = false;
+
+    @Override
+    public void init() {
+        if (!inited) {
+            synchronized (this) {
+                if (!inited) {
+                    String path = configManager.getLocalStringValue(KEY_REGISTRY_FILE);
+                    if (StringUtils.isBlank(path)) {
+                        path = System.getProperty("java.io.tmpdir") + File.separator
+                                + "pigeon-registry-local.properties";
+                    }
+                    file = new File(path);
+                    reload();
+                    inited = true;
+                    logger.info("local registry file:" + file.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isEnable() {
+        return inited;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getServiceAddress(String serviceName) throws RegistryException {
+        return getServiceAddress(serviceName, Constants.DEFAULT_GROUP);
+    }
+
+    @Override
+    public String getServiceAddress(String serviceName, String group) throws RegistryException {
+        return getServiceAddress(serviceName, group, true);
+    }
+
+    @Override
+    public String getServiceAddress(String serviceName, String group, boolean fallbackDefaultGroup)
+            throws RegistryException {
+        return getServiceAddress(serviceName, group, fallbackDefaultGroup, true);
+    }
+
+    @Override
+    public String getServiceAddress(String remoteAppkey, String serviceName, String group,
+                                    boolean fallbackDefaultGroup) throws RegistryException {
+        return getServiceAddress(serviceName, group, fallbackDefaultGroup, true);
+    }
+
+    @Override
+    public String getServiceAddress(String remoteAppkey, String serviceName, String group,
+                                    boolean fallbackDefaultGroup, boolean needListener) throws RegistryException {
+        return getServiceAddress(serviceName, group, fallbackDefaultGroup, needListener);
+    }
+
+    @Override
+    public String getServiceAddress(String serviceName, String group, boolean fallbackDefaultGroup,
+                                    boolean needListener) throws RegistryException {
+        String address = get(getServiceKey(serviceName, group));
+        if (StringUtils.isBlank(address) && fallbackDefaultGroup && StringUtils.isNotBlank(group)) {
+            address = get(getServiceKey(serviceName, Constants.DEFAULT_GROUP));
+        }
+        return address == null ? "" : address;
+    }
+
+    @Override
+    public synchronized void registerService(String serviceName, String group, String serviceAddress, int weight)
+            throws RegistryException {
+        reload();
+        String key = getServiceKey(serviceName, group);
+        List<String> addressList = split(properties.getProperty(key));
+        if (!addressList.contains(serviceAddress)) {
+            addressList.add(serviceAddress);
+            Collections.sort(addressList);
+            properties.setProperty(key, StringUtils.join(addressList, ","));
+        }
+        if (weight >= 0) {
+            properties.setProperty(WEIGHT_PREFIX + serviceAddress, String.valueOf(weight));
+        }
+        store();
+    }
+
+    @Override
+    public void unregisterService(String serviceName, String serviceAddress) throws RegistryException {
+        unregisterService(serviceName, Constants.DEFAULT_GROUP, serviceAddress);
+    }
+
+    @Override
+    public synchronized void unregisterService(String serviceName, String group, String serviceAddress)
+            throws RegistryException {
+        reload();
+        String key = getServiceKey(serviceName, group);
+        List<String> addressList = split(properties.getProperty(key));
+        if (addressList.remove(serviceAddress)) {
+            if (addressList.isEmpty()) {
+                properties.remove(key);
+            } else {
+                properties.setProperty(key, StringUtils.join(addressList, ","));
+            }
+            store();
+        }
+    }
+
+    @Override
+    public int getServerWeight(String serverAddress, String serviceName) throws RegistryException {
+        String weight = get(WEIGHT_PREFIX + serverAddress);
+        if (weight != null) {
+            try {
+                return Integer.parseInt(weight);
+            } catch (NumberFormatException e) {
+                logger.warn("invalid weight for " + serverAddress + ": " + weight);
+            }
+        }
+        return Constants.DEFAULT_WEIGHT;
+    }
+
+    @Override
+    public void setServerWeight(String serverAddress, int weight) throws RegistryException {
+        set(WEIGHT_PREFIX + serverAddress, String.valueOf(weight));
+    }
+
+    @Override
+    public String getServerApp(String serverAddress, String serviceName) throws RegistryException {
+        return get(APP_PREFIX + serverAddress);
+    }
+
+    @Override
+    public void setServerApp(String serverAddress, String app) {
+        set(APP_PREFIX + serverAddress, app);
+    }
+
+    @Override
+    public void unregisterServerApp(String serverAddress) {
+        set(APP_PREFIX + serverAddress, null);
+    }
+
+    @Override
+    public String getServerVersion(String serverAddress, String serviceName) throws RegistryException {
+        return get(VERSION_PREFIX + serverAddress);
+    }
+
+    @Override
+    public void setServerVersion(String serverAddress, String version) {
+        set(VERSION_PREFIX + serverAddress, version);
+    }
+
+    @Override
+    public void unregisterServerVersion(String serverAddress) {
+        set(VERSION_PREFIX + serverAddress, null);
+    }
+
+    @Override
+    public byte getServerHeartBeatSupport(String serviceAddress, String serviceName) throws RegistryException {
+        if (isSupportNewProtocol(serviceAddress)) {
+            return HeartBeatSupport.BothSupport.getValue();
+        } else {
+            return HeartBeatSupport.P2POnly.getValue();
+        }
+    }
+
+    @Override
+    public Map<String, Boolean> getServiceProtocols(String serviceAddress, String serviceName)
+            throws RegistryException {
+        String prefix = PROTOCOL_PREFIX + serviceAddress + "#";
+        Map<String, Boolean> protocols = new HashMap<String, Boolean>();
+        synchronized (this) {
+            reload();
+            for (String key : properties.stringPropertyNames()) {
+                if (key.startsWith(prefix)) {
+                    protocols.put(key.substring(prefix.length()), Boolean.valueOf(properties.getProperty(key)));
+                }
+            }
+        }
+        return protocols;
+    }
+
+    @Override
+    public boolean isSupportNewProtocol(String serviceAddress) throws RegistryException {
+        String version = getServerVersion(serviceAddress, null);
+        return StringUtils.isNotBlank(version) && VersionUtils.isThriftSupported(version);
+    }
+
+    @Override
+    public boolean isSupportNewProtocol(String serviceAddress, String serviceName) throws RegistryException {
+        return Boolean.parseBoolean(get(PROTOCOL_PREFIX + serviceAddress + "#" + serviceName));
+    }
+
+    @Override
+    public void setSupportNewProtocol(String serviceAddress, String serviceName, boolean support)
+            throws RegistryException {
+        set(PROTOCOL_PREFIX + serviceAddress + "#" + serviceName, String.valueOf(support));
+    }
+
+    @Override
+    public void unregisterSupportNewProtocol(String serviceAddress, String serviceName, boolean support)
+            throws RegistryException {
+        set(PROTOCOL_PREFIX + serviceAddress + "#" + serviceName, null);
+    }
+
+    @Override
+    public String getStatistics() {
+        return getName() + ":" + (file == null ? "" : file.getAbsolutePath());
+    }
+
+    @Override
+    public List<String> getChildren(String key) throws RegistryException {
+        return new ArrayList<String>();
+    }
+
+    @Override
+    public void updateHeartBeat(String serviceAddress, Long heartBeatTimeMillis) {
+        set(HEARTBEAT_PREFIX + serviceAddress, String.valueOf(heartBeatTimeMillis));
+    }
+
+    @Override
+    public void deleteHeartBeat(String serviceAddress) {
+        set(HEARTBEAT_PREFIX + serviceAddress, null);
+    }
+
+    @Override
+    public void setServerService(String serviceName, String group, String hosts) throws RegistryException {
+        set(getServiceKey(serviceName, group), hosts);
+    }
+
+    @Override
+    public void delServerService(String serviceName, String group) throws RegistryException {
+        set(getServiceKey(serviceName, group), null);
+    }
+
+    @Override
+    public void setHostsWeight(String serviceName, String group, String hosts, int weight) throws RegistryException {
+        for (String host : split(hosts)) {
+            setServerWeight(host, weight);
+        }
+    }
+
+    @Override
+    public synchronized void setConsoleAddress(String consoleAddress) {
+        reload();
+        List<String> addressList = split(properties.getProperty(CONSOLE_KEY));
+        if (!addressList.contains(consoleAddress)) {
+            addressList.add(consoleAddress);
+            properties.setProperty(CONSOLE_KEY, StringUtils.join(addressList, ","));
+            store();
+        }
+    }
+
+    @Override
+    public synchronized void unregisterConsoleAddress(String consoleAddress) {
+        reload();
+        List<String> addressList = split(properties.getProperty(CONSOLE_KEY));
+        if (addressList.remove(consoleAddress)) {
+            properties.setProperty(CONSOLE_KEY, StringUtils.join(addressList, ","));
+            store();
+        }
+    }
+
+    @Override
+    public List<String> getConsoleAddresses() {
+        return split(get(CONSOLE_KEY));
+    }
+
+    @Override
+    public RegistryConfig getRegistryConfig(String ip) throws RegistryException {
+        return new RegistryConfig();
+    }
+
+    private static String getServiceKey(String serviceName, String group) {
+        return StringUtils.isBlank(group) ? SERVICE_PREFIX + serviceName : SERVICE_PREFIX + serviceName + "@" + group;
+    }
+
+    private static List<String> split(String value) {
+        List<String> list = new ArrayList<String>();
+        if (value != null) {
+            for (String item : value.split(",")) {
+                item = item.trim();
+                if (item.length() > 0 && !list.contains(item)) {
+                    list.add(item);
+                }
+            }
+        }
+        return list;
+    }
+
+    private synchronized String get(String key) {
+        reload();
+        return properties.getProperty(key);
+    }
+
+    private synchronized void set(String key, String value) {
+        reload();
+        if (value == null) {
+            if (properties.remove(key) == null) {
+                return;
+            }
+        } else {
+            properties.setProperty(key, value);
+        }
+        store();
+    }
+
+    // 其它进程修改过文件时重新加载
+    private void reload() {
+        if (file == null || !file.exists() || file.lastModified() == lastModified) {
+            return;
+        }
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            properties.clear();
+            properties.load(in);
+            lastModified = file.lastModified();
+        } catch (IOException e) {
+            logger.warn("failed to load local registry file:" + file, e);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void store() {
+        if (file == null) {
+            return;
+        }
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            properties.store(out, "pigeon local registry");
+            out.close();
+            out = null;
+            lastModified = file.lastModified();
+        } catch (IOException e) {
+            logger.warn("failed to store local registry file:" + file, e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.dianping.pigeon.benchmark.route;
+
+import java.util.List;
+
+import com.dianping.pigeon.remoting.common.channel.Channel;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.AbstractClient;
+import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
+
+/**
+ * 路由压测用的客户端，不建立连接，只提供地址、状态和region
+ * <p>
+ * region沿用AbstractClient的按host解析和缓存，与线上客户端一致
+ */
+public class BenchClient extends AbstractClient {
+
+    private final ConnectInfo connectInfo;
+
+    private final String address;
+
+    public BenchClient(String serviceName, String host, int port, int weight) {
+        super(null, null);
+        this.connectInfo = new ConnectInfo(serviceName, host, port, weight);
+        this.address = connectInfo.getConnect();
+    }
+
+    @Override
+    public ConnectInfo getConnectInfo() {
+        return connectInfo;
+    }
+
+    @Override
+    public void doOpen() {
+    }
+
+    @Override
+    public void doClose() {
+    }
+
+    @Override
+    public InvocationResponse doWrite(InvocationRequest request) {
+        throw new UnsupportedOperationException("bench client can not write");
+    }
+
+    @Override
+    public List<Channel> getChannels() {
+        return null;
+    }
+
+    @Override
+    public String getHost() {
+        return connectInfo.getHost();
+    }
+
+    @Override
+    public String getAddress() {
+        return address;
+    }
+
+    @Override
+    public int getPort() {
+        return connectInfo.getPort();
+    }
+
+    @Override
+    public String getProtocol() {
+        return Constants.PROTOCOL_DEFAULT;
+    }
+
+    @Override
+    public String toString() {
+        return getAddress();
+    }
+}
@@ -0,0 +1,101 @@
+package com.dianping.pigeon.benchmark.route;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dianping.pigeon.benchmark.rpc.EchoService;
+import com.dianping.pigeon.remoting.common.codec.SerializerType;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.route.DefaultRouteManager;
+import com.dianping.pigeon.remoting.invoker.route.balance.LoadBalance;
+import com.dianping.pigeon.remoting.invoker.route.balance.LoadBalanceManager;
+
+/**
+ * 路由选择压测：route覆盖region过滤、存活与权重过滤、负载均衡的完整路径，
+ * availableClients只测过滤，select只测负载均衡及其权重计算
+ * <p>
+ * 单次耗时为ns/op，gc profiler的gc.alloc.rate.norm即bytes/op；
+ * 并发数即JMH线程数，可用--threads=1,4,16,64依次压测
+ * <p>
+ * -Dbenchmark.args="RouteBenchmark --threads=1,64 -p providers=2000 -p loadBalance=weightedAutoaware"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteBenchmark {
+
+    private static final AtomicLong sequence = new AtomicLong();
+
+    @Param({ "10", "100", "500", "2000" })
+    public int providers;
+
+    @Param({ "random", "roundRobin", "autoaware", "weightedAutoaware" })
+    public String loadBalance;
+
+    @Param({ "false", "true" })
+    public boolean region;
+
+    private RouteFixture fixture;
+
+    private InvokerConfig<EchoService> invokerConfig;
+
+    private LoadBalance balance;
+
+    @State(Scope.Thread)
+    public static class RequestState {
+
+        final InvocationRequest request = new DefaultRequest(RouteFixture.SERVICE_URL, "echo", null,
+                SerializerType.HESSIAN.getCode(), Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY,
+                sequence.incrementAndGet());
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new RouteFixture(providers);
+        RouteFixture.setRegionEnabled(region);
+        invokerConfig = new InvokerConfig<EchoService>(RouteFixture.SERVICE_URL, EchoService.class);
+        invokerConfig.setLoadbalance(loadBalance);
+        balance = LoadBalanceManager.getLoadBalance(loadBalance);
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        fixture.reset();
+    }
+
+    @Benchmark
+    public Client route(RequestState state) {
+        return DefaultRouteManager.INSTANCE.route(fixture.getClients(), invokerConfig, state.request);
+    }
+
+    @Benchmark
+    public List<Client> availableClients(RequestState state) {
+        return DefaultRouteManager.INSTANCE.getAvailableClients(fixture.getClients(), invokerConfig, state.request);
+    }
+
+    @Benchmark
+    public Client select(RequestState state) {
+        return balance.select(fixture.getAvailableClients(), invokerConfig, state.request);
+    }
+}
@@ -0,0 +1,127 @@
+package com.dianping.pigeon.benchmark.route;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.registry.RegistryManager;
+import com.dianping.pigeon.registry.listener.RegistryEventListener;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.InvokerBootStrap;
+import com.dianping.pigeon.remoting.invoker.route.balance.LoadBalanceManager;
+import com.dianping.pigeon.remoting.invoker.route.statistics.CapacityBucket;
+import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
+
+/**
+ * 构造一组合成的服务提供方：region、注册中心权重、预热系数、在途请求数、是否存活各不相同
+ * <p>
+ * 权重经RegistryManager和RegistryEventListener写入，与注册中心推送的路径一致；
+ * 同一提供方数量下按固定种子生成，各次压测之间可比
+ */
+public class RouteFixture {
+
+    public static final String SERVICE_URL = "http://service.dianping.com/benchmark/routeService_1.0.0";
+
+    public static final int PORT = 4040;
+
+    private static final String KEY_REGION_ENABLE = "pigeon.regions.route.enable";
+
+    private static final int DEFAULT_FACTOR = ConfigManagerLoader.getConfigManager().getIntValue(
+            "pigeon.loadbalance.defaultFactor", 100);
+
+    private static volatile boolean started = false;
+
+    private final List<Client> clients;
+
+    // 经过存活、权重过滤后的客户端，即负载均衡的输入
+    private final List<Client> availableClients;
+
+    private final int[] factors;
+
+    private final float[] capacities;
+
+    public static void start() {
+        if (!started) {
+            synchronized (RouteFixture.class) {
+                if (!started) {
+                    ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+                    // 本机127.0.0.1归入region1，按region1、region2、region3的顺序优先
+                    configManager.setLocalStringValue("pigeon.regions", "region1:127.0,10.1;region2:10.2;region3:10.3");
+                    configManager.setLocalStringValue("pigeon.regions.prefer.region1", "region1:3,region2:2,region3:1");
+                    configManager.setLocalStringValue(KEY_REGION_ENABLE, "true");
+                    InvokerBootStrap.startup();
+                    started = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * region路由开关每次调用都会读取，压测中可随时切换
+     */
+    public static void setRegionEnabled(boolean enabled) {
+        ConfigManagerLoader.getConfigManager().setLocalStringValue(KEY_REGION_ENABLE, String.valueOf(enabled));
+    }
+
+    public RouteFixture(int providers) {
+        start();
+        Random random = new Random(providers);
+        List<Client> clients = new ArrayList<Client>(providers);
+        List<Client> availableClients = new ArrayList<Client>(providers);
+        this.factors = new int[providers];
+        this.capacities = new float[providers];
+        for (int i = 0; i < providers; i++) {
+            // region1:region2:region3约为5:3:2
+            int dice = random.nextInt(10);
+            int region = dice < 5 ? 1 : (dice < 8 ? 2 : 3);
+            String host = "10." + region + "." + (i / 250) + "." + (i % 250 + 1);
+            // 约5%的提供方权重为0，即已下线
+            int weight = random.nextInt(20) == 0 ? 0 : 1 + random.nextInt(10);
+            RegistryManager.getInstance().addServiceAddress(SERVICE_URL, host, PORT, weight);
+            RegistryEventListener.hostWeightChanged(host, PORT, weight);
+
+            BenchClient client = new BenchClient(SERVICE_URL, host, PORT, weight);
+            // 约2%的连接不可用
+            client.setActive(random.nextInt(50) != 0);
+            clients.add(client);
+            if (client.isActive() && weight > 0) {
+                availableClients.add(client);
+            }
+
+            // 约20%的提供方处于预热中
+            factors[i] = random.nextInt(5) == 0 ? random.nextInt(DEFAULT_FACTOR) : DEFAULT_FACTOR;
+            // 约10%的提供方积压了较多请求
+            capacities[i] = random.nextInt(10) == 0 ? 50 + random.nextInt(50) : random.nextInt(5);
+        }
+        this.clients = Collections.unmodifiableList(clients);
+        this.availableClients = Collections.unmodifiableList(availableClients);
+        reset();
+    }
+
+    /**
+     * 恢复预热系数和在途请求数，预热系数会被后台线程逐步调高，每轮压测前需重置
+     */
+    public void reset() {
+        for (int i = 0; i < clients.size(); i++) {
+            String address = clients.get(i).getAddress();
+            LoadBalanceManager.WeightFactor factor = LoadBalanceManager.getWeightFactors().get(address);
+            if (factor != null) {
+                factor.setFactor(factors[i]);
+                factor.setCurrentStepTicks(0);
+            }
+            CapacityBucket bucket = ServiceStatisticsHolder.getCapacityBucket(address);
+            bucket.refreshCapacity(capacities[i] - bucket.getCapacity());
+        }
+    }
+
+    public List<Client> getClients() {
+        return clients;
+    }
+
+    public List<Client> getAvailableClients() {
+        return availableClients;
+    }
+}
@@ -0,0 +1,43 @@
+package com.dianping.pigeon.benchmark.rpc;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.dianping.pigeon.remoting.invoker.concurrent.InvocationCallback;
+
+/**
+ * 可复用的回调，调用线程发出请求后等待回调完成，不在每次调用时创建latch
+ */
+public class BlockingCallback implements InvocationCallback {
+
+    private final Semaphore done = new Semaphore(0);
+
+    private volatile Object result;
+
+    private volatile Throwable exception;
+
+    @Override
+    public void onSuccess(Object result) {
+        this.result = result;
+        this.exception = null;
+        done.release();
+    }
+
+    @Override
+    public void onFailure(Throwable exception) {
+        this.result = null;
+        this.exception = exception;
+        done.release();
+    }
+
+    public Object await(long timeout) throws Throwable {
+        if (!done.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+            throw new TimeoutException("callback timeout after " + timeout + "ms");
+        }
+        if (exception != null) {
+            throw exception;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,9 @@
+package com.dianping.pigeon.benchmark.rpc;
+
+/**
+ * 回环压测服务，按字节数组控制负载大小
+ */
+public interface EchoService {
+
+    byte[] echo(byte[] payload);
+}
@@ -0,0 +1,9 @@
+package com.dianping.pigeon.benchmark.rpc;
+
+public class EchoServiceImpl implements EchoService {
+
+    @Override
+    public byte[] echo(byte[] payload) {
+        return payload;
+    }
+}
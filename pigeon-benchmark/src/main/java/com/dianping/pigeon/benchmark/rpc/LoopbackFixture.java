@@ -0,0 +1,66 @@
+package com.dianping.pigeon.benchmark.rpc;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.ServiceFactory;
+import com.dianping.pigeon.remoting.common.domain.CallMethod;
+import com.dianping.pigeon.remoting.common.exception.RpcException;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
+import com.dianping.pigeon.remoting.provider.config.ServerConfig;
+
+/**
+ * 在当前进程内启动netty服务端并发布EchoService，调用端经本地注册中心找到127.0.0.1上的服务
+ * <p>
+ * 请求经过完整的调用端、服务端filter链，与线上调用路径一致
+ */
+public final class LoopbackFixture {
+
+    public static final String SERVICE_URL = "http://service.dianping.com/benchmark/echoService_1.0.0";
+
+    public static final int TIMEOUT = ConfigManagerLoader.getConfigManager().getIntValue("pigeon.benchmark.timeout",
+            5000);
+
+    private static final String KEY_REGISTRY_FILE = "pigeon.registry.local.file";
+
+    private static final int PORT = ConfigManagerLoader.getConfigManager().getIntValue("pigeon.benchmark.port", 4040);
+
+    private static volatile boolean started = false;
+
+    private LoopbackFixture() {
+    }
+
+    public static void start() throws RpcException, IOException {
+        if (!started) {
+            synchronized (LoopbackFixture.class) {
+                if (!started) {
+                    // 每个进程用独立的注册文件，避免读到上次压测残留的地址
+                    if (System.getProperty(KEY_REGISTRY_FILE) == null) {
+                        File file = File.createTempFile("pigeon-registry-", ".properties");
+                        file.deleteOnExit();
+                        System.setProperty(KEY_REGISTRY_FILE, file.getAbsolutePath());
+                    }
+                    ServerConfig serverConfig = new ServerConfig();
+                    serverConfig.setPort(PORT);
+                    serverConfig.setAutoSelectPort(true);
+                    ProviderConfig<EchoService> providerConfig = new ProviderConfig<EchoService>(EchoService.class,
+                            new EchoServiceImpl());
+                    providerConfig.setUrl(SERVICE_URL);
+                    providerConfig.setServerConfig(serverConfig);
+                    ServiceFactory.addService(providerConfig);
+                    started = true;
+                }
+            }
+        }
+    }
+
+    public static EchoService getService(CallMethod callMethod, String serialize) throws RpcException {
+        InvokerConfig<EchoService> invokerConfig = new InvokerConfig<EchoService>(SERVICE_URL, EchoService.class);
+        invokerConfig.setCallType(callMethod.getName());
+        invokerConfig.setSerialize(serialize);
+        invokerConfig.setTimeout(TIMEOUT);
+        return ServiceFactory.getService(invokerConfig);
+    }
+}
@@ -0,0 +1,85 @@
+package com.dianping.pigeon.benchmark.rpc;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dianping.pigeon.remoting.common.domain.CallMethod;
+import com.dianping.pigeon.remoting.invoker.concurrent.FutureFactory;
+import com.dianping.pigeon.remoting.invoker.util.InvokerHelper;
+
+/**
+ * 回环端到端压测：同一进程内的调用端经netty调用服务端，覆盖sync/future/callback/oneway
+ * <p>
+ * Throughput给出吞吐，SampleTime给出p50/p99/p99.9延迟，gc profiler给出分配速率；
+ * 并发数即JMH线程数(-t)，每个线程同时只有一个未完成的调用，oneway只统计发送开销
+ * <p>
+ * -Dbenchmark.args="RpcBenchmark -t 32 -p callType=sync -p payloadSize=1024"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class RpcBenchmark {
+
+    @Param({ "sync", "future", "callback", "oneway" })
+    public String callType;
+
+    @Param({ "hessian" })
+    public String serialize;
+
+    @Param({ "128", "4096", "65536" })
+    public int payloadSize;
+
+    private CallMethod callMethod;
+
+    private EchoService service;
+
+    private byte[] payload;
+
+    @State(Scope.Thread)
+    public static class CallbackState {
+
+        final BlockingCallback callback = new BlockingCallback();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        LoopbackFixture.start();
+        callMethod = CallMethod.getCallMethod(callType);
+        service = LoopbackFixture.getService(callMethod, serialize);
+        payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+    }
+
+    @Benchmark
+    public Object invoke(CallbackState state) throws Throwable {
+        switch (callMethod) {
+            case FUTURE:
+                service.echo(payload);
+                return FutureFactory.getResult();
+            case CALLBACK:
+                InvokerHelper.setCallback(state.callback);
+                service.echo(payload);
+                return state.callback.await(LoopbackFixture.TIMEOUT);
+            default:
+                return service.echo(payload);
+        }
+    }
+}
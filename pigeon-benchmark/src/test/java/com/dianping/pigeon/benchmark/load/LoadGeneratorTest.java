@@ -0,0 +1,51 @@
+package com.dianping.pigeon.benchmark.load;
+
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoadGeneratorTest {
+
+    @Test
+    public void testFixedConcurrency() throws Exception {
+        LoadTarget target = LoadTarget.loopback("hessian", 1000, 64);
+        LoadReport report = new LoadGenerator(target, 0, 2, 200L, 500L).run();
+        Assert.assertTrue(report.getSuccess() > 0);
+        Assert.assertEquals(0, report.getFailed());
+        Assert.assertEquals(report.getSuccess(), report.getHistogram().getTotalCount());
+        Assert.assertTrue(report.getElapsedMillis() >= 500L);
+    }
+
+    @Test
+    public void testFixedRate() throws Exception {
+        LoadTarget target = LoadTarget.loopback("hessian", 1000, 64);
+        LoadReport report = new LoadGenerator(target, 200, 2, 200L, 1000L).run();
+        long calls = report.getSuccess() + report.getFailed();
+        Assert.assertTrue("calls: " + calls, calls >= 190 && calls <= 210);
+        // 吞吐量按计划发完的时间计算，不含等待排队调用完成的时间
+        Assert.assertTrue("elapsed: " + report.getElapsedMillis(), report.getElapsedMillis() < 1100L);
+        Assert.assertEquals(200d, report.getThroughput(), 20d);
+    }
+
+    @Test
+    public void testFailedLatency() throws Exception {
+        LoadTarget target = new LoadTarget(new SlowFailingService(), SlowFailingService.class.getMethod("call"),
+                new Object[0]);
+        LoadReport report = new LoadGenerator(target, 0, 1, 0L, 200L).run();
+        Assert.assertEquals(0, report.getSuccess());
+        Assert.assertTrue(report.getFailed() > 0);
+        Assert.assertEquals(report.getFailed(), report.getErrorHistogram().getTotalCount());
+        Assert.assertTrue(report.getErrorHistogram().getValueAtPercentile(0.5) >= 5000L);
+        Assert.assertEquals(Long.valueOf(report.getFailed()),
+                report.getErrors().get(TimeoutException.class.getName()));
+    }
+
+    public static class SlowFailingService {
+
+        public void call() throws Exception {
+            Thread.sleep(5);
+            throw new TimeoutException();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.dianping.pigeon.compress;
+
+import java.io.IOException;
+
+/**
+ * 支持直接压缩、解压数组一部分的Compress，调用方可以用instanceof判断后避免先拷贝出单独的数组；
+ * 不修改Compress接口，已有的外部实现不受影响
+ */
+public abstract class AbstractCompress implements Compress {
+
+    @Override
+    public byte[] compress(byte[] buf) throws IOException {
+        if (buf == null) {
+            return null;
+        }
+        return compress(buf, 0, buf.length);
+    }
+
+    @Override
+    public byte[] unCompress(byte[] buf) throws IOException {
+        if (buf == null) {
+            return null;
+        }
+        return unCompress(buf, 0, buf.length);
+    }
+
+    /**
+     * 压缩数组的一部分
+     *
+     * @param buf
+     * @param offset
+     * @param length
+     * @return
+     */
+    public abstract byte[] compress(byte[] buf, int offset, int length) throws IOException;
+
+    /**
+     * 解压缩数组的一部分
+     *
+     * @param buf
+     * @param offset
+     * @param length
+     * @return
+     */
+    public abstract byte[] unCompress(byte[] buf, int offset, int length) throws IOException;
+}
@@ -3,49 +3,154 @@ package com.dianping.pigeon.compress;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 
 /**
+ * gzip格式压缩，Deflater/Inflater按线程复用，直接读写数组，格式与GZIPOutputStream/GZIPInputStream兼容
+ *
  * @author qi.yin
  *         2016/06/05  下午6:02.
  */
-public class GZipCompress implements Compress {
+public class GZipCompress extends AbstractCompress {
 
     /**
      * default buffer size
      */
     private static final int BUFFER_SIZE = 256;
 
-    public byte[] compress(byte[] array) throws IOException {
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private static final int HEADER_LENGTH = 10;
+
+    private static final int TRAILER_LENGTH = 8;
+
+    private static final int FHCRC = 2;
+
+    private static final int FEXTRA = 4;
+
+    private static final int FNAME = 8;
+
+    private static final int FCOMMENT = 16;
+
+    // deflate的最大压缩比约为1032:1，超出说明数据被篡改
+    private static final int MAX_RATIO = 1032;
+
+    private static final byte[] HEADER = {(byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED,
+            0, 0, 0, 0, 0, 0, 0};
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+    };
+
+    private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    private static final ThreadLocal<CRC32> crcs = new ThreadLocal<CRC32>() {
+        @Override
+        protected CRC32 initialValue() {
+            return new CRC32();
+        }
+    };
+
+    @Override
+    public byte[] compress(byte[] array, int offset, int length) throws IOException {
         if (array == null) {
             return null;
         }
+        CRC32 crc = crcs.get();
+        crc.reset();
+        crc.update(array, offset, length);
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        GZIPOutputStream gzip = null;
-        try {
-            gzip = new GZIPOutputStream(out);
-            gzip.write(array);
-            gzip.finish();
-            gzip.flush();
-        } catch (IOException e) {
-            throw e;
-        } finally {
-            if (gzip != null) {
-                gzip.close();
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(array, offset, length);
+        deflater.finish();
+
+        byte[] out = new byte[HEADER_LENGTH + (length >> 1) + 64];
+        System.arraycopy(HEADER, 0, out, 0, HEADER_LENGTH);
+        int position = HEADER_LENGTH;
+        while (!deflater.finished()) {
+            if (position == out.length) {
+                out = Arrays.copyOf(out, out.length << 1);
             }
+            position += deflater.deflate(out, position, out.length - position);
         }
-        return out.toByteArray();
+        // 不再持有调用方的数组
+        deflater.setInput(EMPTY, 0, 0);
+
+        if (out.length - position < TRAILER_LENGTH) {
+            out = Arrays.copyOf(out, position + TRAILER_LENGTH);
+        }
+        writeInt(out, position, (int) crc.getValue());
+        writeInt(out, position + 4, length);
+        position += TRAILER_LENGTH;
+        return position == out.length ? out : Arrays.copyOf(out, position);
     }
 
-    public byte[] unCompress(byte[] array) throws IOException {
+    @Override
+    public byte[] unCompress(byte[] array, int offset, int length) throws IOException {
         if (array == null) {
             return null;
         }
+        int end = offset + length;
+        int dataOffset = readHeader(array, offset, end);
+        if (end - dataOffset < TRAILER_LENGTH) {
+            throw new IOException("Unexpected end of gzip data");
+        }
+        // 单个member时，末尾的ISIZE即为解压后的长度
+        long size = readInt(array, end - 4) & 0xffffffffL;
+        if (size > (long) length * MAX_RATIO + BUFFER_SIZE) {
+            throw new IOException("Corrupt gzip trailer, size:" + size);
+        }
 
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(array, dataOffset, end - dataOffset);
+        byte[] out = new byte[(int) size];
+        int position = 0;
+        try {
+            while (!inflater.finished() && position < out.length) {
+                int n = inflater.inflate(out, position, out.length - position);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Unexpected end of gzip data");
+                }
+                position += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        boolean singleMember = inflater.finished() && inflater.getRemaining() == TRAILER_LENGTH;
+        inflater.setInput(EMPTY, 0, 0);
+        if (!singleMember) {
+            // 多个member拼接等情况，ISIZE不是总长度，交给GZIPInputStream处理
+            return unCompressStream(array, offset, length);
+        }
+        CRC32 crc = crcs.get();
+        crc.reset();
+        crc.update(out, 0, position);
+        if (readInt(array, end - TRAILER_LENGTH) != (int) crc.getValue() || position != out.length) {
+            throw new IOException("Corrupt gzip trailer");
+        }
+        return out;
+    }
+
+    private byte[] unCompressStream(byte[] array, int offset, int length) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        ByteArrayInputStream in = new ByteArrayInputStream(array);
+        ByteArrayInputStream in = new ByteArrayInputStream(array, offset, length);
         GZIPInputStream zip = null;
         try {
             zip = new GZIPInputStream(in);
@@ -64,4 +169,58 @@ public class GZipCompress implements Compress {
         return out.toByteArray();
     }
 
+    private static int readHeader(byte[] array, int offset, int end) throws IOException {
+        if (end - offset < HEADER_LENGTH) {
+            throw new IOException("Not in GZIP format");
+        }
+        if (((array[offset] & 0xff) | ((array[offset + 1] & 0xff) << 8)) != GZIP_MAGIC) {
+            throw new IOException("Not in GZIP format");
+        }
+        if (array[offset + 2] != Deflater.DEFLATED) {
+            throw new IOException("Unsupported compression method");
+        }
+        int flags = array[offset + 3] & 0xff;
+        int position = offset + HEADER_LENGTH;
+        if ((flags & FEXTRA) == FEXTRA) {
+            if (end - position < 2) {
+                throw new IOException("Not in GZIP format");
+            }
+            position += 2 + ((array[position] & 0xff) | ((array[position + 1] & 0xff) << 8));
+        }
+        if ((flags & FNAME) == FNAME) {
+            position = skipString(array, position, end);
+        }
+        if ((flags & FCOMMENT) == FCOMMENT) {
+            position = skipString(array, position, end);
+        }
+        if ((flags & FHCRC) == FHCRC) {
+            position += 2;
+        }
+        if (position > end) {
+            throw new IOException("Not in GZIP format");
+        }
+        return position;
+    }
+
+    private static int skipString(byte[] array, int position, int end) throws IOException {
+        while (position < end) {
+            if (array[position++] == 0) {
+                return position;
+            }
+        }
+        throw new IOException("Not in GZIP format");
+    }
+
+    private static void writeInt(byte[] array, int position, int value) {
+        array[position] = (byte) value;
+        array[position + 1] = (byte) (value >>> 8);
+        array[position + 2] = (byte) (value >>> 16);
+        array[position + 3] = (byte) (value >>> 24);
+    }
+
+    private static int readInt(byte[] array, int position) {
+        return (array[position] & 0xff) | ((array[position + 1] & 0xff) << 8) | ((array[position + 2] & 0xff) << 16)
+                | ((array[position + 3] & 0xff) << 24);
+    }
+
 }
@@ -0,0 +1,241 @@
+package com.dianping.pigeon.compress;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 纯java实现的LZ4块格式压缩，速度优先，压缩率低于gzip
+ * <p>
+ * 格式：4字节(大端)原始长度 + LZ4 block，block格式与LZ4官方的块格式一致
+ */
+public class Lz4Compress extends AbstractCompress {
+
+    private static final int LENGTH_FIELD = 4;
+
+    private static final int MIN_MATCH = 4;
+
+    private static final int HASH_LOG = 12;
+
+    private static final int HASH_SIZE = 1 << HASH_LOG;
+
+    // 最后一个match距离结尾至少12字节，最后5字节总是literal
+    private static final int MF_LIMIT = 12;
+
+    private static final int LAST_LITERALS = 5;
+
+    private static final int MAX_DISTANCE = 65535;
+
+    private static final int RUN_MASK = 15;
+
+    private static final ThreadLocal<int[]> hashTables = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[HASH_SIZE];
+        }
+    };
+
+    @Override
+    public byte[] compress(byte[] buf, int offset, int length) throws IOException {
+        if (buf == null) {
+            return null;
+        }
+        byte[] out = new byte[LENGTH_FIELD + maxCompressedLength(length)];
+        out[0] = (byte) (length >>> 24);
+        out[1] = (byte) (length >>> 16);
+        out[2] = (byte) (length >>> 8);
+        out[3] = (byte) length;
+        int compressedLength = compressBlock(buf, offset, length, out, LENGTH_FIELD);
+        return Arrays.copyOf(out, LENGTH_FIELD + compressedLength);
+    }
+
+    @Override
+    public byte[] unCompress(byte[] buf, int offset, int length) throws IOException {
+        if (buf == null) {
+            return null;
+        }
+        if (length < LENGTH_FIELD) {
+            throw new IOException("Invalid lz4 data, length:" + length);
+        }
+        int size = ((buf[offset] & 0xff) << 24) | ((buf[offset + 1] & 0xff) << 16) | ((buf[offset + 2] & 0xff) << 8)
+                | (buf[offset + 3] & 0xff);
+        // 每个输入字节最多展开为255字节
+        if (size < 0 || size > (long) (length - LENGTH_FIELD) * 255 + RUN_MASK) {
+            throw new IOException("Invalid lz4 data, size:" + size);
+        }
+        byte[] out = new byte[size];
+        decompressBlock(buf, offset + LENGTH_FIELD, length - LENGTH_FIELD, out, 0, size);
+        return out;
+    }
+
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    private static int compressBlock(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) {
+        int srcEnd = srcOff + srcLen;
+        int matchLimit = srcEnd - LAST_LITERALS;
+        int mfLimit = srcEnd - MF_LIMIT;
+        int sOff = srcOff;
+        int anchor = srcOff;
+        int dOff = destOff;
+
+        if (srcLen > MF_LIMIT) {
+            int[] hashTable = hashTables.get();
+            Arrays.fill(hashTable, -1);
+
+            while (sOff < mfLimit) {
+                int sequence = readInt(src, sOff);
+                int h = hash(sequence);
+                int ref = hashTable[h];
+                hashTable[h] = sOff;
+                if (ref < srcOff || sOff - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+                    sOff++;
+                    continue;
+                }
+                // 向前扩展
+                while (sOff > anchor && ref > srcOff && src[sOff - 1] == src[ref - 1]) {
+                    sOff--;
+                    ref--;
+                }
+                // 向后扩展
+                int matchLen = MIN_MATCH;
+                while (sOff + matchLen < matchLimit && src[sOff + matchLen] == src[ref + matchLen]) {
+                    matchLen++;
+                }
+
+                int literalLen = sOff - anchor;
+                int tokenOff = dOff++;
+                int token;
+                if (literalLen >= RUN_MASK) {
+                    token = RUN_MASK << 4;
+                    dOff = writeLength(literalLen - RUN_MASK, dest, dOff);
+                } else {
+                    token = literalLen << 4;
+                }
+                System.arraycopy(src, anchor, dest, dOff, literalLen);
+                dOff += literalLen;
+
+                int distance = sOff - ref;
+                dest[dOff++] = (byte) distance;
+                dest[dOff++] = (byte) (distance >>> 8);
+
+                int runLen = matchLen - MIN_MATCH;
+                if (runLen >= RUN_MASK) {
+                    token |= RUN_MASK;
+                    dOff = writeLength(runLen - RUN_MASK, dest, dOff);
+                } else {
+                    token |= runLen;
+                }
+                dest[tokenOff] = (byte) token;
+
+                sOff += matchLen;
+                anchor = sOff;
+            }
+        }
+
+        int literalLen = srcEnd - anchor;
+        if (literalLen >= RUN_MASK) {
+            dest[dOff++] = (byte) (RUN_MASK << 4);
+            dOff = writeLength(literalLen - RUN_MASK, dest, dOff);
+        } else {
+            dest[dOff++] = (byte) (literalLen << 4);
+        }
+        System.arraycopy(src, anchor, dest, dOff, literalLen);
+        dOff += literalLen;
+        return dOff - destOff;
+    }
+
+    private static void decompressBlock(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int destLen)
+            throws IOException {
+        int srcEnd = srcOff + srcLen;
+        int destEnd = destOff + destLen;
+        int sOff = srcOff;
+        int dOff = destOff;
+
+        while (true) {
+            if (sOff >= srcEnd) {
+                throw new IOException("Malformed lz4 data at " + (sOff - srcOff));
+            }
+            int token = src[sOff++] & 0xff;
+
+            int literalLen = token >>> 4;
+            if (literalLen == RUN_MASK) {
+                int b;
+                do {
+                    if (sOff >= srcEnd) {
+                        throw new IOException("Malformed lz4 data at " + (sOff - srcOff));
+                    }
+                    b = src[sOff++] & 0xff;
+                    literalLen += b;
+                } while (b == 255 && literalLen > 0);
+            }
+            if (literalLen < 0 || literalLen > srcEnd - sOff || literalLen > destEnd - dOff) {
+                throw new IOException("Malformed lz4 data at " + (sOff - srcOff));
+            }
+            System.arraycopy(src, sOff, dest, dOff, literalLen);
+            sOff += literalLen;
+            dOff += literalLen;
+
+            if (sOff == srcEnd) {
+                // 最后一个sequence只有literal
+                if (dOff != destEnd) {
+                    throw new IOException("Malformed lz4 data, length mismatch");
+                }
+                return;
+            }
+
+            if (srcEnd - sOff < 2) {
+                throw new IOException("Malformed lz4 data at " + (sOff - srcOff));
+            }
+            int distance = (src[sOff] & 0xff) | ((src[sOff + 1] & 0xff) << 8);
+            sOff += 2;
+            int ref = dOff - distance;
+            if (distance == 0 || ref < destOff) {
+                throw new IOException("Malformed lz4 data at " + (sOff - srcOff));
+            }
+
+            int matchLen = token & RUN_MASK;
+            if (matchLen == RUN_MASK) {
+                int b;
+                do {
+                    if (sOff >= srcEnd) {
+                        throw new IOException("Malformed lz4 data at " + (sOff - srcOff));
+                    }
+                    b = src[sOff++] & 0xff;
+                    matchLen += b;
+                } while (b == 255 && matchLen > 0);
+            }
+            matchLen += MIN_MATCH;
+            if (matchLen < MIN_MATCH || matchLen > destEnd - dOff) {
+                throw new IOException("Malformed lz4 data at " + (sOff - srcOff));
+            }
+            if (distance >= matchLen) {
+                System.arraycopy(dest, ref, dest, dOff, matchLen);
+            } else {
+                // 重叠拷贝需要逐字节进行
+                for (int i = 0; i < matchLen; i++) {
+                    dest[dOff + i] = dest[ref + i];
+                }
+            }
+            dOff += matchLen;
+        }
+    }
+
+    private static int writeLength(int length, byte[] dest, int dOff) {
+        while (length >= 255) {
+            dest[dOff++] = (byte) 255;
+            length -= 255;
+        }
+        dest[dOff++] = (byte) length;
+        return dOff;
+    }
+
+    private static int readInt(byte[] buf, int offset) {
+        return (buf[offset] & 0xff) | ((buf[offset + 1] & 0xff) << 8) | ((buf[offset + 2] & 0xff) << 16)
+                | ((buf[offset + 3] & 0xff) << 24);
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
@@ -3,12 +3,13 @@ package com.dianping.pigeon.compress;
 import org.xerial.snappy.Snappy;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * @author qi.yin
  *         2016/06/05  下午6:02.
  */
-public class SnappyCompress implements Compress {
+public class SnappyCompress extends AbstractCompress {
 
     @Override
     public byte[] compress(byte[] buf) throws IOException {
@@ -25,4 +26,24 @@ public class SnappyCompress implements Compress {
         }
         return Snappy.uncompress(buf);
     }
+
+    @Override
+    public byte[] compress(byte[] buf, int offset, int length) throws IOException {
+        if (buf == null) {
+            return null;
+        }
+        byte[] out = new byte[Snappy.maxCompressedLength(length)];
+        int compressedLength = Snappy.compress(buf, offset, length, out, 0);
+        return Arrays.copyOf(out, compressedLength);
+    }
+
+    @Override
+    public byte[] unCompress(byte[] buf, int offset, int length) throws IOException {
+        if (buf == null) {
+            return null;
+        }
+        byte[] out = new byte[Snappy.uncompressedLength(buf, offset, length)];
+        Snappy.uncompress(buf, offset, length, out, 0);
+        return out;
+    }
 }
@@ -60,6 +60,10 @@ public class DynamicThreadPool implements ThreadPool, ExecutorAware {
         return this.executor;
     }
 
+    public String getName() {
+        return this.name;
+    }
+
     @Override
     public void setCorePoolSize(int corePoolSize) {
         executor.setCorePoolSize(corePoolSize);
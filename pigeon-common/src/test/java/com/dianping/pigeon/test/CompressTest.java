@@ -0,0 +1,217 @@
+package com.dianping.pigeon.test;
+
+import com.dianping.pigeon.compress.AbstractCompress;
+import com.dianping.pigeon.compress.CompressFactory;
+import com.dianping.pigeon.compress.GZipCompress;
+import com.dianping.pigeon.compress.Lz4Compress;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class CompressTest {
+
+    private static final AbstractCompress[] COMPRESSES = {(AbstractCompress) CompressFactory.getGZipCompress(),
+            (AbstractCompress) CompressFactory.getSnappyCompress(), (AbstractCompress) CompressFactory.getLz4Compress()};
+
+    private static byte[][] samples() {
+        Random random = new Random(1);
+        byte[] randomBytes = new byte[5000];
+        random.nextBytes(randomBytes);
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            json.append("{\"id\":").append(i).append(",\"name\":\"user").append(random.nextInt(100))
+                    .append("\",\"enabled\":true},");
+        }
+        byte[] zeros = new byte[100000];
+        return new byte[][]{new byte[0], {1}, "hello".getBytes(), "abcdabcdabcdabcdabcdabcd".getBytes(),
+                randomBytes, json.toString().getBytes(), zeros};
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (AbstractCompress compress : COMPRESSES) {
+            for (byte[] sample : samples()) {
+                byte[] compressed = compress.compress(sample);
+                Assert.assertArrayEquals(compress.getClass().getSimpleName(), sample, compress.unCompress(compressed));
+            }
+            Assert.assertNull(compress.compress(null));
+            Assert.assertNull(compress.unCompress(null));
+        }
+    }
+
+    @Test
+    public void testOffsetRoundTrip() throws IOException {
+        for (AbstractCompress compress : COMPRESSES) {
+            for (byte[] sample : samples()) {
+                byte[] padded = new byte[sample.length + 20];
+                Arrays.fill(padded, (byte) 7);
+                System.arraycopy(sample, 0, padded, 13, sample.length);
+                byte[] compressed = compress.compress(padded, 13, sample.length);
+                Assert.assertArrayEquals(compressed, compress.compress(sample));
+
+                byte[] framed = new byte[compressed.length + 9];
+                System.arraycopy(compressed, 0, framed, 5, compressed.length);
+                Assert.assertArrayEquals(sample, compress.unCompress(framed, 5, compressed.length));
+            }
+        }
+    }
+
+    @Test
+    public void testGZipInterop() throws IOException {
+        GZipCompress compress = (GZipCompress) CompressFactory.getGZipCompress();
+        for (byte[] sample : samples()) {
+            // 本实现压缩，JDK解压
+            GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compress.compress(sample)));
+            Assert.assertArrayEquals(sample, readFully(in));
+
+            // JDK压缩，本实现解压
+            Assert.assertArrayEquals(sample, compress.unCompress(jdkGzip(sample)));
+        }
+    }
+
+    @Test
+    public void testGZipHeaderFieldsAndMembers() throws IOException {
+        GZipCompress compress = (GZipCompress) CompressFactory.getGZipCompress();
+        byte[] body = "hello gzip".getBytes();
+        byte[] plain = compress.compress(body);
+
+        // FEXTRA + FNAME + FCOMMENT
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        os.write(plain, 0, 3);
+        os.write(4 | 8 | 16);
+        os.write(plain, 4, 6);
+        os.write(new byte[]{3, 0, 'a', 'b', 'c'});
+        os.write("name\0comment\0".getBytes());
+        os.write(plain, 10, plain.length - 10);
+        Assert.assertArrayEquals(body, compress.unCompress(os.toByteArray()));
+
+        // 多个member拼接
+        byte[] first = jdkGzip("first-".getBytes());
+        byte[] second = jdkGzip("second".getBytes());
+        byte[] members = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, members, first.length, second.length);
+        Assert.assertArrayEquals("first-second".getBytes(), compress.unCompress(members));
+    }
+
+    @Test
+    public void testGZipMalformed() throws IOException {
+        GZipCompress compress = (GZipCompress) CompressFactory.getGZipCompress();
+        byte[] compressed = compress.compress(samples()[5]);
+
+        assertFails(compress, new byte[0]);
+        assertFails(compress, Arrays.copyOf(compressed, 9));
+        assertFails(compress, Arrays.copyOf(compressed, compressed.length - 4));
+
+        byte[] badMagic = compressed.clone();
+        badMagic[0] = 0;
+        assertFails(compress, badMagic);
+
+        byte[] badMethod = compressed.clone();
+        badMethod[2] = 7;
+        assertFails(compress, badMethod);
+
+        byte[] badCrc = compressed.clone();
+        badCrc[compressed.length - 8] ^= 1;
+        assertFails(compress, badCrc);
+
+        // ISIZE远大于可能的解压长度
+        byte[] badSize = compressed.clone();
+        badSize[compressed.length - 1] = 0x7f;
+        assertFails(compress, badSize);
+
+        // 未结束的字符串字段
+        byte[] badName = Arrays.copyOf(compressed, 12);
+        badName[3] = 8;
+        badName[10] = 'a';
+        badName[11] = 'b';
+        assertFails(compress, badName);
+    }
+
+    @Test
+    public void testLz4Malformed() throws IOException {
+        Lz4Compress compress = (Lz4Compress) CompressFactory.getLz4Compress();
+        byte[] compressed = compress.compress(samples()[5]);
+
+        assertFails(compress, new byte[]{0, 0});
+        assertFails(compress, Arrays.copyOf(compressed, compressed.length - 1));
+        assertFails(compress, Arrays.copyOf(compressed, 4));
+
+        // 长度字段大于实际解压长度
+        byte[] badLength = compressed.clone();
+        badLength[3]++;
+        assertFails(compress, badLength);
+
+        // 长度字段为负数或超出可能的展开长度
+        byte[] negative = compressed.clone();
+        negative[0] = (byte) 0x80;
+        assertFails(compress, negative);
+        byte[] huge = compressed.clone();
+        huge[0] = 0x7f;
+        assertFails(compress, huge);
+
+        // match的距离超出已解压的数据
+        assertFails(compress, new byte[]{0, 0, 0, 8, 0x04, 'a', 'b', 'c', 'd', 0x10, 0, 0});
+        assertFails(compress, new byte[]{0, 0, 0, 8, 0x00, 0x00, 0x00});
+    }
+
+    @Test
+    public void testCorruptedInputOnlyThrowsIOException() {
+        Random random = new Random(2);
+        byte[] sample = samples()[5];
+        for (AbstractCompress compress : new AbstractCompress[]{COMPRESSES[0], COMPRESSES[2]}) {
+            byte[] compressed;
+            try {
+                compressed = compress.compress(sample);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            for (int i = 0; i < 2000; i++) {
+                byte[] corrupted = compressed.clone();
+                for (int j = 0; j < 1 + random.nextInt(3); j++) {
+                    corrupted[random.nextInt(corrupted.length)] = (byte) random.nextInt();
+                }
+                int length = random.nextInt(4) == 0 ? random.nextInt(corrupted.length) : corrupted.length;
+                try {
+                    compress.unCompress(corrupted, 0, length);
+                } catch (IOException e) {
+                    // 期望的异常
+                }
+            }
+        }
+    }
+
+    private static void assertFails(AbstractCompress compress, byte[] data) {
+        try {
+            compress.unCompress(data);
+            Assert.fail("malformed data accepted:" + Arrays.toString(Arrays.copyOf(data, Math.min(data.length, 16))));
+        } catch (IOException e) {
+            // 期望的异常
+        }
+    }
+
+    private static byte[] jdkGzip(byte[] data) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(os);
+        out.write(data);
+        out.close();
+        return os.toByteArray();
+    }
+
+    private static byte[] readFully(GZIPInputStream in) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            os.write(buffer, 0, n);
+        }
+        in.close();
+        return os.toByteArray();
+    }
+}
@@ -33,6 +33,8 @@ public class JettyConsoleProcessor implements JettyHttpServerProcessor {
 
         context.addServlet(new ServletHolder(new RegionStatusServlet(serverConfig, port)), "/region");
         context.addServlet(new ServletHolder(new RequestQualityServlet(serverConfig, port)), "/requestQuality");
+        context.addServlet(new ServletHolder(new OutlierEjectionServlet(serverConfig, port)), "/outlier");
+        context.addServlet(new ServletHolder(new CompressStatusServlet(serverConfig, port)), "/compress");
 
         ServiceJsonServlet serviceJsonServlet = new ServiceJsonServlet(serverConfig, port);
         context.addServlet(new ServletHolder(serviceJsonServlet), "/services.json");
@@ -66,6 +68,10 @@ public class JettyConsoleProcessor implements JettyHttpServerProcessor {
         GroupInfoServlet groupInfoServlet = new GroupInfoServlet(serverConfig, port);
         context.addServlet(new ServletHolder(groupInfoServlet), "/group");
 
+        context.addServlet(new ServletHolder(new MetricsServlet()), "/metrics");
+
+        context.addServlet(new ServletHolder(new SlowRequestJsonServlet()), "/slowRequests");
+
         ServletHolder holder = new ServletHolder(new DefaultServlet());
         URL url = JettyConsoleProcessor.class.getClassLoader().getResource("statics");
         if (url == null) {
@@ -0,0 +1,130 @@
+package com.dianping.pigeon.console.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompressStatus {
+
+    private Boolean support = Boolean.FALSE;
+
+    private List<MethodCompress> methodCompresses = new ArrayList<MethodCompress>();
+
+    public Boolean getSupport() {
+        return support;
+    }
+
+    public void setSupport(Boolean support) {
+        this.support = support;
+    }
+
+    public List<MethodCompress> getMethodCompresses() {
+        return methodCompresses;
+    }
+
+    public void setMethodCompresses(List<MethodCompress> methodCompresses) {
+        this.methodCompresses = methodCompresses;
+    }
+
+    public static class MethodCompress {
+
+        private String key;
+
+        private String decision;
+
+        private boolean sampling;
+
+        private long decideTime;
+
+        private float snappySavedRatio;
+
+        private float snappyNanosPerByte;
+
+        private float snappySaving;
+
+        private float gzipSavedRatio;
+
+        private float gzipNanosPerByte;
+
+        private float gzipSaving;
+
+        public String getKey() {
+            return key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public String getDecision() {
+            return decision;
+        }
+
+        public void setDecision(String decision) {
+            this.decision = decision;
+        }
+
+        public boolean isSampling() {
+            return sampling;
+        }
+
+        public void setSampling(boolean sampling) {
+            this.sampling = sampling;
+        }
+
+        public long getDecideTime() {
+            return decideTime;
+        }
+
+        public void setDecideTime(long decideTime) {
+            this.decideTime = decideTime;
+        }
+
+        public float getSnappySavedRatio() {
+            return snappySavedRatio;
+        }
+
+        public void setSnappySavedRatio(float snappySavedRatio) {
+            this.snappySavedRatio = snappySavedRatio;
+        }
+
+        public float getSnappyNanosPerByte() {
+            return snappyNanosPerByte;
+        }
+
+        public void setSnappyNanosPerByte(float snappyNanosPerByte) {
+            this.snappyNanosPerByte = snappyNanosPerByte;
+        }
+
+        public float getSnappySaving() {
+            return snappySaving;
+        }
+
+        public void setSnappySaving(float snappySaving) {
+            this.snappySaving = snappySaving;
+        }
+
+        public float getGzipSavedRatio() {
+            return gzipSavedRatio;
+        }
+
+        public void setGzipSavedRatio(float gzipSavedRatio) {
+            this.gzipSavedRatio = gzipSavedRatio;
+        }
+
+        public float getGzipNanosPerByte() {
+            return gzipNanosPerByte;
+        }
+
+        public void setGzipNanosPerByte(float gzipNanosPerByte) {
+            this.gzipNanosPerByte = gzipNanosPerByte;
+        }
+
+        public float getGzipSaving() {
+            return gzipSaving;
+        }
+
+        public void setGzipSaving(float gzipSaving) {
+            this.gzipSaving = gzipSaving;
+        }
+    }
+}
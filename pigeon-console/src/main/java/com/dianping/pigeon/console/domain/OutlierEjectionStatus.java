@@ -0,0 +1,31 @@
+package com.dianping.pigeon.console.domain;
+
+import com.dianping.pigeon.remoting.invoker.route.quality.OutlierEjectionManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class OutlierEjectionStatus {
+
+    private Boolean support = Boolean.FALSE;
+
+    private ConcurrentMap<String, ConcurrentMap<String, OutlierEjectionManager.HostStats>> serviceHostStats
+            = new ConcurrentHashMap<String, ConcurrentMap<String, OutlierEjectionManager.HostStats>>();
+
+    public Boolean getSupport() {
+        return support;
+    }
+
+    public void setSupport(Boolean support) {
+        this.support = support;
+    }
+
+    public ConcurrentMap<String, ConcurrentMap<String, OutlierEjectionManager.HostStats>> getServiceHostStats() {
+        return serviceHostStats;
+    }
+
+    public void setServiceHostStats(
+            ConcurrentMap<String, ConcurrentMap<String, OutlierEjectionManager.HostStats>> serviceHostStats) {
+        this.serviceHostStats = serviceHostStats;
+    }
+}
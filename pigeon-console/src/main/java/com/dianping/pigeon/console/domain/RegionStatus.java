@@ -1,5 +1,10 @@
 package com.dianping.pigeon.console.domain;
 
+import com.dianping.pigeon.remoting.invoker.route.region.LatencyAwareRegionPolicy;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * Created by chenchongze on 16/6/12.
  */
@@ -10,8 +15,9 @@ public class RegionStatus {
     String localRegion = "none";
     String regionPrefer = "none";
 
-    //TODO 各个服务的region策略
-
+    // latencyAware策略下各个服务按region的延迟统计
+    ConcurrentMap<String, ConcurrentMap<String, LatencyAwareRegionPolicy.RegionStats>> serviceRegionStats
+            = new ConcurrentHashMap<String, ConcurrentMap<String, LatencyAwareRegionPolicy.RegionStats>>();
 
     public Boolean getRegionPolicyEnabled() {
         return regionPolicyEnabled;
@@ -45,4 +51,13 @@ public class RegionStatus {
         this.regionPrefer = regionPrefer;
     }
 
+    public ConcurrentMap<String, ConcurrentMap<String, LatencyAwareRegionPolicy.RegionStats>> getServiceRegionStats() {
+        return serviceRegionStats;
+    }
+
+    public void setServiceRegionStats(
+            ConcurrentMap<String, ConcurrentMap<String, LatencyAwareRegionPolicy.RegionStats>> serviceRegionStats) {
+        this.serviceRegionStats = serviceRegionStats;
+    }
+
 }
@@ -0,0 +1,372 @@
+package com.dianping.pigeon.console.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.dianping.pigeon.remoting.common.channel.Channel;
+import com.dianping.pigeon.remoting.common.monitor.IoWorkerStats;
+import com.dianping.pigeon.remoting.common.monitor.IoWorkerStatsRegistry;
+import com.dianping.pigeon.remoting.common.monitor.trace.DestinationKey;
+import com.dianping.pigeon.remoting.common.monitor.trace.MethodKey;
+import com.dianping.pigeon.remoting.common.monitor.trace.RequestMetrics;
+import com.dianping.pigeon.remoting.common.monitor.trace.RequestMetricsRepository;
+import com.dianping.pigeon.remoting.common.pool.DefaultChannelPool;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.ClientManager;
+import com.dianping.pigeon.remoting.invoker.InvokerBootStrap;
+import com.dianping.pigeon.remoting.invoker.process.ResponseProcessorFactory;
+import com.dianping.pigeon.remoting.invoker.route.statistics.CapacityBucket;
+import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
+import com.dianping.pigeon.remoting.provider.ProviderBootStrap;
+import com.dianping.pigeon.remoting.provider.Server;
+import com.dianping.pigeon.remoting.provider.process.AbstractRequestProcessor;
+import com.dianping.pigeon.remoting.provider.process.RequestProcessor;
+import com.dianping.pigeon.remoting.provider.process.statistics.ProviderCapacityBucket;
+import com.dianping.pigeon.remoting.provider.process.statistics.ProviderStatisticsHolder;
+import com.dianping.pigeon.remoting.provider.process.threadpool.RequestThreadPoolProcessor;
+import com.dianping.pigeon.threadpool.ThreadPool;
+
+/**
+ * Prometheus文本格式(0.0.4)的指标，QPS由请求计数器在Prometheus侧按rate计算
+ * <p>
+ * 只读原子计数、并发容器的size和直方图计数，不复制直方图，不加业务路径上的锁；
+ * 线程池的活跃线程数来自ThreadPoolExecutor，会短暂持有线程池自身的mainLock，提交任务时只有新建线程才会竞争
+ */
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 2435108426358830427L;
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    // 耗时分桶上界，单位微秒
+    private static final long[] LATENCY_BOUNDS = { 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 500000,
+            1000000, 2500000, 5000000, 10000000 };
+
+    private static final String[] LATENCY_LABELS = toSecondLabels(LATENCY_BOUNDS);
+
+    // I/O线程事件循环延迟分桶上界，单位微秒
+    private static final long[] LAG_BOUNDS = { 100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000,
+            250000, 500000, 1000000 };
+
+    private static final String[] LAG_LABELS = toSecondLabels(LAG_BOUNDS);
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+            IOException {
+        response.setContentType(CONTENT_TYPE);
+        PrintWriter writer = response.getWriter();
+        long[] cumulativeCounts = new long[Math.max(LATENCY_BOUNDS.length, LAG_BOUNDS.length)];
+
+        writeRequests(writer, "invoker", RequestMetricsRepository.INSTANCE.getInvokerMetrics(), cumulativeCounts);
+        writeRequests(writer, "provider", RequestMetricsRepository.INSTANCE.getProviderMetrics(), cumulativeCounts);
+        writeThreadPools(writer);
+        writeIoWorkers(writer, cumulativeCounts);
+        if (InvokerBootStrap.isStartup()) {
+            writeInvoker(writer);
+        }
+        writeProvider(writer);
+        writer.flush();
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+            IOException {
+        doGet(request, response);
+    }
+
+    private void writeRequests(PrintWriter writer, String side, Map<DestinationKey, RequestMetrics> metrics,
+            long[] cumulativeCounts) {
+        if (metrics.isEmpty()) {
+            return;
+        }
+        String total = "pigeon_" + side + "_requests_total";
+        writeHeader(writer, total, "counter", side + " requests completed, by service, method and result");
+        for (Map.Entry<DestinationKey, RequestMetrics> entry : metrics.entrySet()) {
+            String labels = methodLabels(entry.getKey());
+            writeSample(writer, total, labels + ",result=\"success\"", entry.getValue().getTotalSuccess());
+            writeSample(writer, total, labels + ",result=\"failed\"", entry.getValue().getTotalFailed());
+        }
+
+        String duration = "pigeon_" + side + "_request_duration_seconds";
+        writeHeader(writer, duration, "histogram", side + " request latency in seconds");
+        for (Map.Entry<DestinationKey, RequestMetrics> entry : metrics.entrySet()) {
+            String labels = methodLabels(entry.getKey());
+            RequestMetrics requestMetrics = entry.getValue();
+            long count = requestMetrics.getHistogram().getCumulativeCounts(LATENCY_BOUNDS, cumulativeCounts);
+            for (int i = 0; i < LATENCY_BOUNDS.length; i++) {
+                writeSample(writer, duration + "_bucket", labels + ",le=\"" + LATENCY_LABELS[i] + "\"",
+                        cumulativeCounts[i]);
+            }
+            writeSample(writer, duration + "_bucket", labels + ",le=\"+Inf\"", count);
+            writeSeconds(writer, duration + "_sum", labels, requestMetrics.getTotalElapsedMicros() / 1000000d);
+            writeSample(writer, duration + "_count", labels, count);
+        }
+    }
+
+    private void writeThreadPools(PrintWriter writer) {
+        Map<String, ThreadPool> pools = new LinkedHashMap<String, ThreadPool>();
+        if (InvokerBootStrap.isStartup()) {
+            ThreadPool responsePool = ResponseProcessorFactory.selectProcessor().getResponseProcessThreadPool();
+            if (responsePool != null) {
+                pools.put("response", responsePool);
+            }
+        }
+        pools.putAll(RequestThreadPoolProcessor.getThreadPools());
+        if (pools.isEmpty()) {
+            return;
+        }
+        String[] labels = new String[pools.size()];
+        ThreadPool[] values = new ThreadPool[pools.size()];
+        int index = 0;
+        for (Map.Entry<String, ThreadPool> entry : pools.entrySet()) {
+            labels[index] = "pool=\"" + escape(entry.getKey()) + "\"";
+            values[index++] = entry.getValue();
+        }
+
+        writeHeader(writer, "pigeon_thread_pool_active_threads", "gauge", "threads executing tasks");
+        for (int i = 0; i < values.length; i++) {
+            writeSample(writer, "pigeon_thread_pool_active_threads", labels[i], values[i].getExecutor()
+                    .getActiveCount());
+        }
+        writeHeader(writer, "pigeon_thread_pool_max_threads", "gauge", "maximum pool size");
+        for (int i = 0; i < values.length; i++) {
+            writeSample(writer, "pigeon_thread_pool_max_threads", labels[i], values[i].getExecutor()
+                    .getMaximumPoolSize());
+        }
+        writeHeader(writer, "pigeon_thread_pool_queue_size", "gauge", "tasks waiting in the work queue");
+        for (int i = 0; i < values.length; i++) {
+            writeSample(writer, "pigeon_thread_pool_queue_size", labels[i], values[i].getExecutor().getQueue()
+                    .size());
+        }
+    }
+
+    private void writeIoWorkers(PrintWriter writer, long[] cumulativeCounts) {
+        Collection<IoWorkerStats> workers = IoWorkerStatsRegistry.INSTANCE.getAllStats();
+        if (workers.isEmpty()) {
+            return;
+        }
+        String lag = "pigeon_io_worker_lag_seconds";
+        writeHeader(writer, lag, "histogram", "delay before a probe task runs on the I/O worker");
+        for (IoWorkerStats stats : workers) {
+            String label = workerLabel(stats);
+            long count = stats.getLagHistogram().getCumulativeCounts(LAG_BOUNDS, cumulativeCounts);
+            for (int i = 0; i < LAG_BOUNDS.length; i++) {
+                writeSample(writer, lag + "_bucket", label + ",le=\"" + LAG_LABELS[i] + "\"", cumulativeCounts[i]);
+            }
+            writeSample(writer, lag + "_bucket", label + ",le=\"+Inf\"", count);
+            writeSeconds(writer, lag + "_sum", label, stats.getLagMicros() / 1000000d);
+            writeSample(writer, lag + "_count", label, count);
+        }
+        writeHeader(writer, "pigeon_io_worker_pending_probe_seconds", "gauge",
+                "time the current probe task has been waiting, non-zero while the worker is blocked");
+        for (IoWorkerStats stats : workers) {
+            writeSeconds(writer, "pigeon_io_worker_pending_probe_seconds", workerLabel(stats),
+                    stats.getPendingProbeMicros() / 1000000d);
+        }
+        writeHeader(writer, "pigeon_io_worker_read_bytes_total", "counter", "bytes read from sockets");
+        for (IoWorkerStats stats : workers) {
+            writeSample(writer, "pigeon_io_worker_read_bytes_total", workerLabel(stats), stats.getBytesRead());
+        }
+        writeHeader(writer, "pigeon_io_worker_written_bytes_total", "counter", "bytes written to sockets");
+        for (IoWorkerStats stats : workers) {
+            writeSample(writer, "pigeon_io_worker_written_bytes_total", workerLabel(stats), stats.getBytesWritten());
+        }
+        writeHeader(writer, "pigeon_io_worker_decode_seconds_total", "counter", "time spent deserializing messages");
+        for (IoWorkerStats stats : workers) {
+            writeSeconds(writer, "pigeon_io_worker_decode_seconds_total", workerLabel(stats),
+                    stats.getDecodeNanos() / 1000000000d);
+        }
+        writeHeader(writer, "pigeon_io_worker_decodes_total", "counter", "messages deserialized");
+        for (IoWorkerStats stats : workers) {
+            writeSample(writer, "pigeon_io_worker_decodes_total", workerLabel(stats), stats.getDecodeCount());
+        }
+        writeHeader(writer, "pigeon_io_worker_encode_seconds_total", "counter",
+                "time spent serializing messages on the I/O worker");
+        for (IoWorkerStats stats : workers) {
+            writeSeconds(writer, "pigeon_io_worker_encode_seconds_total", workerLabel(stats),
+                    stats.getEncodeNanos() / 1000000000d);
+        }
+        writeHeader(writer, "pigeon_io_worker_encodes_total", "counter", "messages serialized");
+        for (IoWorkerStats stats : workers) {
+            writeSample(writer, "pigeon_io_worker_encodes_total", workerLabel(stats), stats.getEncodeCount());
+        }
+        writeHeader(writer, "pigeon_io_worker_caller_encode_seconds_total", "counter",
+                "time spent serializing messages for the worker's channels on caller threads");
+        for (IoWorkerStats stats : workers) {
+            writeSeconds(writer, "pigeon_io_worker_caller_encode_seconds_total", workerLabel(stats),
+                    stats.getCallerEncodeNanos() / 1000000000d);
+        }
+        writeHeader(writer, "pigeon_io_worker_caller_encodes_total", "counter",
+                "messages serialized on caller threads");
+        for (IoWorkerStats stats : workers) {
+            writeSample(writer, "pigeon_io_worker_caller_encodes_total", workerLabel(stats),
+                    stats.getCallerEncodeCount());
+        }
+    }
+
+    private void writeInvoker(PrintWriter writer) {
+        writeHeader(writer, "pigeon_invoker_in_flight_requests", "gauge",
+                "requests sent and waiting for response or timeout");
+        writeSample(writer, "pigeon_invoker_in_flight_requests", null, ServiceInvocationRepository.getInstance()
+                .size());
+
+        Map<String, CapacityBucket> buckets = ServiceStatisticsHolder.getCapacityBuckets();
+        if (!buckets.isEmpty()) {
+            writeHeader(writer, "pigeon_invoker_address_requests_total", "counter", "requests sent to each provider");
+            for (Map.Entry<String, CapacityBucket> entry : buckets.entrySet()) {
+                writeSample(writer, "pigeon_invoker_address_requests_total", addressLabel(entry.getKey()), entry
+                        .getValue().getTotalRequest().get());
+            }
+            writeHeader(writer, "pigeon_invoker_address_in_flight_requests", "gauge",
+                    "requests waiting for response from each provider");
+            for (Map.Entry<String, CapacityBucket> entry : buckets.entrySet()) {
+                writeSample(writer, "pigeon_invoker_address_in_flight_requests", addressLabel(entry.getKey()),
+                        (long) entry.getValue().getCapacity());
+            }
+        }
+
+        Map<String, Client> clients = ClientManager.getInstance().getClusterListener().getAllClients();
+        if (!clients.isEmpty()) {
+            writeHeader(writer, "pigeon_invoker_channels", "gauge", "connections to each provider");
+            for (Client client : clients.values()) {
+                List<? extends Channel> channels = client.getChannels();
+                writeSample(writer, "pigeon_invoker_channels", addressLabel(client.getAddress()),
+                        channels == null ? 0 : channels.size());
+            }
+            writeHeader(writer, "pigeon_invoker_channels_writable", "gauge",
+                    "connected channels to each provider whose outbound buffer is below the high water mark");
+            for (Client client : clients.values()) {
+                List<? extends Channel> channels = client.getChannels();
+                int writable = 0;
+                if (channels != null) {
+                    for (int i = 0; i < channels.size(); i++) {
+                        Channel channel = channels.get(i);
+                        if (channel.isAvaliable() && channel.isWritable()) {
+                            writable++;
+                        }
+                    }
+                }
+                writeSample(writer, "pigeon_invoker_channels_writable", addressLabel(client.getAddress()), writable);
+            }
+        }
+
+        writeHeader(writer, "pigeon_invoker_reconnects_total", "counter", "channel reconnect attempts");
+        writeSample(writer, "pigeon_invoker_reconnects_total", null, DefaultChannelPool.getReconnectCount());
+        writeHeader(writer, "pigeon_invoker_reconnect_failures_total", "counter", "failed channel reconnect attempts");
+        writeSample(writer, "pigeon_invoker_reconnect_failures_total", null,
+                DefaultChannelPool.getReconnectFailedCount());
+    }
+
+    private void writeProvider(PrintWriter writer) {
+        Map<String, Server> servers = ProviderBootStrap.getServersMap();
+        if (!servers.isEmpty()) {
+            writeHeader(writer, "pigeon_provider_in_flight_requests", "gauge",
+                    "requests accepted and not yet responded");
+            for (Server server : servers.values()) {
+                RequestProcessor processor = server.getRequestProcessor();
+                if (processor instanceof AbstractRequestProcessor) {
+                    writeSample(writer, "pigeon_provider_in_flight_requests", "server=\"" + server.getProtocol()
+                            + ":" + server.getPort() + "\"", ((AbstractRequestProcessor) processor)
+                            .getRequestContextMap().size());
+                }
+            }
+        }
+
+        Map<String, ProviderCapacityBucket> buckets = ProviderStatisticsHolder.getCapacityBuckets();
+        if (!buckets.isEmpty()) {
+            writeHeader(writer, "pigeon_provider_app_in_flight_requests", "gauge",
+                    "requests being processed for each caller app");
+            for (Map.Entry<String, ProviderCapacityBucket> entry : buckets.entrySet()) {
+                writeSample(writer, "pigeon_provider_app_in_flight_requests", "app=\"" + escape(entry.getKey())
+                        + "\"", entry.getValue().getCurrentRequests());
+            }
+        }
+    }
+
+    private static String methodLabels(DestinationKey key) {
+        if (key instanceof MethodKey) {
+            MethodKey methodKey = (MethodKey) key;
+            return "service=\"" + escape(methodKey.getServiceName()) + "\",method=\""
+                    + escape(methodKey.getMethodName()) + "\"";
+        }
+        return "service=\"" + escape(String.valueOf(key)) + "\",method=\"\"";
+    }
+
+    private static String workerLabel(IoWorkerStats stats) {
+        return "worker=\"" + stats.getName() + "\"";
+    }
+
+    private static String addressLabel(String address) {
+        return "address=\"" + escape(address) + "\"";
+    }
+
+    private static void writeHeader(PrintWriter writer, String name, String type, String help) {
+        writer.write("# HELP ");
+        writer.write(name);
+        writer.write(' ');
+        writer.write(help);
+        writer.write("\n# TYPE ");
+        writer.write(name);
+        writer.write(' ');
+        writer.write(type);
+        writer.write('\n');
+    }
+
+    private static void writeSample(PrintWriter writer, String name, String labels, long value) {
+        writer.write(name);
+        if (labels != null) {
+            writer.write('{');
+            writer.write(labels);
+            writer.write('}');
+        }
+        writer.write(' ');
+        writer.print(value);
+        writer.write('\n');
+    }
+
+    private static void writeSeconds(PrintWriter writer, String name, String labels, double value) {
+        writer.write(name);
+        writer.write('{');
+        writer.write(labels);
+        writer.write("} ");
+        writer.print(value);
+        writer.write('\n');
+    }
+
+    private static String[] toSecondLabels(long[] micros) {
+        String[] labels = new String[micros.length];
+        for (int i = 0; i < micros.length; i++) {
+            labels[i] = String.valueOf(micros[i] / 1000000d);
+        }
+        return labels;
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"' || c == '\n') {
+                if (sb == null) {
+                    sb = new StringBuilder(value.length() + 8).append(value, 0, i);
+                }
+                sb.append('\\').append(c == '\n' ? 'n' : c);
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb == null ? value : sb.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package com.dianping.pigeon.console.servlet.json;
+
+import com.dianping.pigeon.console.domain.CompressStatus;
+import com.dianping.pigeon.console.servlet.ServiceServlet;
+import com.dianping.pigeon.remoting.common.codec.AdaptiveCompressSelector;
+import com.dianping.pigeon.remoting.common.domain.generic.CompressType;
+import com.dianping.pigeon.remoting.provider.config.ServerConfig;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+public class CompressStatusServlet extends ServiceServlet {
+
+    private AdaptiveCompressSelector compressSelector = AdaptiveCompressSelector.INSTANCE;
+
+    public CompressStatusServlet(ServerConfig serverConfig, int port) {
+        super(serverConfig, port);
+    }
+
+    @Override
+    protected boolean initServicePage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        CompressStatus compressStatus = new CompressStatus();
+
+        if (compressSelector.isEnable()) {
+            compressStatus.setSupport(Boolean.TRUE);
+            for (Map.Entry<String, AdaptiveCompressSelector.CompressStats> entry
+                    : compressSelector.getCompressStats().entrySet()) {
+                AdaptiveCompressSelector.CompressStats stats = entry.getValue();
+                CompressStatus.MethodCompress methodCompress = new CompressStatus.MethodCompress();
+                methodCompress.setKey(entry.getKey());
+                methodCompress.setDecision(stats.getDecision().name());
+                methodCompress.setSampling(stats.isSampling());
+                methodCompress.setDecideTime(stats.getDecideTime());
+                methodCompress.setSnappySavedRatio(stats.getSavedRatio(CompressType.Snappy));
+                methodCompress.setSnappyNanosPerByte(stats.getNanosPerByte(CompressType.Snappy));
+                methodCompress.setSnappySaving(stats.getSaving(CompressType.Snappy));
+                methodCompress.setGzipSavedRatio(stats.getSavedRatio(CompressType.Gzip));
+                methodCompress.setGzipNanosPerByte(stats.getNanosPerByte(CompressType.Gzip));
+                methodCompress.setGzipSaving(stats.getSaving(CompressType.Gzip));
+                compressStatus.getMethodCompresses().add(methodCompress);
+            }
+        }
+
+        this.model = compressStatus;
+        return true;
+    }
+
+    @Override
+    public String getView() {
+        return "CompressStatus.ftl";
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/json; charset=UTF-8";
+    }
+
+}
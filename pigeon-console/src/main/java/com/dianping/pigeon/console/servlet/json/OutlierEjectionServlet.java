@@ -0,0 +1,44 @@
+package com.dianping.pigeon.console.servlet.json;
+
+import com.dianping.pigeon.console.domain.OutlierEjectionStatus;
+import com.dianping.pigeon.console.servlet.ServiceServlet;
+import com.dianping.pigeon.remoting.invoker.route.quality.OutlierEjectionManager;
+import com.dianping.pigeon.remoting.provider.config.ServerConfig;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+public class OutlierEjectionServlet extends ServiceServlet {
+
+    private OutlierEjectionManager outlierEjectionManager = OutlierEjectionManager.INSTANCE;
+
+    public OutlierEjectionServlet(ServerConfig serverConfig, int port) {
+        super(serverConfig, port);
+    }
+
+    @Override
+    protected boolean initServicePage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        OutlierEjectionStatus outlierEjectionStatus = new OutlierEjectionStatus();
+
+        if (outlierEjectionManager.isEnableOutlierEjection()) {
+            outlierEjectionStatus.setSupport(Boolean.TRUE);
+            outlierEjectionStatus.setServiceHostStats(outlierEjectionManager.getServiceHostStats());
+        }
+
+        this.model = outlierEjectionStatus;
+        return true;
+    }
+
+    @Override
+    public String getView() {
+        return "OutlierEjection.ftl";
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/json; charset=UTF-8";
+    }
+
+}
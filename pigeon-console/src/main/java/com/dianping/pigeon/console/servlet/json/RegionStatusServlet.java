@@ -2,6 +2,7 @@ package com.dianping.pigeon.console.servlet.json;
 
 import com.dianping.pigeon.console.domain.RegionStatus;
 import com.dianping.pigeon.console.servlet.ServiceServlet;
+import com.dianping.pigeon.remoting.invoker.route.region.LatencyAwareRegionPolicy;
 import com.dianping.pigeon.remoting.invoker.route.region.RegionPolicyManager;
 import com.dianping.pigeon.remoting.provider.config.ServerConfig;
 import com.google.common.collect.Maps;
@@ -36,6 +37,7 @@ public class RegionStatusServlet extends ServiceServlet {
             regionStatus.setRegionInfos(configManager.getStringValue(regionPolicyManager.KEY_REGIONINFO));
             regionStatus.setRegionPrefer(
                     configManager.getStringValue(regionPolicyManager.KEY_REGION_PREFER_BASE + localRegionName));
+            regionStatus.setServiceRegionStats(LatencyAwareRegionPolicy.INSTANCE.getServiceRegionStats());
         }
 
         this.model = regionStatus;
@@ -10,6 +10,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Created by chenchongze on 16/6/28.
@@ -30,8 +31,10 @@ public class RequestQualityServlet extends ServiceServlet {
 
         if (support) {
             requestQualityStatus.setSupport(Boolean.TRUE);
-            if(!CollectionUtils.isEmpty(requestQualityManager.getAddrReqUrlQualities())) {
-                requestQualityStatus.setAddrReqUrlQualities(requestQualityManager.getAddrReqUrlQualities());
+            ConcurrentMap<String, ConcurrentMap<String, RequestQualityManager.Quality>> addrReqUrlQualities
+                    = requestQualityManager.getAddrReqUrlQualities();
+            if(!CollectionUtils.isEmpty(addrReqUrlQualities)) {
+                requestQualityStatus.setAddrReqUrlQualities(addrReqUrlQualities);
             }
         }
 
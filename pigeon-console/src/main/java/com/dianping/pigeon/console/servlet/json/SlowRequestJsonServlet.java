@@ -0,0 +1,32 @@
+package com.dianping.pigeon.console.servlet.json;
+
+import com.dianping.pigeon.remoting.common.monitor.SlowRequestRecorder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 输出各方法最近的和最慢的慢请求，带clear=true时输出后清空
+ */
+public class SlowRequestJsonServlet extends HttpServlet {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        String json = mapper.writeValueAsString(SlowRequestRecorder.INSTANCE.getSlowRequests());
+        if ("true".equals(request.getParameter("clear"))) {
+            SlowRequestRecorder.INSTANCE.clear();
+        }
+        response.setContentType("application/json; charset=UTF-8");
+        response.getWriter().print(json);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        doGet(req, resp);
+    }
+}
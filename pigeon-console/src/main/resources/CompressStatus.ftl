@@ -0,0 +1,23 @@
+{
+    "support" : "${support?string("true","false")}",
+    "methodCompresses" : [
+        <#list methodCompresses as x>
+        {
+            "key" : "${x.key}",
+            "decision" : "${x.decision}",
+            "sampling" : "${x.sampling?string("true","false")}",
+            "decideTime" : "${x.decideTime?c}",
+            "snappy" : {
+                "savedRatio" : "${x.snappySavedRatio?c}",
+                "nanosPerByte" : "${x.snappyNanosPerByte?c}",
+                "savedBytesPerMicros" : "${x.snappySaving?c}"
+            },
+            "gzip" : {
+                "savedRatio" : "${x.gzipSavedRatio?c}",
+                "nanosPerByte" : "${x.gzipNanosPerByte?c}",
+                "savedBytesPerMicros" : "${x.gzipSaving?c}"
+            }
+        }<#if x_has_next>,</#if>
+        </#list>
+    ]
+}
@@ -0,0 +1,24 @@
+{
+    "support" : "${support?string("true","false")}",
+    "serviceHostStats" : [
+        <#list serviceHostStats?keys as key>
+        {
+            "service": "${key}",
+            "hostStats": [
+                <#list serviceHostStats[key]?keys as key1>
+                {
+                    "host" : "${key1}",
+                    "ejected" : "${serviceHostStats[key][key1].isEjected()?string("true","false")}",
+                    "ejectedUntil" : "${serviceHostStats[key][key1].getEjectedUntil()?c}",
+                    "ejectionCount" : "${serviceHostStats[key][key1].getEjectionCount()}",
+                    "ejectedTimes" : "${serviceHostStats[key][key1].getEjectedTimes()}",
+                    "total" : "${serviceHostStats[key][key1].getLastTotal()}",
+                    "failed" : "${serviceHostStats[key][key1].getLastFailed()}",
+                    "avgLatency" : "${serviceHostStats[key][key1].getLastAvgLatency()}"
+                }<#if key1_has_next>,</#if>
+                </#list>
+            ]
+        }<#if key_has_next>,</#if>
+        </#list>
+    ]
+}
\ No newline at end of file
@@ -2,5 +2,23 @@
     "regionPolicyEnabled" : "${regionPolicyEnabled?string("true","false")}",
     "regionInfos" : "${regionInfos}",
     "localRegion" : "${localRegion}",
-    "regionPrefer" : "${regionPrefer}"
+    "regionPrefer" : "${regionPrefer}",
+    "serviceRegionStats" : [
+        <#list serviceRegionStats?keys as key>
+        {
+            "service": "${key}",
+            "regionStats": [
+                <#list serviceRegionStats[key]?keys as key1>
+                {
+                    "region" : "${key1}",
+                    "latency" : "${serviceRegionStats[key][key1].getLatency()?c}",
+                    "baseline" : "${serviceRegionStats[key][key1].getBaseline()?c}",
+                    "failedPercent" : "${serviceRegionStats[key][key1].getFailedPercent()?c}",
+                    "count" : "${serviceRegionStats[key][key1].getCount()?c}"
+                }<#if key1_has_next>,</#if>
+                </#list>
+            ]
+        }<#if key_has_next>,</#if>
+        </#list>
+    ]
 }
\ No newline at end of file
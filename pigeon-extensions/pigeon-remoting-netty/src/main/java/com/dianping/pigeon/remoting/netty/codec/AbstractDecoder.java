@@ -1,10 +1,15 @@
 package com.dianping.pigeon.remoting.netty.codec;
 
+import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.codec.BufferSerializer;
+import com.dianping.pigeon.remoting.common.codec.CodecBuffer;
+import com.dianping.pigeon.remoting.common.codec.Serializer;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.domain.InvocationSerializable;
 import com.dianping.pigeon.remoting.common.exception.SerializationException;
+import com.dianping.pigeon.remoting.common.monitor.IoWorkerStats;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
 import com.dianping.pigeon.log.Logger;
@@ -28,6 +33,12 @@ public abstract class AbstractDecoder extends OneToOneDecoder {
 
     private static final Logger logger = LoggerLoader.getLogger(AbstractDecoder.class);
 
+    private static final boolean isBufferSerializeEnable = ConfigManagerLoader.getConfigManager().getBooleanValue(
+            CodecConstants.KEY_CODEC_BUFFER_ENABLE, true);
+
+    // 解码器每个channel一个，channel所属的worker不会变化
+    private IoWorkerStats ioWorkerStats;
+
     @Override
     public Object decode(ChannelHandlerContext ctx, Channel channel, Object msg)
             throws Exception {
@@ -41,6 +52,7 @@ public abstract class AbstractDecoder extends OneToOneDecoder {
         if (codecEvent.isValid()) {
 
             Object message = null;
+            long start = System.nanoTime();
 
             if (codecEvent.isUnified()) {
                 message = _doDecode(ctx, channel, codecEvent);
@@ -50,6 +62,13 @@ public abstract class AbstractDecoder extends OneToOneDecoder {
                 codecEvent.setInvocation((InvocationSerializable) message);
             }
 
+            if (ioWorkerStats == null) {
+                ioWorkerStats = IoWorkerStatsHandler.getStats(channel);
+            }
+            IoWorkerStats stats = ioWorkerStats;
+            if (stats != null) {
+                stats.addDecodeNanos(System.nanoTime() - start);
+            }
         }
 
         return codecEvent;
@@ -76,9 +95,7 @@ public abstract class AbstractDecoder extends OneToOneDecoder {
             sequence = buffer.readLong();
             buffer.skipBytes(CodecConstants.EXPAND_FIELD_LENGTH);
             //deserialize
-            ChannelBufferInputStream is = new ChannelBufferInputStream(frame);
-
-            msg = deserialize(serialize, is);
+            msg = doDeserialize(serialize, frame);
             //after
             doAfter(channel, msg, serialize, frameLength, codecEvent.getReceiveTime());
         } catch (Throwable e) {
@@ -120,9 +137,8 @@ public abstract class AbstractDecoder extends OneToOneDecoder {
             ChannelBuffer frameBody = extractFrame(buffer, buffer.readerIndex(), totalLength);
             buffer.readerIndex(buffer.readerIndex() + totalLength);
 
-            ChannelBufferInputStream is = new ChannelBufferInputStream(frameBody);
             //deserialize
-            msg = deserialize(serialize, is);
+            msg = doDeserialize(serialize, frameBody);
             //doAfter
             doAfter(channel, msg, serialize, frameLength, codecEvent.getReceiveTime());
         } catch (Throwable e) {
@@ -135,6 +151,16 @@ public abstract class AbstractDecoder extends OneToOneDecoder {
         return msg;
     }
 
+    private Object doDeserialize(byte serialize, ChannelBuffer frame) {
+        if (isBufferSerializeEnable) {
+            Serializer serializer = SerializerFactory.getSerializer(serialize);
+            if (serializer instanceof BufferSerializer) {
+                return deserialize((BufferSerializer) serializer, new ChannelBufferCodecBuffer(frame));
+            }
+        }
+        return deserialize(serialize, new ChannelBufferInputStream(frame));
+    }
+
     protected ChannelBuffer extractFrame(ChannelBuffer buffer, int index, int length) {
         ChannelBuffer frame = buffer.slice(index, length);
         return frame;
@@ -168,6 +194,8 @@ public abstract class AbstractDecoder extends OneToOneDecoder {
 
     protected abstract Object deserialize(byte serializerType, InputStream is);
 
+    protected abstract Object deserialize(BufferSerializer serializer, CodecBuffer buffer);
+
     protected abstract Object doInitMsg(Object message, Channel channel, long receiveTime);
 
     protected abstract void doFailResponse(ChannelHandlerContext ctx, Channel channel, InvocationResponse response);
@@ -1,11 +1,16 @@
 package com.dianping.pigeon.remoting.netty.codec;
 
+import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.codec.BufferSerializer;
+import com.dianping.pigeon.remoting.common.codec.CodecBuffer;
+import com.dianping.pigeon.remoting.common.codec.Serializer;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.domain.InvocationSerializable;
 import com.dianping.pigeon.remoting.common.domain.generic.UnifiedInvocation;
 import com.dianping.pigeon.remoting.common.exception.SerializationException;
+import com.dianping.pigeon.remoting.common.monitor.IoWorkerStats;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
 import com.dianping.pigeon.log.Logger;
@@ -29,13 +34,23 @@ public abstract class AbstractEncoder extends OneToOneEncoder {
 
     private static final Logger logger = LoggerLoader.getLogger(AbstractEncoder.class);
 
+    private static final boolean isBufferSerializeEnable = ConfigManagerLoader.getConfigManager().getBooleanValue(
+            CodecConstants.KEY_CODEC_BUFFER_ENABLE, true);
+
+    // 编码器每个channel一个，channel所属的worker不会变化
+    private IoWorkerStats ioWorkerStats;
+
     public abstract void serialize(byte serializer, OutputStream os, Object obj, Channel channel) throws IOException;
 
+    public abstract void serialize(BufferSerializer serializer, CodecBuffer buffer, Object obj, Channel channel)
+            throws IOException;
+
     @Override
     public Object encode(ChannelHandlerContext ctx, Channel channel, Object msg) throws Exception {
         if (msg instanceof InvocationSerializable) {
 
             InvocationSerializable _msg = (InvocationSerializable) msg;
+            long start = System.nanoTime();
             try {
 
                 ChannelBuffer frame;
@@ -48,7 +63,17 @@ public abstract class AbstractEncoder extends OneToOneEncoder {
                     frame = doEncode(channel, _msg);
                     codecEvent = new CodecEvent(frame, false);
                 }
-
+                codecEvent.setInvocation(_msg);
+
+                // 调用端一般在业务线程编码，不占用I/O线程，单独计入caller
+                IoWorkerStats stats = getIoWorkerStats(channel);
+                if (stats != null) {
+                    if (stats.isIoThread()) {
+                        stats.addEncodeNanos(System.nanoTime() - start);
+                    } else {
+                        stats.addCallerEncodeNanos(System.nanoTime() - start);
+                    }
+                }
                 return codecEvent;
             } catch (Exception e) {
                 SerializationException se = new SerializationException(e);
@@ -68,6 +93,13 @@ public abstract class AbstractEncoder extends OneToOneEncoder {
         }
     }
 
+    private IoWorkerStats getIoWorkerStats(Channel channel) {
+        if (ioWorkerStats == null) {
+            ioWorkerStats = IoWorkerStatsHandler.getStats(channel);
+        }
+        return ioWorkerStats;
+    }
+
     protected ChannelBuffer doEncode(Channel channel, InvocationSerializable msg)
             throws IOException {
         ChannelBufferOutputStream os = new ChannelBufferOutputStream(dynamicBuffer(CodecConstants.ESTIMATED_LENGTH,
@@ -79,7 +111,7 @@ public abstract class AbstractEncoder extends OneToOneEncoder {
         //bodyLength
         os.writeInt(Integer.MAX_VALUE);
 
-        serialize(msg.getSerialize(), os, msg, channel);
+        doSerialize(msg.getSerialize(), os, msg, channel);
         //body
         ChannelBuffer frame = os.buffer();
         //sequence
@@ -109,7 +141,7 @@ public abstract class AbstractEncoder extends OneToOneEncoder {
         //totalLength
         os.writeInt(Integer.MAX_VALUE);
 
-        serialize(msg.getSerialize(), os, msg, channel);
+        doSerialize(msg.getSerialize(), os, msg, channel);
 
         ChannelBuffer frame = os.buffer();
         //totalLength
@@ -119,6 +151,18 @@ public abstract class AbstractEncoder extends OneToOneEncoder {
         return frame;
     }
 
+    private void doSerialize(byte serialize, ChannelBufferOutputStream os, Object msg, Channel channel)
+            throws IOException {
+        if (isBufferSerializeEnable) {
+            Serializer serializer = SerializerFactory.getSerializer(serialize);
+            if (serializer instanceof BufferSerializer) {
+                serialize((BufferSerializer) serializer, new ChannelBufferCodecBuffer(os.buffer()), msg, channel);
+                return;
+            }
+        }
+        serialize(serialize, os, msg, channel);
+    }
+
     private void doAfter(Object msg,
                          int frameLength)
             throws IOException {
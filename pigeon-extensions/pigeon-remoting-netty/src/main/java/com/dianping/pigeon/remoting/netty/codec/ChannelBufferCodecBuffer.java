@@ -0,0 +1,140 @@
+package com.dianping.pigeon.remoting.netty.codec;
+
+import com.dianping.pigeon.remoting.common.codec.CodecBuffer;
+import org.jboss.netty.buffer.ChannelBuffer;
+
+/**
+ * netty ChannelBuffer到CodecBuffer的适配
+ */
+public class ChannelBufferCodecBuffer implements CodecBuffer {
+
+    private final ChannelBuffer buffer;
+
+    public ChannelBufferCodecBuffer(ChannelBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public ChannelBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public int readerIndex() {
+        return buffer.readerIndex();
+    }
+
+    @Override
+    public void readerIndex(int readerIndex) {
+        buffer.readerIndex(readerIndex);
+    }
+
+    @Override
+    public int writerIndex() {
+        return buffer.writerIndex();
+    }
+
+    @Override
+    public void writerIndex(int writerIndex) {
+        buffer.writerIndex(writerIndex);
+    }
+
+    @Override
+    public int readableBytes() {
+        return buffer.readableBytes();
+    }
+
+    @Override
+    public int writableBytes() {
+        return buffer.writableBytes();
+    }
+
+    @Override
+    public void ensureCapacity(int writableBytes) {
+        buffer.ensureWritableBytes(writableBytes);
+    }
+
+    @Override
+    public byte readByte() {
+        return buffer.readByte();
+    }
+
+    @Override
+    public short readShort() {
+        return buffer.readShort();
+    }
+
+    @Override
+    public int readInt() {
+        return buffer.readInt();
+    }
+
+    @Override
+    public long readLong() {
+        return buffer.readLong();
+    }
+
+    @Override
+    public void readBytes(byte[] dst, int dstIndex, int length) {
+        buffer.readBytes(dst, dstIndex, length);
+    }
+
+    @Override
+    public void skipBytes(int length) {
+        buffer.skipBytes(length);
+    }
+
+    @Override
+    public void writeByte(int value) {
+        buffer.writeByte(value);
+    }
+
+    @Override
+    public void writeShort(int value) {
+        buffer.writeShort(value);
+    }
+
+    @Override
+    public void writeInt(int value) {
+        buffer.writeInt(value);
+    }
+
+    @Override
+    public void writeLong(long value) {
+        buffer.writeLong(value);
+    }
+
+    @Override
+    public void writeBytes(byte[] src, int srcIndex, int length) {
+        buffer.writeBytes(src, srcIndex, length);
+    }
+
+    @Override
+    public void setShort(int index, int value) {
+        buffer.setShort(index, value);
+    }
+
+    @Override
+    public void setInt(int index, int value) {
+        buffer.setInt(index, value);
+    }
+
+    @Override
+    public CodecBuffer slice(int index, int length) {
+        return new ChannelBufferCodecBuffer(buffer.slice(index, length));
+    }
+
+    @Override
+    public boolean hasArray() {
+        return buffer.hasArray();
+    }
+
+    @Override
+    public byte[] array() {
+        return buffer.array();
+    }
+
+    @Override
+    public int arrayOffset() {
+        return buffer.arrayOffset();
+    }
+}
@@ -47,4 +47,7 @@ public class CodecConstants {
 
 
     public static final int ESTIMATED_LENGTH = 512;
+
+    // 序列化器实现了BufferSerializer时直接读写帧缓冲区
+    public static final String KEY_CODEC_BUFFER_ENABLE = "pigeon.codec.buffer.enable";
 }
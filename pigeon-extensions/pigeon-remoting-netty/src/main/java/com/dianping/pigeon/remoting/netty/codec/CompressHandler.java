@@ -1,6 +1,7 @@
 package com.dianping.pigeon.remoting.netty.codec;
 
 import com.dianping.pigeon.compress.*;
+import com.dianping.pigeon.remoting.common.codec.AdaptiveCompressSelector;
 import com.dianping.pigeon.remoting.common.codec.CodecConfig;
 import com.dianping.pigeon.remoting.common.codec.CodecConfigFactory;
 import com.dianping.pigeon.remoting.common.domain.generic.CompressType;
@@ -22,6 +23,10 @@ public class CompressHandler extends SimpleChannelHandler {
 
     private static Compress snappyCompress = CompressFactory.getSnappyCompress();
 
+    private static Compress lz4Compress = CompressFactory.getLz4Compress();
+
+    private static AdaptiveCompressSelector compressSelector = AdaptiveCompressSelector.INSTANCE;
+
     private CodecConfig codecConfig;
 
     public CompressHandler(CodecConfig codecConfig) {
@@ -85,7 +90,6 @@ public class CompressHandler extends SimpleChannelHandler {
         int totalLength = frame.getInt(frame.readerIndex() + CodecConstants._HEAD_LENGTH);
         int compressLength = totalLength - CodecConstants._HEAD_FIELD_LENGTH;
 
-        byte[] in;
         byte[] out = null;
         ChannelBuffer result;
 
@@ -93,19 +97,17 @@ public class CompressHandler extends SimpleChannelHandler {
             case 0x00:
                 return frame;
             case 0x20:
-                in = new byte[compressLength];
-                frame.getBytes(frame.readerIndex() + CodecConstants._FRONT_LENGTH, in);
-                out = snappyCompress.unCompress(in);
+                out = doUnCompress0(frame, compressLength, snappyCompress);
                 codecEvent.setIsCompress(true);
                 break;
             case 0x40:
-                in = new byte[compressLength];
-                frame.getBytes(frame.readerIndex() + CodecConstants._FRONT_LENGTH, in);
-                out = gZipCompress.unCompress(in);
+                out = doUnCompress0(frame, compressLength, gZipCompress);
                 codecEvent.setIsCompress(true);
                 break;
             case 0x60:
-                throw new IllegalArgumentException("Invalid compress type.");
+                out = doUnCompress0(frame, compressLength, lz4Compress);
+                codecEvent.setIsCompress(true);
+                break;
         }
 
         int _totalLength = CodecConstants._HEAD_FIELD_LENGTH + out.length;
@@ -132,6 +134,16 @@ public class CompressHandler extends SimpleChannelHandler {
 
         if (codecConfig.isCompress(frameLength)) {
             CompressType compressType = codecConfig.getCompressType();
+            AdaptiveCompressSelector.CompressStats stats = null;
+            if (compressSelector.isEnable()) {
+                stats = compressSelector.getStats(codecEvent.getInvocation());
+                if (stats != null) {
+                    compressType = stats.select(System.currentTimeMillis());
+                }
+            }
+            // 只有采样期间才计时并记录
+            boolean sampling = stats != null && compressType != CompressType.None && stats.isSampling();
+            long start = sampling ? System.nanoTime() : 0;
 
             switch (compressType) {
                 case None:
@@ -145,6 +157,13 @@ public class CompressHandler extends SimpleChannelHandler {
                     command = command | 0x40;
                     result = doCompress0(channel, frame, frameLength, gZipCompress);
                     break;
+                case Lz4:
+                    command = command | 0x60;
+                    result = doCompress0(channel, frame, frameLength, lz4Compress);
+                    break;
+            }
+            if (sampling) {
+                stats.record(compressType, frameLength, result.readableBytes(), System.nanoTime() - start);
             }
         } else {
             command = command | 0x00;
@@ -156,16 +175,33 @@ public class CompressHandler extends SimpleChannelHandler {
         return result;
     }
 
+    private byte[] doUnCompress0(ChannelBuffer frame, int compressLength, Compress compress)
+            throws IOException {
+        int offset = frame.readerIndex() + CodecConstants._FRONT_LENGTH;
+        if (frame.hasArray() && compress instanceof AbstractCompress) {
+            return ((AbstractCompress) compress).unCompress(frame.array(), frame.arrayOffset() + offset,
+                    compressLength);
+        }
+        byte[] in = new byte[compressLength];
+        frame.getBytes(offset, in);
+        return compress.unCompress(in);
+    }
+
     private ChannelBuffer doCompress0(Channel channel, ChannelBuffer frame,
                                       int frameLength, Compress compress)
             throws IOException {
         ChannelBuffer result;
         int bodyLength = frameLength - CodecConstants._FRONT_LENGTH;
-        byte[] in = new byte[bodyLength];
+        byte[] out;
 
-        frame.getBytes(CodecConstants._FRONT_LENGTH, in, 0, bodyLength);
-
-        byte[] out = compress.compress(in);
+        if (frame.hasArray() && compress instanceof AbstractCompress) {
+            out = ((AbstractCompress) compress).compress(frame.array(),
+                    frame.arrayOffset() + CodecConstants._FRONT_LENGTH, bodyLength);
+        } else {
+            byte[] in = new byte[bodyLength];
+            frame.getBytes(CodecConstants._FRONT_LENGTH, in, 0, bodyLength);
+            out = compress.compress(in);
+        }
         byte[] lengthBuf = new byte[CodecConstants._HEAD_FIELD_LENGTH];
         frame.getBytes(CodecConstants._FRONT_LENGTH_, lengthBuf, 0, lengthBuf.length);
 
@@ -0,0 +1,73 @@
+package com.dianping.pigeon.remoting.netty.codec;
+
+import java.util.concurrent.Executor;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.channel.socket.Worker;
+import org.jboss.netty.channel.socket.nio.NioSocketChannel;
+
+import com.dianping.pigeon.remoting.common.monitor.IoWorkerStats;
+import com.dianping.pigeon.remoting.common.monitor.IoWorkerStatsRegistry;
+
+/**
+ * 放在pipeline最前面，按channel所属的netty worker统计socket上读写的字节数，读事件总在worker线程中，顺便记录该线程
+ */
+public class IoWorkerStatsHandler extends SimpleChannelHandler {
+
+    private IoWorkerStats stats;
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        if (e.getMessage() instanceof ChannelBuffer) {
+            IoWorkerStats stats = getStats(ctx);
+            if (stats != null) {
+                stats.markIoThread();
+                stats.addBytesRead(((ChannelBuffer) e.getMessage()).readableBytes());
+            }
+        }
+        super.messageReceived(ctx, e);
+    }
+
+    @Override
+    public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        if (e.getMessage() instanceof ChannelBuffer) {
+            IoWorkerStats stats = getStats(ctx);
+            if (stats != null) {
+                stats.addBytesWritten(((ChannelBuffer) e.getMessage()).readableBytes());
+            }
+        }
+        super.writeRequested(ctx, e);
+    }
+
+    private IoWorkerStats getStats(ChannelHandlerContext ctx) {
+        if (stats == null) {
+            stats = getStats(ctx.getChannel());
+        }
+        return stats;
+    }
+
+    /**
+     * @return channel所属worker的统计，非nio socket channel时为null
+     */
+    public static IoWorkerStats getStats(Channel channel) {
+        if (!(channel instanceof NioSocketChannel)) {
+            return null;
+        }
+        final Worker worker = ((NioSocketChannel) channel).getWorker();
+        IoWorkerStats stats = IoWorkerStatsRegistry.INSTANCE.getStats(worker);
+        if (stats == null) {
+            stats = IoWorkerStatsRegistry.INSTANCE.register(worker, channel.getParent() != null ? "server-worker"
+                    : "client-worker", new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    worker.executeInIoThread(command);
+                }
+            });
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,29 @@
+package com.dianping.pigeon.remoting.netty.codec;
+
+import com.dianping.pigeon.remoting.common.codec.MethodDictionary;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelLocal;
+
+/**
+ * 按连接保存方法字典，连接关闭时移除，重连后重新协商
+ */
+public class MethodDictionaryHolder {
+
+    private static final ChannelLocal<MethodDictionary> dictionaries = new ChannelLocal<MethodDictionary>(true);
+
+    public static MethodDictionary getDictionary(Channel channel) {
+        MethodDictionary dictionary = dictionaries.get(channel);
+        if (dictionary == null) {
+            MethodDictionary newDictionary = new MethodDictionary();
+            dictionary = dictionaries.setIfAbsent(channel, newDictionary);
+            if (dictionary == null) {
+                dictionary = newDictionary;
+            }
+        }
+        return dictionary;
+    }
+
+    public static MethodDictionary getDictionaryIfExists(Channel channel) {
+        return dictionaries.get(channel);
+    }
+}
@@ -120,7 +120,8 @@ public class NettyClient extends AbstractClient {
             afterWrite(request, channel);
 
             if (request.getMessageType() == Constants.MESSAGE_TYPE_SERVICE
-                    || request.getMessageType() == Constants.MESSAGE_TYPE_HEART) {
+                    || request.getMessageType() == Constants.MESSAGE_TYPE_HEART
+                    || request.getMessageType() == Constants.MESSAGE_TYPE_BATCH) {
                 future.addListener(new MessageWriteListener(request, channel));
             }
 
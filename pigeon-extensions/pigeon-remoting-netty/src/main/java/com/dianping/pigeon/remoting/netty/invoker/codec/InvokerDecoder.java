@@ -1,9 +1,13 @@
 package com.dianping.pigeon.remoting.netty.invoker.codec;
 
+import com.dianping.pigeon.remoting.common.codec.BufferSerializer;
+import com.dianping.pigeon.remoting.common.codec.CodecBuffer;
+import com.dianping.pigeon.remoting.common.codec.MethodDictionary;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.netty.codec.AbstractDecoder;
 import com.dianping.pigeon.remoting.netty.codec.CodecEvent;
+import com.dianping.pigeon.remoting.netty.codec.MethodDictionaryHolder;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.Channels;
@@ -24,6 +28,10 @@ public class InvokerDecoder extends AbstractDecoder {
         if (message instanceof InvocationResponse) {
             InvocationResponse response = (InvocationResponse) message;
             response.setCreateMillisTime(receiveTime);
+            MethodDictionary dictionary = MethodDictionaryHolder.getDictionaryIfExists(channel);
+            if (dictionary != null) {
+                dictionary.receiveAck(response);
+            }
             return response;
         }
         return message;
@@ -43,4 +51,9 @@ public class InvokerDecoder extends AbstractDecoder {
         Object decoded = SerializerFactory.getSerializer(serializerType).deserializeResponse(is);
         return decoded;
     }
+
+    @Override
+    public Object deserialize(BufferSerializer serializer, CodecBuffer buffer) {
+        return serializer.deserializeResponse(buffer);
+    }
 }
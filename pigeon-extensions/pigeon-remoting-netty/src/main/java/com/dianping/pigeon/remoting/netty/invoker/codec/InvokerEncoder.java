@@ -1,9 +1,14 @@
 package com.dianping.pigeon.remoting.netty.invoker.codec;
 
+import com.dianping.pigeon.remoting.common.codec.BufferSerializer;
+import com.dianping.pigeon.remoting.common.codec.CodecBuffer;
+import com.dianping.pigeon.remoting.common.codec.MethodDictionary;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.netty.codec.AbstractEncoder;
 import com.dianping.pigeon.remoting.netty.codec.CodecEvent;
+import com.dianping.pigeon.remoting.netty.codec.MethodDictionaryHolder;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.Channels;
@@ -20,6 +25,15 @@ import java.util.List;
 public class InvokerEncoder extends AbstractEncoder {
 
     public Object encode(ChannelHandlerContext ctx, Channel channel, Object msg) throws Exception {
+        if (MethodDictionary.isEnable() && msg instanceof InvocationRequest) {
+            InvocationRequest request = (InvocationRequest) msg;
+            InvocationRequest compacted = MethodDictionaryHolder.getDictionary(channel).compact(request);
+            if (compacted != request) {
+                Object encoded = super.encode(ctx, channel, compacted);
+                request.setSize(compacted.getSize());
+                return encoded;
+            }
+        }
         Object encoded = super.encode(ctx, channel, msg);
         return encoded;
     }
@@ -38,4 +52,10 @@ public class InvokerEncoder extends AbstractEncoder {
             throws IOException {
         SerializerFactory.getSerializer(serializerType).serializeRequest(os, obj);
     }
+
+    @Override
+    public void serialize(BufferSerializer serializer, CodecBuffer buffer, Object obj, Channel channel)
+            throws IOException {
+        serializer.serializeRequest(buffer, obj);
+    }
 }
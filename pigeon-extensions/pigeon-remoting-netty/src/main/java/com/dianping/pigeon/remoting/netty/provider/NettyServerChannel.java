@@ -37,6 +37,22 @@ public class NettyServerChannel implements ProviderChannel {
 		});
 	}
 
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof NettyServerChannel)) {
+			return false;
+		}
+		return channel.equals(((NettyServerChannel) obj).channel);
+	}
+
+	@Override
+	public int hashCode() {
+		return channel.hashCode();
+	}
+
 	@Override
 	public String getRemoteAddress() {
 		InetSocketAddress address = (InetSocketAddress) this.channel.getRemoteAddress();
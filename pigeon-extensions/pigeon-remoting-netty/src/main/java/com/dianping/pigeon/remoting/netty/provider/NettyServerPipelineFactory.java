@@ -12,6 +12,7 @@ import com.dianping.pigeon.remoting.netty.codec.CompressHandler;
 import com.dianping.pigeon.remoting.netty.codec.Crc32Handler;
 import com.dianping.pigeon.remoting.netty.codec.FrameDecoder;
 import com.dianping.pigeon.remoting.netty.codec.FramePrepender;
+import com.dianping.pigeon.remoting.netty.codec.IoWorkerStatsHandler;
 import com.dianping.pigeon.remoting.netty.provider.codec.*;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
@@ -29,6 +30,7 @@ public class NettyServerPipelineFactory implements ChannelPipelineFactory {
 
     public ChannelPipeline getPipeline() {
         ChannelPipeline pipeline = pipeline();
+        pipeline.addLast("ioWorkerStats", new IoWorkerStatsHandler());
         pipeline.addLast("framePrepender", new FramePrepender());
         pipeline.addLast("frameDecoder", new FrameDecoder());
         pipeline.addLast("crc32Handler", new Crc32Handler(codecConfig));
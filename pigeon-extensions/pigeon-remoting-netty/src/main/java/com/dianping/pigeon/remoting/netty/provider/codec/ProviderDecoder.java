@@ -1,9 +1,13 @@
 package com.dianping.pigeon.remoting.netty.provider.codec;
 
+import com.dianping.pigeon.remoting.common.codec.BufferSerializer;
+import com.dianping.pigeon.remoting.common.codec.CodecBuffer;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.netty.codec.AbstractDecoder;
+import com.dianping.pigeon.remoting.netty.codec.MethodDictionaryHolder;
 import com.dianping.pigeon.remoting.netty.provider.NettyServerChannel;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -23,6 +27,9 @@ public class ProviderDecoder extends AbstractDecoder {
         }
         InvocationRequest request = (InvocationRequest) message;
         request.setCreateMillisTime(receiveTime);
+        if (request.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
+            MethodDictionaryHolder.getDictionary(channel).resolve(request);
+        }
         return request;
     }
 
@@ -37,4 +44,9 @@ public class ProviderDecoder extends AbstractDecoder {
         Object decoded = SerializerFactory.getSerializer(serializerType).deserializeRequest(is);
         return decoded;
     }
+
+    @Override
+    public Object deserialize(BufferSerializer serializer, CodecBuffer buffer) {
+        return serializer.deserializeRequest(buffer);
+    }
 }
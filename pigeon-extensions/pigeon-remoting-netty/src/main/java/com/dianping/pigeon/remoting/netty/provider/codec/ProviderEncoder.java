@@ -1,8 +1,12 @@
 package com.dianping.pigeon.remoting.netty.provider.codec;
 
+import com.dianping.pigeon.remoting.common.codec.BufferSerializer;
+import com.dianping.pigeon.remoting.common.codec.CodecBuffer;
+import com.dianping.pigeon.remoting.common.codec.MethodDictionary;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.netty.codec.AbstractEncoder;
+import com.dianping.pigeon.remoting.netty.codec.MethodDictionaryHolder;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.Channels;
@@ -17,6 +21,12 @@ import java.io.OutputStream;
 public class ProviderEncoder extends AbstractEncoder {
 
     public Object encode(ChannelHandlerContext ctx, Channel channel, Object msg) throws Exception {
+        if (msg instanceof InvocationResponse) {
+            MethodDictionary dictionary = MethodDictionaryHolder.getDictionaryIfExists(channel);
+            if (dictionary != null) {
+                dictionary.ack((InvocationResponse) msg);
+            }
+        }
         Object encoded = super.encode(ctx, channel, msg);
         return encoded;
     }
@@ -32,5 +42,11 @@ public class ProviderEncoder extends AbstractEncoder {
         SerializerFactory.getSerializer(serializerType).serializeResponse(os, obj);
     }
 
+    @Override
+    public void serialize(BufferSerializer serializer, CodecBuffer buffer, Object obj, Channel channel)
+            throws IOException {
+        serializer.serializeResponse(buffer, obj);
+    }
+
 }
 
@@ -0,0 +1,305 @@
+package com.dianping.pigeon.remoting.common.codec;
+
+import com.dianping.pigeon.config.ConfigChangeListener;
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationSerializable;
+import com.dianping.pigeon.remoting.common.domain.generic.CompressType;
+import com.dianping.pigeon.remoting.common.domain.generic.GenericResponse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按方法自适应选择压缩算法：对每个方法的请求、响应分别统计各压缩算法的压缩率和耗时，
+ * 选择每微秒节省字节数最大的算法，低于下限时不压缩；定期重新采样以适应数据变化。
+ * 统计按serviceName、methodName两级缓存，每帧不拼接key；决策确定后选择只是一次volatile读，
+ * 只有采样期间的压缩结果才会以cas方式计入统计
+ */
+public enum AdaptiveCompressSelector {
+
+    INSTANCE;
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+    private static final String KEY_ADAPTIVE_ENABLE = "pigeon.codec.compress.adaptive.enable";
+    private static final String KEY_ADAPTIVE_SAMPLES = "pigeon.codec.compress.adaptive.samples";
+    private static final String KEY_ADAPTIVE_RESAMPLE_INTERVAL = "pigeon.codec.compress.adaptive.resample.interval";
+    private static final String KEY_ADAPTIVE_SAVING_MIN = "pigeon.codec.compress.adaptive.saving.min";
+    private static final String KEY_ADAPTIVE_SIZE_MAX = "pigeon.codec.compress.adaptive.size.max";
+    private volatile static boolean isAdaptiveEnable = configManager.getBooleanValue(KEY_ADAPTIVE_ENABLE, true);
+    private volatile static int samples = configManager.getIntValue(KEY_ADAPTIVE_SAMPLES, 4);
+    private volatile static long resampleInterval = configManager.getLongValue(KEY_ADAPTIVE_RESAMPLE_INTERVAL, 60000);
+    // 每微秒cpu至少节省的字节数
+    private volatile static float savingMin = configManager.getFloatValue(KEY_ADAPTIVE_SAVING_MIN, 50f);
+    private static final int sizeMax = configManager.getIntValue(KEY_ADAPTIVE_SIZE_MAX, 1024);
+
+    // 参与采样的压缩算法
+    private static final CompressType[] CANDIDATES = {CompressType.Snappy, CompressType.Gzip};
+
+    private static final float ALPHA = 0.3f;
+
+    static {
+        configManager.registerConfigChangeListener(new InnerConfigChangeListener());
+    }
+
+    // serviceName --> ( methodName --> stats )
+    private final ConcurrentMap<String, ConcurrentMap<String, MethodCompressStats>> compressStats = new ConcurrentHashMap<String, ConcurrentMap<String, MethodCompressStats>>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    public boolean isEnable() {
+        return isAdaptiveEnable;
+    }
+
+    /**
+     * 所有方法的统计，key为serviceName#methodName:request|response，用于展示
+     *
+     * @return
+     */
+    public Map<String, CompressStats> getCompressStats() {
+        Map<String, CompressStats> result = new LinkedHashMap<String, CompressStats>();
+        for (Map.Entry<String, ConcurrentMap<String, MethodCompressStats>> service : compressStats.entrySet()) {
+            for (Map.Entry<String, MethodCompressStats> method : service.getValue().entrySet()) {
+                String prefix = service.getKey() + "#" + method.getKey();
+                result.put(prefix + ":request", method.getValue().request);
+                result.put(prefix + ":response", method.getValue().response);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 取得消息所属方法、方向的统计，无法区分方法的消息或统计数达到上限时返回null
+     *
+     * @param invocation
+     * @return
+     */
+    public CompressStats getStats(InvocationSerializable invocation) {
+        if (invocation instanceof InvocationRequest) {
+            InvocationRequest request = (InvocationRequest) invocation;
+            MethodCompressStats stats = getStats(request.getServiceName(), request.getMethodName());
+            return stats == null ? null : stats.request;
+        } else if (invocation instanceof GenericResponse) {
+            GenericResponse response = (GenericResponse) invocation;
+            MethodCompressStats stats = getStats(response.getServiceName(), response.getMethodName());
+            return stats == null ? null : stats.response;
+        }
+        return null;
+    }
+
+    private MethodCompressStats getStats(String serviceName, String methodName) {
+        if (serviceName == null || methodName == null) {
+            return null;
+        }
+        ConcurrentMap<String, MethodCompressStats> methodStats = compressStats.get(serviceName);
+        if (methodStats == null) {
+            methodStats = new ConcurrentHashMap<String, MethodCompressStats>();
+            ConcurrentMap<String, MethodCompressStats> last = compressStats.putIfAbsent(serviceName, methodStats);
+            if (last != null) {
+                methodStats = last;
+            }
+        }
+        MethodCompressStats stats = methodStats.get(methodName);
+        if (stats == null) {
+            if (size.get() >= sizeMax) {
+                return null;
+            }
+            MethodCompressStats newStats = new MethodCompressStats();
+            stats = methodStats.putIfAbsent(methodName, newStats);
+            if (stats == null) {
+                stats = newStats;
+                size.incrementAndGet();
+            }
+        }
+        return stats;
+    }
+
+    private static class MethodCompressStats {
+
+        private final CompressStats request = new CompressStats();
+
+        private final CompressStats response = new CompressStats();
+    }
+
+    public static class CompressStats {
+
+        private volatile CompressType decision = CompressType.None;
+
+        private final AtomicBoolean sampling = new AtomicBoolean(true);
+
+        private volatile long decideTime;
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        private final AtomicIntegerArray sampleCounts = new AtomicIntegerArray(CANDIDATES.length);
+
+        // 高32位为每输入字节节省的字节数，低32位为每输入字节的耗时(ns)，以float位保存
+        private final AtomicLongArray costs = new AtomicLongArray(CANDIDATES.length);
+
+        public CompressType select(long now) {
+            if (!sampling.get()) {
+                if (now - decideTime < resampleInterval) {
+                    return decision;
+                }
+                if (sampling.compareAndSet(false, true)) {
+                    for (int i = 0; i < CANDIDATES.length; i++) {
+                        sampleCounts.set(i, 0);
+                    }
+                }
+            }
+            // 轮流采样，每个算法至少samples次后做出决策
+            int start = next.getAndIncrement() & Integer.MAX_VALUE;
+            for (int i = 0; i < CANDIDATES.length; i++) {
+                int index = (start + i) % CANDIDATES.length;
+                if (sampleCounts.get(index) < samples) {
+                    return CANDIDATES[index];
+                }
+            }
+            decide(now);
+            return decision;
+        }
+
+        /**
+         * 采样期间使用的算法是否需要记录压缩结果
+         *
+         * @return
+         */
+        public boolean isSampling() {
+            return sampling.get();
+        }
+
+        public void record(CompressType type, int length, int compressedLength, long nanos) {
+            int index = indexOf(type);
+            if (index < 0 || length <= 0 || !sampling.get()) {
+                return;
+            }
+            float savedRatio = (float) (length - compressedLength) / length;
+            float cost = (float) nanos / length;
+            while (true) {
+                long value = costs.get(index);
+                float newSavedRatio = savedRatio, newCost = cost;
+                if (value != 0) {
+                    newSavedRatio = high(value) + ALPHA * (savedRatio - high(value));
+                    newCost = low(value) + ALPHA * (cost - low(value));
+                }
+                if (costs.compareAndSet(index, value, pack(newSavedRatio, newCost))) {
+                    break;
+                }
+            }
+            sampleCounts.incrementAndGet(index);
+        }
+
+        private void decide(long now) {
+            CompressType best = CompressType.None;
+            float bestSaving = savingMin;
+            for (int i = 0; i < CANDIDATES.length; i++) {
+                float saving = getSaving(i);
+                if (high(costs.get(i)) > 0 && saving >= bestSaving) {
+                    best = CANDIDATES[i];
+                    bestSaving = saving;
+                }
+            }
+            decision = best;
+            decideTime = now;
+            sampling.set(false);
+        }
+
+        // 每微秒节省的字节数
+        private float getSaving(int index) {
+            long value = costs.get(index);
+            if (low(value) <= 0) {
+                return 0;
+            }
+            return high(value) * 1000 / low(value);
+        }
+
+        private static int indexOf(CompressType type) {
+            for (int i = 0; i < CANDIDATES.length; i++) {
+                if (CANDIDATES[i] == type) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static long pack(float high, float low) {
+            return (long) Float.floatToRawIntBits(high) << 32 | (Float.floatToRawIntBits(low) & 0xffffffffL);
+        }
+
+        private static float high(long value) {
+            return Float.intBitsToFloat((int) (value >>> 32));
+        }
+
+        private static float low(long value) {
+            return Float.intBitsToFloat((int) value);
+        }
+
+        public CompressType getDecision() {
+            return decision;
+        }
+
+        public long getDecideTime() {
+            return decideTime;
+        }
+
+        public float getSavedRatio(CompressType type) {
+            int index = indexOf(type);
+            return index < 0 ? 0 : high(costs.get(index));
+        }
+
+        public float getNanosPerByte(CompressType type) {
+            int index = indexOf(type);
+            return index < 0 ? 0 : low(costs.get(index));
+        }
+
+        public float getSaving(CompressType type) {
+            int index = indexOf(type);
+            return index < 0 ? 0 : getSaving(index);
+        }
+    }
+
+    private static class InnerConfigChangeListener implements ConfigChangeListener {
+
+        @Override
+        public void onKeyUpdated(String key, String value) {
+            if (key.endsWith(KEY_ADAPTIVE_ENABLE)) {
+                try {
+                    isAdaptiveEnable = Boolean.valueOf(value);
+                } catch (RuntimeException e) {
+                }
+            } else if (key.endsWith(KEY_ADAPTIVE_SAMPLES)) {
+                try {
+                    samples = Integer.valueOf(value);
+                } catch (RuntimeException e) {
+                }
+            } else if (key.endsWith(KEY_ADAPTIVE_RESAMPLE_INTERVAL)) {
+                try {
+                    resampleInterval = Long.valueOf(value);
+                } catch (RuntimeException e) {
+                }
+            } else if (key.endsWith(KEY_ADAPTIVE_SAVING_MIN)) {
+                try {
+                    savingMin = Float.valueOf(value);
+                } catch (RuntimeException e) {
+                }
+            }
+        }
+
+        @Override
+        public void onKeyAdded(String key, String value) {
+
+        }
+
+        @Override
+        public void onKeyRemoved(String key) {
+
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.dianping.pigeon.remoting.common.codec;
+
+import com.dianping.pigeon.remoting.common.exception.SerializationException;
+
+/**
+ * 可选的序列化扩展：直接读写帧缓冲区，Serializer同时实现该接口时编解码器优先使用它，
+ * 反序列化时buffer只包含消息体，从readerIndex读到末尾；序列化时从writerIndex开始写入
+ */
+public interface BufferSerializer {
+
+    Object deserializeRequest(CodecBuffer buffer) throws SerializationException;
+
+    void serializeRequest(CodecBuffer buffer, Object obj) throws SerializationException;
+
+    Object deserializeResponse(CodecBuffer buffer) throws SerializationException;
+
+    void serializeResponse(CodecBuffer buffer, Object obj) throws SerializationException;
+}
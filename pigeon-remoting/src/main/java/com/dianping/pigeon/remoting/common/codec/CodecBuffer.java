@@ -0,0 +1,64 @@
+package com.dianping.pigeon.remoting.common.codec;
+
+/**
+ * 编解码使用的缓冲区抽象，由传输层(如netty)适配，序列化器通过它直接读写帧缓冲区，不必经过InputStream/OutputStream，
+ * 缓冲区基于数组时(hasArray)可以直接访问底层数组，做到零拷贝
+ */
+public interface CodecBuffer {
+
+    int readerIndex();
+
+    void readerIndex(int readerIndex);
+
+    int writerIndex();
+
+    void writerIndex(int writerIndex);
+
+    int readableBytes();
+
+    int writableBytes();
+
+    /**
+     * 保证至少还能写入writableBytes个字节，必要时扩容，扩容后底层数组可能变化，需要重新获取array()
+     *
+     * @param writableBytes
+     */
+    void ensureCapacity(int writableBytes);
+
+    byte readByte();
+
+    short readShort();
+
+    int readInt();
+
+    long readLong();
+
+    void readBytes(byte[] dst, int dstIndex, int length);
+
+    void skipBytes(int length);
+
+    void writeByte(int value);
+
+    void writeShort(int value);
+
+    void writeInt(int value);
+
+    void writeLong(long value);
+
+    void writeBytes(byte[] src, int srcIndex, int length);
+
+    void setShort(int index, int value);
+
+    void setInt(int index, int value);
+
+    /**
+     * 共享底层数据的子缓冲区，读写位置独立
+     */
+    CodecBuffer slice(int index, int length);
+
+    boolean hasArray();
+
+    byte[] array();
+
+    int arrayOffset();
+}
@@ -0,0 +1,51 @@
+package com.dianping.pigeon.remoting.common.codec;
+
+import java.io.InputStream;
+
+/**
+ * CodecBuffer的InputStream视图，供只支持流的序列化实现使用，读取位置即缓冲区的readerIndex
+ */
+public class CodecBufferInputStream extends InputStream {
+
+    private final CodecBuffer buffer;
+
+    public CodecBufferInputStream(CodecBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        if (buffer.readableBytes() <= 0) {
+            return -1;
+        }
+        return buffer.readByte() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int available = buffer.readableBytes();
+        if (available <= 0) {
+            return -1;
+        }
+        len = Math.min(available, len);
+        buffer.readBytes(b, off, len);
+        return len;
+    }
+
+    @Override
+    public long skip(long n) {
+        int skipped = (int) Math.min(n, buffer.readableBytes());
+        if (skipped > 0) {
+            buffer.skipBytes(skipped);
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffer.readableBytes();
+    }
+}
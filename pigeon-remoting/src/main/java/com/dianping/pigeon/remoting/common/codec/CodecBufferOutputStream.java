@@ -0,0 +1,27 @@
+package com.dianping.pigeon.remoting.common.codec;
+
+import java.io.OutputStream;
+
+/**
+ * CodecBuffer的OutputStream视图，供只支持流的序列化实现使用，写入位置即缓冲区的writerIndex
+ */
+public class CodecBufferOutputStream extends OutputStream {
+
+    private final CodecBuffer buffer;
+
+    public CodecBufferOutputStream(CodecBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b) {
+        buffer.writeByte(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (len > 0) {
+            buffer.writeBytes(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.dianping.pigeon.remoting.common.codec;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dianping.pigeon.config.ConfigChangeListener;
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.BadRequestException;
+import com.dianping.pigeon.remoting.common.util.Constants;
+
+/**
+ * 连接级别的方法字典，一个连接一个实例，连接断开后随之丢弃：
+ * <p>
+ * 1. 调用端第一次在连接上调用某个(service, method, version, app)时分配一个id，仍发送完整请求，
+ * 并在requestValues中带上KEY_DEFINE=id
+ * <p>
+ * 2. 服务端记录id与方法的对应关系(同一id只绑定一次)，在该请求的响应的responseValues中带上KEY_ACK=id
+ * <p>
+ * 3. 调用端收到确认后，该方法后续的请求serviceName只发送"#id"，methodName、version、app不再发送，由服务端解码后还原
+ * <p>
+ * 旧版本服务端不会确认，调用端始终发送完整请求；长时间得不到确认的连接不再尝试。
+ * 每个方法只由分配id的那次请求发送定义，并发的其他请求在确认前发送完整请求，
+ * 定义的响应丢失时该方法在这个连接上一直发送完整请求。
+ * 服务端待确认的定义按请求超时时间过期，超时或处理失败没有写回响应的定义不会一直占用名额
+ */
+public class MethodDictionary {
+
+    public static final String KEY_DEFINE = "pigeon.dict.define";
+
+    public static final String KEY_ACK = "pigeon.dict.ack";
+
+    private static final char ID_PREFIX = '#';
+
+    private static final Logger logger = LoggerLoader.getLogger(MethodDictionary.class);
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private static final String KEY_DICTIONARY_ENABLE = "pigeon.codec.dictionary.enable";
+
+    private static final String KEY_DICTIONARY_SIZE_MAX = "pigeon.codec.dictionary.size.max";
+
+    // 发出这么多次定义仍没有收到任何确认，认为对端不支持
+    private static final int MAX_UNACKED_DEFINES = 32;
+
+    // 请求没有超时时间时待确认定义的保留时间
+    private static final long DEFAULT_ACK_EXPIRE_MILLIS = 60000;
+
+    private static volatile boolean isEnable = configManager.getBooleanValue(KEY_DICTIONARY_ENABLE, true);
+
+    private static volatile int maxSize = configManager.getIntValue(KEY_DICTIONARY_SIZE_MAX, 1024);
+
+    static {
+        configManager.registerConfigChangeListener(new InnerConfigChangeListener());
+    }
+
+    // 调用端
+    private final ConcurrentHashMap<MethodKey, Entry> entries = new ConcurrentHashMap<MethodKey, Entry>();
+
+    private final ConcurrentHashMap<Integer, Entry> entriesById = new ConcurrentHashMap<Integer, Entry>();
+
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    private final AtomicInteger unackedDefines = new AtomicInteger();
+
+    private volatile boolean acked = false;
+
+    // 服务端
+    private final ConcurrentHashMap<Integer, MethodKey> definitions = new ConcurrentHashMap<Integer, MethodKey>();
+
+    private final ConcurrentHashMap<Long, PendingAck> pendingAcks = new ConcurrentHashMap<Long, PendingAck>();
+
+    public static boolean isEnable() {
+        return isEnable;
+    }
+
+    public static void setEnable(boolean enable) {
+        isEnable = enable;
+    }
+
+    /**
+     * 调用端编码前调用，返回实际要发送的请求，原请求不会被修改
+     *
+     * @param request
+     * @return
+     */
+    public InvocationRequest compact(InvocationRequest request) {
+        if (!isEnable || request.getClass() != DefaultRequest.class
+                || request.getMessageType() != Constants.MESSAGE_TYPE_SERVICE || request.getServiceName() == null
+                || SerializerType.isThrift(request.getSerialize())
+                || (!acked && unackedDefines.get() > MAX_UNACKED_DEFINES)) {
+            return request;
+        }
+        DefaultRequest defaultRequest = (DefaultRequest) request;
+        MethodKey key = new MethodKey(defaultRequest.getServiceName(), defaultRequest.getMethodName(),
+                defaultRequest.getVersion(), defaultRequest.getApp());
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.confirmed) {
+                // methodName不能为null，protobuf不接受null字段
+                DefaultRequest compacted = copy(defaultRequest, ID_PREFIX + String.valueOf(entry.id), "", null, null);
+                compacted.setRequestValues(defaultRequest.getRequestValues());
+                return compacted;
+            }
+            // 定义已由其他请求发出，确认前发送完整请求
+            return request;
+        }
+        if (defaultRequest.getCallType() != Constants.CALLTYPE_REPLY || entries.size() >= maxSize) {
+            return request;
+        }
+        Entry newEntry = new Entry(nextId.incrementAndGet(), defaultRequest.getSequence());
+        entry = entries.putIfAbsent(key, newEntry);
+        if (entry != null) {
+            return request;
+        }
+        entry = newEntry;
+        entriesById.put(entry.id, entry);
+        DefaultRequest define = copy(defaultRequest, defaultRequest.getServiceName(), defaultRequest.getMethodName(),
+                defaultRequest.getVersion(), defaultRequest.getApp());
+        Map<String, Serializable> requestValues = defaultRequest.getRequestValues() == null
+                ? new HashMap<String, Serializable>() : new HashMap<String, Serializable>(defaultRequest.getRequestValues());
+        requestValues.put(KEY_DEFINE, String.valueOf(entry.id));
+        define.setRequestValues(requestValues);
+        if (!acked) {
+            unackedDefines.incrementAndGet();
+        }
+        return define;
+    }
+
+    /**
+     * 调用端解码响应后调用，只接受对自己发出的定义的确认
+     *
+     * @param response
+     */
+    public void receiveAck(InvocationResponse response) {
+        // 与compact一致，只有DefaultResponse会带确认，GenericResponse不支持responseValues
+        if (response.getClass() != DefaultResponse.class) {
+            return;
+        }
+        Map<String, Serializable> responseValues = response.getResponseValues();
+        if (responseValues == null) {
+            return;
+        }
+        Serializable ack = responseValues.remove(KEY_ACK);
+        if (ack != null) {
+            Entry entry = entriesById.get(Integer.valueOf(ack.toString()));
+            if (entry != null && entry.defineSequence == response.getSequence()) {
+                entry.confirmed = true;
+                acked = true;
+            }
+        }
+    }
+
+    /**
+     * 服务端解码请求后调用，还原压缩的请求或者记录请求中的定义
+     *
+     * @param request
+     */
+    public void resolve(InvocationRequest request) {
+        if (!(request instanceof DefaultRequest)) {
+            return;
+        }
+        DefaultRequest defaultRequest = (DefaultRequest) request;
+        String serviceName = defaultRequest.getServiceName();
+        if (serviceName != null && serviceName.length() > 1 && serviceName.charAt(0) == ID_PREFIX) {
+            MethodKey key = null;
+            try {
+                key = definitions.get(Integer.valueOf(serviceName.substring(1)));
+            } catch (NumberFormatException e) {
+            }
+            if (key == null) {
+                throw new BadRequestException("unknown method id:" + serviceName);
+            }
+            defaultRequest.setServiceName(key.serviceName);
+            defaultRequest.setMethodName(key.methodName);
+            defaultRequest.setVersion(key.version);
+            defaultRequest.setApp(key.app);
+            return;
+        }
+        Map<String, Serializable> requestValues = defaultRequest.getRequestValues();
+        if (requestValues == null) {
+            return;
+        }
+        Serializable define = requestValues.remove(KEY_DEFINE);
+        if (define == null || !isEnable || defaultRequest.getCallType() != Constants.CALLTYPE_REPLY) {
+            return;
+        }
+        Integer id;
+        try {
+            id = Integer.valueOf(define.toString());
+        } catch (NumberFormatException e) {
+            return;
+        }
+        MethodKey key = new MethodKey(serviceName, defaultRequest.getMethodName(), defaultRequest.getVersion(),
+                defaultRequest.getApp());
+        long now = System.currentTimeMillis();
+        if (pendingAcks.size() >= maxSize) {
+            expirePendingAcks(now);
+        }
+        MethodKey last = definitions.get(id);
+        if (last == null) {
+            if (definitions.size() >= maxSize || pendingAcks.size() >= maxSize) {
+                return;
+            }
+            last = definitions.putIfAbsent(id, key);
+        }
+        if ((last == null || last.equals(key)) && pendingAcks.size() < maxSize) {
+            long timeout = defaultRequest.getTimeout() > 0 ? defaultRequest.getTimeout() : DEFAULT_ACK_EXPIRE_MILLIS;
+            pendingAcks.put(defaultRequest.getSequence(), new PendingAck(id, now + timeout));
+        }
+    }
+
+    /**
+     * 清理已经超过请求超时时间仍未写回响应的待确认定义
+     *
+     * @param now
+     */
+    private void expirePendingAcks(long now) {
+        for (Iterator<PendingAck> it = pendingAcks.values().iterator(); it.hasNext(); ) {
+            if (it.next().expireTime < now) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 服务端编码响应前调用，对请求中的定义进行确认
+     *
+     * @param response
+     */
+    public void ack(InvocationResponse response) {
+        if (pendingAcks.isEmpty() || response.getClass() != DefaultResponse.class) {
+            return;
+        }
+        PendingAck pendingAck = pendingAcks.remove(response.getSequence());
+        if (pendingAck != null) {
+            Map<String, Serializable> responseValues = response.getResponseValues();
+            if (responseValues == null) {
+                responseValues = new HashMap<String, Serializable>();
+                response.setResponseValues(responseValues);
+            }
+            responseValues.put(KEY_ACK, String.valueOf(pendingAck.id));
+        }
+    }
+
+    private static DefaultRequest copy(DefaultRequest request, String serviceName, String methodName, String version,
+                                       String app) {
+        DefaultRequest copy = new DefaultRequest(serviceName, methodName, request.getParameters(),
+                request.getSerialize(), request.getMessageType(), request.getTimeout(), request.getCallType(),
+                request.getSequence());
+        copy.setVersion(version);
+        copy.setApp(app);
+        copy.setContext(request.getContext());
+        copy.setGlobalValues(request.getGlobalValues());
+        copy.setCreateMillisTime(request.getCreateMillisTime());
+        return copy;
+    }
+
+    private static class Entry {
+
+        private final int id;
+
+        private volatile boolean confirmed = false;
+
+        private final long defineSequence;
+
+        Entry(int id, long defineSequence) {
+            this.id = id;
+            this.defineSequence = defineSequence;
+        }
+    }
+
+    private static class PendingAck {
+
+        private final int id;
+
+        private final long expireTime;
+
+        PendingAck(int id, long expireTime) {
+            this.id = id;
+            this.expireTime = expireTime;
+        }
+    }
+
+    private static class MethodKey {
+
+        private final String serviceName;
+
+        private final String methodName;
+
+        private final String version;
+
+        private final String app;
+
+        private final int hash;
+
+        MethodKey(String serviceName, String methodName, String version, String app) {
+            this.serviceName = serviceName;
+            this.methodName = methodName;
+            this.version = version;
+            this.app = app;
+            int h = serviceName.hashCode();
+            h = 31 * h + (methodName != null ? methodName.hashCode() : 0);
+            h = 31 * h + (version != null ? version.hashCode() : 0);
+            h = 31 * h + (app != null ? app.hashCode() : 0);
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MethodKey)) {
+                return false;
+            }
+            MethodKey other = (MethodKey) o;
+            return hash == other.hash && serviceName.equals(other.serviceName) && equals(methodName, other.methodName)
+                    && equals(version, other.version) && equals(app, other.app);
+        }
+
+        private static boolean equals(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class InnerConfigChangeListener implements ConfigChangeListener {
+
+        @Override
+        public void onKeyUpdated(String key, String value) {
+            try {
+                if (key.endsWith(KEY_DICTIONARY_ENABLE)) {
+                    isEnable = Boolean.valueOf(value);
+                } else if (key.endsWith(KEY_DICTIONARY_SIZE_MAX)) {
+                    maxSize = Integer.valueOf(value);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("invalid value for key " + key, e);
+            }
+        }
+
+        @Override
+        public void onKeyAdded(String key, String value) {
+
+        }
+
+        @Override
+        public void onKeyRemoved(String key) {
+
+        }
+    }
+}
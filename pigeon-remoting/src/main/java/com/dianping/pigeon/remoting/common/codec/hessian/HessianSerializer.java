@@ -10,7 +10,12 @@ import java.io.OutputStream;
 
 import com.caucho.hessian.io.Hessian2Input;
 import com.caucho.hessian.io.Hessian2Output;
+import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.remoting.common.codec.AbstractSerializer;
+import com.dianping.pigeon.remoting.common.codec.BufferSerializer;
+import com.dianping.pigeon.remoting.common.codec.CodecBuffer;
+import com.dianping.pigeon.remoting.common.codec.CodecBufferInputStream;
+import com.dianping.pigeon.remoting.common.codec.CodecBufferOutputStream;
 import com.dianping.pigeon.remoting.common.exception.SerializationException;
 
 /**
@@ -18,17 +23,54 @@ import com.dianping.pigeon.remoting.common.exception.SerializationException;
  * @Sep 5, 2013
  * 
  */
-public class HessianSerializer extends AbstractSerializer {
+public class HessianSerializer extends AbstractSerializer implements BufferSerializer {
+
+	private static final String KEY_HESSIAN_REUSE_ENABLE = "pigeon.codec.hessian.reuse.enable";
+
+	// 每个线程复用一组Hessian2Input/Hessian2Output，避免每个消息重新分配缓冲区和引用表
+	private static final boolean isReuseEnable = ConfigManagerLoader.getConfigManager().getBooleanValue(
+			KEY_HESSIAN_REUSE_ENABLE, true) && ReusableHessian2Input.isSupported()
+			&& ReusableHessian2Output.isSupported();
 
 	HessianSerializerFactory sessianSerializerFactory = new HessianSerializerFactory();
-	
+
+	// 序列化过程中可能重入(自定义序列化器中再次调用)，正在使用的实例置为null，重入时退化为新建实例
+	private final ThreadLocal<ReusableHessian2Input> inputs = new ThreadLocal<ReusableHessian2Input>();
+
+	private final ThreadLocal<ReusableHessian2Output> outputs = new ThreadLocal<ReusableHessian2Output>();
+
 	@Override
 	public Object deserializeResponse(InputStream is) throws SerializationException {
 		return deserializeRequest(is);
 	}
 
+	// hessian只支持流，直接在帧缓冲区上包装流视图，省去netty流包装的额外开销
+
+	@Override
+	public Object deserializeRequest(CodecBuffer buffer) throws SerializationException {
+		return deserializeRequest(new CodecBufferInputStream(buffer));
+	}
+
+	@Override
+	public void serializeRequest(CodecBuffer buffer, Object obj) throws SerializationException {
+		serializeRequest(new CodecBufferOutputStream(buffer), obj);
+	}
+
+	@Override
+	public Object deserializeResponse(CodecBuffer buffer) throws SerializationException {
+		return deserializeRequest(new CodecBufferInputStream(buffer));
+	}
+
+	@Override
+	public void serializeResponse(CodecBuffer buffer, Object obj) throws SerializationException {
+		serializeRequest(new CodecBufferOutputStream(buffer), obj);
+	}
+
 	@Override
 	public Object deserializeRequest(InputStream is) throws SerializationException {
+		if (isReuseEnable) {
+			return deserializeReused(is);
+		}
 		Hessian2Input h2in = new Hessian2Input(is);
 		h2in.setSerializerFactory(sessianSerializerFactory);
 		try {
@@ -44,6 +86,25 @@ public class HessianSerializer extends AbstractSerializer {
 		}
 	}
 
+	private Object deserializeReused(InputStream is) throws SerializationException {
+		ReusableHessian2Input h2in = inputs.get();
+		if (h2in == null) {
+			h2in = new ReusableHessian2Input();
+			h2in.setSerializerFactory(sessianSerializerFactory);
+		} else {
+			inputs.set(null);
+		}
+		try {
+			h2in.attach(is);
+			Object obj = h2in.readObject();
+			h2in.release();
+			inputs.set(h2in);
+			return obj;
+		} catch (Throwable t) {
+			throw new SerializationException(t);
+		}
+	}
+
 	@Override
 	public void serializeResponse(OutputStream os, Object obj) throws SerializationException {
 		serializeRequest(os, obj);
@@ -51,6 +112,10 @@ public class HessianSerializer extends AbstractSerializer {
 
 	@Override
 	public void serializeRequest(OutputStream os, Object obj) throws SerializationException {
+		if (isReuseEnable) {
+			serializeReused(os, obj);
+			return;
+		}
 		Hessian2Output h2out = new Hessian2Output(os);
 		h2out.setSerializerFactory(sessianSerializerFactory);
 		try {
@@ -67,4 +132,23 @@ public class HessianSerializer extends AbstractSerializer {
 		}
 	}
 
+	private void serializeReused(OutputStream os, Object obj) throws SerializationException {
+		ReusableHessian2Output h2out = outputs.get();
+		if (h2out == null) {
+			h2out = new ReusableHessian2Output();
+			h2out.setSerializerFactory(sessianSerializerFactory);
+		} else {
+			outputs.set(null);
+		}
+		try {
+			h2out.attach(os);
+			h2out.writeObject(obj);
+			h2out.flush();
+			h2out.release();
+			outputs.set(h2out);
+		} catch (Throwable t) {
+			throw new SerializationException(t);
+		}
+	}
+
 }
@@ -0,0 +1,60 @@
+package com.dianping.pigeon.remoting.common.codec.hessian;
+
+import java.io.InputStream;
+import java.lang.reflect.Field;
+
+import com.caucho.hessian.io.Hessian2Input;
+
+/**
+ * 可以在多个消息之间复用的Hessian2Input，复用内部缓冲区和引用表，每个消息开始前重置输入流、缓冲区位置，
+ * 清空引用表和类定义表。hessian版本不支持时(字段不存在)isSupported返回false
+ */
+class ReusableHessian2Input extends Hessian2Input {
+
+	private static final Field isField = getField("_is");
+
+	private static final Field offsetField = getField("_offset");
+
+	private static final Field lengthField = getField("_length");
+
+	ReusableHessian2Input() {
+		super(null);
+	}
+
+	static boolean isSupported() {
+		return isField != null && offsetField != null && lengthField != null;
+	}
+
+	void attach(InputStream is) throws IllegalAccessException {
+		isField.set(this, is);
+		offsetField.setInt(this, 0);
+		lengthField.setInt(this, 0);
+	}
+
+	/**
+	 * 消息读取完成后调用，读取失败的实例不应再复用
+	 */
+	void release() throws IllegalAccessException {
+		isField.set(this, null);
+		if (_refs != null) {
+			_refs.clear();
+		}
+		if (_classDefs != null) {
+			_classDefs.clear();
+		}
+		if (_types != null) {
+			_types.clear();
+		}
+	}
+
+	private static Field getField(String name) {
+		try {
+			Field field = Hessian2Input.class.getDeclaredField(name);
+			field.setAccessible(true);
+			return field;
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,58 @@
+package com.dianping.pigeon.remoting.common.codec.hessian;
+
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.Map;
+
+import com.caucho.hessian.io.Hessian2Output;
+
+/**
+ * 可以在多个消息之间复用的Hessian2Output，复用内部缓冲区和引用表，每个消息结束后清空引用表和类定义表，
+ * 保证每个消息可以被独立解码。hessian版本不支持时(字段不存在)isSupported返回false
+ */
+class ReusableHessian2Output extends Hessian2Output {
+
+	private static final Field classRefsField = getField("_classRefs");
+
+	private static final Field typeRefsField = getField("_typeRefs");
+
+	ReusableHessian2Output() {
+		super(null);
+	}
+
+	static boolean isSupported() {
+		return classRefsField != null && typeRefsField != null;
+	}
+
+	void attach(OutputStream os) {
+		this._os = os;
+	}
+
+	/**
+	 * 消息已经完整写出(flush)后调用，写出失败的实例不应再复用
+	 */
+	void release() throws IllegalAccessException {
+		this._os = null;
+		resetReferences();
+		clear(classRefsField);
+		clear(typeRefsField);
+	}
+
+	private void clear(Field field) throws IllegalAccessException {
+		Map<?, ?> refs = (Map<?, ?>) field.get(this);
+		if (refs != null) {
+			refs.clear();
+		}
+	}
+
+	private static Field getField(String name) {
+		try {
+			Field field = Hessian2Output.class.getDeclaredField(name);
+			field.setAccessible(true);
+			return field;
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+}
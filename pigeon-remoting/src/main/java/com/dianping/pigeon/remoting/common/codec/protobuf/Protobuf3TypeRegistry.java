@@ -0,0 +1,116 @@
+package com.dianping.pigeon.remoting.common.codec.protobuf;
+
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import org.objenesis.Objenesis;
+import org.objenesis.ObjenesisStd;
+import org.objenesis.instantiator.ObjectInstantiator;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * protobuf3类型注册表，按type url缓存Parser，异常按类名缓存实例化器，避免每次解码都反射查找
+ * <p>
+ * 服务发布和引用时预先注册接口上出现的Message类型，其余类型在第一次解码时解析并缓存
+ */
+public class Protobuf3TypeRegistry {
+
+    private static final Logger logger = LoggerLoader.getLogger(Protobuf3TypeRegistry.class);
+
+    private static final ConcurrentHashMap<String, Parser<? extends Message>> parsers =
+            new ConcurrentHashMap<String, Parser<? extends Message>>();
+
+    private static final ConcurrentHashMap<String, ObjectInstantiator> exceptionInstantiators =
+            new ConcurrentHashMap<String, ObjectInstantiator>();
+
+    private static final Objenesis objenesis = new ObjenesisStd(true);
+
+    private static final Field detailMessageField;
+
+    static {
+        Field field = null;
+        try {
+            field = Throwable.class.getDeclaredField("detailMessage");
+            field.setAccessible(true);
+        } catch (Throwable t) {
+            logger.warn("failed to access Throwable.detailMessage:" + t.getMessage());
+        }
+        detailMessageField = field;
+    }
+
+    /**
+     * 注册服务接口方法参数和返回值中的Message类型
+     *
+     * @param serviceInterface
+     */
+    public static void register(Class<?> serviceInterface) {
+        if (serviceInterface == null) {
+            return;
+        }
+        for (Method method : serviceInterface.getMethods()) {
+            for (Class<?> parameterType : method.getParameterTypes()) {
+                register0(parameterType);
+            }
+            register0(method.getReturnType());
+        }
+    }
+
+    private static void register0(Class<?> type) {
+        if (!Message.class.isAssignableFrom(type) || type == Message.class || parsers.containsKey(type.getName())) {
+            return;
+        }
+        try {
+            parsers.putIfAbsent(type.getName(), resolveParser(type));
+        } catch (Throwable t) {
+            // 抽象类型等无法预先解析的，等第一次解码时再处理
+            if (logger.isDebugEnabled()) {
+                logger.debug("failed to register protobuf type:" + type.getName(), t);
+            }
+        }
+    }
+
+    public static Parser<? extends Message> getParser(String typeUrl) throws Exception {
+        Parser<? extends Message> parser = parsers.get(typeUrl);
+        if (parser == null) {
+            parser = resolveParser(Class.forName(typeUrl));
+            Parser<? extends Message> last = parsers.putIfAbsent(typeUrl, parser);
+            if (last != null) {
+                parser = last;
+            }
+        }
+        return parser;
+    }
+
+    private static Parser<? extends Message> resolveParser(Class<?> type) throws Exception {
+        Method method = type.getMethod("getDefaultInstance");
+        return ((Message) method.invoke(null)).getParserForType();
+    }
+
+    /**
+     * 按异常类名创建异常实例，不调用构造函数，直接设置detailMessage
+     *
+     * @param className
+     * @param detailMessage
+     * @return
+     * @throws Exception
+     */
+    public static Object newException(String className, String detailMessage) throws Exception {
+        ObjectInstantiator instantiator = exceptionInstantiators.get(className);
+        if (instantiator == null) {
+            instantiator = objenesis.getInstantiatorOf(Class.forName(className));
+            ObjectInstantiator last = exceptionInstantiators.putIfAbsent(className, instantiator);
+            if (last != null) {
+                instantiator = last;
+            }
+        }
+        Object exception = instantiator.newInstance();
+        if (detailMessageField != null && exception instanceof Throwable) {
+            detailMessageField.set(exception, detailMessage);
+        }
+        return exception;
+    }
+}
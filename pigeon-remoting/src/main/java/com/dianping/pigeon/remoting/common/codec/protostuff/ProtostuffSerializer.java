@@ -8,6 +8,10 @@ import org.objenesis.Objenesis;
 import org.objenesis.ObjenesisStd;
 
 import com.dianping.pigeon.remoting.common.codec.AbstractSerializer;
+import com.dianping.pigeon.remoting.common.codec.BufferSerializer;
+import com.dianping.pigeon.remoting.common.codec.CodecBuffer;
+import com.dianping.pigeon.remoting.common.codec.CodecBufferInputStream;
+import com.dianping.pigeon.remoting.common.codec.CodecBufferOutputStream;
 import com.dianping.pigeon.remoting.common.exception.SerializationException;
 import com.dianping.pigeon.remoting.common.util.InvocationUtils;
 
@@ -16,10 +20,19 @@ import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
 import io.protostuff.runtime.RuntimeSchema;
 
-public class ProtostuffSerializer extends AbstractSerializer {
+public class ProtostuffSerializer extends AbstractSerializer implements BufferSerializer {
 
 	private static ConcurrentHashMap<Class<?>, Schema<?>> cachedSchema = new ConcurrentHashMap<Class<?>, Schema<?>>();
 	private static Objenesis objenesis = new ObjenesisStd(true);
+	private static final int BUFFER_SIZE = 4096;
+	// 每个线程复用一个buffer：序列化时分段直接写入输出流(帧缓冲区)，反序列化时作为读缓冲区，不再生成完整的中间byte[]
+	private static final ThreadLocal<LinkedBuffer> buffers = new ThreadLocal<LinkedBuffer>() {
+
+		@Override
+		protected LinkedBuffer initialValue() {
+			return LinkedBuffer.allocate(BUFFER_SIZE);
+		}
+	};
 
 	public ProtostuffSerializer() {
 	}
@@ -36,16 +49,59 @@ public class ProtostuffSerializer extends AbstractSerializer {
 	}
 
 	public Object deserializeObject(InputStream is, Class<?> type) throws SerializationException {
+		LinkedBuffer buffer = buffers.get();
+		try {
+			Object message = objenesis.newInstance(type);
+			Schema schema = getSchema(type);
+			ProtostuffIOUtil.mergeFrom(is, message, schema, buffer);
+			return message;
+		} catch (Throwable e) {
+			throw new SerializationException(e.getMessage(), e);
+		} finally {
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * 缓冲区基于数组时直接从底层数组解析，不经过读缓冲区拷贝
+	 */
+	public Object deserializeObject(CodecBuffer buffer, Class<?> type) throws SerializationException {
+		if (!buffer.hasArray()) {
+			return deserializeObject(new CodecBufferInputStream(buffer), type);
+		}
 		try {
 			Object message = objenesis.newInstance(type);
 			Schema schema = getSchema(type);
-			ProtostuffIOUtil.mergeFrom(is, message, schema);
+			int length = buffer.readableBytes();
+			ProtostuffIOUtil.mergeFrom(buffer.array(), buffer.arrayOffset() + buffer.readerIndex(), length, message,
+					schema);
+			buffer.skipBytes(length);
 			return message;
 		} catch (Throwable e) {
 			throw new SerializationException(e.getMessage(), e);
 		}
 	}
 
+	@Override
+	public Object deserializeRequest(CodecBuffer buffer) throws SerializationException {
+		return deserializeObject(buffer, InvocationUtils.getRequestClass());
+	}
+
+	@Override
+	public void serializeRequest(CodecBuffer buffer, Object obj) throws SerializationException {
+		serializeRequest(new CodecBufferOutputStream(buffer), obj);
+	}
+
+	@Override
+	public Object deserializeResponse(CodecBuffer buffer) throws SerializationException {
+		return deserializeObject(buffer, InvocationUtils.getResponseClass());
+	}
+
+	@Override
+	public void serializeResponse(CodecBuffer buffer, Object obj) throws SerializationException {
+		serializeRequest(new CodecBufferOutputStream(buffer), obj);
+	}
+
 	@Override
 	public Object deserializeRequest(InputStream is) throws SerializationException {
 		return deserializeObject(is, InvocationUtils.getRequestClass());
@@ -53,10 +109,10 @@ public class ProtostuffSerializer extends AbstractSerializer {
 
 	@Override
 	public void serializeRequest(OutputStream os, Object obj) throws SerializationException {
-		LinkedBuffer buffer = LinkedBuffer.allocate(1024);
+		LinkedBuffer buffer = buffers.get();
 		try {
 			Schema schema = getSchema(obj.getClass());
-			os.write(ProtostuffIOUtil.toByteArray(obj, schema, buffer));
+			ProtostuffIOUtil.writeTo(os, obj, schema, buffer);
 		} catch (Throwable e) {
 			throw new SerializationException(e.getMessage(), e);
 		} finally {
@@ -2,6 +2,7 @@ package com.dianping.pigeon.remoting.common.codec.thrift;
 
 import com.dianping.pigeon.remoting.common.domain.generic.GenericRequest;
 import com.dianping.pigeon.remoting.common.domain.generic.GenericResponse;
+import com.dianping.pigeon.remoting.common.domain.generic.ThriftMapper;
 import com.dianping.pigeon.remoting.common.domain.generic.thrift.Header;
 import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
 import org.apache.thrift.protocol.TProtocol;
@@ -32,10 +33,21 @@ public abstract class AbstractThriftSerializer {
                                                   TProtocol protocol, Header header)
             throws Exception;
 
-    protected abstract void doSerializeResponse(GenericResponse response, TProtocol protocol,
-                                                Header header, DynamicByteArrayOutputStream bos)
+    /**
+     * 写响应的header和body，header中的状态由实现决定，通过writeResponseHeader写入
+     */
+    protected abstract void doSerializeResponse(GenericResponse response, TProtocol protocol, FrameOutput output)
             throws Exception;
 
+    protected static void writeResponseHeader(TProtocol protocol, FrameOutput output, GenericResponse response,
+                                              byte status) throws Exception {
+        ThriftHeaderWriter.writeResponseHeader(protocol, output, response, status);
+    }
+
+    protected static byte getStatus(GenericResponse response) {
+        return ThriftMapper.getStatus(response);
+    }
+
     protected static int getSequenceId() {
         return SEQID.getAndIncrement();
     }
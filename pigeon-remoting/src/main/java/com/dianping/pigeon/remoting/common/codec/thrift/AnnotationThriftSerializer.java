@@ -18,23 +18,44 @@ import com.dianping.pigeon.remoting.common.domain.generic.StatusCode;
 import com.dianping.pigeon.remoting.common.domain.generic.ThriftMapper;
 import com.dianping.pigeon.remoting.common.domain.generic.thrift.Header;
 import com.dianping.pigeon.remoting.common.exception.SerializationException;
-import com.dianping.pigeon.util.ClassUtils;
+import com.facebook.swift.codec.ThriftCodecManager;
 
 /**
  * @author qi.yin 2016/05/23 下午4:28.
  */
 public class AnnotationThriftSerializer extends AbstractThriftSerializer {
 
-	private ConcurrentMap<String, ThriftClientMetadata> clientMetadatas = new ConcurrentHashMap<String, ThriftClientMetadata>();
+	// 客户端、服务端共用，每个struct只编译一次codec
+	private final ThriftCodecManager codecManager = new ThriftCodecManager();
 
-	private ConcurrentMap<String, ThriftServerMetadata> serverMetadatas = new ConcurrentHashMap<String, ThriftServerMetadata>();
+	private ConcurrentMap<Class<?>, ThriftClientMetadata> clientMetadatas = new ConcurrentHashMap<Class<?>, ThriftClientMetadata>();
+
+	private ConcurrentMap<Class<?>, ThriftServerMetadata> serverMetadatas = new ConcurrentHashMap<Class<?>, ThriftServerMetadata>();
+
+	/**
+	 * 服务发布时预先生成各方法的参数、返回值编解码器
+	 *
+	 * @param serviceInterface
+	 */
+	public void registerServer(Class<?> serviceInterface) {
+		getServerMetadata(serviceInterface);
+	}
+
+	/**
+	 * 服务引用时预先生成各方法的参数、返回值编解码器
+	 *
+	 * @param serviceInterface
+	 */
+	public void registerClient(Class<?> serviceInterface) {
+		getClientMetadata(serviceInterface);
+	}
 
 	@Override
 	protected void doDeserializeRequest(GenericRequest request, TProtocol protocol) throws Exception {
 		// body
 		TMessage message = protocol.readMessageBegin();
 
-		ThriftMethodProcessor methodProcessor = getMethodProcessor(request.getServiceInterface().getName(),
+		ThriftMethodProcessor methodProcessor = getMethodProcessor(request.getServiceInterface(),
 				message.name);
 
 		if (methodProcessor == null) {
@@ -53,7 +74,7 @@ public class AnnotationThriftSerializer extends AbstractThriftSerializer {
 
 	protected void doSerializeRequest(GenericRequest request, TProtocol protocol) throws Exception {
 
-		ThriftMethodHandler methodHandler = getMethodHandler(request.getServiceInterface().getName(),
+		ThriftMethodHandler methodHandler = getMethodHandler(request.getServiceInterface(),
 				request.getMethodName());
 		if (methodHandler == null) {
 			throw new SerializationException("@ThriftMethod annotation is required for " + request.getServiceInterface().getName()
@@ -68,7 +89,7 @@ public class AnnotationThriftSerializer extends AbstractThriftSerializer {
 		// body
 		TMessage message = protocol.readMessageBegin();
 
-		ThriftMethodHandler methodHandler = getMethodHandler(request.getServiceInterface().getName(), message.name);
+		ThriftMethodHandler methodHandler = getMethodHandler(request.getServiceInterface(), message.name);
 		response.setSeqId(message.seqid);
 
 		// body
@@ -90,21 +111,22 @@ public class AnnotationThriftSerializer extends AbstractThriftSerializer {
 		protocol.readMessageEnd();
 	}
 
-	protected void doSerializeResponse(GenericResponse response, TProtocol protocol, Header header,
-			DynamicByteArrayOutputStream bos) throws Exception {
+	protected void doSerializeResponse(GenericResponse response, TProtocol protocol, FrameOutput output)
+			throws Exception {
 
-		ThriftMethodProcessor methodProcessor = getMethodProcessor(response.getServiceInterface().getName(),
+		ThriftMethodProcessor methodProcessor = getMethodProcessor(response.getServiceInterface(),
 				response.getMethodName());
 
 		TApplicationException applicationException = null;
 		TMessage message;
 
 		boolean isUserException = false;
+		byte status = getStatus(response);
 
 		if (response.hasException()) {
 
 			if (methodProcessor.isUserException(response.getReturn())) {
-				header.responseInfo.setStatus(StatusCode.ApplicationException.getCode());
+				status = StatusCode.ApplicationException.getCode();
 				isUserException = true;
 			} else {
 				applicationException = new TApplicationException(((Throwable) response.getReturn()).getMessage());
@@ -119,9 +141,7 @@ public class AnnotationThriftSerializer extends AbstractThriftSerializer {
 		}
 
 		// header
-		header.write(protocol);
-
-		short headerLength = (short) (bos.size() - HEADER_FIELD_LENGTH);
+		writeResponseHeader(protocol, output, response, status);
 
 		protocol.writeMessageBegin(message);
 		switch (message.type) {
@@ -135,43 +155,41 @@ public class AnnotationThriftSerializer extends AbstractThriftSerializer {
 
 		protocol.writeMessageEnd();
 		protocol.getTransport().flush();
+	}
 
-		int messageLength = bos.size();
-
-		try {
-			bos.setWriteIndex(0);
-			protocol.writeI16(headerLength);
-		} finally {
-			bos.setWriteIndex(messageLength);
-		}
+	private ThriftMethodProcessor getMethodProcessor(Class<?> serviceInterface, String methodName) {
+		return getServerMetadata(serviceInterface).getMethodProcessor(methodName);
 	}
 
-	private ThriftMethodProcessor getMethodProcessor(String serviceName, String methodName)
-			throws ClassNotFoundException {
+	private ThriftMethodHandler getMethodHandler(Class<?> serviceInterface, String methodName) {
+		return getClientMetadata(serviceInterface).getMethodHandler(methodName);
+	}
 
-		ThriftServerMetadata serverMetadata = serverMetadatas.get(serviceName);
+	private ThriftServerMetadata getServerMetadata(Class<?> serviceInterface) {
+		ThriftServerMetadata serverMetadata = serverMetadatas.get(serviceInterface);
 
 		if (serverMetadata == null) {
-			Class<?> serverType = ClassUtils.loadClass(serviceName);
-
-			serverMetadata = new ThriftServerMetadata(serverType, serviceName);
-			serverMetadatas.putIfAbsent(serviceName, serverMetadata);
+			serverMetadata = new ThriftServerMetadata(serviceInterface, serviceInterface.getName(), codecManager);
+			ThriftServerMetadata last = serverMetadatas.putIfAbsent(serviceInterface, serverMetadata);
+			if (last != null) {
+				serverMetadata = last;
+			}
 		}
 
-		return serverMetadata.getMethodProcessor(methodName);
+		return serverMetadata;
 	}
 
-	private ThriftMethodHandler getMethodHandler(String serviceName, String methodName) throws ClassNotFoundException {
-
-		ThriftClientMetadata clientMetadata = clientMetadatas.get(serviceName);
+	private ThriftClientMetadata getClientMetadata(Class<?> serviceInterface) {
+		ThriftClientMetadata clientMetadata = clientMetadatas.get(serviceInterface);
 
 		if (clientMetadata == null) {
-			Class<?> serverType = ClassUtils.loadClass(serviceName);
-
-			clientMetadata = new ThriftClientMetadata(serverType, serviceName);
-			clientMetadatas.putIfAbsent(serviceName, clientMetadata);
+			clientMetadata = new ThriftClientMetadata(serviceInterface, serviceInterface.getName(), codecManager);
+			ThriftClientMetadata last = clientMetadatas.putIfAbsent(serviceInterface, clientMetadata);
+			if (last != null) {
+				clientMetadata = last;
+			}
 		}
 
-		return clientMetadata.getMethodHandler(methodName);
+		return clientMetadata;
 	}
 }
@@ -0,0 +1,80 @@
+package com.dianping.pigeon.remoting.common.codec.thrift;
+
+import com.dianping.pigeon.remoting.common.codec.CodecBuffer;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+/**
+ * 直接读写CodecBuffer的thrift transport，缓冲区基于数组时向protocol暴露底层数组，protocol可以直接从数组读取
+ */
+public class CodecBufferTransport extends TTransport implements FrameOutput {
+
+    private final CodecBuffer buffer;
+
+    public CodecBufferTransport(CodecBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public CodecBuffer getCodecBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void open() throws TTransportException {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws TTransportException {
+        int available = buffer.readableBytes();
+        if (available <= 0) {
+            throw new TTransportException(TTransportException.END_OF_FILE);
+        }
+        len = Math.min(available, len);
+        buffer.readBytes(buf, off, len);
+        return len;
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) throws TTransportException {
+        buffer.writeBytes(buf, off, len);
+    }
+
+    @Override
+    public byte[] getBuffer() {
+        return buffer.hasArray() ? buffer.array() : null;
+    }
+
+    @Override
+    public int getBufferPosition() {
+        return buffer.hasArray() ? buffer.arrayOffset() + buffer.readerIndex() : 0;
+    }
+
+    @Override
+    public int getBytesRemainingInBuffer() {
+        return buffer.hasArray() ? buffer.readableBytes() : -1;
+    }
+
+    @Override
+    public void consumeBuffer(int len) {
+        buffer.skipBytes(len);
+    }
+
+    @Override
+    public int position() {
+        return buffer.writerIndex();
+    }
+
+    @Override
+    public void setShort(int position, int value) {
+        buffer.setShort(position, value);
+    }
+}
@@ -7,7 +7,7 @@ import java.io.ByteArrayOutputStream;
  * @author qi.yin
  *         2016/05/23  上午12:03.
  */
-public class DynamicByteArrayOutputStream extends ByteArrayOutputStream {
+public class DynamicByteArrayOutputStream extends ByteArrayOutputStream implements FrameOutput {
 
     public DynamicByteArrayOutputStream() {
         super(218);
@@ -21,4 +21,15 @@ public class DynamicByteArrayOutputStream extends ByteArrayOutputStream {
         count = index;
     }
 
+    @Override
+    public int position() {
+        return count;
+    }
+
+    @Override
+    public void setShort(int position, int value) {
+        buf[position] = (byte) (value >>> 8);
+        buf[position + 1] = (byte) value;
+    }
+
 }
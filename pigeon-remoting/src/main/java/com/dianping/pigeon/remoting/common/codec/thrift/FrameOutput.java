@@ -0,0 +1,11 @@
+package com.dianping.pigeon.remoting.common.codec.thrift;
+
+/**
+ * thrift序列化的输出位置，用于预留长度并在写完后原地回填
+ */
+public interface FrameOutput {
+
+    int position();
+
+    void setShort(int position, int value);
+}
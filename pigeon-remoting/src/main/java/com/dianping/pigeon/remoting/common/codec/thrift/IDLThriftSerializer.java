@@ -292,8 +292,7 @@ public class IDLThriftSerializer extends AbstractThriftSerializer {
         protocol.readMessageEnd();
     }
 
-    protected void doSerializeResponse(GenericResponse response, TProtocol protocol,
-                                       Header header, DynamicByteArrayOutputStream bos)
+    protected void doSerializeResponse(GenericResponse response, TProtocol protocol, FrameOutput output)
             throws Exception {
 
         String resultClassName = ThriftClassNameGenerator.generateResultClassName(
@@ -329,6 +328,7 @@ public class IDLThriftSerializer extends AbstractThriftSerializer {
 
         TApplicationException applicationException = null;
         TMessage message;
+        byte status = getStatus(response);
 
         if (response.hasException()) {
             Throwable throwable = (Throwable) response.getReturn();
@@ -355,7 +355,7 @@ public class IDLThriftSerializer extends AbstractThriftSerializer {
                         }
                     }
                     if (getMethod.getReturnType().equals(throwable.getClass())) {
-                        header.responseInfo.setStatus(StatusCode.ApplicationException.getCode());
+                        status = StatusCode.ApplicationException.getCode();
                         found = true;
                         setMethod = clazz.getMethod(setMethodName, throwable.getClass());
                         setMethod.invoke(resultObj, throwable);
@@ -417,9 +417,7 @@ public class IDLThriftSerializer extends AbstractThriftSerializer {
         }
 
         //header
-        header.write(protocol);
-
-        short headerLength = (short) (bos.size() - HEADER_FIELD_LENGTH);
+        writeResponseHeader(protocol, output, response, status);
 
         protocol.writeMessageBegin(message);
         switch (message.type) {
@@ -432,15 +430,6 @@ public class IDLThriftSerializer extends AbstractThriftSerializer {
         }
         protocol.writeMessageEnd();
         protocol.getTransport().flush();
-
-        int messageLength = bos.size();
-
-        try {
-            bos.setWriteIndex(0);
-            protocol.writeI16(headerLength);
-        } finally {
-            bos.setWriteIndex(messageLength);
-        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,192 @@
+package com.dianping.pigeon.remoting.common.codec.thrift;
+
+import com.dianping.pigeon.monitor.MonitorConstants;
+import com.dianping.pigeon.remoting.common.domain.generic.GenericRequest;
+import com.dianping.pigeon.remoting.common.domain.generic.GenericResponse;
+import com.dianping.pigeon.remoting.common.domain.generic.MessageType;
+import com.dianping.pigeon.remoting.common.domain.generic.ThriftMapper;
+import com.dianping.pigeon.remoting.common.domain.generic.thrift.Header;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TMap;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolException;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+
+import java.util.Map;
+
+/**
+ * 直接用protocol写Header，不创建Header/RequestInfo/TraceInfo等对象，输出与Header.write完全一致
+ * <p>
+ * 写header前预留2字节长度，写完后在原位置回填
+ */
+public class ThriftHeaderWriter {
+
+    private static final TStruct HEADER_STRUCT = new TStruct("Header");
+    private static final TField MESSAGE_TYPE_FIELD = new TField("messageType", TType.BYTE, (short) 1);
+    private static final TField REQUEST_INFO_FIELD = new TField("requestInfo", TType.STRUCT, (short) 2);
+    private static final TField RESPONSE_INFO_FIELD = new TField("responseInfo", TType.STRUCT, (short) 3);
+    private static final TField TRACE_INFO_FIELD = new TField("traceInfo", TType.STRUCT, (short) 4);
+    private static final TField GLOBAL_CONTEXT_FIELD = new TField("globalContext", TType.MAP, (short) 5);
+    private static final TField LOCAL_CONTEXT_FIELD = new TField("localContext", TType.MAP, (short) 6);
+
+    private static final TStruct REQUEST_INFO_STRUCT = new TStruct("RequestInfo");
+    private static final TField SERVICE_NAME_FIELD = new TField("serviceName", TType.STRING, (short) 1);
+    private static final TField REQUEST_SEQUENCE_ID_FIELD = new TField("sequenceId", TType.I64, (short) 2);
+    private static final TField CALL_TYPE_FIELD = new TField("callType", TType.BYTE, (short) 3);
+    private static final TField TIMEOUT_FIELD = new TField("timeout", TType.I32, (short) 4);
+
+    private static final TStruct RESPONSE_INFO_STRUCT = new TStruct("ResponseInfo");
+    private static final TField RESPONSE_SEQUENCE_ID_FIELD = new TField("sequenceId", TType.I64, (short) 1);
+    private static final TField STATUS_FIELD = new TField("status", TType.BYTE, (short) 2);
+    private static final TField MESSAGE_FIELD = new TField("message", TType.STRING, (short) 3);
+
+    private static final TStruct TRACE_INFO_STRUCT = new TStruct("TraceInfo");
+    private static final TField CLIENT_APPKEY_FIELD = new TField("clientAppkey", TType.STRING, (short) 1);
+    private static final TField TRACE_ID_FIELD = new TField("traceId", TType.STRING, (short) 2);
+    private static final TField SPAN_ID_FIELD = new TField("spanId", TType.STRING, (short) 3);
+    private static final TField ROOT_MESSAGE_ID_FIELD = new TField("rootMessageId", TType.STRING, (short) 4);
+    private static final TField CURRENT_MESSAGE_ID_FIELD = new TField("currentMessageId", TType.STRING, (short) 5);
+    private static final TField SERVER_MESSAGE_ID_FIELD = new TField("serverMessageId", TType.STRING, (short) 6);
+    private static final TField DEBUG_FIELD = new TField("debug", TType.BOOL, (short) 7);
+    private static final TField CLIENT_IP_FIELD = new TField("clientIp", TType.STRING, (short) 9);
+
+    private static final int HEADER_FIELD_LENGTH = 2;
+
+    private ThriftHeaderWriter() {
+    }
+
+    public static void writeRequestHeader(TProtocol protocol, FrameOutput output, GenericRequest request)
+            throws TException {
+        int start = output.position();
+        //headerLength
+        protocol.writeI16(Short.MAX_VALUE);
+        writeRequestHeader(protocol, request);
+        output.setShort(start, output.position() - start - HEADER_FIELD_LENGTH);
+    }
+
+    public static void writeResponseHeader(TProtocol protocol, FrameOutput output, GenericResponse response,
+                                           byte status) throws TException {
+        int start = output.position();
+        //headerLength
+        protocol.writeI16(Short.MAX_VALUE);
+        writeResponseHeader(protocol, response, status);
+        output.setShort(start, output.position() - start - HEADER_FIELD_LENGTH);
+    }
+
+    private static void writeRequestHeader(TProtocol protocol, GenericRequest request) throws TException {
+        byte messageType = ThriftMapper.getMessageType(request);
+        if (request.getServiceName() == null) {
+            throw new TProtocolException("Required field 'serviceName' was not present!");
+        }
+        if (request.getApp() == null) {
+            throw new TProtocolException("Required field 'clientAppkey' was not present!");
+        }
+        Map<String, String> localContext = request.getLocalContext();
+
+        protocol.writeStructBegin(HEADER_STRUCT);
+        protocol.writeFieldBegin(MESSAGE_TYPE_FIELD);
+        protocol.writeByte(messageType);
+        protocol.writeFieldEnd();
+
+        //requestInfo
+        protocol.writeFieldBegin(REQUEST_INFO_FIELD);
+        protocol.writeStructBegin(REQUEST_INFO_STRUCT);
+        protocol.writeFieldBegin(SERVICE_NAME_FIELD);
+        protocol.writeString(request.getServiceName());
+        protocol.writeFieldEnd();
+        protocol.writeFieldBegin(REQUEST_SEQUENCE_ID_FIELD);
+        protocol.writeI64(request.getSequence());
+        protocol.writeFieldEnd();
+        protocol.writeFieldBegin(CALL_TYPE_FIELD);
+        protocol.writeByte(ThriftMapper.getCallType(request));
+        protocol.writeFieldEnd();
+        protocol.writeFieldBegin(TIMEOUT_FIELD);
+        protocol.writeI32(request.getTimeout());
+        protocol.writeFieldEnd();
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+        protocol.writeFieldEnd();
+
+        //traceInfo
+        protocol.writeFieldBegin(TRACE_INFO_FIELD);
+        protocol.writeStructBegin(TRACE_INFO_STRUCT);
+        writeString(protocol, CLIENT_APPKEY_FIELD, request.getApp());
+        if (localContext != null) {
+            writeString(protocol, TRACE_ID_FIELD, localContext.get(MonitorConstants.TRACE_ID));
+            writeString(protocol, SPAN_ID_FIELD, localContext.get(MonitorConstants.SPAN_ID));
+            writeString(protocol, ROOT_MESSAGE_ID_FIELD, localContext.get(MonitorConstants.ROOT_MSG_ID));
+            writeString(protocol, CURRENT_MESSAGE_ID_FIELD, localContext.get(MonitorConstants.CURRENT_MSG_ID));
+            writeString(protocol, SERVER_MESSAGE_ID_FIELD, localContext.get(MonitorConstants.SERVER_MSG_ID));
+            protocol.writeFieldBegin(DEBUG_FIELD);
+            protocol.writeBool(Boolean.parseBoolean(localContext.get(MonitorConstants.DEBUG)));
+            protocol.writeFieldEnd();
+        }
+        writeString(protocol, CLIENT_IP_FIELD, request.getClientIp());
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+        protocol.writeFieldEnd();
+
+        writeMap(protocol, GLOBAL_CONTEXT_FIELD, request.getGlobalContext());
+        writeMap(protocol, LOCAL_CONTEXT_FIELD, localContext);
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+    }
+
+    private static void writeResponseHeader(TProtocol protocol, GenericResponse response, byte status)
+            throws TException {
+        byte messageType = ThriftMapper.getMessageType(response);
+        if (messageType != MessageType.Normal.getCode()) {
+            // 心跳带有负载信息，不在热点路径上，仍按Header对象写
+            Header header = ThriftMapper.convertResponseToHeader(response);
+            header.getResponseInfo().setStatus(status);
+            header.write(protocol);
+            return;
+        }
+
+        protocol.writeStructBegin(HEADER_STRUCT);
+        protocol.writeFieldBegin(MESSAGE_TYPE_FIELD);
+        protocol.writeByte(messageType);
+        protocol.writeFieldEnd();
+
+        //responseInfo
+        protocol.writeFieldBegin(RESPONSE_INFO_FIELD);
+        protocol.writeStructBegin(RESPONSE_INFO_STRUCT);
+        protocol.writeFieldBegin(RESPONSE_SEQUENCE_ID_FIELD);
+        protocol.writeI64(response.getSequence());
+        protocol.writeFieldEnd();
+        protocol.writeFieldBegin(STATUS_FIELD);
+        protocol.writeByte(status);
+        protocol.writeFieldEnd();
+        writeString(protocol, MESSAGE_FIELD, ThriftMapper.getStatusMessage(response));
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+        protocol.writeFieldEnd();
+
+        writeMap(protocol, LOCAL_CONTEXT_FIELD, response.getLocalContext());
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+    }
+
+    private static void writeString(TProtocol protocol, TField field, String value) throws TException {
+        if (value != null) {
+            protocol.writeFieldBegin(field);
+            protocol.writeString(value);
+            protocol.writeFieldEnd();
+        }
+    }
+
+    private static void writeMap(TProtocol protocol, TField field, Map<String, String> map) throws TException {
+        if (map != null) {
+            protocol.writeFieldBegin(field);
+            protocol.writeMapBegin(new TMap(TType.STRING, TType.STRING, map.size()));
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                protocol.writeString(entry.getKey());
+                protocol.writeString(entry.getValue());
+            }
+            protocol.writeMapEnd();
+            protocol.writeFieldEnd();
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.dianping.pigeon.remoting.common.codec.thrift;
 
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.codec.AbstractSerializer;
+import com.dianping.pigeon.remoting.common.codec.BufferSerializer;
+import com.dianping.pigeon.remoting.common.codec.CodecBuffer;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.domain.generic.GenericRequest;
@@ -10,15 +14,18 @@ import com.dianping.pigeon.remoting.common.domain.generic.ThriftMapper;
 import com.dianping.pigeon.remoting.common.domain.generic.thrift.Header;
 import com.dianping.pigeon.remoting.common.exception.SerializationException;
 import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
 import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
 import com.dianping.pigeon.remoting.provider.publish.ServicePublisher;
 import com.dianping.pigeon.util.ThriftUtils;
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TTransport;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.concurrent.ConcurrentHashMap;
@@ -28,7 +35,9 @@ import java.util.concurrent.ConcurrentMap;
  * @author qi.yin
  *         2016/06/27  上午11:21.
  */
-public class ThriftSerializer extends AbstractSerializer {
+public class ThriftSerializer extends AbstractSerializer implements BufferSerializer {
+
+    private static final Logger logger = LoggerLoader.getLogger(ThriftSerializer.class);
 
     protected static final int HEADER_FIELD_LENGTH = 2;
 
@@ -44,6 +53,34 @@ public class ThriftSerializer extends AbstractSerializer {
         validate();
     }
 
+    @Override
+    public Object proxyRequest(InvokerConfig<?> invokerConfig) throws SerializationException {
+        Class<?> iface = invokerConfig.getServiceInterface();
+        if (ThriftUtils.isAnnotation(iface)) {
+            try {
+                annotationThriftSerializer.registerClient(iface);
+            } catch (RuntimeException e) {
+                logger.warn("prepare thrift codecs failed, service:" + iface.getName(), e);
+            }
+        }
+        return super.proxyRequest(invokerConfig);
+    }
+
+    /**
+     * 服务发布时调用，预先生成annotation方式的方法编解码器，避免首次请求时构建
+     *
+     * @param iface
+     */
+    public void registerService(Class<?> iface) {
+        if (ThriftUtils.isAnnotation(iface)) {
+            try {
+                annotationThriftSerializer.registerServer(iface);
+            } catch (RuntimeException e) {
+                logger.warn("prepare thrift codecs failed, service:" + iface.getName(), e);
+            }
+        }
+    }
+
     private void validate() {
         try {
             ByteArrayOutputStream os = new ByteArrayOutputStream();
@@ -62,9 +99,17 @@ public class ThriftSerializer extends AbstractSerializer {
 
     @Override
     public Object deserializeRequest(InputStream is) throws SerializationException {
+        return deserializeRequest(new TIOStreamTransport(is));
+    }
+
+    @Override
+    public Object deserializeRequest(CodecBuffer buffer) throws SerializationException {
+        return deserializeRequest(new CodecBufferTransport(buffer));
+    }
+
+    private Object deserializeRequest(TTransport transport) throws SerializationException {
         GenericRequest request = null;
 
-        TIOStreamTransport transport = new TIOStreamTransport(is);
         TBinaryProtocol protocol = new TBinaryProtocol(transport);
 
         try {
@@ -104,26 +149,33 @@ public class ThriftSerializer extends AbstractSerializer {
 
     @Override
     public void serializeRequest(OutputStream os, Object obj) throws SerializationException {
+        DynamicByteArrayOutputStream bos = new DynamicByteArrayOutputStream(1024);
+        serializeRequest(new TBinaryProtocol(new TIOStreamTransport(bos)), bos, obj);
+        try {
+            bos.writeTo(os);
+        } catch (IOException e) {
+            throw new SerializationException("serialize request failed.", e);
+        }
+    }
+
+    @Override
+    public void serializeRequest(CodecBuffer buffer, Object obj) throws SerializationException {
+        CodecBufferTransport transport = new CodecBufferTransport(buffer);
+        serializeRequest(new TBinaryProtocol(transport), transport, obj);
+    }
+
+    private void serializeRequest(TBinaryProtocol protocol, FrameOutput output, Object obj)
+            throws SerializationException {
         if (!(obj instanceof GenericRequest)) {
             throw new SerializationException("Unsupported this request obj serialize.");
         } else {
             try {
-                DynamicByteArrayOutputStream bos = new DynamicByteArrayOutputStream(1024);
-
                 GenericRequest request = (GenericRequest) obj;
-                TIOStreamTransport transport = new TIOStreamTransport(bos);
-                TBinaryProtocol protocol = new TBinaryProtocol(transport);
-
-                //headerlength
-                protocol.writeI16(Short.MAX_VALUE);
 
                 //header
-                Header header = ThriftMapper.convertRequestToHeader(request);
-                header.write(protocol);
-
-                short headerLength = (short) (bos.size() - HEADER_FIELD_LENGTH);
+                ThriftHeaderWriter.writeRequestHeader(protocol, output, request);
 
-                if (header.getMessageType() == MessageType.Normal.getCode()) {
+                if (request.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
 
                     Class<?> iface = request.getServiceInterface();
 
@@ -135,16 +187,6 @@ public class ThriftSerializer extends AbstractSerializer {
 
                     serializer.doSerializeRequest(request, protocol);
                 }
-                int messageLength = bos.size();
-
-                try {
-                    bos.setWriteIndex(0);
-                    protocol.writeI16(headerLength);
-                } finally {
-                    bos.setWriteIndex(messageLength);
-                }
-
-                os.write(bos.toByteArray());
             } catch (Exception e) {
                 throw new SerializationException("serialize request failed.", e);
             }
@@ -153,9 +195,17 @@ public class ThriftSerializer extends AbstractSerializer {
 
     @Override
     public Object deserializeResponse(InputStream is) throws SerializationException {
+        return deserializeResponse(new TIOStreamTransport(is));
+    }
+
+    @Override
+    public Object deserializeResponse(CodecBuffer buffer) throws SerializationException {
+        return deserializeResponse(new CodecBufferTransport(buffer));
+    }
+
+    private Object deserializeResponse(TTransport transport) throws SerializationException {
         GenericResponse response = null;
 
-        TIOStreamTransport transport = new TIOStreamTransport(is);
         TBinaryProtocol protocol = new TBinaryProtocol(transport);
 
         try {
@@ -199,24 +249,30 @@ public class ThriftSerializer extends AbstractSerializer {
 
     @Override
     public void serializeResponse(OutputStream os, Object obj) throws SerializationException {
+        DynamicByteArrayOutputStream bos = new DynamicByteArrayOutputStream(1024);
+        serializeResponse(new TBinaryProtocol(new TIOStreamTransport(bos)), bos, obj);
+        try {
+            bos.writeTo(os);
+        } catch (IOException e) {
+            throw new SerializationException("Serialize failed.", e);
+        }
+    }
+
+    @Override
+    public void serializeResponse(CodecBuffer buffer, Object obj) throws SerializationException {
+        CodecBufferTransport transport = new CodecBufferTransport(buffer);
+        serializeResponse(new TBinaryProtocol(transport), transport, obj);
+    }
+
+    private void serializeResponse(TBinaryProtocol protocol, FrameOutput output, Object obj)
+            throws SerializationException {
         if (!(obj instanceof GenericResponse)) {
             throw new SerializationException("Unsupported this response obj serialize.");
         } else {
             try {
-                DynamicByteArrayOutputStream bos = new DynamicByteArrayOutputStream(1024);
-
                 GenericResponse response = (GenericResponse) obj;
 
-                TIOStreamTransport transport = new TIOStreamTransport(bos);
-                TBinaryProtocol protocol = new TBinaryProtocol(transport);
-
-                //headerlength
-                protocol.writeI16(Short.MAX_VALUE);
-
-                //header
-                Header header = ThriftMapper.convertResponseToHeader(response);
-
-                if (header.getMessageType() == MessageType.Normal.getCode()) {
+                if (ThriftMapper.getMessageType(response) == MessageType.Normal.getCode()) {
                     Class<?> iface = ServicePublisher.getInterface(response.getServiceName());
 
                     if (iface == null) {
@@ -226,24 +282,14 @@ public class ThriftSerializer extends AbstractSerializer {
                     response.setServiceInterface(iface);
 
                     AbstractThriftSerializer serializer = getSerializer(iface);
-                    //body
-                    serializer.doSerializeResponse(response, protocol, header, bos);
+                    //header and body
+                    serializer.doSerializeResponse(response, protocol, output);
 
                 } else {
                     //header
-                    header.write(protocol);
-                    short headerLength = (short) (bos.size() - HEADER_FIELD_LENGTH);
-                    int messageLength = bos.size();
-
-                    try {
-                        bos.setWriteIndex(0);
-                        protocol.writeI16(headerLength);
-                    } finally {
-                        bos.setWriteIndex(messageLength);
-                    }
+                    ThriftHeaderWriter.writeResponseHeader(protocol, output, response,
+                            ThriftMapper.getStatus(response));
                 }
-
-                os.write(bos.toByteArray());
             } catch (Exception e) {
                 throw new SerializationException("Serialize failed.", e);
             }
@@ -18,11 +18,16 @@ public class ThriftClientMetadata {
     private final ThriftServiceMetadata thriftServiceMetadata;
     private final Map<String, ThriftMethodHandler> methodHandlers;
 
-    private final ThriftCodecManager codecManager = new ThriftCodecManager();
-
     public ThriftClientMetadata(
             Class<?> clientType,
             String clientName) {
+        this(clientType, clientName, new ThriftCodecManager());
+    }
+
+    public ThriftClientMetadata(
+            Class<?> clientType,
+            String clientName,
+            ThriftCodecManager codecManager) {
         Preconditions.checkNotNull(clientType, "clientType is null");
         Preconditions.checkNotNull(clientName, "clientName is null");
         Preconditions.checkNotNull(codecManager, "codecManager is null");
@@ -0,0 +1,109 @@
+package com.dianping.pigeon.remoting.common.codec.thrift.annotation;
+
+import com.facebook.swift.codec.ThriftCodec;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolUtil;
+
+/**
+ * 方法参数、返回值、异常对应的字段编解码器，在构建方法元数据时一次生成
+ * <p>
+ * TField、字段类型、默认值都预先算好，调用时直接读写protocol，不再查map或遍历元数据
+ */
+final class ThriftFieldCodec {
+
+    // 字段id不超过该值时按id直接建索引
+    private static final int MAX_INDEXED_ID = 256;
+
+    private final short id;
+    private final int position;
+    private final byte type;
+    private final TField field;
+    private final ThriftCodec<Object> codec;
+    private final Object defaultValue;
+
+    ThriftFieldCodec(short id, String name, int position, ThriftCodec<?> codec, Object defaultValue) {
+        this.id = id;
+        this.position = position;
+        this.codec = (ThriftCodec<Object>) codec;
+        this.type = codec.getType().getProtocolType().getType();
+        this.field = new TField(name, type, id);
+        this.defaultValue = defaultValue;
+    }
+
+    short getId() {
+        return id;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    Object getDefaultValue() {
+        return defaultValue;
+    }
+
+    ThriftCodec<Object> getCodec() {
+        return codec;
+    }
+
+    /**
+     * 值为null时不写字段，与TProtocolWriter.writeField一致
+     */
+    void write(TProtocol out, Object value) throws Exception {
+        if (value == null) {
+            return;
+        }
+        out.writeFieldBegin(field);
+        codec.write(value, out);
+        out.writeFieldEnd();
+    }
+
+    /**
+     * 字段类型不匹配时跳过并返回null，与TProtocolReader.readField一致
+     */
+    Object read(TProtocol in, TField current) throws Exception {
+        if (current.type != type) {
+            skip(in, current);
+            return null;
+        }
+        Object value = codec.read(in);
+        in.readFieldEnd();
+        return value;
+    }
+
+    static void skip(TProtocol in, TField current) throws Exception {
+        TProtocolUtil.skip(in, current.type);
+        in.readFieldEnd();
+    }
+
+    /**
+     * 按字段id建立索引，id为负或过大时返回null，查找时退化为顺序查找
+     */
+    static ThriftFieldCodec[] index(ThriftFieldCodec[] codecs) {
+        int maxId = -1;
+        for (ThriftFieldCodec codec : codecs) {
+            if (codec.id < 0 || codec.id > MAX_INDEXED_ID) {
+                return null;
+            }
+            maxId = Math.max(maxId, codec.id);
+        }
+        ThriftFieldCodec[] indexed = new ThriftFieldCodec[maxId + 1];
+        for (ThriftFieldCodec codec : codecs) {
+            indexed[codec.id] = codec;
+        }
+        return indexed;
+    }
+
+    static ThriftFieldCodec find(ThriftFieldCodec[] indexed, ThriftFieldCodec[] codecs, short id) {
+        if (indexed != null) {
+            return id >= 0 && id < indexed.length ? indexed[id] : null;
+        }
+        for (ThriftFieldCodec codec : codecs) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
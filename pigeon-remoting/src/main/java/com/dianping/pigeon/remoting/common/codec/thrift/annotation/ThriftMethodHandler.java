@@ -2,18 +2,18 @@ package com.dianping.pigeon.remoting.common.codec.thrift.annotation;
 
 import com.facebook.swift.codec.ThriftCodec;
 import com.facebook.swift.codec.ThriftCodecManager;
-import com.facebook.swift.codec.internal.TProtocolReader;
-import com.facebook.swift.codec.internal.TProtocolWriter;
 import com.facebook.swift.codec.metadata.ThriftFieldMetadata;
 import com.facebook.swift.codec.metadata.ThriftParameterInjection;
 import com.facebook.swift.codec.metadata.ThriftType;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 import org.apache.thrift.TApplicationException;
+import org.apache.thrift.protocol.TField;
 import org.apache.thrift.protocol.TMessage;
 import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -27,34 +27,44 @@ import static org.apache.thrift.protocol.TMessageType.CALL;
 public class ThriftMethodHandler {
     private final String name;
     private final String qualifiedName;
-    private final List<ParameterHandler> parameterCodecs;
-    private final ThriftCodec<Object> successCodec;
-    private final Map<Short, ThriftCodec<Object>> exceptionCodecs;
+    private final TStruct argumentsStruct;
+    private final ThriftFieldCodec[] parameterCodecs;
+    private final ThriftFieldCodec successCodec;
+    private final boolean isVoid;
+    private final ThriftFieldCodec[] exceptionCodecs;
+    private final ThriftFieldCodec[] indexedExceptionCodecs;
 
     public ThriftMethodHandler(ThriftMethodMetadata methodMetadata, ThriftCodecManager codecManager) {
         name = methodMetadata.getName();
         qualifiedName = methodMetadata.getQualifiedName();
+        argumentsStruct = new TStruct(name + "_args");
 
-        ParameterHandler[] parameters = new ParameterHandler[methodMetadata.getParameters().size()];
+        ThriftFieldCodec[] parameters = new ThriftFieldCodec[methodMetadata.getParameters().size()];
         for (ThriftFieldMetadata fieldMetadata : methodMetadata.getParameters()) {
             ThriftParameterInjection parameter = (ThriftParameterInjection) fieldMetadata.getInjections().get(0);
 
-            ParameterHandler handler = new ParameterHandler(
+            ThriftFieldCodec handler = new ThriftFieldCodec(
                     fieldMetadata.getId(),
                     fieldMetadata.getName(),
-                    (ThriftCodec<Object>) codecManager.getCodec(fieldMetadata.getThriftType()));
+                    parameter.getParameterIndex(),
+                    codecManager.getCodec(fieldMetadata.getThriftType()),
+                    null);
 
             parameters[parameter.getParameterIndex()] = handler;
         }
-        parameterCodecs = ImmutableList.copyOf(parameters);
+        parameterCodecs = parameters;
 
-        ImmutableMap.Builder<Short, ThriftCodec<Object>> exceptions = ImmutableMap.builder();
+        List<ThriftFieldCodec> exceptions = new ArrayList<ThriftFieldCodec>();
         for (Map.Entry<Short, ThriftType> entry : methodMetadata.getExceptions().entrySet()) {
-            exceptions.put(entry.getKey(), (ThriftCodec<Object>) codecManager.getCodec(entry.getValue()));
+            exceptions.add(new ThriftFieldCodec(entry.getKey(), "exception", -1,
+                    codecManager.getCodec(entry.getValue()), null));
         }
-        exceptionCodecs = exceptions.build();
+        exceptionCodecs = exceptions.toArray(new ThriftFieldCodec[exceptions.size()]);
+        indexedExceptionCodecs = ThriftFieldCodec.index(exceptionCodecs);
 
-        successCodec = (ThriftCodec<Object>) codecManager.getCodec(methodMetadata.getReturnType());
+        ThriftCodec<?> codec = codecManager.getCodec(methodMetadata.getReturnType());
+        successCodec = new ThriftFieldCodec((short) 0, "success", -1, codec, null);
+        isVoid = codec.getType() == ThriftType.VOID;
     }
 
     public String getName() {
@@ -67,29 +77,33 @@ public class ThriftMethodHandler {
 
     public Object readResponse(TProtocol in)
             throws Exception {
-        TProtocolReader reader = new TProtocolReader(in);
-        reader.readStructBegin();
+        in.readStructBegin();
         Object results = null;
         Exception exception = null;
-        while (reader.nextField()) {
-            if (reader.getFieldId() == 0) {
-                results = reader.readField(successCodec);
+        while (true) {
+            TField field = in.readFieldBegin();
+            if (field.type == TType.STOP) {
+                break;
+            }
+            if (field.id == 0) {
+                results = successCodec.read(in, field);
             } else {
-                ThriftCodec<Object> exceptionCodec = exceptionCodecs.get(reader.getFieldId());
+                ThriftFieldCodec exceptionCodec = ThriftFieldCodec.find(indexedExceptionCodecs, exceptionCodecs,
+                        field.id);
                 if (exceptionCodec != null) {
-                    exception = (Exception) reader.readField(exceptionCodec);
+                    exception = (Exception) exceptionCodec.read(in, field);
                 } else {
-                    reader.skipFieldData();
+                    ThriftFieldCodec.skip(in, field);
                 }
             }
         }
-        reader.readStructEnd();
+        in.readStructEnd();
 
         if (exception != null) {
             return exception;
         }
 
-        if (successCodec.getType() == ThriftType.VOID) {
+        if (isVoid) {
             // TODO: check for non-null return from a void function?
             return null;
         }
@@ -104,43 +118,16 @@ public class ThriftMethodHandler {
             throws Exception {
 
         out.writeMessageBegin(new TMessage(name, CALL, sequenceId));
-        TProtocolWriter writer = new TProtocolWriter(out);
-        writer.writeStructBegin(name + "_args");
+        out.writeStructBegin(argumentsStruct);
         if (args != null && args.length != 0) {
             for (int i = 0; i < args.length; i++) {
-                Object value = args[i];
-                ParameterHandler parameter = parameterCodecs.get(i);
-                writer.writeField(parameter.getName(), parameter.getId(), parameter.getCodec(), value);
+                parameterCodecs[i].write(out, args[i]);
             }
         }
-        writer.writeStructEnd();
+        out.writeFieldStop();
+        out.writeStructEnd();
 
         out.writeMessageEnd();
         out.getTransport().flush();
     }
-
-    private static final class ParameterHandler {
-        private final short id;
-        private final String name;
-        private final ThriftCodec<Object> codec;
-
-        private ParameterHandler(short id, String name, ThriftCodec<Object> codec) {
-            this.id = id;
-            this.name = name;
-            this.codec = codec;
-        }
-
-        public short getId() {
-            return id;
-        }
-
-        public String getName() {
-            return name;
-        }
-
-        public ThriftCodec<Object> getCodec() {
-            return codec;
-        }
-    }
 }
-
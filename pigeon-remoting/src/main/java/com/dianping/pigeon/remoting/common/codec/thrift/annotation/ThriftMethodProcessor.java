@@ -2,22 +2,22 @@ package com.dianping.pigeon.remoting.common.codec.thrift.annotation;
 
 import com.facebook.swift.codec.ThriftCodec;
 import com.facebook.swift.codec.ThriftCodecManager;
-import com.facebook.swift.codec.internal.TProtocolReader;
-import com.facebook.swift.codec.internal.TProtocolWriter;
 import com.facebook.swift.codec.metadata.ThriftFieldMetadata;
 import com.facebook.swift.codec.metadata.ThriftType;
 import com.google.common.base.Defaults;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.primitives.Primitives;
 import com.google.common.reflect.TypeToken;
 import org.apache.thrift.TApplicationException;
+import org.apache.thrift.protocol.TField;
 import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.protocol.TProtocolException;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
 
 import javax.annotation.concurrent.ThreadSafe;
-import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -30,14 +30,12 @@ public class ThriftMethodProcessor {
     private final String serviceName;
     private final String qualifiedName;
     private final Object service;
-    private final Method method;
-    private final String resultStructName;
+    private final TStruct resultStruct;
     private final boolean oneway;
-    private final ImmutableList<ThriftFieldMetadata> parameters;
-    private final Map<Short, ThriftCodec<?>> parameterCodecs;
-    private final Map<Short, Short> thriftParameterIdToJavaArgumentListPositionMap;
-    private final ThriftCodec<Object> successCodec;
-    private final Map<Class<?>, ExceptionProcessor> exceptionCodecs;
+    private final ThriftFieldCodec[] parameterCodecs;
+    private final ThriftFieldCodec[] indexedParameterCodecs;
+    private final ThriftFieldCodec successCodec;
+    private final Map<Class<?>, ThriftFieldCodec> exceptionCodecs;
 
     public ThriftMethodProcessor(
             Object service,
@@ -50,35 +48,43 @@ public class ThriftMethodProcessor {
 
         name = methodMetadata.getName();
         qualifiedName = serviceName + "." + name;
-        resultStructName = name + "_result";
+        resultStruct = new TStruct(name + "_result");
 
-        method = methodMetadata.getMethod();
         oneway = methodMetadata.getOneway();
 
-        parameters = ImmutableList.copyOf(methodMetadata.getParameters());
-
-        ImmutableMap.Builder<Short, ThriftCodec<?>> builder = ImmutableMap.builder();
-        for (ThriftFieldMetadata fieldMetadata : methodMetadata.getParameters()) {
-            builder.put(fieldMetadata.getId(), codecManager.getCodec(fieldMetadata.getThriftType()));
-        }
-        parameterCodecs = builder.build();
-
-        ImmutableMap.Builder<Short, Short> parameterOrderingBuilder = ImmutableMap.builder();
-        short javaArgumentPosition = 0;
-        for (ThriftFieldMetadata fieldMetadata : methodMetadata.getParameters()) {
-            parameterOrderingBuilder.put(fieldMetadata.getId(), javaArgumentPosition++);
+        List<ThriftFieldMetadata> parameters = methodMetadata.getParameters();
+        parameterCodecs = new ThriftFieldCodec[parameters.size()];
+        int javaArgumentPosition = 0;
+        for (ThriftFieldMetadata fieldMetadata : parameters) {
+            parameterCodecs[javaArgumentPosition] = new ThriftFieldCodec(
+                    fieldMetadata.getId(),
+                    fieldMetadata.getName(),
+                    javaArgumentPosition,
+                    codecManager.getCodec(fieldMetadata.getThriftType()),
+                    getDefaultValue(fieldMetadata.getThriftType().getJavaType()));
+            javaArgumentPosition++;
         }
-        thriftParameterIdToJavaArgumentListPositionMap = parameterOrderingBuilder.build();
+        indexedParameterCodecs = ThriftFieldCodec.index(parameterCodecs);
 
-        ImmutableMap.Builder<Class<?>, ExceptionProcessor> exceptions = ImmutableMap.builder();
+        ImmutableMap.Builder<Class<?>, ThriftFieldCodec> exceptions = ImmutableMap.builder();
         for (Map.Entry<Short, ThriftType> entry : methodMetadata.getExceptions().entrySet()) {
             Class<?> type = TypeToken.of(entry.getValue().getJavaType()).getRawType();
-            ExceptionProcessor processor = new ExceptionProcessor(entry.getKey(), codecManager.getCodec(entry.getValue()));
-            exceptions.put(type, processor);
+            exceptions.put(type, new ThriftFieldCodec(entry.getKey(), "exception", -1,
+                    codecManager.getCodec(entry.getValue()), null));
         }
         exceptionCodecs = exceptions.build();
 
-        successCodec = (ThriftCodec<Object>) codecManager.getCodec(methodMetadata.getReturnType());
+        successCodec = new ThriftFieldCodec((short) 0, "success", -1,
+                codecManager.getCodec(methodMetadata.getReturnType()), null);
+    }
+
+    private static Object getDefaultValue(Type argumentType) {
+        if (argumentType instanceof Class) {
+            Class<?> argumentClass = (Class<?>) argumentType;
+            argumentClass = Primitives.unwrap(argumentClass);
+            return Defaults.defaultValue(argumentClass);
+        }
+        return null;
     }
 
     public String getName() {
@@ -100,35 +106,29 @@ public class ThriftMethodProcessor {
     public Object[] readArguments(TProtocol in)
             throws Exception {
         try {
-            int numArgs = method.getParameterTypes().length;
-            Object[] args = new Object[numArgs];
-            TProtocolReader reader = new TProtocolReader(in);
+            Object[] args = new Object[parameterCodecs.length];
 
-            reader.readStructBegin();
-            while (reader.nextField()) {
-                short fieldId = reader.getFieldId();
+            in.readStructBegin();
+            while (true) {
+                TField field = in.readFieldBegin();
+                if (field.type == TType.STOP) {
+                    break;
+                }
 
-                ThriftCodec<?> codec = parameterCodecs.get(fieldId);
+                ThriftFieldCodec codec = ThriftFieldCodec.find(indexedParameterCodecs, parameterCodecs, field.id);
                 if (codec == null) {
                     // unknown field
-                    reader.skipFieldData();
+                    ThriftFieldCodec.skip(in, field);
                 } else {
-                    args[thriftParameterIdToJavaArgumentListPositionMap.get(fieldId)] = reader.readField(codec);
+                    args[codec.getPosition()] = codec.read(in, field);
                 }
             }
-            reader.readStructEnd();
-            int argumentPosition = 0;
-            for (ThriftFieldMetadata argument : parameters) {
-                if (args[argumentPosition] == null) {
-                    Type argumentType = argument.getThriftType().getJavaType();
-
-                    if (argumentType instanceof Class) {
-                        Class<?> argumentClass = (Class<?>) argumentType;
-                        argumentClass = Primitives.unwrap(argumentClass);
-                        args[argumentPosition] = Defaults.defaultValue(argumentClass);
-                    }
+            in.readStructEnd();
+
+            for (int i = 0; i < args.length; i++) {
+                if (args[i] == null) {
+                    args[i] = parameterCodecs[i].getDefaultValue();
                 }
-                argumentPosition++;
             }
 
             return args;
@@ -141,7 +141,7 @@ public class ThriftMethodProcessor {
 
     public <T> void writeResponse(TProtocol out, T result, boolean isException) throws Exception {
         if (!isException) {
-            writeResponse(out, "success", (short) 0, successCodec, result);
+            writeResponse(out, successCodec, result);
         } else {
             writeExceptionResponse(out, result);
         }
@@ -149,7 +149,7 @@ public class ThriftMethodProcessor {
 
 
     public boolean isUserException(Object exception) {
-        ExceptionProcessor exceptionCodec = exceptionCodecs.get(exception.getClass());
+        ThriftFieldCodec exceptionCodec = exceptionCodecs.get(exception.getClass());
         if (exceptionCodec != null) {
             return true;
         }
@@ -158,9 +158,9 @@ public class ThriftMethodProcessor {
 
     protected <T> void writeExceptionResponse(TProtocol out,
                                               T exception) throws Exception {
-        ExceptionProcessor exceptionCodec = exceptionCodecs.get(exception.getClass());
+        ThriftFieldCodec exceptionCodec = exceptionCodecs.get(exception.getClass());
         if (exceptionCodec != null) {
-            writeResponse(out, "exception", exceptionCodec.getId(), exceptionCodec.getCodec(), exception);
+            writeResponse(out, exceptionCodec, exception);
         }
     }
 
@@ -169,28 +169,13 @@ public class ThriftMethodProcessor {
                                   short responseFieldId,
                                   ThriftCodec<T> responseCodec,
                                   T result) throws Exception {
-
-        TProtocolWriter writer = new TProtocolWriter(out);
-        writer.writeStructBegin(resultStructName);
-        writer.writeField(responseFieldName, (short) responseFieldId, responseCodec, result);
-        writer.writeStructEnd();
+        writeResponse(out, new ThriftFieldCodec(responseFieldId, responseFieldName, -1, responseCodec, null), result);
     }
 
-    private static final class ExceptionProcessor {
-        private final short id;
-        private final ThriftCodec<Object> codec;
-
-        private ExceptionProcessor(short id, ThriftCodec<?> coded) {
-            this.id = id;
-            this.codec = (ThriftCodec<Object>) coded;
-        }
-
-        public short getId() {
-            return id;
-        }
-
-        public ThriftCodec<Object> getCodec() {
-            return codec;
-        }
+    private void writeResponse(TProtocol out, ThriftFieldCodec responseCodec, Object result) throws Exception {
+        out.writeStructBegin(resultStruct);
+        responseCodec.write(out, result);
+        out.writeFieldStop();
+        out.writeStructEnd();
     }
 }
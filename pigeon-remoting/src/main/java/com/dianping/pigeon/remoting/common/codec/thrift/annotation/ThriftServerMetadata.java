@@ -16,10 +16,13 @@ public class ThriftServerMetadata {
     private final String serverType;
     private final String serverName;
 
-    private final ThriftCodecManager codecManager = new ThriftCodecManager();
     private Map<String, ThriftMethodProcessor> methodProcessors;
 
     public ThriftServerMetadata(Class<?> serverType, String serverName) {
+        this(serverType, serverName, new ThriftCodecManager());
+    }
+
+    public ThriftServerMetadata(Class<?> serverType, String serverName, ThriftCodecManager codecManager) {
         this.serverName = serverName;
         Map<String, ThriftMethodProcessor> processorMap = newHashMap();
 
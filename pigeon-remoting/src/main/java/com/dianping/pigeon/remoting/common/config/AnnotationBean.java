@@ -228,7 +228,7 @@ public class AnnotationBean extends ServiceInitializeListener implements Disposa
 		}
 		String key = reference.group() + "/" + reference.url() + "@" + interfaceName + ":" + reference.version() + ":"
 				+ reference.serialize() + ":" + reference.protocol() + ":" + reference.timeout() + ":"
-				+ reference.callType();
+				+ reference.callType() + ":" + reference.batchSize();
 		InvokerConfig<?> invokerConfig = invokerConfigs.get(key);
 		if (invokerConfig == null) {
 			invokerConfig = new InvokerConfig(referenceClass, reference.url(), reference.timeout(),
@@ -236,6 +236,8 @@ public class AnnotationBean extends ServiceInitializeListener implements Disposa
 					reference.loadbalance(), reference.cluster(), reference.retries(), reference.timeoutRetry(),
 					reference.vip(), reference.version(), reference.protocol());
 			invokerConfig.setSecret(reference.secret());
+			invokerConfig.setBatchSize(reference.batchSize());
+			invokerConfig.setBatchWindow(reference.batchWindow());
 			invokerConfigs.putIfAbsent(key, invokerConfig);
 			invokerConfig = invokerConfigs.get(key);
 		}
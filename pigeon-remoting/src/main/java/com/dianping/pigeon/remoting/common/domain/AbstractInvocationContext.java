@@ -7,9 +7,7 @@ package com.dianping.pigeon.remoting.common.domain;
 import com.dianping.pigeon.remoting.common.monitor.trace.MonitorData;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public abstract class AbstractInvocationContext<M extends MonitorData> implements InvocationContext<M> {
@@ -17,7 +15,7 @@ public abstract class AbstractInvocationContext<M extends MonitorData> implement
     protected InvocationRequest request;
     protected InvocationResponse response;
     private Map<String, Serializable> contextValues;
-    private List<TimePoint> timeline = new ArrayList<TimePoint>();
+    private final Timeline timeline = new Timeline();
 
     protected M monitorData;
 
@@ -65,7 +63,7 @@ public abstract class AbstractInvocationContext<M extends MonitorData> implement
     }
 
     @Override
-    public List<TimePoint> getTimeline() {
+    public Timeline getTimeline() {
         return timeline;
     }
 
@@ -6,7 +6,7 @@ package com.dianping.pigeon.remoting.common.domain;
  */
 public enum CallMethod {
 
-    SYNC((byte) 1, "sync"), CALLBACK((byte) 2, "callback"), FUTURE((byte) 3, "future"), ONEWAY((byte) 4, "oneway");
+    SYNC((byte) 1, "sync"), CALLBACK((byte) 2, "callback"), FUTURE((byte) 3, "future"), ONEWAY((byte) 4, "oneway"), STREAM((byte) 5, "stream");
 
     private byte code;
     private String name;
@@ -34,6 +34,8 @@ public enum CallMethod {
                 return FUTURE;
             case 4:
                 return ONEWAY;
+            case 5:
+                return STREAM;
             default:
                 throw new IllegalArgumentException("invalid callMethod code: " + code);
 
@@ -49,6 +51,8 @@ public enum CallMethod {
             return FUTURE;
         } else if (ONEWAY.isOneway(name)) {
             return ONEWAY;
+        } else if (STREAM.isStream(name)) {
+            return STREAM;
         } else {
             throw new IllegalArgumentException("invalid callMethod name: " + name);
         }
@@ -97,4 +101,15 @@ public enum CallMethod {
         }
         return ONEWAY.getName().equals(name.toLowerCase());
     }
+
+    public static boolean isStream(byte code) {
+        return STREAM.getCode() == code;
+    }
+
+    public static boolean isStream(String name) {
+        if (name == null) {
+            return false;
+        }
+        return STREAM.getName().equals(name.toLowerCase());
+    }
 }
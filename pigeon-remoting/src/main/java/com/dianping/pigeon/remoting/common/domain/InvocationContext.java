@@ -5,7 +5,6 @@
 package com.dianping.pigeon.remoting.common.domain;
 
 import java.io.Serializable;
-import java.util.List;
 import java.util.Map;
 
 import com.dianping.pigeon.remoting.common.monitor.trace.MonitorData;
@@ -45,7 +44,7 @@ public interface InvocationContext<M extends MonitorData> {
 
     void setMethodUri(String uri);
 
-    List<TimePoint> getTimeline();
+    Timeline getTimeline();
 
     M getMonitorData();
 
@@ -64,6 +63,7 @@ public interface InvocationContext<M extends MonitorData> {
         , A/** authenticate **/
         , U/** business **/
         , M/** method **/
+        , N/** 对端创建请求或响应的时间 **/
         , F/** future **/
         , B/** back **/
         , E
@@ -15,7 +15,13 @@ public enum MessageType {
 
     HEALTH_CHECKER((byte) 5, "healthChecker"),
 
-    SCANNER_HEART((byte) 6, "scannerHeart");
+    SCANNER_HEART((byte) 6, "scannerHeart"),
+
+    BATCH((byte) 7, "batch"),
+
+    STREAM((byte) 8, "stream"),
+
+    STREAM_CREDIT((byte) 9, "streamCredit");
 
     private byte code;
     private String name;
@@ -47,6 +53,12 @@ public enum MessageType {
                 return HEALTH_CHECKER;
             case 6:
                 return SCANNER_HEART;
+            case 7:
+                return BATCH;
+            case 8:
+                return STREAM;
+            case 9:
+                return STREAM_CREDIT;
             default:
                 throw new IllegalArgumentException("invalid messageType code: " + code);
         }
@@ -75,4 +87,16 @@ public enum MessageType {
     public static boolean isScannerHeart(byte code) {
         return SCANNER_HEART.getCode() == code;
     }
-}
\ No newline at end of file
+
+    public static boolean isBatch(byte code) {
+        return BATCH.getCode() == code;
+    }
+
+    public static boolean isStream(byte code) {
+        return STREAM.getCode() == code;
+    }
+
+    public static boolean isStreamCredit(byte code) {
+        return STREAM_CREDIT.getCode() == code;
+    }
+}
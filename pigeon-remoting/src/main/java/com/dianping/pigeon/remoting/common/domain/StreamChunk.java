@@ -0,0 +1,56 @@
+package com.dianping.pigeon.remoting.common.domain;
+
+import java.io.Serializable;
+
+/**
+ * 流式调用中服务端发送的一段结果，index从0开始递增，调用端据此保证顺序
+ */
+public class StreamChunk implements Serializable {
+
+    private static final long serialVersionUID = -2755130547914722151L;
+
+    private long index;
+
+    private Object[] elements;
+
+    private boolean last;
+
+    public StreamChunk() {
+    }
+
+    public StreamChunk(long index, Object[] elements, boolean last) {
+        this.index = index;
+        this.elements = elements;
+        this.last = last;
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public void setIndex(long index) {
+        this.index = index;
+    }
+
+    public Object[] getElements() {
+        return elements;
+    }
+
+    public void setElements(Object[] elements) {
+        this.elements = elements;
+    }
+
+    public boolean isLast() {
+        return last;
+    }
+
+    public void setLast(boolean last) {
+        this.last = last;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamChunk[index=" + index + ", size=" + (elements == null ? 0 : elements.length) + ", last=" + last
+                + "]";
+    }
+}
@@ -0,0 +1,72 @@
+package com.dianping.pigeon.remoting.common.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
+
+/**
+ * 请求各阶段的时间点，按阶段下标存放在预分配的long数组里，记录时只有一次数组写入
+ * <p>
+ * 每个阶段两个位置，分别保存第一次和最后一次记录，如方法调用前后的M、重试时的Q；0表示未记录。
+ * 只在需要输出时(如慢请求)才转换成TimePoint列表
+ */
+public final class Timeline {
+
+    private static final TimePhase[] PHASES = TimePhase.values();
+
+    private static final Comparator<TimePoint> TIME_COMPARATOR = new Comparator<TimePoint>() {
+        @Override
+        public int compare(TimePoint o1, TimePoint o2) {
+            return o1.getTime() < o2.getTime() ? -1 : (o1.getTime() == o2.getTime() ? 0 : 1);
+        }
+    };
+
+    private final long[] times = new long[PHASES.length << 1];
+
+    public void record(TimePhase phase) {
+        record(phase, System.currentTimeMillis());
+    }
+
+    public void record(TimePhase phase, long time) {
+        int index = phase.ordinal() << 1;
+        times[times[index] == 0L ? index : index + 1] = time;
+    }
+
+    /**
+     * @return 该阶段第一次记录的时间，未记录时为0
+     */
+    public long getTime(TimePhase phase) {
+        return times[phase.ordinal() << 1];
+    }
+
+    /**
+     * @return 该阶段最后一次记录的时间，未记录时为0
+     */
+    public long getLastTime(TimePhase phase) {
+        int index = phase.ordinal() << 1;
+        return times[index + 1] != 0L ? times[index + 1] : times[index];
+    }
+
+    /**
+     * @return 已记录的时间点，按时间排序，时间相同时按阶段定义的顺序
+     */
+    public List<TimePoint> toTimePoints() {
+        List<TimePoint> timePoints = new ArrayList<TimePoint>(times.length);
+        for (int i = 0; i < times.length; i++) {
+            if (times[i] != 0L) {
+                timePoints.add(new TimePoint(PHASES[i >> 1], times[i]));
+            }
+        }
+        Collections.sort(timePoints, TIME_COMPARATOR);
+        return timePoints;
+    }
+
+    @Override
+    public String toString() {
+        return toTimePoints().toString();
+    }
+}
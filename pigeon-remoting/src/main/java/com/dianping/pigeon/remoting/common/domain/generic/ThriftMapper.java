@@ -32,13 +32,7 @@ public class ThriftMapper {
         Header header = new Header();
 
         //messageType
-        if (request.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
-            header.setMessageType(MessageType.Normal.getCode());
-        } else if (request.getMessageType() == Constants.MESSAGE_TYPE_HEART) {
-            header.setMessageType(MessageType.Heartbeat.getCode());
-        } else {
-            throw new SerializationException("Serialize unknown messageType.");
-        }
+        header.setMessageType(getMessageType(request));
 
         //requestInfo
         RequestInfo requestInfo = new RequestInfo();
@@ -48,11 +42,7 @@ public class ThriftMapper {
         //serviceName
         requestInfo.setServiceName(request.getServiceName());
         //calltype
-        if (request.getCallType() == Constants.CALLTYPE_NOREPLY) {
-            requestInfo.setCallType(CallType.NoReply.getCode());
-        } else {
-            requestInfo.setCallType(CallType.Reply.getCode());
-        }
+        requestInfo.setCallType(getCallType(request));
 
         header.setRequestInfo(requestInfo);
 
@@ -82,50 +72,43 @@ public class ThriftMapper {
         return header;
     }
 
-    public static Header convertResponseToHeader(GenericResponse response) {
-        Header header = new Header();
+    public static byte getMessageType(GenericRequest request) {
+        if (request.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
+            return MessageType.Normal.getCode();
+        } else if (request.getMessageType() == Constants.MESSAGE_TYPE_HEART) {
+            return MessageType.Heartbeat.getCode();
+        } else {
+            throw new SerializationException("Serialize unknown messageType.");
+        }
+    }
 
+    public static byte getCallType(GenericRequest request) {
+        if (request.getCallType() == Constants.CALLTYPE_NOREPLY) {
+            return CallType.NoReply.getCode();
+        } else {
+            return CallType.Reply.getCode();
+        }
+    }
+
+    public static byte getMessageType(GenericResponse response) {
         int messageType = response.getMessageType();
 
-        //messageType
         if (messageType == Constants.MESSAGE_TYPE_SERVICE ||
                 messageType == Constants.MESSAGE_TYPE_SERVICE_EXCEPTION ||
                 messageType == Constants.MESSAGE_TYPE_EXCEPTION) {
-            header.setMessageType(MessageType.Normal.getCode());
-
+            return MessageType.Normal.getCode();
         } else if (messageType == Constants.MESSAGE_TYPE_HEART) {
-            header.setMessageType(MessageType.Heartbeat.getCode());
-
+            return MessageType.Heartbeat.getCode();
         } else if (messageType == Constants.MESSAGE_TYPE_SCANNER_HEART) {
-            header.setMessageType(MessageType.ScannerHeartbeat.getCode());
-            // 响应心跳信息
-            HeartbeatInfo heartbeatInfo = new HeartbeatInfo();
-            heartbeatInfo.setAppkey(appName);
-            heartbeatInfo.setSendTime(response.getCreateMillisTime());
-            ProviderSystemInfoCollector providerSystemInfoCollector = ProviderSystemInfoCollector.INSTANCE;
-            heartbeatInfo.setStatus(providerSystemInfoCollector.getStatus(response.getPort()));
-
-            LoadInfo loadInfo = new LoadInfo();
-            loadInfo.setAverageLoad(providerSystemInfoCollector.getSystemLoadAverage());
-            loadInfo.setOldGC(providerSystemInfoCollector.getOldGC());
-            loadInfo.setThreadNum(providerSystemInfoCollector.getThreadNum());
-            loadInfo.setQueueSize(providerSystemInfoCollector.getQueueSize());
-            loadInfo.setMethodQpsMap(providerSystemInfoCollector.getQpsMap());
-
-            heartbeatInfo.setLoadInfo(loadInfo);
-            header.setHeartbeatInfo(heartbeatInfo);
-
+            return MessageType.ScannerHeartbeat.getCode();
         } else {
             throw new SerializationException("Deserialize unknown messageType.");
         }
+    }
 
-        //requestInfo
-        ResponseInfo responseInfo = new ResponseInfo();
-        //sequence
-        responseInfo.setSequenceId(response.getSequence());
-        responseInfo.setStatus(StatusCode.Success.getCode());
+    public static byte getStatus(GenericResponse response) {
+        int messageType = response.getMessageType();
 
-        //exception
         if (messageType == Constants.MESSAGE_TYPE_EXCEPTION
                 || messageType == Constants.MESSAGE_TYPE_SERVICE_EXCEPTION) {
 
@@ -134,28 +117,76 @@ public class ThriftMapper {
             if (exception != null) {
                 if (exception instanceof RpcException) {
                     if (exception instanceof NetworkException) {
-                        responseInfo.setStatus(StatusCode.TransportException.getCode());
+                        return StatusCode.TransportException.getCode();
                     } else if (exception instanceof SerializationException) {
-                        responseInfo.setStatus(StatusCode.ProtocolException.getCode());
+                        return StatusCode.ProtocolException.getCode();
                     } else if (exception instanceof ServiceDegradedException) {
-                        responseInfo.setStatus(StatusCode.DegradeException.getCode());
+                        return StatusCode.DegradeException.getCode();
                     } else if (exception instanceof SecurityException) {
-                        responseInfo.setStatus(StatusCode.SecurityException.getCode());
+                        return StatusCode.SecurityException.getCode();
                     } else if (exception instanceof RemoteInvocationException) {
-                        responseInfo.setStatus(StatusCode.RemoteException.getCode());
+                        return StatusCode.RemoteException.getCode();
                     } else if (exception instanceof InvocationFailureException
                             || exception instanceof RejectedException) {
-                        responseInfo.setStatus(StatusCode.ServiceException.getCode());
+                        return StatusCode.ServiceException.getCode();
                     } else {
-                        responseInfo.setStatus(StatusCode.RpcException.getCode());
+                        return StatusCode.RpcException.getCode();
                     }
 
                 } else {
-                    responseInfo.setStatus(StatusCode.RuntimeException.getCode());
+                    return StatusCode.RuntimeException.getCode();
                 }
-                responseInfo.setMessage(exception.getMessage());
             }
         }
+        return StatusCode.Success.getCode();
+    }
+
+    public static String getStatusMessage(GenericResponse response) {
+        int messageType = response.getMessageType();
+
+        if (messageType == Constants.MESSAGE_TYPE_EXCEPTION
+                || messageType == Constants.MESSAGE_TYPE_SERVICE_EXCEPTION) {
+            Throwable exception = (Throwable) response.getReturn();
+
+            if (exception != null) {
+                return exception.getMessage();
+            }
+        }
+        return null;
+    }
+
+    public static Header convertResponseToHeader(GenericResponse response) {
+        Header header = new Header();
+
+        //messageType
+        header.setMessageType(getMessageType(response));
+
+        if (header.getMessageType() == MessageType.ScannerHeartbeat.getCode()) {
+            // 响应心跳信息
+            HeartbeatInfo heartbeatInfo = new HeartbeatInfo();
+            heartbeatInfo.setAppkey(appName);
+            heartbeatInfo.setSendTime(response.getCreateMillisTime());
+            ProviderSystemInfoCollector providerSystemInfoCollector = ProviderSystemInfoCollector.INSTANCE;
+            heartbeatInfo.setStatus(providerSystemInfoCollector.getStatus(response.getPort()));
+
+            LoadInfo loadInfo = new LoadInfo();
+            loadInfo.setAverageLoad(providerSystemInfoCollector.getSystemLoadAverage());
+            loadInfo.setOldGC(providerSystemInfoCollector.getOldGC());
+            loadInfo.setThreadNum(providerSystemInfoCollector.getThreadNum());
+            loadInfo.setQueueSize(providerSystemInfoCollector.getQueueSize());
+            loadInfo.setMethodQpsMap(providerSystemInfoCollector.getQpsMap());
+
+            heartbeatInfo.setLoadInfo(loadInfo);
+            header.setHeartbeatInfo(heartbeatInfo);
+        }
+
+        //requestInfo
+        ResponseInfo responseInfo = new ResponseInfo();
+        //sequence
+        responseInfo.setSequenceId(response.getSequence());
+        //exception
+        responseInfo.setStatus(getStatus(response));
+        responseInfo.setMessage(getStatusMessage(response));
 
         header.setResponseInfo(responseInfo);
 
@@ -0,0 +1,175 @@
+package com.dianping.pigeon.remoting.common.monitor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dianping.pigeon.config.ConfigChangeListener;
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+
+/**
+ * 按方法采样，决定一次调用是否记录monitor事务或trace数据
+ * <p>
+ * 配置前缀加.rate为采样率(0到1，默认1即全部记录)，加.budget为每个方法每秒最多记录的次数(默认0不限制)，
+ * 两者同时配置时取较低的采样率；按预算采样时用上一秒的调用量计算本秒的采样间隔。
+ * sample返回采样间隔N：1为全部记录，0为本次不记录，大于1为按1/N采样且本次被选中，汇总时按N放大。
+ * 失败和慢请求(超过pigeon.slowrequest.threshold)不受采样影响，由调用方在完成时用isForced判断后补记，按1计数
+ * <p>
+ * monitor采样在调用链入口决定一次，采样间隔随请求传给下游，下游沿用上游的决定而不再自己采样，
+ * 这样被记录的事务两端都在，调用链不会断开；上游全量记录时不传，下游按本地配置采样
+ */
+public class CallSampler {
+
+    private static final Logger logger = LoggerLoader.getLogger(CallSampler.class);
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private static final long WINDOW_MILLIS = 1000L;
+
+    private final String rateKey;
+
+    private final String budgetKey;
+
+    private volatile float rate;
+
+    private volatile int budget;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, MethodSampler>> samplers = new ConcurrentHashMap<String, ConcurrentMap<String, MethodSampler>>();
+
+    /**
+     * @param keyPrefix 配置前缀，如pigeon.invoker.monitor.sample
+     */
+    public CallSampler(String keyPrefix) {
+        this.rateKey = keyPrefix + ".rate";
+        this.budgetKey = keyPrefix + ".budget";
+        this.rate = configManager.getFloatValue(rateKey, 1f);
+        this.budget = configManager.getIntValue(budgetKey, 0);
+        configManager.registerConfigChangeListener(new InnerConfigChangeListener());
+    }
+
+    public int sample(String serviceName, String methodName) {
+        if (rate >= 1f && budget <= 0) {
+            return 1;
+        }
+        return getSampler(serviceName, methodName).sample();
+    }
+
+    /**
+     * @return 失败或慢请求，不论是否被采样都应按1记录
+     */
+    public static boolean isForced(boolean success, long elapsedMillis) {
+        return !success || SlowRequestRecorder.INSTANCE.isSlow(elapsedMillis);
+    }
+
+    /**
+     * @return 完成时的计数权重，未被采样且不需要补记时为0
+     */
+    public static int getWeight(int sampleInterval, boolean success, long elapsedMillis) {
+        if (sampleInterval == 1) {
+            return 1;
+        }
+        return isForced(success, elapsedMillis) ? 1 : sampleInterval;
+    }
+
+    /**
+     * @return 上游传来的采样间隔，没有、为1或无法解析时为-1，由本地配置决定
+     */
+    public static int parseInterval(Object value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            int interval = Integer.parseInt(String.valueOf(value));
+            return interval >= 0 && interval != 1 ? interval : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private MethodSampler getSampler(String serviceName, String methodName) {
+        ConcurrentMap<String, MethodSampler> methods = samplers.get(serviceName);
+        if (methods == null) {
+            methods = new ConcurrentHashMap<String, MethodSampler>();
+            ConcurrentMap<String, MethodSampler> old = samplers.putIfAbsent(serviceName, methods);
+            if (old != null) {
+                methods = old;
+            }
+        }
+        MethodSampler sampler = methods.get(methodName);
+        if (sampler == null) {
+            sampler = new MethodSampler();
+            MethodSampler old = methods.putIfAbsent(methodName, sampler);
+            if (old != null) {
+                sampler = old;
+            }
+        }
+        return sampler;
+    }
+
+    private int getInterval(long lastWindowCalls) {
+        float currentRate = rate;
+        if (currentRate <= 0f) {
+            return 0;
+        }
+        int interval = currentRate >= 1f ? 1 : (int) Math.ceil(1f / currentRate);
+        int currentBudget = budget;
+        if (currentBudget > 0 && lastWindowCalls > currentBudget) {
+            interval = (int) Math.max(interval, (lastWindowCalls + currentBudget - 1) / currentBudget);
+        }
+        return interval;
+    }
+
+    private class MethodSampler {
+
+        private final AtomicLong windowStart = new AtomicLong(System.currentTimeMillis());
+
+        private final AtomicLong calls = new AtomicLong();
+
+        private volatile int interval = getInterval(0);
+
+        int sample() {
+            long now = System.currentTimeMillis();
+            long start = windowStart.get();
+            if (now - start >= WINDOW_MILLIS && windowStart.compareAndSet(start, now)) {
+                // 超过一个窗口没有调用时按实际时长折算成每秒调用量
+                long lastCalls = calls.getAndSet(0) * WINDOW_MILLIS / (now - start);
+                interval = getInterval(lastCalls);
+            }
+            calls.incrementAndGet();
+            int current = interval;
+            if (current <= 1) {
+                return current;
+            }
+            return ThreadLocalRandom.current().nextInt(current) == 0 ? current : 0;
+        }
+    }
+
+    private class InnerConfigChangeListener implements ConfigChangeListener {
+
+        @Override
+        public void onKeyUpdated(String key, String value) {
+            try {
+                if (key.endsWith(rateKey)) {
+                    rate = Float.parseFloat(value);
+                } else if (key.endsWith(budgetKey)) {
+                    budget = Integer.parseInt(value);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("invalid value for key " + key + ": " + value);
+            }
+        }
+
+        @Override
+        public void onKeyAdded(String key, String value) {
+            onKeyUpdated(key, value);
+        }
+
+        @Override
+        public void onKeyRemoved(String key) {
+        }
+    }
+}
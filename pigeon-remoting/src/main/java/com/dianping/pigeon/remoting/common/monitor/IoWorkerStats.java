@@ -0,0 +1,177 @@
+package com.dianping.pigeon.remoting.common.monitor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dianping.pigeon.remoting.common.monitor.trace.LatencyHistogram;
+
+/**
+ * 单个I/O线程(如netty worker)的负载统计：事件循环延迟、读写字节数、编解码耗时
+ * <p>
+ * 延迟由定时投递到该线程任务队列的空任务测得，即任务从投递到开始执行的等待时间，单位微秒；
+ * 上一次探测还没执行时不再投递，等待中的时间通过getPendingProbeMicros反映
+ * <p>
+ * 编码可能在业务线程进行(调用端发请求、服务端在业务线程池写响应)，这部分不占用I/O线程，单独计入caller
+ */
+public class IoWorkerStats {
+
+    private final String name;
+
+    private final Executor executor;
+
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    private final AtomicLong decodeNanos = new AtomicLong();
+
+    private final AtomicLong decodeCount = new AtomicLong();
+
+    private final AtomicLong encodeNanos = new AtomicLong();
+
+    private final AtomicLong encodeCount = new AtomicLong();
+
+    private final AtomicLong callerEncodeNanos = new AtomicLong();
+
+    private final AtomicLong callerEncodeCount = new AtomicLong();
+
+    private final AtomicLong lagMicros = new AtomicLong();
+
+    // 启动以来的延迟分布
+    private final LatencyHistogram lagHistogram = new LatencyHistogram();
+
+    // 上次上报以来的延迟分布，上报后重置
+    private final LatencyHistogram intervalLagHistogram = new LatencyHistogram();
+
+    private volatile long probeStartNanos = 0L;
+
+    // 探测任务或读事件所在的线程，即该I/O线程本身
+    private volatile Thread ioThread;
+
+    private final Runnable probeTask = new Runnable() {
+        @Override
+        public void run() {
+            markIoThread();
+            long start = probeStartNanos;
+            if (start != 0L) {
+                long lag = (System.nanoTime() - start) / 1000;
+                lagMicros.addAndGet(lag);
+                lagHistogram.record(lag);
+                intervalLagHistogram.record(lag);
+                probeStartNanos = 0L;
+            }
+        }
+    };
+
+    public IoWorkerStats(String name, Executor executor) {
+        this.name = name;
+        this.executor = executor;
+    }
+
+    void probe() {
+        if (probeStartNanos != 0L) {
+            return;
+        }
+        long now = System.nanoTime();
+        probeStartNanos = now != 0L ? now : 1L;
+        try {
+            executor.execute(probeTask);
+        } catch (RuntimeException e) {
+            probeStartNanos = 0L;
+            throw e;
+        }
+    }
+
+    /**
+     * 在该I/O线程中调用，记录线程以便区分编码是否发生在I/O线程
+     */
+    public void markIoThread() {
+        Thread current = Thread.currentThread();
+        if (ioThread != current) {
+            ioThread = current;
+        }
+    }
+
+    public boolean isIoThread() {
+        return Thread.currentThread() == ioThread;
+    }
+
+    public void addBytesRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    public void addBytesWritten(long bytes) {
+        bytesWritten.addAndGet(bytes);
+    }
+
+    public void addDecodeNanos(long nanos) {
+        decodeNanos.addAndGet(nanos);
+        decodeCount.incrementAndGet();
+    }
+
+    public void addEncodeNanos(long nanos) {
+        encodeNanos.addAndGet(nanos);
+        encodeCount.incrementAndGet();
+    }
+
+    public void addCallerEncodeNanos(long nanos) {
+        callerEncodeNanos.addAndGet(nanos);
+        callerEncodeCount.incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public long getDecodeNanos() {
+        return decodeNanos.get();
+    }
+
+    public long getDecodeCount() {
+        return decodeCount.get();
+    }
+
+    public long getEncodeNanos() {
+        return encodeNanos.get();
+    }
+
+    public long getEncodeCount() {
+        return encodeCount.get();
+    }
+
+    public long getCallerEncodeNanos() {
+        return callerEncodeNanos.get();
+    }
+
+    public long getCallerEncodeCount() {
+        return callerEncodeCount.get();
+    }
+
+    public long getLagMicros() {
+        return lagMicros.get();
+    }
+
+    public LatencyHistogram getLagHistogram() {
+        return lagHistogram;
+    }
+
+    LatencyHistogram getIntervalLagHistogram() {
+        return intervalLagHistogram;
+    }
+
+    /**
+     * @return 尚未执行的探测任务已等待的时间，没有时为0
+     */
+    public long getPendingProbeMicros() {
+        long start = probeStartNanos;
+        return start == 0L ? 0L : (System.nanoTime() - start) / 1000;
+    }
+}
@@ -0,0 +1,137 @@
+package com.dianping.pigeon.remoting.common.monitor;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.monitor.Monitor;
+import com.dianping.pigeon.monitor.MonitorLoader;
+import com.dianping.pigeon.remoting.common.monitor.trace.LatencyHistogram;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.threadpool.DefaultThreadFactory;
+
+/**
+ * 各I/O线程的负载统计，第一次注册时启动定时探测，并按周期通过Monitor上报
+ * <p>
+ * 每个worker每个周期一个PigeonIO.worker事件，desc中是该周期的延迟p99/最大值、读写字节数、编解码平均耗时，
+ * callerEncode为在业务线程编码的平均耗时
+ */
+public enum IoWorkerStatsRegistry {
+
+    INSTANCE;
+
+    private static final Logger logger = LoggerLoader.getLogger(IoWorkerStatsRegistry.class);
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private static final int PROBE_INTERVAL = configManager.getIntValue("pigeon.io.worker.probe.interval", 100);
+
+    private static final int REPORT_INTERVAL = configManager.getIntValue("pigeon.io.worker.report.interval", 60000);
+
+    private final ConcurrentMap<Object, IoWorkerStats> workerStats = new ConcurrentHashMap<Object, IoWorkerStats>();
+
+    private final Map<String, Integer> workerCounts = new HashMap<String, Integer>();
+
+    // 上次上报时的累计值，只在上报线程中访问
+    private final Map<IoWorkerStats, long[]> reported = new HashMap<IoWorkerStats, long[]>();
+
+    private volatile ScheduledThreadPoolExecutor scheduler;
+
+    public IoWorkerStats getStats(Object worker) {
+        return workerStats.get(worker);
+    }
+
+    /**
+     * @param worker   I/O线程对象，作为key
+     * @param prefix   名称前缀，如server-worker，名称为前缀加序号
+     * @param executor 把任务投递到该I/O线程执行
+     */
+    public synchronized IoWorkerStats register(Object worker, String prefix, Executor executor) {
+        IoWorkerStats stats = workerStats.get(worker);
+        if (stats == null) {
+            Integer count = workerCounts.get(prefix);
+            count = count == null ? 1 : count + 1;
+            workerCounts.put(prefix, count);
+            stats = new IoWorkerStats(prefix + "-" + count, executor);
+            workerStats.put(worker, stats);
+            startIfNecessary();
+        }
+        return stats;
+    }
+
+    public Collection<IoWorkerStats> getAllStats() {
+        return workerStats.values();
+    }
+
+    private void startIfNecessary() {
+        if (scheduler != null || (PROBE_INTERVAL <= 0 && REPORT_INTERVAL <= 0)) {
+            return;
+        }
+        scheduler = new ScheduledThreadPoolExecutor(1, new DefaultThreadFactory("Pigeon-IO-Worker-Probe"));
+        if (PROBE_INTERVAL > 0) {
+            scheduler.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    for (IoWorkerStats stats : workerStats.values()) {
+                        try {
+                            stats.probe();
+                        } catch (Throwable t) {
+                            logger.info("[probe] failed, worker:" + stats.getName() + ", " + t.getMessage());
+                        }
+                    }
+                }
+            }, PROBE_INTERVAL, PROBE_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+        if (REPORT_INTERVAL > 0 && Constants.MONITOR_ENABLE) {
+            scheduler.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        report(MonitorLoader.getMonitor());
+                    } catch (Throwable t) {
+                        logger.info("[report] failed, " + t.getMessage());
+                    }
+                }
+            }, REPORT_INTERVAL, REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void report(Monitor monitor) {
+        for (IoWorkerStats stats : workerStats.values()) {
+            long[] current = { stats.getBytesRead(), stats.getBytesWritten(), stats.getDecodeNanos(),
+                    stats.getDecodeCount(), stats.getEncodeNanos(), stats.getEncodeCount(),
+                    stats.getCallerEncodeNanos(), stats.getCallerEncodeCount() };
+            long[] last = reported.get(stats);
+            if (last == null) {
+                last = new long[current.length];
+            }
+            reported.put(stats, current);
+
+            LatencyHistogram.Snapshot lag = stats.getIntervalLagHistogram().snapshot();
+            stats.getIntervalLagHistogram().reset();
+            long maxLag = Math.max(lag.getValueAtPercentile(1), stats.getPendingProbeMicros());
+
+            StringBuilder desc = new StringBuilder();
+            desc.append("lagP99=").append(lag.getValueAtPercentile(0.99)).append("us,lagMax=").append(maxLag)
+                    .append("us,read=").append(current[0] - last[0]).append("B,written=")
+                    .append(current[1] - last[1]).append("B,decode=").append(average(current, last, 2))
+                    .append("us,encode=").append(average(current, last, 4)).append("us,callerEncode=")
+                    .append(average(current, last, 6)).append("us");
+            monitor.logEvent("PigeonIO.worker", stats.getName(), desc.toString());
+        }
+    }
+
+    private static long average(long[] current, long[] last, int index) {
+        long count = current[index + 1] - last[index + 1];
+        return count > 0 ? (current[index] - last[index]) / count / 1000 : 0L;
+    }
+}
@@ -0,0 +1,177 @@
+package com.dianping.pigeon.remoting.common.monitor;
+
+import java.util.List;
+
+import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
+
+/**
+ * 一次超过阈值的慢请求的现场，由SlowRequestRecorder保存，序列化成json供console查看
+ * <p>
+ * 时间单位均为毫秒，未知的大小、等待时间为-1
+ */
+public class SlowRequest {
+
+    public static final String SIDE_INVOKER = "invoker";
+
+    public static final String SIDE_PROVIDER = "provider";
+
+    private final String side;
+
+    private final String serviceName;
+
+    private final String methodName;
+
+    private final long startTime;
+
+    private final long elapsed;
+
+    private long seq;
+
+    private String app;
+
+    private String remoteAddress;
+
+    private int timeout;
+
+    private int requestSize = -1;
+
+    private int responseSize = -1;
+
+    private long queueWait = -1;
+
+    private String poolName;
+
+    private String threadName;
+
+    private String error;
+
+    private List<TimePoint> timeline;
+
+    public SlowRequest(String side, String serviceName, String methodName, long startTime, long elapsed) {
+        this.side = side;
+        this.serviceName = serviceName;
+        this.methodName = methodName;
+        this.startTime = startTime;
+        this.elapsed = elapsed;
+    }
+
+    public String getSide() {
+        return side;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    /**
+     * @return 调用端为目标应用，服务端为调用方应用
+     */
+    public String getApp() {
+        return app;
+    }
+
+    public void setApp(String app) {
+        this.app = app;
+    }
+
+    /**
+     * @return 调用端为选中的服务端地址，服务端为调用方地址
+     */
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public void setRemoteAddress(String remoteAddress) {
+        this.remoteAddress = remoteAddress;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    public int getRequestSize() {
+        return requestSize;
+    }
+
+    public void setRequestSize(int requestSize) {
+        this.requestSize = requestSize;
+    }
+
+    public int getResponseSize() {
+        return responseSize;
+    }
+
+    public void setResponseSize(int responseSize) {
+        this.responseSize = responseSize;
+    }
+
+    /**
+     * @return 在业务线程池队列中等待的时间
+     */
+    public long getQueueWait() {
+        return queueWait;
+    }
+
+    public void setQueueWait(long queueWait) {
+        this.queueWait = queueWait;
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    public void setPoolName(String poolName) {
+        this.poolName = poolName;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public void setThreadName(String threadName) {
+        this.threadName = threadName;
+    }
+
+    /**
+     * @return 失败时的异常类名，成功时为null
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public List<TimePoint> getTimeline() {
+        return timeline;
+    }
+
+    public void setTimeline(List<TimePoint> timeline) {
+        this.timeline = timeline;
+    }
+}
@@ -0,0 +1,252 @@
+package com.dianping.pigeon.remoting.common.monitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.dianping.pigeon.config.ConfigChangeListener;
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+
+/**
+ * 慢请求记录，常开，请求完成时耗时超过pigeon.slowrequest.threshold(毫秒)才记录
+ * <p>
+ * 每个方法两个定长数组，分别保存最近的N个和耗时最长的N个慢请求，写入只用cas不加锁，
+ * 方法数超过pigeon.slowrequest.methods.max后不再为新方法分配
+ */
+public enum SlowRequestRecorder {
+
+    INSTANCE;
+
+    private static final Logger logger = LoggerLoader.getLogger(SlowRequestRecorder.class);
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private static final String KEY_THRESHOLD = "pigeon.slowrequest.threshold";
+
+    private static final int RECENT_SIZE = configManager.getIntValue("pigeon.slowrequest.recent.size", 20);
+
+    private static final int SLOWEST_SIZE = configManager.getIntValue("pigeon.slowrequest.slowest.size", 10);
+
+    private static final int MAX_METHODS = configManager.getIntValue("pigeon.slowrequest.methods.max", 1000);
+
+    private static volatile long threshold = configManager.getLongValue(KEY_THRESHOLD, 1000);
+
+    private static final Comparator<SlowRequest> ELAPSED_COMPARATOR = new Comparator<SlowRequest>() {
+        @Override
+        public int compare(SlowRequest o1, SlowRequest o2) {
+            return o1.getElapsed() > o2.getElapsed() ? -1 : (o1.getElapsed() == o2.getElapsed() ? 0 : 1);
+        }
+    };
+
+    static {
+        configManager.registerConfigChangeListener(new InnerConfigChangeListener());
+    }
+
+    private final ConcurrentMap<String, MethodSlowRequests> methods = new ConcurrentHashMap<String, MethodSlowRequests>();
+
+    /**
+     * @return 该耗时是否需要记录，调用方据此决定是否构造SlowRequest
+     */
+    public boolean isSlow(long elapsed) {
+        long current = threshold;
+        return current > 0 && elapsed >= current;
+    }
+
+    public void record(SlowRequest request) {
+        if (!isSlow(request.getElapsed())) {
+            return;
+        }
+        String key = request.getSide() + ":" + request.getServiceName() + "#" + request.getMethodName();
+        MethodSlowRequests slowRequests = methods.get(key);
+        if (slowRequests == null) {
+            if (methods.size() >= MAX_METHODS) {
+                return;
+            }
+            slowRequests = new MethodSlowRequests(request.getSide(), request.getServiceName(),
+                    request.getMethodName());
+            MethodSlowRequests old = methods.putIfAbsent(key, slowRequests);
+            if (old != null) {
+                slowRequests = old;
+            }
+        }
+        slowRequests.add(request);
+    }
+
+    /**
+     * @return 各方法的慢请求，最近的按时间倒序，最慢的按耗时倒序
+     */
+    public List<MethodSlowRequests.Snapshot> getSlowRequests() {
+        List<MethodSlowRequests.Snapshot> snapshots = new ArrayList<MethodSlowRequests.Snapshot>(methods.size());
+        for (MethodSlowRequests slowRequests : methods.values()) {
+            snapshots.add(slowRequests.snapshot());
+        }
+        return snapshots;
+    }
+
+    public void clear() {
+        methods.clear();
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    public static class MethodSlowRequests {
+
+        private final String side;
+
+        private final String serviceName;
+
+        private final String methodName;
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicReferenceArray<SlowRequest> recent = new AtomicReferenceArray<SlowRequest>(
+                Math.max(RECENT_SIZE, 1));
+
+        private final AtomicReferenceArray<SlowRequest> slowest = new AtomicReferenceArray<SlowRequest>(
+                Math.max(SLOWEST_SIZE, 1));
+
+        MethodSlowRequests(String side, String serviceName, String methodName) {
+            this.side = side;
+            this.serviceName = serviceName;
+            this.methodName = methodName;
+        }
+
+        void add(SlowRequest request) {
+            long index = count.getAndIncrement();
+            recent.set((int) (index % recent.length()), request);
+            offerSlowest(request);
+        }
+
+        // 替换当前耗时最短的一个，cas失败说明有并发写入，重新查找
+        private void offerSlowest(SlowRequest request) {
+            while (true) {
+                int index = -1;
+                SlowRequest min = null;
+                for (int i = 0; i < slowest.length(); i++) {
+                    SlowRequest current = slowest.get(i);
+                    if (current == null) {
+                        index = i;
+                        min = null;
+                        break;
+                    }
+                    if (min == null || current.getElapsed() < min.getElapsed()) {
+                        index = i;
+                        min = current;
+                    }
+                }
+                if (min != null && min.getElapsed() >= request.getElapsed()) {
+                    return;
+                }
+                if (slowest.compareAndSet(index, min, request)) {
+                    return;
+                }
+            }
+        }
+
+        Snapshot snapshot() {
+            long total = count.get();
+            int size = (int) Math.min(total, recent.length());
+            List<SlowRequest> recentList = new ArrayList<SlowRequest>(size);
+            for (long i = total - 1; i >= total - size; i--) {
+                SlowRequest request = recent.get((int) (i % recent.length()));
+                if (request != null) {
+                    recentList.add(request);
+                }
+            }
+            List<SlowRequest> slowestList = new ArrayList<SlowRequest>(slowest.length());
+            for (int i = 0; i < slowest.length(); i++) {
+                SlowRequest request = slowest.get(i);
+                if (request != null) {
+                    slowestList.add(request);
+                }
+            }
+            Collections.sort(slowestList, ELAPSED_COMPARATOR);
+            return new Snapshot(side, serviceName, methodName, total, recentList, slowestList);
+        }
+
+        public static class Snapshot {
+
+            private final String side;
+
+            private final String serviceName;
+
+            private final String methodName;
+
+            private final long count;
+
+            private final List<SlowRequest> recent;
+
+            private final List<SlowRequest> slowest;
+
+            Snapshot(String side, String serviceName, String methodName, long count, List<SlowRequest> recent,
+                     List<SlowRequest> slowest) {
+                this.side = side;
+                this.serviceName = serviceName;
+                this.methodName = methodName;
+                this.count = count;
+                this.recent = recent;
+                this.slowest = slowest;
+            }
+
+            public String getSide() {
+                return side;
+            }
+
+            public String getServiceName() {
+                return serviceName;
+            }
+
+            public String getMethodName() {
+                return methodName;
+            }
+
+            /**
+             * @return 记录以来该方法的慢请求总数
+             */
+            public long getCount() {
+                return count;
+            }
+
+            public List<SlowRequest> getRecent() {
+                return recent;
+            }
+
+            public List<SlowRequest> getSlowest() {
+                return slowest;
+            }
+        }
+    }
+
+    private static class InnerConfigChangeListener implements ConfigChangeListener {
+
+        @Override
+        public void onKeyUpdated(String key, String value) {
+            if (key.endsWith(KEY_THRESHOLD)) {
+                try {
+                    threshold = Long.parseLong(value);
+                } catch (RuntimeException e) {
+                    logger.warn("invalid value for key " + key + ": " + value);
+                }
+            }
+        }
+
+        @Override
+        public void onKeyAdded(String key, String value) {
+            onKeyUpdated(key, value);
+        }
+
+        @Override
+        public void onKeyRemoved(String key) {
+        }
+    }
+}
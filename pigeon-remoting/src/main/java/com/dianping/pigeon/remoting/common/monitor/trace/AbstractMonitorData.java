@@ -1,5 +1,7 @@
 package com.dianping.pigeon.remoting.common.monitor.trace;
 
+import com.dianping.pigeon.remoting.common.monitor.CallSampler;
+
 /**
  * @author qi.yin
  *         2016/11/20  下午3:29.
@@ -20,8 +22,18 @@ public abstract class AbstractMonitorData implements MonitorData {
 
     protected long startMillisTime;
 
+    protected long startNanoTime;
+
+    protected long elapsedMicros;
+
     protected boolean completed;
 
+    // 采样间隔，见CallSampler
+    protected int sampleInterval = 1;
+
+    // 完成时确定的计数权重，0表示不记录
+    protected int sampleWeight = 1;
+
     public AbstractMonitorData(ApplicationTraceRepository traceData) {
         this.traceData = traceData;
     }
@@ -29,6 +41,7 @@ public abstract class AbstractMonitorData implements MonitorData {
     @Override
     public void start() {
         startMillisTime = System.currentTimeMillis();
+        startNanoTime = System.nanoTime();
     }
 
     @Override
@@ -38,7 +51,8 @@ public abstract class AbstractMonitorData implements MonitorData {
 
     @Override
     public void complete() {
-        //
+        elapsedMicros = (System.nanoTime() - startNanoTime) / 1000;
+        sampleWeight = CallSampler.getWeight(sampleInterval, isSuccess, elapsedMicros / 1000);
     }
 
     @Override
@@ -99,6 +113,30 @@ public abstract class AbstractMonitorData implements MonitorData {
         this.startMillisTime = startMillisTime;
     }
 
+    public long getStartNanoTime() {
+        return startNanoTime;
+    }
+
+    public void setStartNanoTime(long startNanoTime) {
+        this.startNanoTime = startNanoTime;
+    }
+
+    public long getElapsedMicros() {
+        return elapsedMicros;
+    }
+
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    public void setSampleInterval(int sampleInterval) {
+        this.sampleInterval = sampleInterval;
+    }
+
+    public int getSampleWeight() {
+        return sampleWeight;
+    }
+
     public boolean isCompleted() {
         return completed;
     }
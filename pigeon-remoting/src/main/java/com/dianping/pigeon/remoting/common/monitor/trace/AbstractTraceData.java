@@ -1,15 +1,13 @@
 package com.dianping.pigeon.remoting.common.monitor.trace;
 
-import com.dianping.pigeon.util.MapUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * 耗时按微秒记录在LatencyHistogram中，输出的耗时字段仍为毫秒，Micros结尾的字段为微秒
+ *
  * @author qi.yin
  *         2016/11/17  下午1:32.
  */
@@ -35,7 +33,7 @@ public class AbstractTraceData {
 
     private transient AtomicLong totalElapsed = new AtomicLong();
 
-    private transient ConcurrentNavigableMap<Long, AtomicLong> elapseds = new ConcurrentSkipListMap<Long, AtomicLong>();
+    private transient LatencyHistogram histogram = new LatencyHistogram();
 
     private byte serialize;
 
@@ -75,15 +73,16 @@ public class AbstractTraceData {
     }
 
     public long getTotalElapsed() {
-        return totalElapsed.get();
+        return toMillis(totalElapsed.get());
     }
 
     public long getMaxElapsed() {
-        return maxElapsed.get();
+        return toMillis(maxElapsed.get());
     }
 
     public long getMinElapsed() {
-        return minElapsed.get();
+        long min = minElapsed.get();
+        return min == Long.MAX_VALUE ? min : toMillis(min);
     }
 
     public long getAvgElapsed() {
@@ -92,7 +91,7 @@ public class AbstractTraceData {
         if (count == 0L) {
             avgElapsed = 0L;
         } else {
-            avgElapsed = totalElapsed.get() / (totalSuccess.get() + totalFailed.get());
+            avgElapsed = toMillis(totalElapsed.get() / count);
         }
 
         return avgElapsed;
@@ -149,32 +148,21 @@ public class AbstractTraceData {
         this.elapsed999th = elapsed999th;
     }
 
-    @JsonIgnore
-    public long getPercentile(double delta) {
-        List<Long> keys = new ArrayList<Long>(elapseds.keySet());
-
-        long totalCount = totalSuccess.get() + totalFailed.get();
-        long tempCount = 0L;
-        long key = 0L;
-        if (totalCount == 0L) {
-            return 0;
-        }
-        for (int i = 0; i < elapseds.size(); i++) {
-
-            key = keys.get(i);
-
-            AtomicLong value = elapseds.get(key);
-
-            tempCount += value.get();
+    public long getElapsed95thMicros() {
+        return histogram.getValueAtPercentile(0.95);
+    }
 
-            double difference = tempCount * 1.0 / totalCount - delta;
+    public long getElapsed99thMicros() {
+        return histogram.getValueAtPercentile(0.99);
+    }
 
-            if (Math.abs(difference) < 1e-5 || difference > 0) {
-                break;
-            }
+    public long getElapsed999thMicros() {
+        return histogram.getValueAtPercentile(0.999);
+    }
 
-        }
-        return key;
+    @JsonIgnore
+    public long getPercentile(double delta) {
+        return toMillis(histogram.getValueAtPercentile(delta));
     }
 
     public void incTotalCount() {
@@ -189,15 +177,47 @@ public class AbstractTraceData {
         this.totalFailed.incrementAndGet();
     }
 
+    public void addTotalCount(long count) {
+        this.totalCount.addAndGet(count);
+    }
+
+    public void addTotalSuccess(long count) {
+        this.totalSuccess.addAndGet(count);
+    }
+
+    public void addTotalFailed(long count) {
+        this.totalFailed.addAndGet(count);
+    }
+
+    /**
+     * @param elapsed 毫秒
+     */
     @JsonIgnore
     public void setElapsed(long elapsed) {
-        setMaxElapsed(elapsed);
-        setMinElapsed(elapsed);
-        setTotalElapsed(elapsed);
-        setElapseds(elapsed);
+        setElapsedMicros(TimeUnit.MILLISECONDS.toMicros(elapsed));
+    }
+
+    /**
+     * @param elapsed 微秒
+     */
+    @JsonIgnore
+    public void setElapsedMicros(long elapsed) {
+        setElapsedMicros(elapsed, 1);
+    }
+
+    /**
+     * @param elapsed 微秒
+     * @param count   采样时的放大倍数
+     */
+    @JsonIgnore
+    public void setElapsedMicros(long elapsed, long count) {
+        updateMaxElapsed(elapsed);
+        updateMinElapsed(elapsed);
+        totalElapsed.addAndGet(elapsed * count);
+        histogram.record(elapsed, count);
     }
 
-    public void setMaxElapsed(long elapsed) {
+    private void updateMaxElapsed(long elapsed) {
         for (; ; ) {
             long lastElapsed = maxElapsed.get();
 
@@ -211,7 +231,7 @@ public class AbstractTraceData {
         }
     }
 
-    public void setMinElapsed(long elapsed) {
+    private void updateMinElapsed(long elapsed) {
         for (; ; ) {
             long lastElapsed = minElapsed.get();
 
@@ -225,39 +245,13 @@ public class AbstractTraceData {
         }
     }
 
-    public void setTotalElapsed(long elapsed) {
-        this.totalElapsed.addAndGet(elapsed);
-    }
-
     @JsonIgnore
-    public void setElapseds(long elapsed) {
-        long duration = computeDuration(elapsed);
-
-        AtomicLong count = MapUtils.getOrCreate(elapseds, duration, AtomicLong.class);
-
-        count.incrementAndGet();
+    public LatencyHistogram getHistogram() {
+        return histogram;
     }
 
-    @JsonIgnore
-    public ConcurrentNavigableMap<Long, AtomicLong> getElapseds() {
-        return elapseds;
-    }
-
-    @JsonIgnore
-    public void setElapseds(ConcurrentNavigableMap<Long, AtomicLong> elapseds) {
-        this.elapseds = elapseds;
-    }
-
-    protected long computeDuration(long duration) {
-        if (duration < 20) {
-            return duration;
-        } else if (duration < 200) {
-            return duration - duration % 5;
-        } else if (duration < 2000) {
-            return duration - duration % 50;
-        } else {
-            return duration - duration % 500;
-        }
+    private static long toMillis(long micros) {
+        return TimeUnit.MICROSECONDS.toMillis(micros);
     }
 
 }
@@ -29,8 +29,11 @@ public class ApplicationTraceRepository {
         this.startMillis = System.currentTimeMillis();
     }
 
+    // 按采样记录时请求数在完成后才按权重计入，见CallSampler
     public void start(ProviderMonitorData monitorData) {
-        providerTraceData.start(monitorData);
+        if (monitorData.getSampleInterval() == 1) {
+            providerTraceData.start(monitorData);
+        }
     }
 
     public void trace(ProviderMonitorData monitorData) {
@@ -39,23 +42,45 @@ public class ApplicationTraceRepository {
 
     public void complete(ProviderMonitorData monitorData) {
         traceKeys.remove();
+        if (monitorData.getSampleWeight() == 0) {
+            return;
+        }
+        if (monitorData.getSampleInterval() != 1) {
+            providerTraceData.start(monitorData);
+            providerTraceData.addData(monitorData);
+        }
         providerTraceData.complete(monitorData);
+        RequestMetricsRepository.INSTANCE.complete(monitorData);
     }
 
     public void addData(ProviderMonitorData monitorData) {
-        providerTraceData.addData(monitorData);
+        if (monitorData.getSampleInterval() == 1) {
+            providerTraceData.addData(monitorData);
+        }
     }
 
     public void start(InvokerMonitorData monitorData) {
-        invokerTraceData.start(monitorData);
+        if (monitorData.getSampleInterval() == 1) {
+            invokerTraceData.start(monitorData);
+        }
     }
 
     public void complete(InvokerMonitorData monitorData) {
+        if (monitorData.getSampleWeight() == 0) {
+            return;
+        }
+        if (monitorData.getSampleInterval() != 1) {
+            invokerTraceData.start(monitorData);
+            invokerTraceData.addData(monitorData);
+        }
         invokerTraceData.complete(monitorData);
+        RequestMetricsRepository.INSTANCE.complete(monitorData);
     }
 
     public void addData(InvokerMonitorData monitorData) {
-        invokerTraceData.addData(monitorData);
+        if (monitorData.getSampleInterval() == 1) {
+            invokerTraceData.addData(monitorData);
+        }
     }
 
     public void degrade(InvokerMonitorData monitorData) {
@@ -13,7 +13,7 @@ public class InvokerTraceRepository extends AbstractTraceRepository<InvokerMonit
                 new PairKey<SourceKey, DestinationKey>(monitorData.getSrcKey(), monitorData.getDstKey()),
                 InvokerTraceData.class);
 
-        traceStatsData.incTotalCount();
+        traceStatsData.addTotalCount(monitorData.getSampleWeight());
     }
 
     public void addData(InvokerMonitorData monitorData) {
@@ -33,13 +33,12 @@ public class InvokerTraceRepository extends AbstractTraceRepository<InvokerMonit
                 new PairKey<SourceKey, DestinationKey>(monitorData.getSrcKey(), monitorData.getDstKey()),
                 InvokerTraceData.class);
 
-        long elapsed = System.currentTimeMillis() - monitorData.getStartMillisTime();
-        traceStatsData.setElapsed(elapsed);
+        traceStatsData.setElapsedMicros(monitorData.getElapsedMicros(), monitorData.getSampleWeight());
 
         if (monitorData.isSuccess()) {
-            traceStatsData.incTotalSuccess();
+            traceStatsData.addTotalSuccess(monitorData.getSampleWeight());
         } else {
-            traceStatsData.incTotalFailed();
+            traceStatsData.addTotalFailed(monitorData.getSampleWeight());
         }
     }
 
@@ -0,0 +1,170 @@
+package com.dianping.pigeon.remoting.common.monitor.trace;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定内存的对数-线性分桶直方图，单位微秒
+ * <p>
+ * 小于64的值每个值一个桶；之后每个2的幂区间再均分为32个桶，相对误差不超过1/32。
+ * 记录只是一次数组下标计算加一次原子自增，不加锁、不分配对象；超过上限的值按上限记录
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKET_HALF_BITS = SUB_BUCKET_BITS - 1;
+
+    // 最大可记录值，约71分钟
+    public static final long MAX_VALUE = (1L << 32) - 1;
+
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    public void record(long value) {
+        counts.incrementAndGet(indexOf(value));
+    }
+
+    /**
+     * @param count 该值出现的次数，如采样时的放大倍数
+     */
+    public void record(long value, long count) {
+        counts.addAndGet(indexOf(value), count);
+    }
+
+    public long getTotalCount() {
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @param percentile 0到1之间，如0.99
+     * @return 该分位所在桶的上界，没有数据时返回0
+     */
+    public long getValueAtPercentile(double percentile) {
+        return snapshot().getValueAtPercentile(percentile);
+    }
+
+    /**
+     * 当前计数的副本，之后的记录不影响快照
+     */
+    public Snapshot snapshot() {
+        long[] values = new long[BUCKET_COUNT];
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            values[i] = counts.get(i);
+            total += values[i];
+        }
+        return new Snapshot(values, total);
+    }
+
+    /**
+     * 按升序的上界逐个累计计数，桶的上界不超过该值才计入，用于导出固定分桶；直接读计数，不复制数组
+     *
+     * @param bounds           升序的上界
+     * @param cumulativeCounts 与bounds等长，写入小于等于各上界的计数
+     * @return 总数
+     */
+    public long getCumulativeCounts(long[] bounds, long[] cumulativeCounts) {
+        long total = 0L;
+        int bound = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts.get(i);
+            if (count == 0L) {
+                continue;
+            }
+            while (bound < bounds.length && highestValueOf(i) > bounds[bound]) {
+                cumulativeCounts[bound++] = total;
+            }
+            total += count;
+        }
+        while (bound < bounds.length) {
+            cumulativeCounts[bound++] = total;
+        }
+        return total;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0L);
+        }
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return value < 0 ? 0 : (int) value;
+        }
+        if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_HALF_BITS;
+        return (shift << SUB_BUCKET_HALF_BITS) + (int) (value >>> shift);
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_HALF_BITS) - 1;
+        long subBucket = index - (shift << SUB_BUCKET_HALF_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private static long getValueAtPercentile(long[] values, long total, double percentile) {
+        if (total == 0L) {
+            return 0L;
+        }
+        long target = (long) Math.ceil(Math.min(Math.max(percentile, 0d), 1d) * total);
+        if (target < 1) {
+            target = 1;
+        }
+        long count = 0L;
+        for (int i = 0; i < values.length; i++) {
+            count += values[i];
+            if (count >= target) {
+                return highestValueOf(i);
+            }
+        }
+        return highestValueOf(values.length - 1);
+    }
+
+    /**
+     * 直方图快照，可与其他快照合并后再计算分位
+     */
+    public static class Snapshot {
+
+        private final long[] values;
+
+        private long totalCount;
+
+        private Snapshot(long[] values, long totalCount) {
+            this.values = values;
+            this.totalCount = totalCount;
+        }
+
+        public Snapshot() {
+            this(new long[BUCKET_COUNT], 0L);
+        }
+
+        public Snapshot merge(Snapshot other) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                values[i] += other.values[i];
+            }
+            totalCount += other.totalCount;
+            return this;
+        }
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        public long getValueAtPercentile(double percentile) {
+            return LatencyHistogram.getValueAtPercentile(values, totalCount, percentile);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.dianping.pigeon.remoting.common.monitor.trace;
 
 import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.monitor.CallSampler;
 
 /**
  * @author qi.yin
@@ -12,16 +13,30 @@ public class MonitorDataFactory {
 
     private static final ApplicationTraceRepository traceData = new ApplicationTraceRepository(appName);
 
+    private static final CallSampler invokerSampler = new CallSampler("pigeon.invoker.trace.sample");
+
+    private static final CallSampler providerSampler = new CallSampler("pigeon.provider.trace.sample");
+
     public static InvokerMonitorData newInvokerMonitorData(SourceKey srcKey, DestinationKey dstKey) {
         InvokerMonitorData monitorData = new InvokerMonitorData(traceData, srcKey, dstKey);
+        monitorData.setSampleInterval(sample(invokerSampler, dstKey));
         return monitorData;
     }
 
     public static ProviderMonitorData newProviderMonitorData(SourceKey srcKey, DestinationKey dstKey) {
         ProviderMonitorData monitorData = new ProviderMonitorData(traceData, srcKey, dstKey);
+        monitorData.setSampleInterval(sample(providerSampler, dstKey));
         return monitorData;
     }
 
+    private static int sample(CallSampler sampler, DestinationKey dstKey) {
+        if (dstKey instanceof MethodKey) {
+            MethodKey methodKey = (MethodKey) dstKey;
+            return sampler.sample(methodKey.getServiceName(), methodKey.getMethodName());
+        }
+        return 1;
+    }
+
     public static ApplicationTraceRepository getTraceData() {
         return traceData;
     }
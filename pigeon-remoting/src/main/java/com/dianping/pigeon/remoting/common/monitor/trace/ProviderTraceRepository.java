@@ -13,7 +13,7 @@ public class ProviderTraceRepository extends AbstractTraceRepository<ProviderMon
                 new PairKey<SourceKey, DestinationKey>(monitorData.getSrcKey(), monitorData.getDstKey()),
                 ProviderTraceData.class);
 
-        traceStatsData.incTotalCount();
+        traceStatsData.addTotalCount(monitorData.getSampleWeight());
     }
 
     public void addData(ProviderMonitorData monitorData) {
@@ -33,14 +33,12 @@ public class ProviderTraceRepository extends AbstractTraceRepository<ProviderMon
                 new PairKey<SourceKey, DestinationKey>(monitorData.getSrcKey(), monitorData.getDstKey()),
                 ProviderTraceData.class);
 
-        long elapsed = System.currentTimeMillis() - monitorData.getStartMillisTime();
-
-        traceStatsData.setElapsed(elapsed);
+        traceStatsData.setElapsedMicros(monitorData.getElapsedMicros(), monitorData.getSampleWeight());
 
         if (monitorData.isSuccess()) {
-            traceStatsData.incTotalSuccess();
+            traceStatsData.addTotalSuccess(monitorData.getSampleWeight());
         } else {
-            traceStatsData.incTotalFailed();
+            traceStatsData.addTotalFailed(monitorData.getSampleWeight());
         }
     }
 
@@ -0,0 +1,46 @@
+package com.dianping.pigeon.remoting.common.monitor.trace;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个方法从启动开始累计的请求数和耗时分布，不随trace数据重置，供/metrics等按计数器方式采集
+ */
+public class RequestMetrics {
+
+    private final AtomicLong totalSuccess = new AtomicLong();
+
+    private final AtomicLong totalFailed = new AtomicLong();
+
+    private final AtomicLong totalElapsedMicros = new AtomicLong();
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /**
+     * @param weight 采样时的放大倍数，未采样为1
+     */
+    public void record(long elapsedMicros, boolean success, int weight) {
+        if (success) {
+            totalSuccess.addAndGet(weight);
+        } else {
+            totalFailed.addAndGet(weight);
+        }
+        totalElapsedMicros.addAndGet(elapsedMicros * weight);
+        histogram.record(elapsedMicros, weight);
+    }
+
+    public long getTotalSuccess() {
+        return totalSuccess.get();
+    }
+
+    public long getTotalFailed() {
+        return totalFailed.get();
+    }
+
+    public long getTotalElapsedMicros() {
+        return totalElapsedMicros.get();
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+}
@@ -0,0 +1,40 @@
+package com.dianping.pigeon.remoting.common.monitor.trace;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.dianping.pigeon.util.MapUtils;
+
+/**
+ * 调用端、服务端按方法累计的请求指标，随trace数据一起在请求完成时记录
+ */
+public enum RequestMetricsRepository {
+
+    INSTANCE;
+
+    private final ConcurrentMap<DestinationKey, RequestMetrics> invokerMetrics = new ConcurrentHashMap<DestinationKey, RequestMetrics>();
+
+    private final ConcurrentMap<DestinationKey, RequestMetrics> providerMetrics = new ConcurrentHashMap<DestinationKey, RequestMetrics>();
+
+    public void complete(InvokerMonitorData monitorData) {
+        record(invokerMetrics, monitorData);
+    }
+
+    public void complete(ProviderMonitorData monitorData) {
+        record(providerMetrics, monitorData);
+    }
+
+    private static void record(ConcurrentMap<DestinationKey, RequestMetrics> metrics, AbstractMonitorData monitorData) {
+        MapUtils.getOrCreate(metrics, monitorData.getDstKey(), RequestMetrics.class)
+                .record(monitorData.getElapsedMicros(), monitorData.isSuccess(), monitorData.getSampleWeight());
+    }
+
+    public Map<DestinationKey, RequestMetrics> getInvokerMetrics() {
+        return invokerMetrics;
+    }
+
+    public Map<DestinationKey, RequestMetrics> getProviderMetrics() {
+        return providerMetrics;
+    }
+}
@@ -12,6 +12,7 @@ import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
@@ -52,6 +53,10 @@ public class DefaultChannelPool<C extends Channel> implements ChannelPool<C> {
 
     private static final ConcurrentMap<Channel, Object> reconnectChannels = new ConcurrentHashMap<Channel, Object>();
 
+    private static final AtomicLong reconnectCount = new AtomicLong();
+
+    private static final AtomicLong reconnectFailedCount = new AtomicLong();
+
     public DefaultChannelPool(ChannelFactory channelFactory) throws ChannelPoolException {
         this(new PoolProperties(), channelFactory);
     }
@@ -243,6 +248,20 @@ public class DefaultChannelPool<C extends Channel> implements ChannelPool<C> {
         return isClosed.get();
     }
 
+    /**
+     * @return 启动以来所有连接池的重连次数
+     */
+    public static long getReconnectCount() {
+        return reconnectCount.get();
+    }
+
+    /**
+     * @return 启动以来所有连接池重连失败的次数
+     */
+    public static long getReconnectFailedCount() {
+        return reconnectFailedCount.get();
+    }
+
     protected String getChannelPoolDesc() {
         return "ChannelPool[poolSize=" + pooledChannels.size() + "]";
     }
@@ -266,9 +285,11 @@ public class DefaultChannelPool<C extends Channel> implements ChannelPool<C> {
                 if (channelPool != null && !channelPool.isClosed()) {
 
                     if (channel != null && !channel.isAvaliable()) {
+                        reconnectCount.incrementAndGet();
                         try {
                             channel.connect();
                         } catch (NetworkException e) {
+                            reconnectFailedCount.incrementAndGet();
                             logger.info("[run] pooledChannel connect failed. remoteAddress : " + channel.getRemoteAddressString());
                         }
 
@@ -22,6 +22,9 @@ public final class Constants {
     public static final int MESSAGE_TYPE_SERVICE_EXCEPTION = 4;
     public static final int MESSAGE_TYPE_HEALTHCHECK = 5;
     public static final int MESSAGE_TYPE_SCANNER_HEART = 6;
+    public static final int MESSAGE_TYPE_BATCH = 7;
+    public static final int MESSAGE_TYPE_STREAM = 8;
+    public static final int MESSAGE_TYPE_STREAM_CREDIT = 9;
 
     public static final int CALLTYPE_REPLY = 1;
     public static final int CALLTYPE_NOREPLY = 2;
@@ -39,6 +42,7 @@ public final class Constants {
     public static final String CALL_CALLBACK = "callback";
     public static final String CALL_ONEWAY = "oneway";
     public static final String CALL_FUTURE = "future";
+    public static final String CALL_STREAM = "stream";
 
     public static final String CLUSTER_FAILFAST = "failfast";
     public static final String CLUSTER_FAILOVER = "failover";
@@ -112,6 +116,7 @@ public final class Constants {
     public static final String KEY_RESPONSE_MAXPOOLSIZE = "pigeon.response.pool.maxsize";
     public static final String KEY_RESPONSE_WORKQUEUESIZE = "pigeon.response.pool.queuesize";
     public static final String KEY_INVOKER_TIMEOUT = "pigeon.invoker.timeout";
+    public static final String KEY_INVOKER_BATCH_WINDOW = "pigeon.invoker.batch.window";
     public static final String KEY_DEFAULT_WRITE_BUFF_LIMIT = "pigeon.channel.writebuff.defaultlimit";
     public static final String KEY_NETTY_CONNECTTIMEOUT = "pigeon.netty.connecttimeout";
     public static final String KEY_CHANNEL_WRITEBUFFHIGH = "pigeon.channel.writebuff.high";
@@ -138,6 +143,7 @@ public final class Constants {
     public static final String KEY_CODEC_CHECKSUM_ENABLE = "pigeon.codec.checksum.enable";
 
     public static final int DEFAULT_INVOKER_TIMEOUT = 1000;
+    public static final int DEFAULT_INVOKER_BATCH_WINDOW = 2;
     public static final int DEFAULT_PROVIDER_COREPOOLSIZE = 60;
     public static final int DEFAULT_PROVIDER_MAXPOOLSIZE = 500;
     public static final int DEFAULT_PROVIDER_WORKQUEUESIZE = 1000;
@@ -239,6 +245,7 @@ public final class Constants {
 
     public static final String CONTEXT_KEY_TIMEOUT_MILLIS = "TIMEOUT_MILLIS";
     public static final String CONTEXT_KEY_CREATE_TIME_MILLIS = "CREATE_TIME_MILLIS";
+    public static final String CONTEXT_KEY_MONITOR_SAMPLE = "MONITOR_SAMPLE";
 
 
     public static final boolean isSupportedNewProtocol() {
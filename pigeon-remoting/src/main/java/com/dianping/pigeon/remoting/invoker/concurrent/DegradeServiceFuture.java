@@ -68,7 +68,7 @@ public class DegradeServiceFuture extends CallbackFuture implements Future {
                 transaction.logEvent("PigeonCall.app", targetApp, "");
                 transaction.logEvent("PigeonCall.server", client.getAddress(), "");
             }
-            invocationContext.getTimeline().add(new InvocationContext.TimePoint(InvocationContext.TimePhase.F, System.currentTimeMillis()));
+            invocationContext.getTimeline().record(InvocationContext.TimePhase.F, System.currentTimeMillis());
         }
         try {
             try {
@@ -78,8 +78,8 @@ public class DegradeServiceFuture extends CallbackFuture implements Future {
                     if (size != null) {
                         transaction.logEvent("PigeonCall.responseSize", size, "" + response.getSize());
                     }
-                    invocationContext.getTimeline().add(new InvocationContext.TimePoint(InvocationContext.TimePhase.R, response.getCreateMillisTime()));
-                    invocationContext.getTimeline().add(new InvocationContext.TimePoint(InvocationContext.TimePhase.F, System.currentTimeMillis()));
+                    invocationContext.getTimeline().record(InvocationContext.TimePhase.N, response.getCreateMillisTime());
+                    invocationContext.getTimeline().record(InvocationContext.TimePhase.F, System.currentTimeMillis());
                 }
             } catch (RuntimeException e) {
                 // won't happen
@@ -106,7 +106,7 @@ public class DegradeServiceFuture extends CallbackFuture implements Future {
             if (transaction != null) {
                 DegradationManager.INSTANCE.monitorDegrade(invocationContext, transaction);
 
-                invocationContext.getTimeline().add(new InvocationContext.TimePoint(InvocationContext.TimePhase.E, System.currentTimeMillis()));
+                invocationContext.getTimeline().record(InvocationContext.TimePhase.E, System.currentTimeMillis());
                 try {
                     transaction.complete();
                 } catch (RuntimeException e) {
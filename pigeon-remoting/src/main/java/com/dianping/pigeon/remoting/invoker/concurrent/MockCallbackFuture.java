@@ -67,7 +67,7 @@ public class MockCallbackFuture extends CallbackFuture implements Future {
                 transaction.logEvent("PigeonCall.app", targetApp, "");
                 transaction.logEvent("PigeonCall.server", client.getAddress(), "");
             }
-            invocationContext.getTimeline().add(new InvocationContext.TimePoint(InvocationContext.TimePhase.F, System.currentTimeMillis()));
+            invocationContext.getTimeline().record(InvocationContext.TimePhase.F, System.currentTimeMillis());
         }
 
         boolean isSuccess = true;
@@ -87,7 +87,7 @@ public class MockCallbackFuture extends CallbackFuture implements Future {
             if (transaction != null) {
                 DegradationManager.INSTANCE.monitorDegrade(invocationContext, transaction);
 
-                invocationContext.getTimeline().add(new InvocationContext.TimePoint(InvocationContext.TimePhase.E, System.currentTimeMillis()));
+                invocationContext.getTimeline().record(InvocationContext.TimePhase.E, System.currentTimeMillis());
                 try {
                     transaction.complete();
                 } catch (RuntimeException e) {
@@ -14,7 +14,6 @@ import com.dianping.pigeon.monitor.MonitorLoader;
 import com.dianping.pigeon.monitor.MonitorTransaction;
 import com.dianping.pigeon.remoting.common.monitor.trace.InvokerMonitorData;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.domain.generic.UnifiedResponse;
@@ -80,8 +79,8 @@ public class ServiceCallbackWrapper implements Callback {
                     if (respSize != null) {
                         monitor.logEvent("PigeonCall.responseSize", respSize, "" + response.getSize());
                     }
-                    invocationContext.getTimeline().add(new TimePoint(TimePhase.R, response.getCreateMillisTime()));
-                    invocationContext.getTimeline().add(new TimePoint(TimePhase.R, currentTime));
+                    invocationContext.getTimeline().record(TimePhase.N, response.getCreateMillisTime());
+                    invocationContext.getTimeline().record(TimePhase.R, currentTime);
                 }
             }
             if (request.getTimeout() > 0 && request.getCreateMillisTime() > 0
@@ -187,7 +186,7 @@ public class ServiceCallbackWrapper implements Callback {
 
     private void completeTransaction(MonitorTransaction transaction) {
         if (transaction != null) {
-            invocationContext.getTimeline().add(new TimePoint(TimePhase.E, System.currentTimeMillis()));
+            invocationContext.getTimeline().record(TimePhase.E, System.currentTimeMillis());
             try {
                 transaction.complete();
             } catch (Throwable e) {
@@ -15,7 +15,6 @@ import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.registry.RegistryManager;
 import com.dianping.pigeon.remoting.common.monitor.trace.InvokerMonitorData;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.exception.ApplicationException;
 import com.dianping.pigeon.remoting.common.exception.BadResponseException;
@@ -76,7 +75,7 @@ public class ServiceFutureImpl extends CallbackFuture implements Future {
 				transaction.logEvent("PigeonCall.app", targetApp, "");
 				transaction.logEvent("PigeonCall.server", client.getAddress(), "");
 			}
-			invocationContext.getTimeline().add(new TimePoint(TimePhase.F, System.currentTimeMillis()));
+			invocationContext.getTimeline().record(TimePhase.F, System.currentTimeMillis());
 		}
 		boolean isSuccess = false;
 		try {
@@ -87,8 +86,8 @@ public class ServiceFutureImpl extends CallbackFuture implements Future {
 					if (size != null) {
 						transaction.logEvent("PigeonCall.responseSize", size, "" + response.getSize());
 					}
-					invocationContext.getTimeline().add(new TimePoint(TimePhase.R, response.getCreateMillisTime()));
-					invocationContext.getTimeline().add(new TimePoint(TimePhase.F, System.currentTimeMillis()));
+					invocationContext.getTimeline().record(TimePhase.N, response.getCreateMillisTime());
+					invocationContext.getTimeline().record(TimePhase.F, System.currentTimeMillis());
 				}
 			} catch (RuntimeException e) {
 				if (DegradationManager.INSTANCE.needFailureDegrade(invocationContext)) { // failure degrade condition
@@ -203,7 +202,7 @@ public class ServiceFutureImpl extends CallbackFuture implements Future {
 			if (transaction != null) {
 				DegradationManager.INSTANCE.monitorDegrade(invocationContext, transaction);
 
-				invocationContext.getTimeline().add(new TimePoint(TimePhase.E, System.currentTimeMillis()));
+				invocationContext.getTimeline().record(TimePhase.E, System.currentTimeMillis());
 				try {
 					transaction.complete();
 				} catch (RuntimeException e) {
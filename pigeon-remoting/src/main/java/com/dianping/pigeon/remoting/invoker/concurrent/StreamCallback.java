@@ -0,0 +1,13 @@
+package com.dianping.pigeon.remoting.invoker.concurrent;
+
+/**
+ * 流式调用的回调，onNext按服务端发送的顺序依次调用，结束时调用onCompleted或onFailure之一
+ */
+public interface StreamCallback<T> {
+
+	public void onNext(T element);
+
+	public void onCompleted();
+
+	public void onFailure(Throwable exception);
+}
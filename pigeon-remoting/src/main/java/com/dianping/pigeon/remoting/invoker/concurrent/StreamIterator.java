@@ -0,0 +1,348 @@
+package com.dianping.pigeon.remoting.invoker.concurrent;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.channel.Channel;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.StreamChunk;
+import com.dianping.pigeon.remoting.common.exception.NetworkException;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.invoker.exception.RemoteInvocationException;
+
+/**
+ * 流式调用的结果，服务端按调用端发放的额度(credit，单位为chunk)发送数据，调用端每消费完一半窗口的chunk再补充额度，
+ * 调用端最多缓存window个chunk，读取慢时服务端停止发送，不会无限堆积
+ * <p>
+ * 既可以作为Iterator拉取，也可以通过subscribe以回调方式接收，两种方式不能混用
+ */
+public class StreamIterator<T> implements Iterator<T>, Closeable {
+
+    private static final Logger logger = LoggerLoader.getLogger(StreamIterator.class);
+
+    private final Channel channel;
+
+    private final InvocationRequest request;
+
+    private final int window;
+
+    private final int timeout;
+
+    private final Lock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    // 已按顺序接收、尚未消费完的chunk，position为队首chunk中下一个元素的位置
+    private final LinkedList<Object[]> chunks = new LinkedList<Object[]>();
+
+    private int position = 0;
+
+    // 乱序到达的chunk(响应由多个线程处理)
+    private final Map<Long, StreamChunk> pendingChunks = new HashMap<Long, StreamChunk>();
+
+    private long nextIndex = 0;
+
+    // 已消费、尚未归还额度的chunk数
+    private int consumedChunks = 0;
+
+    private boolean completed = false;
+
+    private boolean closed = false;
+
+    private RuntimeException error;
+
+    private volatile long lastActiveTime = System.currentTimeMillis();
+
+    private volatile StreamCallback<T> callback;
+
+    private final Object callbackLock = new Object();
+
+    private boolean callbackTerminated = false;
+
+    // 锁内累计需要发放的额度，-1表示取消，释放锁之后再写channel
+    private int pendingCredits = 0;
+
+    public StreamIterator(Channel channel, InvocationRequest request, int window) {
+        this.channel = channel;
+        this.request = request;
+        this.window = window;
+        this.timeout = request.getTimeout();
+    }
+
+    public InvocationRequest getRequest() {
+        return request;
+    }
+
+    public long getLastActiveTime() {
+        return lastActiveTime;
+    }
+
+    /**
+     * 发放初始额度，在请求发出后调用
+     */
+    public void start() {
+        writeCredits(window);
+    }
+
+    public boolean isDone() {
+        lock.lock();
+        try {
+            return closed || completed || error != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        lock.lock();
+        try {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (chunks.isEmpty()) {
+                if (error != null) {
+                    throw error;
+                }
+                if (completed || closed) {
+                    return false;
+                }
+                long waitMillis = deadline - System.currentTimeMillis();
+                if (waitMillis <= 0) {
+                    fail(InvocationUtils.newTimeoutException("stream chunk timeout, timeout:" + timeout + ", request:"
+                            + request));
+                    continue;
+                }
+                try {
+                    notEmpty.await(waitMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RemoteInvocationException("stream interrupted, request:" + request, e);
+                }
+            }
+            return true;
+        } finally {
+            unlockAndWriteCredits();
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        lock.lock();
+        try {
+            return take();
+        } finally {
+            unlockAndWriteCredits();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T take() {
+        Object[] chunk = chunks.peek();
+        Object element = chunk[position++];
+        if (position >= chunk.length) {
+            chunks.poll();
+            position = 0;
+            consumedChunks++;
+            if (consumedChunks >= Math.max(1, window / 2) && !completed) {
+                if (pendingCredits >= 0) {
+                    pendingCredits += consumedChunks;
+                }
+                consumedChunks = 0;
+            }
+        }
+        lastActiveTime = System.currentTimeMillis();
+        return (T) element;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * 以回调方式接收，已缓存的数据立即回调，之后的数据在响应处理线程中回调，回调返回后才会补充额度
+     *
+     * @param callback
+     */
+    public void subscribe(StreamCallback<T> callback) {
+        this.callback = callback;
+        dispatch();
+    }
+
+    private void dispatch() {
+        StreamCallback<T> callback = this.callback;
+        if (callback == null) {
+            return;
+        }
+        synchronized (callbackLock) {
+            while (!callbackTerminated) {
+                T element = null;
+                boolean hasElement = false;
+                RuntimeException e = null;
+                lock.lock();
+                try {
+                    if (!chunks.isEmpty()) {
+                        element = take();
+                        hasElement = true;
+                    } else if (error != null) {
+                        e = error;
+                    } else if (!completed && !closed) {
+                        return;
+                    }
+                } finally {
+                    unlockAndWriteCredits();
+                }
+                if (hasElement) {
+                    try {
+                        callback.onNext(element);
+                    } catch (Throwable t) {
+                        logger.warn("stream callback failed, request:" + request, t);
+                        callbackTerminated = true;
+                        close();
+                        callback.onFailure(t);
+                    }
+                } else {
+                    callbackTerminated = true;
+                    if (e != null) {
+                        callback.onFailure(e);
+                    } else {
+                        callback.onCompleted();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param chunk
+     * @return 流是否已经结束
+     */
+    public boolean onChunk(StreamChunk chunk) {
+        lock.lock();
+        try {
+            if (closed || completed || error != null) {
+                return true;
+            }
+            lastActiveTime = System.currentTimeMillis();
+            if (chunk.getIndex() != nextIndex) {
+                pendingChunks.put(chunk.getIndex(), chunk);
+                return false;
+            }
+            append(chunk);
+            StreamChunk next;
+            while ((next = pendingChunks.remove(nextIndex)) != null) {
+                append(next);
+            }
+            notEmpty.signalAll();
+        } finally {
+            unlockAndWriteCredits();
+        }
+        dispatch();
+        return completed;
+    }
+
+    private void append(StreamChunk chunk) {
+        Object[] elements = chunk.getElements();
+        if (elements != null && elements.length > 0) {
+            chunks.add(elements);
+        } else {
+            consumedChunks++;
+        }
+        nextIndex++;
+        if (chunk.isLast()) {
+            completed = true;
+        }
+    }
+
+    public void onFailure(RuntimeException e) {
+        lock.lock();
+        try {
+            fail(e);
+        } finally {
+            unlockAndWriteCredits();
+        }
+        dispatch();
+    }
+
+    private void fail(RuntimeException e) {
+        if (closed || completed || error != null) {
+            return;
+        }
+        error = e;
+        chunks.clear();
+        pendingChunks.clear();
+        notEmpty.signalAll();
+        pendingCredits = -1;
+    }
+
+    /**
+     * 提前结束读取，通知服务端停止发送
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!completed && error == null) {
+                pendingCredits = -1;
+            }
+            chunks.clear();
+            pendingChunks.clear();
+            notEmpty.signalAll();
+        } finally {
+            unlockAndWriteCredits();
+        }
+    }
+
+    private void unlockAndWriteCredits() {
+        int credits = pendingCredits;
+        pendingCredits = 0;
+        lock.unlock();
+        writeCredits(credits);
+    }
+
+    /**
+     * 不能在持有lock时调用
+     *
+     * @param credits 小于0表示取消，0不发送
+     */
+    private void writeCredits(int credits) {
+        if (credits == 0) {
+            return;
+        }
+        InvocationRequest creditRequest = new DefaultRequest(request.getServiceName(), request.getMethodName(),
+                new Object[] { credits }, request.getSerialize(), Constants.MESSAGE_TYPE_STREAM_CREDIT,
+                request.getTimeout(), Constants.CALLTYPE_NOREPLY, request.getSequence());
+        try {
+            channel.write(creditRequest);
+        } catch (NetworkException e) {
+            logger.warn("send stream credits failed:" + creditRequest, e);
+            if (credits > 0) {
+                lock.lock();
+                try {
+                    fail(e);
+                } finally {
+                    unlockAndWriteCredits();
+                }
+            }
+        }
+    }
+
+}
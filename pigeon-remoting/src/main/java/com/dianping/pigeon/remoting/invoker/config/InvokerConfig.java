@@ -31,6 +31,7 @@ public class InvokerConfig<T> {
     public static final String CALL_CALLBACK = CallMethod.CALLBACK.getName();
     public static final String CALL_ONEWAY = CallMethod.ONEWAY.getName();
     public static final String CALL_FUTURE =CallMethod.FUTURE.getName();
+    public static final String CALL_STREAM = CallMethod.STREAM.getName();
 
     public static final String PROTOCOL_HTTP = Constants.PROTOCOL_HTTP;
     public static final String PROTOCOL_DEFAULT = Constants.PROTOCOL_DEFAULT;
@@ -87,6 +88,13 @@ public class InvokerConfig<T> {
 
     private Object mock;
 
+    // 同一连接上同一方法的请求合并发送的最大个数，小于等于1表示不合并
+    private int batchSize = 0;
+
+    // 请求合并的最长等待时间(ms)
+    private int batchWindow = configManager.getIntValue(Constants.KEY_INVOKER_BATCH_WINDOW,
+            Constants.DEFAULT_INVOKER_BATCH_WINDOW);
+
     public String getSecret() {
         return secret;
     }
@@ -319,10 +327,12 @@ public class InvokerConfig<T> {
      */
     public void setCallType(String callType) {
         if (!CallMethod.isSync(callType) && !CallMethod.isCallback(callType)
-                && !CallMethod.isFuture(callType) && !CallMethod.isOneway(callType)) {
+                && !CallMethod.isFuture(callType) && !CallMethod.isOneway(callType)
+                && !CallMethod.isStream(callType)) {
 
             throw new IllegalArgumentException("Pigeon call mode only support[" + CallMethod.SYNC.getName() + ", "
-                    + CallMethod.CALLBACK.getName() + ", " + CallMethod.FUTURE.getName() + ", " + CallMethod.ONEWAY.getName() + "].");
+                    + CallMethod.CALLBACK.getName() + ", " + CallMethod.FUTURE.getName() + ", " + CallMethod.ONEWAY.getName()
+                    + ", " + CallMethod.STREAM.getName() + "].");
         }
         if (!StringUtils.isBlank(callType)) {
             this.callType = callType.trim();
@@ -415,6 +425,24 @@ public class InvokerConfig<T> {
         this.mock = mock;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchWindow() {
+        return batchWindow;
+    }
+
+    public void setBatchWindow(int batchWindow) {
+        if (batchWindow > 0) {
+            this.batchWindow = batchWindow;
+        }
+    }
+
     public boolean equals(Object obj) {
         return EqualsBuilder.reflectionEquals(this, obj);
     }
@@ -45,4 +45,8 @@ public @interface Reference {
 	
 	String secret() default "";
 
+	int batchSize() default 0;
+
+	int batchWindow() default 2;
+
 }
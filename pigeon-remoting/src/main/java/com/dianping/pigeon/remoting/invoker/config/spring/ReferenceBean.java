@@ -74,6 +74,26 @@ public class ReferenceBean implements FactoryBean {
 
     private Object mock;
 
+    private int batchSize;
+
+    private int batchWindow;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchWindow() {
+        return batchWindow;
+    }
+
+    public void setBatchWindow(int batchWindow) {
+        this.batchWindow = batchWindow;
+    }
+
     public Object getMock() {
         return mock;
     }
@@ -272,6 +292,8 @@ public class ReferenceBean implements FactoryBean {
         invokerConfig.setClassLoader(classLoader);
         invokerConfig.setSecret(secret);
         invokerConfig.setRegionPolicy(regionPolicy);
+        invokerConfig.setBatchSize(batchSize);
+        invokerConfig.setBatchWindow(batchWindow);
 
         if (!CollectionUtils.isEmpty(methods)) {
             Map<String, InvokerMethodConfig> methodMap = new HashMap<String, InvokerMethodConfig>();
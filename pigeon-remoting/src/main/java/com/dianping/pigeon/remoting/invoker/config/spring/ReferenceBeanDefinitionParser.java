@@ -120,6 +120,12 @@ public class ReferenceBeanDefinitionParser implements BeanDefinitionParser {
 		if (element.hasAttribute("secret")) {
 			properties.addPropertyValue("secret", resolveReference(element, "secret"));
 		}
+		if (element.hasAttribute("batchSize")) {
+			properties.addPropertyValue("batchSize", resolveReference(element, "batchSize"));
+		}
+		if (element.hasAttribute("batchWindow")) {
+			properties.addPropertyValue("batchWindow", resolveReference(element, "batchWindow"));
+		}
 		String callback = element.getAttribute("callback");
 		if (StringUtils.isNotEmpty(callback)) {
 			if (checkRefExists && !parserContext.getRegistry().containsBeanDefinition(callback)) {
@@ -27,7 +27,7 @@ public class DefaultInvokerContext extends AbstractInvocationContext implements
         this.methodName = methodName;
         this.parameterTypes = parameterTypes;
         this.arguments = arguments;
-        getTimeline().add(new TimePoint(TimePhase.S, System.currentTimeMillis()));
+        getTimeline().record(TimePhase.S, System.currentTimeMillis());
     }
 
     public InvokerConfig<?> getInvokerConfig() {
@@ -14,6 +14,7 @@ import com.dianping.pigeon.remoting.invoker.ClientSelector;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
 import com.dianping.pigeon.remoting.invoker.exception.ServiceUnavailableException;
+import com.dianping.pigeon.remoting.invoker.route.quality.OutlierEjectionManager;
 import com.dianping.pigeon.remoting.invoker.route.quality.RequestQualityManager;
 import com.dianping.pigeon.threadpool.DefaultThreadFactory;
 import com.dianping.pigeon.util.CollectionUtils;
@@ -183,6 +184,7 @@ public class DefaultClusterListener implements ClusterListener {
             if (!isClientInUse(clientFound)) {
                 allClients.remove(clientFound.getAddress());
                 RequestQualityManager.INSTANCE.removeClientQualities(clientFound.getAddress());
+                OutlierEjectionManager.INSTANCE.removeClientStats(clientFound.getAddress());
                 closeClientInFuture(clientFound);
             }
         }
@@ -5,13 +5,20 @@
 package com.dianping.pigeon.remoting.invoker.listener;
 
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.monitor.SlowRequest;
+import com.dianping.pigeon.remoting.common.monitor.SlowRequestRecorder;
 import com.dianping.pigeon.remoting.invoker.concurrent.Callback;
+import com.dianping.pigeon.remoting.invoker.concurrent.ServiceCallbackWrapper;
 import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
+import com.dianping.pigeon.remoting.invoker.exception.RequestTimeoutException;
+import com.dianping.pigeon.remoting.invoker.route.quality.OutlierEjectionManager;
+import com.dianping.pigeon.remoting.invoker.route.region.LatencyAwareRegionPolicy;
 import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
 
 public class InvocationTimeoutListener implements Runnable {
@@ -45,11 +52,17 @@ public class InvocationTimeoutListener implements Runnable {
 							Callback callback = invocationBean.callback;
 							if (callback != null && callback.getClient() != null) {
 								ServiceStatisticsHolder.flowOut(request, callback.getClient().getAddress());
+								OutlierEjectionManager.INSTANCE.addClientResponse(request,
+										callback.getClient().getAddress(), currentTime - request.getCreateMillisTime(),
+										true);
+								LatencyAwareRegionPolicy.INSTANCE.addClientResponse(request, callback.getClient(),
+										currentTime - request.getCreateMillisTime(), true);
 							}
 							if (callback != null) {
 								callback.dispose();
 							}
 							invocations.remove(sequence);
+							recordSlowRequest(request, callback, currentTime);
 							boolean isLog = true;
 							if (timeoutCountInLastSecond > ConfigManagerLoader.getConfigManager().getIntValue(
 									"pigeon.log.threshold", 10)
@@ -77,4 +90,22 @@ public class InvocationTimeoutListener implements Runnable {
 			}
 		}
 	}
+
+	// 同步调用超时由调用线程记录，这里补上future、callback等调用方式
+	private void recordSlowRequest(InvocationRequest request, Callback callback, long currentTime) {
+		long elapsed = currentTime - request.getCreateMillisTime();
+		if ((callback instanceof Future || callback instanceof ServiceCallbackWrapper)
+				&& SlowRequestRecorder.INSTANCE.isSlow(elapsed)) {
+			SlowRequest slowRequest = new SlowRequest(SlowRequest.SIDE_INVOKER, request.getServiceName(),
+					request.getMethodName(), request.getCreateMillisTime(), elapsed);
+			slowRequest.setSeq(request.getSequence());
+			slowRequest.setTimeout(request.getTimeout());
+			slowRequest.setRequestSize(request.getSize());
+			if (callback != null && callback.getClient() != null) {
+				slowRequest.setRemoteAddress(callback.getClient().getAddress());
+			}
+			slowRequest.setError(RequestTimeoutException.class.getName());
+			SlowRequestRecorder.INSTANCE.record(slowRequest);
+		}
+	}
 }
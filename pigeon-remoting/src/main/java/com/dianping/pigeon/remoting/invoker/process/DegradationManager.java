@@ -7,7 +7,6 @@ package com.dianping.pigeon.remoting.invoker.process;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -29,7 +28,6 @@ import com.dianping.pigeon.remoting.common.exception.RejectedException;
 import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
 import com.dianping.pigeon.remoting.invoker.process.filter.DegradationFilter;
 import com.dianping.pigeon.remoting.invoker.route.quality.RequestQualityManager;
-import com.dianping.pigeon.remoting.invoker.route.quality.RequestQualityManager.Quality;
 import com.dianping.pigeon.threadpool.DefaultThreadFactory;
 
 /**
@@ -491,48 +489,8 @@ public enum DegradationManager {
 				old = null;
 			}
 
-			// 复用降级统计和清空的线程，用于服务质量统计和清空（窗口默认为10秒）
-			ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<Integer, Quality>>> addrReqUrlSecondQualities = RequestQualityManager.INSTANCE
-					.getAddrReqUrlSecondQualities();
-			ConcurrentMap<String, ConcurrentMap<String, Quality>> addrReqUrlQualities = new ConcurrentHashMap<String, ConcurrentMap<String, Quality>>();
-
-			for (String address : addrReqUrlSecondQualities.keySet()) {
-				ConcurrentMap<String, ConcurrentMap<Integer, Quality>> reqUrlSecondQualities = addrReqUrlSecondQualities
-						.get(address);
-
-				ConcurrentHashMap<String, Quality> reqUrlQualities = new ConcurrentHashMap<String, Quality>();
-				for (String requestUrl : reqUrlSecondQualities.keySet()) {
-					ConcurrentMap<Integer, Quality> secondQualities = reqUrlSecondQualities.get(requestUrl);
-					int total = 0, failed = 0;
-					for (int i = 1; i <= recentSeconds; i++) {
-						int prevSec = currentSecond - i;
-						prevSec = prevSec >= 0 ? prevSec : prevSec + 60;
-						Quality quality = secondQualities.get(prevSec);
-
-						if (quality != null) {
-							total += quality.getTotalValue();
-							failed += quality.getFailedValue();
-						}
-					}
-
-					reqUrlQualities.put(requestUrl, new Quality(total, failed));
-
-					// clear previous seconds
-					for (int i = recentSeconds + 1; i <= recentSeconds + 20; i++) {
-						int prevSec = currentSecond - i;
-						prevSec = prevSec >= 0 ? prevSec : prevSec + 60;
-						Quality quality = secondQualities.get(prevSec);
-
-						if (quality != null) {
-							quality.clear();
-						}
-					}
-				}
-
-				addrReqUrlQualities.put(address, reqUrlQualities);
-			}
-
-			RequestQualityManager.INSTANCE.setAddrReqUrlQualities(addrReqUrlQualities);
+			// 复用降级统计和清空的线程，用于服务质量统计（窗口默认为10秒）
+			RequestQualityManager.INSTANCE.refreshQualities(recentSeconds);
 		}
 
 	}
@@ -28,7 +28,6 @@ import com.dianping.pigeon.remoting.common.domain.CallMethod;
 import com.dianping.pigeon.remoting.common.domain.CallType;
 import com.dianping.pigeon.remoting.common.domain.CompactRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.domain.generic.UnifiedRequest;
@@ -104,7 +103,7 @@ public class ContextPrepareInvokeFilter extends InvocationInvokeFilter {
     @Override
     public InvocationResponse invoke(ServiceInvocationHandler handler, InvokerContext invocationContext)
             throws Throwable {
-        invocationContext.getTimeline().add(new TimePoint(TimePhase.C));
+        invocationContext.getTimeline().record(TimePhase.C);
 
         readMonitorContext(invocationContext);
 
@@ -23,7 +23,6 @@ import com.dianping.pigeon.remoting.common.monitor.trace.InvokerMonitorData;
 import com.dianping.pigeon.remoting.common.codec.json.JacksonSerializer;
 import com.dianping.pigeon.remoting.common.domain.CallMethod;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.exception.RejectedException;
 import com.dianping.pigeon.remoting.common.exception.RpcException;
@@ -172,7 +171,7 @@ public class DegradationFilter extends InvocationInvokeFilter {
 
     @Override
     public InvocationResponse invoke(ServiceInvocationHandler handler, InvokerContext context) throws Throwable {
-        context.getTimeline().add(new TimePoint(TimePhase.D));
+        context.getTimeline().record(TimePhase.D);
 
         InvocationResponse degradeResponse;
         if (DegradationManager.INSTANCE.needDegrade(context)) {
@@ -68,6 +68,7 @@ public class FaultInjectionFilter extends InvocationInvokeFilter {
         switch (callMethod) {
             case SYNC:
             case CALLBACK:
+            case STREAM:
                 switch (faultInjectionAction.getType()) {
                     case EXCEPTION:
                         exception(invocationContext);
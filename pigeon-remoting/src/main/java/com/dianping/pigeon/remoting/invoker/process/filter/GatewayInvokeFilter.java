@@ -11,7 +11,6 @@ import com.dianping.pigeon.registry.RegistryManager;
 import com.dianping.pigeon.remoting.common.domain.CallMethod;
 import com.dianping.pigeon.remoting.common.domain.CallType;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
@@ -42,7 +41,7 @@ public class GatewayInvokeFilter extends InvocationInvokeFilter {
     @Override
     public InvocationResponse invoke(ServiceInvocationHandler handler, InvokerContext invocationContext)
             throws Throwable {
-        invocationContext.getTimeline().add(new TimePoint(TimePhase.G));
+        invocationContext.getTimeline().record(TimePhase.G);
         InvokerConfig<?> invokerConfig = invocationContext.getInvokerConfig();
         InvocationRequest request = invocationContext.getRequest();
         Client client = invocationContext.getClient();
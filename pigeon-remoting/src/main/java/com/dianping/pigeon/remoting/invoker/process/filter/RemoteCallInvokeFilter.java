@@ -11,7 +11,6 @@ import com.dianping.pigeon.monitor.MonitorTransaction;
 import com.dianping.pigeon.remoting.common.monitor.trace.InvokerMonitorData;
 import com.dianping.pigeon.remoting.common.domain.CallMethod;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.exception.BadRequestException;
@@ -42,7 +41,7 @@ public class RemoteCallInvokeFilter extends InvocationInvokeFilter {
     @Override
     public InvocationResponse invoke(ServiceInvocationHandler handler, InvokerContext invocationContext)
             throws Throwable {
-        invocationContext.getTimeline().add(new TimePoint(TimePhase.Q));
+        invocationContext.getTimeline().record(TimePhase.Q);
         Client client = invocationContext.getClient();
         InvocationRequest request = invocationContext.getRequest();
         InvokerConfig<?> invokerConfig = invocationContext.getInvokerConfig();
@@ -83,8 +82,8 @@ public class RemoteCallInvokeFilter extends InvocationInvokeFilter {
             switch (callMethod) {
                 case SYNC:
                     CallbackFuture future = new CallbackFuture();
-                    response = InvokerUtils.sendRequest(client, invocationContext.getRequest(), future);
-                    invocationContext.getTimeline().add(new TimePoint(TimePhase.Q));
+                    response = InvokerUtils.sendRequest(client, invocationContext.getRequest(), future, invokerConfig);
+                    invocationContext.getTimeline().record(TimePhase.Q);
                     if (response == null) {
                         response = future.getResponse(request.getTimeout());
                     }
@@ -97,21 +96,26 @@ public class RemoteCallInvokeFilter extends InvocationInvokeFilter {
                         InvokerHelper.clearCallback();
                     }
                     InvokerUtils.sendRequest(client, invocationContext.getRequest(), new ServiceCallbackWrapper(
-                            invocationContext, callback));
+                            invocationContext, callback), invokerConfig);
                     response = NO_RETURN_RESPONSE;
-                    invocationContext.getTimeline().add(new TimePoint(TimePhase.Q));
+                    invocationContext.getTimeline().record(TimePhase.Q);
                     break;
                 case FUTURE:
                     ServiceFutureImpl futureImpl = new ServiceFutureImpl(invocationContext, request.getTimeout());
-                    InvokerUtils.sendRequest(client, invocationContext.getRequest(), futureImpl);
+                    InvokerUtils.sendRequest(client, invocationContext.getRequest(), futureImpl, invokerConfig);
                     FutureFactory.setFuture(futureImpl);
                     response = InvokerUtils.createFutureResponse(futureImpl);
-                    invocationContext.getTimeline().add(new TimePoint(TimePhase.Q));
+                    invocationContext.getTimeline().record(TimePhase.Q);
+                    break;
+                case STREAM:
+                    response = InvokerUtils.createDefaultResponse(InvokerUtils.sendStreamRequest(client,
+                            invocationContext.getRequest(), invokerConfig));
+                    invocationContext.getTimeline().record(TimePhase.Q);
                     break;
                 case ONEWAY:
                     InvokerUtils.sendRequest(client, invocationContext.getRequest(), null);
                     response = NO_RETURN_RESPONSE;
-                    invocationContext.getTimeline().add(new TimePoint(TimePhase.Q));
+                    invocationContext.getTimeline().record(TimePhase.Q);
                     break;
                 default:
                     throw new BadRequestException("Call type[" + callMethod.getName() + "] is not supported!");
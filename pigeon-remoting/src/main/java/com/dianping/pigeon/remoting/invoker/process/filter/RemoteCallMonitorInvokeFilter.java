@@ -15,12 +15,14 @@ import com.dianping.pigeon.registry.RegistryManager;
 import com.dianping.pigeon.remoting.common.codec.SerializerType;
 import com.dianping.pigeon.remoting.common.domain.CallMethod;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.domain.MessageType;
+import com.dianping.pigeon.remoting.common.monitor.CallSampler;
 import com.dianping.pigeon.remoting.common.monitor.SizeMonitor;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.ContextUtils;
 import com.dianping.pigeon.remoting.common.util.InvocationUtils;
 import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
@@ -34,13 +36,16 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
 
     private final Monitor monitor = MonitorLoader.getMonitor();
 
+    private static final CallSampler sampler = new CallSampler("pigeon.invoker.monitor.sample");
+
     public RemoteCallMonitorInvokeFilter() {
     }
 
     @Override
     public InvocationResponse invoke(ServiceInvocationHandler handler, InvokerContext invocationContext)
             throws Throwable {
-        invocationContext.getTimeline().add(new TimePoint(TimePhase.O));
+        invocationContext.getTimeline().record(TimePhase.O);
+        long startMillis = System.currentTimeMillis();
         MonitorTransaction transaction = null;
         InvocationRequest request = invocationContext.getRequest();
         String targetApp = null;
@@ -48,7 +53,16 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
         InvokerConfig<?> invokerConfig = invocationContext.getInvokerConfig();
         byte callMethodCode = invokerConfig.getCallMethod(invocationContext.getMethodName());
         CallMethod callMethod = CallMethod.getCallMethod(callMethodCode);
-        if (monitor != null) {
+        // 处理上游请求时沿用上游的采样决定，非全量时随请求传给服务端
+        int sampleInterval = CallSampler
+                .parseInterval(ContextUtils.getLocalContext(Constants.CONTEXT_KEY_MONITOR_SAMPLE));
+        if (sampleInterval < 0) {
+            sampleInterval = sampler.sample(invokerConfig.getUrl(), invocationContext.getMethodName());
+        }
+        if (monitor != null && sampleInterval != 1) {
+            ContextUtils.putRequestContext(Constants.CONTEXT_KEY_MONITOR_SAMPLE, String.valueOf(sampleInterval));
+        }
+        if (monitor != null && sampleInterval > 0) {
             try {
                 callInterface = InvocationUtils.getRemoteCallFullName(invokerConfig.getUrl(),
                         invocationContext.getMethodName(), invocationContext.getParameterTypes());
@@ -68,8 +82,10 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
             }
         }
         boolean error = false;
+        Throwable failure = null;
+        InvocationResponse response = null;
         try {
-            InvocationResponse response = handler.handle(invocationContext);
+            response = handler.handle(invocationContext);
             if (transaction != null) {
                 if (CallMethod.SYNC == callMethod) {
                     DegradationManager.INSTANCE.monitorDegrade(invocationContext, transaction);
@@ -98,12 +114,16 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
                     if (respSize != null) {
                         monitor.logEvent("PigeonCall.responseSize", respSize, "" + response.getSize());
                     }
-                    invocationContext.getTimeline().add(new TimePoint(TimePhase.R, response.getCreateMillisTime()));
-                    invocationContext.getTimeline().add(new TimePoint(TimePhase.R));
                 }
             }
+            if (response != null && response.getSize() > 0) {
+                invocationContext.getTimeline().record(TimePhase.N, response.getCreateMillisTime());
+                invocationContext.getTimeline().record(TimePhase.R);
+            }
             return response;
         } catch (Throwable e) {
+            error = true;
+            failure = e;
             if (transaction != null) {
                 if (CallMethod.SYNC == callMethod || CallMethod.ONEWAY == callMethod) {
                     DegradationManager.INSTANCE.monitorDegrade(invocationContext, transaction);
@@ -133,9 +153,20 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
             }
             throw e;
         } finally {
-
+            if (response != null && MessageType.isException((byte) response.getMessageType())) {
+                error = true;
+            }
+            long elapsed = System.currentTimeMillis() - startMillis;
+            if (transaction == null && sampleInterval == 0 && monitor != null
+                    && CallSampler.isForced(!error, elapsed)) {
+                logForcedTransaction(invocationContext, startMillis, failure);
+            }
+            invocationContext.getTimeline().record(TimePhase.E, System.currentTimeMillis());
             if (transaction != null) {
                 try {
+                    if (sampleInterval != 1) {
+                        transaction.addData("SampleWeight", CallSampler.getWeight(sampleInterval, !error, elapsed));
+                    }
                     if (invocationContext.getRequest() != null) {
                         InvocationRequest _request = invocationContext.getRequest();
                         InvokerConfig config = invocationContext.getInvokerConfig();
@@ -144,7 +175,6 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
                         }
                         monitorProtocol(invocationContext, _request, targetApp);
                     }
-                    invocationContext.getTimeline().add(new TimePoint(TimePhase.E, System.currentTimeMillis()));
                     transaction.complete();
                 } catch (Throwable e) {
                     monitor.logMonitorError(e);
@@ -157,6 +187,29 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
     }
 
 
+    // 未被采样的失败或慢调用补记一个事务，耗时从进入filter时算起
+    private void logForcedTransaction(InvokerContext invocationContext, long startMillis, Throwable failure) {
+        try {
+            String callInterface = InvocationUtils.getRemoteCallFullName(invocationContext.getInvokerConfig().getUrl(),
+                    invocationContext.getMethodName(), invocationContext.getParameterTypes());
+            MonitorTransaction transaction = monitor.createTransaction("PigeonCall", callInterface, invocationContext);
+            if (transaction != null) {
+                if (failure != null) {
+                    transaction.setStatusError(failure);
+                } else {
+                    transaction.setStatusOk();
+                }
+                Client client = invocationContext.getClient();
+                if (client != null) {
+                    transaction.logEvent("PigeonCall.server", client.getAddress(), "");
+                }
+                transaction.complete(startMillis);
+            }
+        } catch (Throwable e) {
+            monitor.logMonitorError(e);
+        }
+    }
+
     private void monitorProtocol(InvokerContext invokerContext, InvocationRequest request, String targetApp) {
         if (SerializerType.isThrift(request.getSerialize())) {
             Client client = invokerContext.getClient();
@@ -89,7 +89,7 @@ public class TraceFilter extends InvocationInvokeFilter {
                         monitorData.setIsSuccess(true);
                     }
                     monitorData.complete();
-                } else if (CallMethod.isOneway(code)) {
+                } else if (CallMethod.isOneway(code) || CallMethod.isStream(code)) {
                     monitorData.setIsSuccess(true);
                     monitorData.complete();
                 }
@@ -24,6 +24,7 @@ import com.dianping.pigeon.remoting.invoker.route.balance.LoadBalance;
 import com.dianping.pigeon.remoting.invoker.route.balance.LoadBalanceManager;
 import com.dianping.pigeon.remoting.invoker.route.balance.RandomLoadBalance;
 import com.dianping.pigeon.remoting.invoker.route.balance.WeightedAutoawareLoadBalance;
+import com.dianping.pigeon.remoting.invoker.route.quality.OutlierEjectionManager;
 import com.dianping.pigeon.remoting.invoker.route.quality.RequestQualityManager;
 import com.dianping.pigeon.remoting.invoker.route.region.RegionPolicyManager;
 import org.apache.commons.lang.StringUtils;
@@ -44,6 +45,8 @@ public class DefaultRouteManager implements RouteManager, Disposable {
 
     private final RequestQualityManager requestQualityManager = RequestQualityManager.INSTANCE;
 
+    private final OutlierEjectionManager outlierEjectionManager = OutlierEjectionManager.INSTANCE;
+
     private static final ClusterListenerManager clusterListenerManager = ClusterListenerManager.getInstance();
 
     private ServiceProviderChangeListener providerChangeListener = new InnerServiceProviderChangeListener();
@@ -154,6 +157,9 @@ public class DefaultRouteManager implements RouteManager, Disposable {
             throw new ServiceUnavailableException("no available server exists for service[" + invokerConfig.getUrl()
                     + "] and group[" + RegistryManager.getInstance().getGroup(invokerConfig.getUrl()) + "].");
         }
+        if (outlierEjectionManager.isEnableOutlierEjection()) {
+            filteredClients = outlierEjectionManager.getNonEjectedClients(filteredClients, request);
+        }
         return filteredClients;
     }
 
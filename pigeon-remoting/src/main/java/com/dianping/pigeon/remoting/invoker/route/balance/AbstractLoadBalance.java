@@ -90,10 +90,13 @@ public abstract class AbstractLoadBalance implements LoadBalance {
 		int[] weights = new int[clientSize + 1];
 		int maxWeightIdx = 0;
 		int maxWeight = Integer.MIN_VALUE;
+		RequestQualityManager requestQualityManager = RequestQualityManager.INSTANCE;
+		int requestUrlId = requestQualityManager.isEnableRequestQualityRoute() ? requestQualityManager
+				.getRequestUrlId(request) : -1;
 		for (int i = 0; i < clientSize; i++) {
 			int effectiveWeight = LoadBalanceManager.getEffectiveWeight(clients.get(i).getAddress());
-			weights[i] = RequestQualityManager.INSTANCE.adjustWeightWithQuality(effectiveWeight,
-					clients.get(i).getAddress(), request);
+			weights[i] = requestQualityManager.adjustWeightWithQuality(effectiveWeight, clients.get(i).getAddress(),
+					requestUrlId);
 			if (weights[i] > maxWeight) {
 				maxWeight = weights[i];
 				maxWeightIdx = i;
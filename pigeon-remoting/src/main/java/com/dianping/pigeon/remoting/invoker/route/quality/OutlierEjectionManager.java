@@ -0,0 +1,369 @@
+package com.dianping.pigeon.remoting.invoker.route.quality;
+
+import com.dianping.pigeon.config.ConfigChangeListener;
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.threadpool.DefaultThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于延迟和失败率的异常节点摘除：周期性地将每个节点最近窗口内的平均延迟、失败率与服务内所有节点的中位数比较，
+ * 明显偏离的节点在一段时间内从路由集合中摘除，摘除时间按摘除次数指数退避，且同一服务被摘除的节点比例不超过上限
+ */
+public enum OutlierEjectionManager {
+
+    INSTANCE;
+
+    private static final Logger logger = LoggerLoader.getLogger(OutlierEjectionManager.class);
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+    private static final String KEY_OUTLIER_EJECTION_ENABLE = "pigeon.invoker.outlier.ejection.enable";
+    private static final String KEY_OUTLIER_CHECK_INTERVAL = "pigeon.invoker.outlier.check.interval";
+    private static final String KEY_OUTLIER_THRESHOLD_TOTAL = "pigeon.invoker.outlier.threshold.total";
+    private static final String KEY_OUTLIER_THRESHOLD_HOSTS = "pigeon.invoker.outlier.threshold.hosts";
+    private static final String KEY_OUTLIER_LATENCY_FACTOR = "pigeon.invoker.outlier.latency.factor";
+    private static final String KEY_OUTLIER_LATENCY_MIN = "pigeon.invoker.outlier.latency.min";
+    private static final String KEY_OUTLIER_FAILED_PERCENT_DELTA = "pigeon.invoker.outlier.failed.percent.delta";
+    private static final String KEY_OUTLIER_EJECTION_BASE = "pigeon.invoker.outlier.ejection.base";
+    private static final String KEY_OUTLIER_EJECTION_MAX = "pigeon.invoker.outlier.ejection.max";
+    private static final String KEY_OUTLIER_EJECTION_PERCENT_MAX = "pigeon.invoker.outlier.ejection.percent.max";
+    private volatile static boolean isOutlierEjectionEnable = configManager.getBooleanValue(KEY_OUTLIER_EJECTION_ENABLE, false);
+    private volatile static int checkInterval = configManager.getIntValue(KEY_OUTLIER_CHECK_INTERVAL, 10);
+    private volatile static int thresholdTotal = configManager.getIntValue(KEY_OUTLIER_THRESHOLD_TOTAL, 20);
+    private volatile static int thresholdHosts = configManager.getIntValue(KEY_OUTLIER_THRESHOLD_HOSTS, 3);
+    private volatile static float latencyFactor = configManager.getFloatValue(KEY_OUTLIER_LATENCY_FACTOR, 3f);
+    private volatile static long latencyMin = configManager.getLongValue(KEY_OUTLIER_LATENCY_MIN, 50);
+    private volatile static float failedPercentDelta = configManager.getFloatValue(KEY_OUTLIER_FAILED_PERCENT_DELTA, 20f);
+    private volatile static long ejectionBase = configManager.getLongValue(KEY_OUTLIER_EJECTION_BASE, 30000);
+    private volatile static long ejectionMax = configManager.getLongValue(KEY_OUTLIER_EJECTION_MAX, 300000);
+    private volatile static float ejectionPercentMax = configManager.getFloatValue(KEY_OUTLIER_EJECTION_PERCENT_MAX, 50f);
+
+    private static final ExecutorService checkThreadPool = Executors.newFixedThreadPool(1,
+            new DefaultThreadFactory("Pigeon-Client-Outlier-Checker"));
+
+    static {
+        configManager.registerConfigChangeListener(new InnerConfigChangeListener());
+        checkThreadPool.execute(new Checker());
+    }
+
+    // serviceName --> ( address --> { window stats, ejection state } )
+    private final ConcurrentMap<String, ConcurrentMap<String, HostStats>> serviceHostStats = new ConcurrentHashMap<String, ConcurrentMap<String, HostStats>>();
+
+    public boolean isEnableOutlierEjection() {
+        return isOutlierEjectionEnable;
+    }
+
+    public ConcurrentMap<String, ConcurrentMap<String, HostStats>> getServiceHostStats() {
+        return serviceHostStats;
+    }
+
+    public void addClientResponse(InvocationRequest request, String address, long latency, boolean failed) {
+        if (isOutlierEjectionEnable && address != null && request != null
+                && request.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
+            getHostStats(request.getServiceName(), address).record(latency, failed);
+        }
+    }
+
+    private HostStats getHostStats(String serviceName, String address) {
+        ConcurrentMap<String, HostStats> hostStats = serviceHostStats.get(serviceName);
+        if (hostStats == null) {
+            hostStats = new ConcurrentHashMap<String, HostStats>();
+            ConcurrentMap<String, HostStats> last = serviceHostStats.putIfAbsent(serviceName, hostStats);
+            if (last != null) {
+                hostStats = last;
+            }
+        }
+        HostStats stats = hostStats.get(address);
+        if (stats == null) {
+            stats = new HostStats();
+            HostStats last = hostStats.putIfAbsent(address, stats);
+            if (last != null) {
+                stats = last;
+            }
+        }
+        return stats;
+    }
+
+    public boolean isEjected(String serviceName, String address) {
+        ConcurrentMap<String, HostStats> hostStats = serviceHostStats.get(serviceName);
+        if (hostStats != null) {
+            HostStats stats = hostStats.get(address);
+            return stats != null && stats.isEjected(System.currentTimeMillis());
+        }
+        return false;
+    }
+
+    /**
+     * 过滤当前处于摘除状态的clients，如果全部被摘除则保留原列表
+     *
+     * @param clientList
+     * @param request
+     * @return
+     */
+    public List<Client> getNonEjectedClients(List<Client> clientList, InvocationRequest request) {
+        if (!isOutlierEjectionEnable) {
+            return clientList;
+        }
+        ConcurrentMap<String, HostStats> hostStats = serviceHostStats.get(request.getServiceName());
+        if (hostStats == null || hostStats.isEmpty()) {
+            return clientList;
+        }
+        long now = System.currentTimeMillis();
+        List<Client> nonEjectedClients = null;
+        for (int i = 0; i < clientList.size(); i++) {
+            Client client = clientList.get(i);
+            HostStats stats = hostStats.get(client.getAddress());
+            boolean ejected = stats != null && stats.isEjected(now);
+            if (ejected && nonEjectedClients == null) {
+                nonEjectedClients = new ArrayList<Client>(clientList.subList(0, i));
+            } else if (!ejected && nonEjectedClients != null) {
+                nonEjectedClients.add(client);
+            }
+        }
+        if (nonEjectedClients == null || nonEjectedClients.isEmpty()) {
+            return clientList;
+        }
+        return nonEjectedClients;
+    }
+
+    public void removeClientStats(String address) {
+        for (ConcurrentMap<String, HostStats> hostStats : serviceHostStats.values()) {
+            hostStats.remove(address);
+        }
+    }
+
+    /**
+     * 滚动各节点的统计窗口并按now判断摘除，由检查线程周期调用
+     */
+    public void checkOutliers(long now) {
+        for (Map.Entry<String, ConcurrentMap<String, HostStats>> entry : serviceHostStats.entrySet()) {
+            String serviceName = entry.getKey();
+            ConcurrentMap<String, HostStats> hostStats = entry.getValue();
+
+            List<Map.Entry<String, HostStats>> candidates = new ArrayList<Map.Entry<String, HostStats>>(
+                    hostStats.size());
+            int ejectedCount = 0;
+            for (Map.Entry<String, HostStats> hostEntry : hostStats.entrySet()) {
+                HostStats stats = hostEntry.getValue();
+                stats.rollWindow();
+                if (stats.isEjected(now)) {
+                    ejectedCount++;
+                } else if (stats.getLastTotal() >= thresholdTotal) {
+                    candidates.add(hostEntry);
+                }
+            }
+            if (candidates.size() < thresholdHosts) {
+                continue;
+            }
+
+            long medianLatency = medianLatency(candidates);
+            float medianFailedPercent = medianFailedPercent(candidates);
+            long latencyLimit = Math.max(latencyMin, (long) (medianLatency * latencyFactor));
+            float failedPercentLimit = medianFailedPercent + failedPercentDelta;
+            int maxEjected = (int) (hostStats.size() * ejectionPercentMax / 100);
+
+            for (Map.Entry<String, HostStats> hostEntry : candidates) {
+                HostStats stats = hostEntry.getValue();
+                boolean latencyOutlier = stats.getLastAvgLatency() > latencyLimit;
+                boolean failedOutlier = stats.getLastFailedPercent() > failedPercentLimit;
+                if (latencyOutlier || failedOutlier) {
+                    if (ejectedCount < maxEjected) {
+                        long ejectionMillis = stats.eject(now);
+                        ejectedCount++;
+                        logger.info("[outlier] eject " + hostEntry.getKey() + " of " + serviceName + " for "
+                                + ejectionMillis + "ms, avg latency:" + stats.getLastAvgLatency() + "/" + latencyLimit
+                                + ", failed percent:" + stats.getLastFailedPercent() + "/" + failedPercentLimit);
+                    } else if (logger.isDebugEnabled()) {
+                        logger.debug("[outlier] max ejection percent reached, keep " + hostEntry.getKey() + " of "
+                                + serviceName);
+                    }
+                } else {
+                    stats.recover();
+                }
+            }
+        }
+    }
+
+    private static long medianLatency(List<Map.Entry<String, HostStats>> candidates) {
+        long[] latencies = new long[candidates.size()];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = candidates.get(i).getValue().getLastAvgLatency();
+        }
+        Arrays.sort(latencies);
+        return latencies[latencies.length / 2];
+    }
+
+    private static float medianFailedPercent(List<Map.Entry<String, HostStats>> candidates) {
+        float[] failedPercents = new float[candidates.size()];
+        for (int i = 0; i < failedPercents.length; i++) {
+            failedPercents[i] = candidates.get(i).getValue().getLastFailedPercent();
+        }
+        Arrays.sort(failedPercents);
+        return failedPercents[failedPercents.length / 2];
+    }
+
+    public static class HostStats {
+
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong latencySum = new AtomicLong();
+
+        private volatile long lastTotal;
+        private volatile long lastFailed;
+        private volatile long lastAvgLatency;
+
+        private volatile long ejectedUntil;
+        private volatile int ejectionCount;
+        private volatile int ejectedTimes;
+
+        void record(long latency, boolean failed) {
+            this.total.incrementAndGet();
+            this.latencySum.addAndGet(latency);
+            if (failed) {
+                this.failed.incrementAndGet();
+            }
+        }
+
+        void rollWindow() {
+            long total = this.total.getAndSet(0);
+            long failed = this.failed.getAndSet(0);
+            long latencySum = this.latencySum.getAndSet(0);
+            this.lastTotal = total;
+            this.lastFailed = failed;
+            this.lastAvgLatency = total > 0 ? latencySum / total : 0;
+        }
+
+        long eject(long now) {
+            int shift = Math.min(ejectionCount, 30);
+            long ejectionMillis = Math.min(ejectionBase << shift, ejectionMax);
+            if (ejectionMillis <= 0) {
+                ejectionMillis = ejectionMax;
+            }
+            ejectedUntil = now + ejectionMillis;
+            ejectionCount++;
+            ejectedTimes++;
+            return ejectionMillis;
+        }
+
+        void recover() {
+            if (ejectionCount > 0) {
+                ejectionCount--;
+            }
+        }
+
+        public boolean isEjected(long now) {
+            return ejectedUntil > now;
+        }
+
+        public boolean isEjected() {
+            return isEjected(System.currentTimeMillis());
+        }
+
+        public long getEjectedUntil() {
+            return ejectedUntil;
+        }
+
+        public int getEjectionCount() {
+            return ejectionCount;
+        }
+
+        public int getEjectedTimes() {
+            return ejectedTimes;
+        }
+
+        public long getLastTotal() {
+            return lastTotal;
+        }
+
+        public long getLastFailed() {
+            return lastFailed;
+        }
+
+        public long getLastAvgLatency() {
+            return lastAvgLatency;
+        }
+
+        public float getLastFailedPercent() {
+            if (lastTotal > 0) {
+                return lastFailed * 100f / lastTotal;
+            } else {
+                return 0;
+            }
+        }
+    }
+
+    private static class Checker implements Runnable {
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    Thread.sleep(1000L * checkInterval);
+                    if (isOutlierEjectionEnable) {
+                        INSTANCE.checkOutliers(System.currentTimeMillis());
+                    }
+                } catch (Throwable t) {
+                    logger.error("check outliers failed", t);
+                }
+            }
+        }
+    }
+
+    private static class InnerConfigChangeListener implements ConfigChangeListener {
+        @Override
+        public void onKeyUpdated(String key, String value) {
+            try {
+                if (key.endsWith(KEY_OUTLIER_EJECTION_ENABLE)) {
+                    isOutlierEjectionEnable = Boolean.valueOf(value);
+                    if (!isOutlierEjectionEnable) {
+                        INSTANCE.serviceHostStats.clear();
+                    }
+                } else if (key.endsWith(KEY_OUTLIER_CHECK_INTERVAL)) {
+                    checkInterval = Integer.valueOf(value);
+                } else if (key.endsWith(KEY_OUTLIER_THRESHOLD_TOTAL)) {
+                    thresholdTotal = Integer.valueOf(value);
+                } else if (key.endsWith(KEY_OUTLIER_THRESHOLD_HOSTS)) {
+                    thresholdHosts = Integer.valueOf(value);
+                } else if (key.endsWith(KEY_OUTLIER_LATENCY_FACTOR)) {
+                    latencyFactor = Float.valueOf(value);
+                } else if (key.endsWith(KEY_OUTLIER_LATENCY_MIN)) {
+                    latencyMin = Long.valueOf(value);
+                } else if (key.endsWith(KEY_OUTLIER_FAILED_PERCENT_DELTA)) {
+                    failedPercentDelta = Float.valueOf(value);
+                } else if (key.endsWith(KEY_OUTLIER_EJECTION_BASE)) {
+                    ejectionBase = Long.valueOf(value);
+                } else if (key.endsWith(KEY_OUTLIER_EJECTION_MAX)) {
+                    ejectionMax = Long.valueOf(value);
+                } else if (key.endsWith(KEY_OUTLIER_EJECTION_PERCENT_MAX)) {
+                    ejectionPercentMax = Float.valueOf(value);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("invalid value for key " + key, e);
+            }
+        }
+
+        @Override
+        public void onKeyAdded(String key, String value) {
+
+        }
+
+        @Override
+        public void onKeyRemoved(String key) {
+
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.dianping.pigeon.remoting.invoker.route.quality;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 单个(client, requestUrl)的服务质量窗口，预分配固定大小的每秒计数环形数组，记录不需要创建对象
+ * 每个槽位以 secondTag << 40 | total << 20 | failed 的形式保存在一个long中，秒数和计数一起cas，
+ * 切换到新的一秒时不会清掉其他线程已经计入新一秒的次数；单秒计数达到上限后不再增加
+ */
+public class QualityWindow {
+
+    private static final int SLOT_BITS = 6;
+
+    public static final int SLOTS = 1 << SLOT_BITS;
+
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private static final int COUNT_BITS = 20;
+
+    private static final long COUNT_MAX = (1L << COUNT_BITS) - 1;
+
+    private static final long TOTAL_ONE = 1L << COUNT_BITS;
+
+    private static final long TAG_MASK = (1L << (64 - 2 * COUNT_BITS)) - 1;
+
+    private final AtomicLongArray slots = new AtomicLongArray(SLOTS);
+
+    // 最近若干秒的统计快照，由检查线程定时整体替换，路由时直接读取
+    private volatile RequestQualityManager.Quality quality = new RequestQualityManager.Quality();
+
+    public void record(long second, boolean failed) {
+        int slot = (int) (second & SLOT_MASK);
+        long tag = tag(second);
+        while (true) {
+            long value = slots.get(slot);
+            long update;
+            if ((value >>> (2 * COUNT_BITS)) != tag) {
+                update = tag << (2 * COUNT_BITS) | TOTAL_ONE | (failed ? 1 : 0);
+            } else if (total(value) >= COUNT_MAX) {
+                return;
+            } else {
+                update = value + (failed ? TOTAL_ONE + 1 : TOTAL_ONE);
+            }
+            if (slots.compareAndSet(slot, value, update)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 汇总当前秒之前recentSeconds秒内的计数，更新快照
+     *
+     * @param currentSecond
+     * @param recentSeconds
+     */
+    public void refresh(long currentSecond, int recentSeconds) {
+        int seconds = Math.min(recentSeconds, SLOTS - 1);
+        int total = 0, failed = 0;
+        for (int i = 1; i <= seconds; i++) {
+            long prevSecond = currentSecond - i;
+            long value = slots.get((int) (prevSecond & SLOT_MASK));
+            if ((value >>> (2 * COUNT_BITS)) == tag(prevSecond)) {
+                total += (int) total(value);
+                failed += (int) (value & COUNT_MAX);
+            }
+        }
+        quality = new RequestQualityManager.Quality(total, failed);
+    }
+
+    public RequestQualityManager.Quality getQuality() {
+        return quality;
+    }
+
+    // 加1避免第0秒与未写入的槽位混淆
+    private static long tag(long second) {
+        return ((second >>> SLOT_BITS) + 1) & TAG_MASK;
+    }
+
+    private static long total(long value) {
+        return (value >>> COUNT_BITS) & COUNT_MAX;
+    }
+}
@@ -8,12 +8,12 @@ import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
-import org.springframework.util.CollectionUtils;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Created by chenchongze on 16/5/20.
@@ -38,77 +38,150 @@ public enum RequestQualityManager {
     private volatile static Float reqQualityFailedPercentNormal = configManager.getFloatValue(KEY_REQUEST_QUALITY_FAILED_PERCENT_NORMAL, 5f);
     private volatile static int reqQualityThresholdTotal = configManager.getIntValue(KEY_REQUEST_QUALITY_THRESHOLD_TOTAL, 20);
 
-    // hosts --> ( requestUrl:serviceName#method --> second --> { total, failed } )
-    private ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<Integer, Quality>>>
-            addrReqUrlSecondQualities = new ConcurrentHashMap<String, ConcurrentMap<String, ConcurrentMap<Integer, Quality>>>();
+    private static final String KEY_REQUEST_QUALITY_METHODS_MAX = "pigeon.invoker.request.quality.methods.max";
+    private final int reqQualityMethodsMax = ConfigManagerLoader.getConfigManager().getIntValue(
+            KEY_REQUEST_QUALITY_METHODS_MAX, 4096);
 
-    // hosts --> ( requestUrl:serviceName#method --> { total, failed } )
-    private volatile ConcurrentMap<String, ConcurrentMap<String, Quality>> addrReqUrlQualities = null;
+    // serviceName --> ( method --> requestUrl id )
+    private final ConcurrentMap<String, ConcurrentMap<String, Integer>> requestUrlIds = new ConcurrentHashMap<String, ConcurrentMap<String, Integer>>();
 
-    public ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<Integer, Quality>>> getAddrReqUrlSecondQualities() {
-        return addrReqUrlSecondQualities;
-    }
+    // requestUrl id --> serviceName#method
+    private final AtomicReferenceArray<String> requestUrls = new AtomicReferenceArray<String>(reqQualityMethodsMax);
 
-    public ConcurrentMap<String, ConcurrentMap<String, Quality>> getAddrReqUrlQualities() {
-        return addrReqUrlQualities;
-    }
+    private final AtomicInteger requestUrlIdGenerator = new AtomicInteger();
 
-    public void setAddrReqUrlQualities(ConcurrentMap<String, ConcurrentMap<String, Quality>> addrReqUrlQualities) {
-        this.addrReqUrlQualities = addrReqUrlQualities;
-    }
+    // hosts --> ( requestUrl id --> { second --> total, failed } )
+    private final ConcurrentMap<String, ClientQualities> addrQualities = new ConcurrentHashMap<String, ClientQualities>();
 
     public void addClientRequest(InvokerContext context, boolean failed) {
         if (isReqQualityEnable && context.getClient() != null) {
+            int requestUrlId = getRequestUrlId(context.getInvokerConfig().getUrl(), context.getMethodName(), true);
+            if (requestUrlId < 0) {
+                return;
+            }
 
             String address = context.getClient().getAddress();
-            ConcurrentMap<String, ConcurrentMap<Integer, Quality>>
-                    requestSecondQuality = addrReqUrlSecondQualities.get(address);
-            if (requestSecondQuality == null) {
-                requestSecondQuality = new ConcurrentHashMap<String, ConcurrentMap<Integer, Quality>>();
-                ConcurrentMap<String, ConcurrentMap<Integer, Quality>>
-                        last = addrReqUrlSecondQualities.putIfAbsent(address, requestSecondQuality);
+            ClientQualities clientQualities = addrQualities.get(address);
+            if (clientQualities == null) {
+                clientQualities = new ClientQualities();
+                ClientQualities last = addrQualities.putIfAbsent(address, clientQualities);
                 if (last != null) {
-                    requestSecondQuality = last;
+                    clientQualities = last;
                 }
             }
 
-            String requestUrl = getRequestUrl(context);
-            ConcurrentMap<Integer, Quality> secondQuality = requestSecondQuality.get(requestUrl);
-            if (secondQuality == null) {
-                secondQuality = new ConcurrentHashMap<Integer, Quality>();
-                ConcurrentMap<Integer, Quality> last = requestSecondQuality.putIfAbsent(requestUrl, secondQuality);
-                if (last != null) {
-                    secondQuality = last;
-                }
-            }
+            clientQualities.getWindow(requestUrlId, true).record(System.currentTimeMillis() / 1000, failed);
+        }
+    }
 
-            int currentSecond = Calendar.getInstance().get(Calendar.SECOND);
-            Quality quality = secondQuality.get(currentSecond);
-            if (quality == null) {
-                quality = new Quality(0, 0);
-                Quality last = secondQuality.putIfAbsent(currentSecond, quality);
-                if (last != null) {
-                    quality = last;
+    public void removeClientQualities(String address) {
+        addrQualities.remove(address);
+    }
+
+    /**
+     * 为serviceName#method分配一个固定的整数id，超过上限后不再分配，返回-1
+     *
+     * @param serviceName
+     * @param methodName
+     * @param create
+     * @return
+     */
+    private int getRequestUrlId(String serviceName, String methodName, boolean create) {
+        ConcurrentMap<String, Integer> methodIds = requestUrlIds.get(serviceName);
+        if (methodIds == null) {
+            if (!create) {
+                return -1;
+            }
+            methodIds = new ConcurrentHashMap<String, Integer>();
+            ConcurrentMap<String, Integer> last = requestUrlIds.putIfAbsent(serviceName, methodIds);
+            if (last != null) {
+                methodIds = last;
+            }
+        }
+        Integer id = methodIds.get(methodName);
+        if (id == null) {
+            if (!create) {
+                return -1;
+            }
+            synchronized (methodIds) {
+                id = methodIds.get(methodName);
+                if (id == null) {
+                    int newId = nextRequestUrlId();
+                    if (newId < 0) {
+                        return -1;
+                    }
+                    requestUrls.set(newId, serviceName + "#" + methodName);
+                    id = newId;
+                    methodIds.put(methodName, id);
                 }
             }
+        }
+        return id;
+    }
 
-            quality.total.incrementAndGet();
-            if (failed) {
-                quality.failed.incrementAndGet();
+    // 不同服务在各自的锁内分配，id本身需要全局原子地分配
+    private int nextRequestUrlId() {
+        for (;;) {
+            int current = requestUrlIdGenerator.get();
+            if (current >= reqQualityMethodsMax) {
+                return -1;
+            }
+            if (requestUrlIdGenerator.compareAndSet(current, current + 1)) {
+                return current;
             }
         }
     }
 
-    public void removeClientQualities(String address) {
-        addrReqUrlSecondQualities.remove(address);
+    public int getRequestUrlId(InvocationRequest request) {
+        return getRequestUrlId(request.getServiceName(), request.getMethodName(), false);
     }
 
-    private String getRequestUrl(InvokerContext context) {
-        return context.getInvokerConfig().getUrl() + "#" + context.getMethodName();
+    private Quality getQuality(String address, int requestUrlId) {
+        if (requestUrlId >= 0) {
+            ClientQualities clientQualities = addrQualities.get(address);
+            if (clientQualities != null) {
+                QualityWindow window = clientQualities.getWindow(requestUrlId, false);
+                if (window != null) {
+                    return window.getQuality();
+                }
+            }
+        }
+        return null;
     }
 
-    private String getRequestUrl(InvocationRequest request) {
-        return request.getServiceName() + "#" + request.getMethodName();
+    /**
+     * 刷新所有窗口最近recentSeconds秒的统计快照
+     *
+     * @param recentSeconds
+     */
+    public void refreshQualities(int recentSeconds) {
+        long currentSecond = System.currentTimeMillis() / 1000;
+        for (ClientQualities clientQualities : addrQualities.values()) {
+            AtomicReferenceArray<QualityWindow> windows = clientQualities.windows;
+            for (int i = 0; i < windows.length(); i++) {
+                QualityWindow window = windows.get(i);
+                if (window != null) {
+                    window.refresh(currentSecond, recentSeconds);
+                }
+            }
+        }
+    }
+
+    public ConcurrentMap<String, ConcurrentMap<String, Quality>> getAddrReqUrlQualities() {
+        ConcurrentMap<String, ConcurrentMap<String, Quality>> addrReqUrlQualities = new ConcurrentHashMap<String, ConcurrentMap<String, Quality>>();
+        for (Map.Entry<String, ClientQualities> entry : addrQualities.entrySet()) {
+            ConcurrentMap<String, Quality> reqUrlQualities = new ConcurrentHashMap<String, Quality>();
+            AtomicReferenceArray<QualityWindow> windows = entry.getValue().windows;
+            for (int i = 0; i < windows.length(); i++) {
+                QualityWindow window = windows.get(i);
+                String requestUrl = requestUrls.get(i);
+                if (window != null && requestUrl != null) {
+                    reqUrlQualities.put(requestUrl, window.getQuality());
+                }
+            }
+            addrReqUrlQualities.put(entry.getKey(), reqUrlQualities);
+        }
+        return addrReqUrlQualities;
     }
 
     /**
@@ -124,34 +197,29 @@ public enum RequestQualityManager {
     public List<Client> getQualityPreferClients(List<Client> clientList, InvocationRequest request, float least) {
         // 筛选good，normal，bad clients
         // 直接进行服务质量路由,先只保留服务质量good的，如果不够（比如少于1个），加入服务质量normal的
-        if (!CollectionUtils.isEmpty(addrReqUrlQualities)) {
-            String requestUrl = getRequestUrl(request);
-
+        int requestUrlId = getRequestUrlId(request);
+        if (requestUrlId >= 0 && !addrQualities.isEmpty()) {
             Map<RequrlQuality, List<Client>> filterQualityClientsMap = new HashMap<RequrlQuality, List<Client>>();
             for (RequrlQuality reqQuality : RequrlQuality.values()) {
                 filterQualityClientsMap.put(reqQuality, new ArrayList<Client>());
             }
 
             for (Client client : clientList) {
-                if (addrReqUrlQualities.containsKey(client.getAddress())) {
-                    ConcurrentMap<String, Quality> reqUrlQualities = addrReqUrlQualities.get(client.getAddress());
-                    if (reqUrlQualities.containsKey(requestUrl)) {
-                        Quality quality = reqUrlQualities.get(requestUrl);
-
-                        switch (quality.getQuality()) {
-                            case REQURL_QUALITY_GOOD:
-                                filterQualityClientsMap.get(RequrlQuality.REQURL_QUALITY_GOOD).add(client);
-                                break;
-                            case REQURL_QUALITY_NORNAL:
-                                filterQualityClientsMap.get(RequrlQuality.REQURL_QUALITY_NORNAL).add(client);
-                                break;
-                            case REQURL_QUALITY_BAD:
-                                filterQualityClientsMap.get(RequrlQuality.REQURL_QUALITY_BAD).add(client);
-                                break;
-                            default:
-                                // never be here
-                                break;
-                        }
+                Quality quality = getQuality(client.getAddress(), requestUrlId);
+                if (quality != null) {
+                    switch (quality.getQuality()) {
+                        case REQURL_QUALITY_GOOD:
+                            filterQualityClientsMap.get(RequrlQuality.REQURL_QUALITY_GOOD).add(client);
+                            break;
+                        case REQURL_QUALITY_NORNAL:
+                            filterQualityClientsMap.get(RequrlQuality.REQURL_QUALITY_NORNAL).add(client);
+                            break;
+                        case REQURL_QUALITY_BAD:
+                            filterQualityClientsMap.get(RequrlQuality.REQURL_QUALITY_BAD).add(client);
+                            break;
+                        default:
+                            // never be here
+                            break;
                     }
                 }
             }
@@ -175,14 +243,17 @@ public enum RequestQualityManager {
 
     public int adjustWeightWithQuality(int weight, String clientAddress, InvocationRequest request) {
         if (isEnableRequestQualityRoute()) {
-            if (!CollectionUtils.isEmpty(addrReqUrlQualities)) {
-                ConcurrentMap<String, Quality> reqUrlQualities = addrReqUrlQualities.get(clientAddress);
-                if (reqUrlQualities != null) {
-                    Quality quality = reqUrlQualities.get(getRequestUrl(request));
-                    if (quality != null) {
-                        weight /= quality.getQualityValue(); // int 多数会归零
-                    }
-                }
+            return adjustWeightWithQuality(weight, clientAddress, getRequestUrlId(request));
+        }
+
+        return weight;
+    }
+
+    public int adjustWeightWithQuality(int weight, String clientAddress, int requestUrlId) {
+        if (isEnableRequestQualityRoute()) {
+            Quality quality = getQuality(clientAddress, requestUrlId);
+            if (quality != null) {
+                weight /= quality.getQualityValue(); // int 多数会归零
             }
         }
 
@@ -228,8 +299,9 @@ public enum RequestQualityManager {
         }
 
         public float getFailedPercent() {
-            if (total.get() > 0) {
-                return failed.get() * 100 / total.get();
+            int total = this.total.get();
+            if (total > 0) {
+                return failed.get() * 100 / total;
             } else {
                 return 0;
             }
@@ -262,6 +334,39 @@ public enum RequestQualityManager {
         }
     }
 
+    private class ClientQualities {
+
+        private volatile AtomicReferenceArray<QualityWindow> windows = new AtomicReferenceArray<QualityWindow>(16);
+
+        QualityWindow getWindow(int requestUrlId, boolean create) {
+            AtomicReferenceArray<QualityWindow> windows = this.windows;
+            QualityWindow window = requestUrlId < windows.length() ? windows.get(requestUrlId) : null;
+            if (window == null && create) {
+                synchronized (this) {
+                    windows = this.windows;
+                    if (requestUrlId >= windows.length()) {
+                        int length = windows.length();
+                        while (length <= requestUrlId) {
+                            length <<= 1;
+                        }
+                        AtomicReferenceArray<QualityWindow> newWindows = new AtomicReferenceArray<QualityWindow>(
+                                Math.min(length, reqQualityMethodsMax));
+                        for (int i = 0; i < windows.length(); i++) {
+                            newWindows.set(i, windows.get(i));
+                        }
+                        this.windows = windows = newWindows;
+                    }
+                    window = windows.get(requestUrlId);
+                    if (window == null) {
+                        window = new QualityWindow();
+                        windows.set(requestUrlId, window);
+                    }
+                }
+            }
+            return window;
+        }
+    }
+
     private enum RequrlQuality {
         REQURL_QUALITY_GOOD(1),
         REQURL_QUALITY_NORNAL(10),
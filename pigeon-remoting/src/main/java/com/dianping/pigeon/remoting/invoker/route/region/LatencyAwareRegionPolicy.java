@@ -0,0 +1,332 @@
+package com.dianping.pigeon.remoting.invoker.route.region;
+
+import com.dianping.pigeon.config.ConfigChangeListener;
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.monitor.Monitor;
+import com.dianping.pigeon.monitor.MonitorLoader;
+import com.dianping.pigeon.registry.RegistryManager;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.Client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于实测延迟的region路由：按服务统计每个region的延迟和失败率(指数加权平均)，
+ * 本地region延迟健康时流量全部留在本地，本地延迟相对其健康基线上升或失败率上升时，
+ * 按饱和程度计算出一个比例，把这部分流量分给实测延迟最低的其他region，而不是到达阈值后整体切换
+ */
+public class LatencyAwareRegionPolicy implements RegionPolicy {
+
+    public final static LatencyAwareRegionPolicy INSTANCE = new LatencyAwareRegionPolicy();
+
+    public static final String NAME = "latencyAware";
+
+    private static final Logger logger = LoggerLoader.getLogger(LatencyAwareRegionPolicy.class);
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private static final String KEY_LATENCY_ALPHA = "pigeon.regionpolicy.latency.alpha";
+    private static final String KEY_LATENCY_MIN_SAMPLES = "pigeon.regionpolicy.latency.samples.min";
+    private static final String KEY_LATENCY_DELTA_MIN = "pigeon.regionpolicy.latency.delta.min";
+    private static final String KEY_LATENCY_SPILL_FACTOR = "pigeon.regionpolicy.latency.spill.factor";
+    private static final String KEY_LATENCY_SPILL_MAX = "pigeon.regionpolicy.latency.spill.max";
+    private static final String KEY_LATENCY_FAILED_MAX = "pigeon.regionpolicy.latency.failed.max";
+
+    // 指数加权平均的权重，越大对最新样本越敏感
+    private static volatile float alpha = configManager.getFloatValue(KEY_LATENCY_ALPHA, 0.2f);
+    // region样本数少于该值时不参与按延迟排序，按配置的优先级排序
+    private static volatile int minSamples = configManager.getIntValue(KEY_LATENCY_MIN_SAMPLES, 20);
+    // 本地延迟高出基线不足该值(ms)时视为健康，避免亚毫秒级抖动导致分流
+    private static volatile long latencyDeltaMin = configManager.getLongValue(KEY_LATENCY_DELTA_MIN, 10);
+    // 本地延迟达到基线的该倍数时分流比例达到上限
+    private static volatile float spillFactor = configManager.getFloatValue(KEY_LATENCY_SPILL_FACTOR, 3f);
+    // 分流到其他region的最大比例
+    private static volatile float spillMax = configManager.getFloatValue(KEY_LATENCY_SPILL_MAX, 0.5f);
+    // 本地失败率达到该值时分流比例达到上限
+    private static volatile float failedMax = configManager.getFloatValue(KEY_LATENCY_FAILED_MAX, 0.3f);
+
+    static {
+        configManager.registerConfigChangeListener(new InnerConfigChangeListener());
+    }
+
+    private final RegionPolicyManager regionPolicyManager = RegionPolicyManager.INSTANCE;
+
+    private final RegistryManager registryManager = RegistryManager.getInstance();
+
+    private final Monitor monitor = MonitorLoader.getMonitor();
+
+    // serviceName --> ( regionName --> stats )，只有按本策略路由过的服务才会创建并记录统计
+    private final ConcurrentMap<String, ConcurrentMap<String, RegionStats>> serviceRegionStats = new ConcurrentHashMap<String, ConcurrentMap<String, RegionStats>>();
+
+    private LatencyAwareRegionPolicy() {
+    }
+
+    public ConcurrentMap<String, ConcurrentMap<String, RegionStats>> getServiceRegionStats() {
+        return serviceRegionStats;
+    }
+
+    public void addClientResponse(InvocationRequest request, Client client, long latency, boolean failed) {
+        if (request == null || client == null || request.getMessageType() != Constants.MESSAGE_TYPE_SERVICE
+                || !regionPolicyManager.isEnableRegionPolicy()) {
+            return;
+        }
+        ConcurrentMap<String, RegionStats> regionStats = serviceRegionStats.get(request.getServiceName());
+        Region region = client.getRegion();
+        if (regionStats != null && region != null) {
+            getRegionStats(regionStats, region.getName()).record(latency, failed, alpha);
+        }
+    }
+
+    private ConcurrentMap<String, RegionStats> getRegionStats(String serviceName) {
+        ConcurrentMap<String, RegionStats> regionStats = serviceRegionStats.get(serviceName);
+        if (regionStats == null) {
+            regionStats = new ConcurrentHashMap<String, RegionStats>();
+            ConcurrentMap<String, RegionStats> last = serviceRegionStats.putIfAbsent(serviceName, regionStats);
+            if (last != null) {
+                regionStats = last;
+            }
+        }
+        return regionStats;
+    }
+
+    private RegionStats getRegionStats(ConcurrentMap<String, RegionStats> regionStats, String regionName) {
+        RegionStats stats = regionStats.get(regionName);
+        if (stats == null) {
+            stats = new RegionStats();
+            RegionStats last = regionStats.putIfAbsent(regionName, stats);
+            if (last != null) {
+                stats = last;
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public List<Client> getPreferRegionClients(List<Client> clientList, InvocationRequest request) {
+        Region localRegion = regionPolicyManager.getLocalRegion();
+        List<Region> regionArray = regionPolicyManager.getRegionArray();
+        if (localRegion == null || regionArray.isEmpty()) {
+            return clientList;
+        }
+
+        Map<Region, List<Client>> regionClients = new HashMap<Region, List<Client>>();
+        for (Client client : clientList) {
+            Region region = client.getRegion();
+            if (region != null && client.isActive() && registryManager.getServiceWeightFromCache(client.getAddress()) > 0) {
+                List<Client> clients = regionClients.get(region);
+                if (clients == null) {
+                    clients = new ArrayList<Client>();
+                    regionClients.put(region, clients);
+                }
+                clients.add(client);
+            }
+        }
+
+        ConcurrentMap<String, RegionStats> regionStats = getRegionStats(request.getServiceName());
+        List<Client> localClients = regionClients.get(localRegion);
+        Region nearestRegion = getNearestRemoteRegion(regionArray, localRegion, regionClients, regionStats);
+
+        if (localClients == null) {
+            if (nearestRegion == null) {
+                return clientList;
+            }
+            monitor.logEvent("PigeonCall.regionUnavailable", request.getServiceName() + "#" + localRegion.getName(),
+                    "");
+            return regionClients.get(nearestRegion);
+        }
+        if (nearestRegion == null) {
+            return localClients;
+        }
+
+        float spill = getSpillPercent(regionStats.get(localRegion.getName()));
+        if (spill > 0 && ThreadLocalRandom.current().nextFloat() < spill) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(request.getServiceName() + " spill " + spill + " to region " + nearestRegion.getName());
+            }
+            monitor.logEvent("PigeonCall.regionSpill", request.getServiceName() + "#" + nearestRegion.getName(), "");
+            return regionClients.get(nearestRegion);
+        }
+        return localClients;
+    }
+
+    /**
+     * 本地region的分流比例，取延迟饱和度与失败率饱和度中较大者，线性映射到[0, spillMax]
+     */
+    private float getSpillPercent(RegionStats localStats) {
+        if (localStats == null || localStats.getCount() < minSamples) {
+            return 0f;
+        }
+        double latency = localStats.getLatency();
+        double baseline = localStats.getBaseline();
+        float saturation = 0f;
+        if (latency - baseline >= latencyDeltaMin && baseline > 0 && spillFactor > 1) {
+            saturation = (float) ((latency / baseline - 1) / (spillFactor - 1));
+        }
+        if (failedMax > 0) {
+            saturation = Math.max(saturation, (float) (localStats.getFailedPercent() / failedMax));
+        }
+        return Math.min(saturation, 1f) * spillMax;
+    }
+
+    /**
+     * 有可用client的非本地region中实测延迟最低的一个，样本不足的region排在有样本的region之后，按配置的优先级排序
+     */
+    private Region getNearestRemoteRegion(List<Region> regionArray, Region localRegion,
+                                          Map<Region, List<Client>> regionClients,
+                                          Map<String, RegionStats> regionStats) {
+        Region nearest = null;
+        double nearestLatency = Double.MAX_VALUE;
+        for (Region region : regionArray) {
+            if (region.equals(localRegion) || !regionClients.containsKey(region)) {
+                continue;
+            }
+            RegionStats stats = regionStats == null ? null : regionStats.get(region.getName());
+            double latency = (stats == null || stats.getCount() < minSamples) ? Double.MAX_VALUE : stats.getLatency();
+            if (nearest == null || latency < nearestLatency) {
+                nearest = region;
+                nearestLatency = latency;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * 无锁的region统计：延迟与基线以float位打包在一个long中cas更新，失败率与样本数打包在另一个long中，
+     * 两者各自保持一致，相互之间允许短暂不一致。权重由调用方传入，统计本身不依赖策略的配置
+     */
+    public static class RegionStats {
+
+        // 尚未记录样本时的延迟取NaN
+        private static final long LATENCY_INIT = pack(Float.NaN, 0f);
+
+        // 高32位为延迟，低32位为健康基线：低于基线时立即下调，高于基线时缓慢上调，持续的高延迟最终会被视为新常态
+        private final AtomicLong latencyState = new AtomicLong(LATENCY_INIT);
+
+        // 高32位为失败率，低32位为样本数(达到上限后不再增加)
+        private final AtomicLong failedState = new AtomicLong();
+
+        /**
+         * @param weight 指数加权平均的权重
+         */
+        public void record(long latency, boolean failed, float weight) {
+            float sample = latency;
+            while (true) {
+                long value = latencyState.get();
+                float current = high(value);
+                float newLatency, newBaseline;
+                if (Float.isNaN(current)) {
+                    newLatency = sample;
+                    newBaseline = sample;
+                } else {
+                    float baseline = low(value);
+                    newLatency = current + weight * (sample - current);
+                    if (newLatency < baseline) {
+                        newBaseline = newLatency;
+                    } else {
+                        newBaseline = baseline + 0.001f * (newLatency - baseline);
+                    }
+                }
+                if (latencyState.compareAndSet(value, pack(newLatency, newBaseline))) {
+                    break;
+                }
+            }
+            while (true) {
+                long value = failedState.get();
+                float failedPercent = high(value);
+                int count = (int) value;
+                failedPercent += weight * ((failed ? 1 : 0) - failedPercent);
+                if (count < Integer.MAX_VALUE) {
+                    count++;
+                }
+                if (failedState.compareAndSet(value, (long) Float.floatToRawIntBits(failedPercent) << 32
+                        | (count & 0xffffffffL))) {
+                    return;
+                }
+            }
+        }
+
+        public double getLatency() {
+            float latency = high(latencyState.get());
+            return Float.isNaN(latency) ? 0 : latency;
+        }
+
+        public double getBaseline() {
+            return low(latencyState.get());
+        }
+
+        public double getFailedPercent() {
+            return high(failedState.get());
+        }
+
+        public long getCount() {
+            return (int) failedState.get();
+        }
+
+        private static long pack(float high, float low) {
+            return (long) Float.floatToRawIntBits(high) << 32 | (Float.floatToRawIntBits(low) & 0xffffffffL);
+        }
+
+        private static float high(long value) {
+            return Float.intBitsToFloat((int) (value >>> 32));
+        }
+
+        private static float low(long value) {
+            return Float.intBitsToFloat((int) value);
+        }
+
+        @Override
+        public String toString() {
+            return "RegionStats{" +
+                    "latency=" + getLatency() +
+                    ", baseline=" + getBaseline() +
+                    ", failedPercent=" + getFailedPercent() +
+                    ", count=" + getCount() +
+                    '}';
+        }
+    }
+
+    private static class InnerConfigChangeListener implements ConfigChangeListener {
+
+        @Override
+        public void onKeyUpdated(String key, String value) {
+            try {
+                if (key.endsWith(KEY_LATENCY_ALPHA)) {
+                    alpha = Float.valueOf(value);
+                } else if (key.endsWith(KEY_LATENCY_MIN_SAMPLES)) {
+                    minSamples = Integer.valueOf(value);
+                } else if (key.endsWith(KEY_LATENCY_DELTA_MIN)) {
+                    latencyDeltaMin = Long.valueOf(value);
+                } else if (key.endsWith(KEY_LATENCY_SPILL_FACTOR)) {
+                    spillFactor = Float.valueOf(value);
+                } else if (key.endsWith(KEY_LATENCY_SPILL_MAX)) {
+                    spillMax = Float.valueOf(value);
+                } else if (key.endsWith(KEY_LATENCY_FAILED_MAX)) {
+                    failedMax = Float.valueOf(value);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("invalid value for key " + key, e);
+            }
+        }
+
+        @Override
+        public void onKeyAdded(String key, String value) {
+
+        }
+
+        @Override
+        public void onKeyRemoved(String key) {
+
+        }
+    }
+}
@@ -40,6 +40,7 @@ public enum RegionPolicyManager {
                    register(AutoSwitchRegionPolicy.NAME, null, AutoSwitchRegionPolicy.INSTANCE);
                    register(WeightBasedRegionPolicy.NAME, null, WeightBasedRegionPolicy.INSTANCE);
                    register(ForceRegionPolicy.NAME, null, ForceRegionPolicy.INSTANCE);
+                   register(LatencyAwareRegionPolicy.NAME, null, LatencyAwareRegionPolicy.INSTANCE);
 
                    if(configManager.getBooleanValue(KEY_ENABLEREGIONPOLICY, DEFAULT_ENABLEREGIONPOLICY)) {
                        initRegionsConfig();
@@ -0,0 +1,365 @@
+package com.dianping.pigeon.remoting.invoker.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dianping.pigeon.config.ConfigChangeListener;
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.codec.SerializerType;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.BadRequestException;
+import com.dianping.pigeon.remoting.common.exception.NetworkException;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
+import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
+import com.dianping.pigeon.threadpool.DefaultThreadFactory;
+
+/**
+ * 请求合并：同一连接上同一方法的小请求在batchWindow内攒够batchSize个(或窗口到期)后作为一个BATCH消息发送，
+ * 每个请求仍然使用自己的sequence注册到ServiceInvocationRepository，超时、回调、统计与单独发送时一致
+ * 服务端不支持BATCH消息时(老版本)退化为逐个发送，并在一段时间内不再对该地址合并
+ */
+public class BatchInvocationRepository {
+
+    private static final Logger logger = LoggerLoader.getLogger(BatchInvocationRepository.class);
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private static final String KEY_BATCH_ENABLE = "pigeon.invoker.batch.enable";
+
+    private static final String KEY_BATCH_UNSUPPORTED_INTERVAL = "pigeon.invoker.batch.unsupported.interval";
+
+    private static volatile boolean isBatchEnable = configManager.getBooleanValue(KEY_BATCH_ENABLE, true);
+
+    // 服务端不支持合并时，多久之后再尝试合并(ms)
+    private static volatile long unsupportedInterval = configManager.getLongValue(KEY_BATCH_UNSUPPORTED_INTERVAL,
+            600000L);
+
+    private static BatchInvocationRepository instance = new BatchInvocationRepository();
+
+    // 合并请求的sequence从Long.MIN_VALUE开始递增，与普通请求的sequence(从-1开始递减)不会冲突
+    private static final AtomicLong batchSequenceMaker = new AtomicLong(Long.MIN_VALUE);
+
+    private final ConcurrentMap<String, BatchQueue> queues = new ConcurrentHashMap<String, BatchQueue>();
+
+    private final ConcurrentMap<Long, Batch> batches = new ConcurrentHashMap<Long, Batch>();
+
+    private final ConcurrentMap<String, Long> unsupportedAddresses = new ConcurrentHashMap<String, Long>();
+
+    // 第一次合并时才创建，没有配置合并的调用端不会启动这个线程
+    private volatile ScheduledExecutorService flushExecutor;
+
+    private BatchInvocationRepository() {
+        configManager.registerConfigChangeListener(new InnerConfigChangeListener());
+    }
+
+    public static BatchInvocationRepository getInstance() {
+        return instance;
+    }
+
+    public boolean isBatchable(Client client, InvocationRequest request, InvokerConfig<?> invokerConfig) {
+        if (!isBatchEnable || invokerConfig.getBatchSize() <= 1) {
+            return false;
+        }
+        if (request.getCallType() != Constants.CALLTYPE_REPLY
+                || request.getMessageType() != Constants.MESSAGE_TYPE_SERVICE
+                || !(request instanceof DefaultRequest) || !isBatchSerialize(request.getSerialize())) {
+            return false;
+        }
+        Long unsupportedTime = unsupportedAddresses.get(client.getAddress());
+        if (unsupportedTime != null) {
+            if (System.currentTimeMillis() - unsupportedTime < unsupportedInterval) {
+                return false;
+            }
+            unsupportedAddresses.remove(client.getAddress());
+        }
+        return true;
+    }
+
+    /**
+     * 合并请求中的每个请求会作为参数嵌套序列化，只支持能够序列化任意对象的序列化方式
+     */
+    private boolean isBatchSerialize(byte serialize) {
+        return SerializerType.isHessian(serialize) || SerializerType.isHessian1(serialize)
+                || SerializerType.isJava(serialize) || SerializerType.isFst(serialize);
+    }
+
+    /**
+     * 请求需要先注册到ServiceInvocationRepository
+     */
+    public void add(Client client, InvocationRequest request, InvokerConfig<?> invokerConfig) {
+        ServiceStatisticsHolder.flowIn(request, client.getAddress());
+        String key = client.getAddress() + "#" + request.getServiceName() + "#" + request.getMethodName();
+        BatchQueue queue = queues.get(key);
+        if (queue == null) {
+            BatchQueue newQueue = new BatchQueue(client, invokerConfig.getBatchSize(), invokerConfig.getBatchWindow());
+            queue = queues.putIfAbsent(key, newQueue);
+            if (queue == null) {
+                queue = newQueue;
+            }
+        }
+        queue.add(request);
+    }
+
+    private ScheduledExecutorService getFlushExecutor() {
+        ScheduledExecutorService executor = flushExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = flushExecutor;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory(
+                            "Pigeon-Client-Batch-Flush"));
+                    executor.scheduleWithFixedDelay(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            try {
+                                sweep(System.currentTimeMillis());
+                            } catch (Throwable t) {
+                                logger.warn("sweep batch requests failed", t);
+                            }
+                        }
+                    }, 1, 1, TimeUnit.SECONDS);
+                    flushExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private void flush(Client client, List<InvocationRequest> requests) {
+        if (requests.size() == 1) {
+            sendSingle(client, requests.get(0));
+            return;
+        }
+        InvocationRequest first = requests.get(0);
+        int timeout = 0;
+        for (InvocationRequest request : requests) {
+            timeout = Math.max(timeout, request.getTimeout());
+        }
+        // 使用第一个请求的服务名和方法名，服务端据此选择线程池
+        InvocationRequest batchRequest = new DefaultRequest(first.getServiceName(), first.getMethodName(),
+                requests.toArray(), first.getSerialize(), Constants.MESSAGE_TYPE_BATCH, timeout,
+                Constants.CALLTYPE_REPLY, batchSequenceMaker.incrementAndGet());
+        batchRequest.setCreateMillisTime(System.currentTimeMillis());
+        batches.put(batchRequest.getSequence(), new Batch(client, requests, batchRequest.getCreateMillisTime(),
+                timeout));
+        try {
+            client.write(batchRequest);
+        } catch (NetworkException e) {
+            batches.remove(batchRequest.getSequence());
+            logger.warn("network exception ocurred:" + batchRequest, e);
+            for (InvocationRequest request : requests) {
+                fail(request, e);
+            }
+        }
+    }
+
+    private void sendSingle(Client client, InvocationRequest request) {
+        try {
+            client.write(request);
+            // 入队时已经计入统计，抵消write中的重复计数
+            ServiceStatisticsHolder.flowOut(request, client.getAddress());
+        } catch (NetworkException e) {
+            logger.warn("network exception ocurred:" + request, e);
+            fail(request, e);
+        }
+    }
+
+    private void fail(InvocationRequest request, Throwable e) {
+        InvocationResponse response = InvocationUtils.newResponse(request.getSerialize(), request.getSequence(),
+                Constants.MESSAGE_TYPE_EXCEPTION, e);
+        ServiceInvocationRepository.getInstance().receiveResponse(response);
+    }
+
+    /**
+     * 处理合并请求的响应
+     *
+     * @param response
+     * @return 是否是合并请求的响应
+     */
+    public boolean receiveResponse(InvocationResponse response) {
+        Batch batch = batches.remove(response.getSequence());
+        if (batch == null) {
+            return false;
+        }
+        if (response.getMessageType() == Constants.MESSAGE_TYPE_BATCH) {
+            Object[] responses = (Object[]) response.getReturn();
+            if (responses != null) {
+                for (Object itemResponse : responses) {
+                    ServiceInvocationRepository.getInstance().receiveResponse((InvocationResponse) itemResponse);
+                }
+            }
+        } else {
+            if (InvokerUtils.toRpcException(response) instanceof BadRequestException) {
+                unsupportedAddresses.put(batch.client.getAddress(), System.currentTimeMillis());
+                logger.warn("batch request is not supported by " + batch.client.getAddress()
+                        + ", send requests one by one");
+            }
+            for (InvocationRequest request : batch.requests) {
+                sendSingle(batch.client, request);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 合并请求中的每个请求由InvocationTimeoutListener单独处理超时，这里只清理没有响应的合并请求
+     */
+    private void sweep(long now) {
+        for (Iterator<Map.Entry<Long, Batch>> it = batches.entrySet().iterator(); it.hasNext(); ) {
+            Batch batch = it.next().getValue();
+            if (now - batch.createMillisTime > batch.timeout + 1000) {
+                it.remove();
+            }
+        }
+        for (Iterator<BatchQueue> it = queues.values().iterator(); it.hasNext(); ) {
+            BatchQueue queue = it.next();
+            if (queue.client.isClosed() && queue.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 每批请求在第一个请求入队时按batchWindow安排一次到期发送，攒满提前发送后到期任务按批次号忽略
+     */
+    private class BatchQueue {
+
+        private final Client client;
+
+        private final int batchSize;
+
+        private final int batchWindow;
+
+        private List<InvocationRequest> requests;
+
+        private long generation;
+
+        BatchQueue(Client client, int batchSize, int batchWindow) {
+            this.client = client;
+            this.batchSize = batchSize;
+            this.batchWindow = batchWindow;
+            this.requests = new ArrayList<InvocationRequest>(batchSize);
+        }
+
+        void add(InvocationRequest request) {
+            List<InvocationRequest> drained = null;
+            long scheduledGeneration = -1;
+            synchronized (this) {
+                requests.add(request);
+                if (requests.size() >= batchSize) {
+                    drained = drain();
+                } else if (requests.size() == 1) {
+                    scheduledGeneration = generation;
+                }
+            }
+            if (drained != null) {
+                flush(client, drained);
+            } else if (scheduledGeneration >= 0) {
+                scheduleFlush(scheduledGeneration);
+            }
+        }
+
+        private void scheduleFlush(final long scheduledGeneration) {
+            Runnable task = new Runnable() {
+
+                @Override
+                public void run() {
+                    List<InvocationRequest> drained = drain(scheduledGeneration);
+                    if (drained != null) {
+                        try {
+                            flush(client, drained);
+                        } catch (Throwable t) {
+                            logger.warn("flush batch requests failed", t);
+                        }
+                    }
+                }
+            };
+            try {
+                getFlushExecutor().schedule(task, batchWindow, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+
+        synchronized List<InvocationRequest> drain(long expectedGeneration) {
+            if (generation == expectedGeneration && !requests.isEmpty()) {
+                return drain();
+            }
+            return null;
+        }
+
+        synchronized boolean isEmpty() {
+            return requests.isEmpty();
+        }
+
+        private List<InvocationRequest> drain() {
+            List<InvocationRequest> drained = requests;
+            requests = new ArrayList<InvocationRequest>(batchSize);
+            generation++;
+            return drained;
+        }
+    }
+
+    private static class Batch {
+
+        private final Client client;
+
+        private final List<InvocationRequest> requests;
+
+        private final long createMillisTime;
+
+        private final int timeout;
+
+        Batch(Client client, List<InvocationRequest> requests, long createMillisTime, int timeout) {
+            this.client = client;
+            this.requests = requests;
+            this.createMillisTime = createMillisTime;
+            this.timeout = timeout;
+        }
+    }
+
+    private static class InnerConfigChangeListener implements ConfigChangeListener {
+
+        @Override
+        public void onKeyUpdated(String key, String value) {
+            if (key.endsWith(KEY_BATCH_ENABLE)) {
+                isBatchEnable = Boolean.valueOf(value);
+            } else if (key.endsWith(KEY_BATCH_UNSUPPORTED_INTERVAL)) {
+                try {
+                    unsupportedInterval = Long.valueOf(value);
+                } catch (RuntimeException e) {
+                    logger.warn("invalid value for key " + key, e);
+                }
+            }
+        }
+
+        @Override
+        public void onKeyAdded(String key, String value) {
+
+        }
+
+        @Override
+        public void onKeyRemoved(String key) {
+
+        }
+    }
+}
@@ -9,8 +9,12 @@ import java.lang.reflect.Method;
 
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.exception.BadResponseException;
+import com.dianping.pigeon.remoting.common.monitor.SlowRequest;
+import com.dianping.pigeon.remoting.common.monitor.SlowRequestRecorder;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
@@ -43,8 +47,46 @@ public class ServiceInvocationProxy implements InvocationHandler {
 		if ("equals".equals(methodName) && parameterTypes.length == 1) {
 			return handler.equals(args[0]);
 		}
-		return extractResult(handler.handle(new DefaultInvokerContext(invokerConfig, methodName, parameterTypes, args)),
-				method.getReturnType());
+		DefaultInvokerContext invokerContext = new DefaultInvokerContext(invokerConfig, methodName, parameterTypes,
+				args);
+		Throwable error = null;
+		try {
+			return extractResult(handler.handle(invokerContext), method.getReturnType());
+		} catch (Throwable t) {
+			error = t;
+			throw t;
+		} finally {
+			recordSlowRequest(invokerContext, error);
+		}
+	}
+
+	private void recordSlowRequest(DefaultInvokerContext invokerContext, Throwable error) {
+		long startTime = invokerContext.getTimeline().getTime(TimePhase.S);
+		long elapsed = System.currentTimeMillis() - startTime;
+		if (!SlowRequestRecorder.INSTANCE.isSlow(elapsed)) {
+			return;
+		}
+		SlowRequest slowRequest = new SlowRequest(SlowRequest.SIDE_INVOKER, invokerConfig.getUrl(),
+				invokerContext.getMethodName(), startTime, elapsed);
+		InvocationRequest request = invokerContext.getRequest();
+		if (request != null) {
+			slowRequest.setSeq(request.getSequence());
+			slowRequest.setTimeout(request.getTimeout());
+			slowRequest.setRequestSize(request.getSize());
+		}
+		InvocationResponse response = invokerContext.getResponse();
+		if (response != null) {
+			slowRequest.setResponseSize(response.getSize());
+		}
+		if (invokerContext.getClient() != null) {
+			slowRequest.setRemoteAddress(invokerContext.getClient().getAddress());
+		}
+		slowRequest.setThreadName(Thread.currentThread().getName());
+		if (error != null) {
+			slowRequest.setError(error.getClass().getName());
+		}
+		slowRequest.setTimeline(invokerContext.getTimeline().toTimePoints());
+		SlowRequestRecorder.INSTANCE.record(slowRequest);
 	}
 
 	public Object extractResult(InvocationResponse response, Class<?> returnType) throws Throwable {
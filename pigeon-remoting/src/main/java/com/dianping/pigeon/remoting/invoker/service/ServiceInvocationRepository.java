@@ -15,7 +15,10 @@ import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.concurrent.Callback;
 import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
+import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.invoker.listener.InvocationTimeoutListener;
+import com.dianping.pigeon.remoting.invoker.route.quality.OutlierEjectionManager;
+import com.dianping.pigeon.remoting.invoker.route.region.LatencyAwareRegionPolicy;
 import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
 import com.dianping.pigeon.threadpool.DefaultThreadPool;
 import com.dianping.pigeon.threadpool.ThreadPool;
@@ -46,6 +49,13 @@ public class ServiceInvocationRepository {
         invocations.remove(sequence);
     }
 
+    /**
+     * @return 已发出、尚未收到响应或超时的请求数
+     */
+    public int size() {
+        return invocations.size();
+    }
+
     public void receiveResponse(InvocationResponse response) {
         RemoteInvocationBean invocationBean = invocations.get(response.getSequence());
         if (invocationBean != null) {
@@ -59,6 +69,12 @@ public class ServiceInvocationRepository {
                     Client client = callback.getClient();
                     if (client != null) {
                         ServiceStatisticsHolder.flowOut(request, client.getAddress());
+                        OutlierEjectionManager.INSTANCE.addClientResponse(request, client.getAddress(),
+                                System.currentTimeMillis() - request.getCreateMillisTime(),
+                                response.getMessageType() == Constants.MESSAGE_TYPE_EXCEPTION);
+                        LatencyAwareRegionPolicy.INSTANCE.addClientResponse(request, client,
+                                System.currentTimeMillis() - request.getCreateMillisTime(),
+                                response.getMessageType() == Constants.MESSAGE_TYPE_EXCEPTION);
                     }
                     callback.callback(response);
                     callback.run();
@@ -66,6 +82,8 @@ public class ServiceInvocationRepository {
             } finally {
                 invocations.remove(response.getSequence());
             }
+        } else if (!BatchInvocationRepository.getInstance().receiveResponse(response)) {
+            StreamInvocationRepository.getInstance().receiveResponse(response);
         }
     }
 
@@ -0,0 +1,139 @@
+package com.dianping.pigeon.remoting.invoker.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.dianping.pigeon.config.ConfigChangeListener;
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.domain.StreamChunk;
+import com.dianping.pigeon.remoting.common.exception.BadResponseException;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.invoker.concurrent.StreamIterator;
+import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
+import com.dianping.pigeon.threadpool.DefaultThreadFactory;
+
+/**
+ * 流式调用：一个请求对应多个STREAM响应，按请求的sequence分发给对应的StreamIterator
+ */
+public class StreamInvocationRepository {
+
+    private static final Logger logger = LoggerLoader.getLogger(StreamInvocationRepository.class);
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private static final String KEY_STREAM_IDLE_TIMEOUT = "pigeon.invoker.stream.idle.timeout";
+
+    // 长时间没有收到数据也没有被读取的流会被关闭(ms)
+    private static volatile long idleTimeout = configManager.getLongValue(KEY_STREAM_IDLE_TIMEOUT, 60000L);
+
+    private static StreamInvocationRepository instance = new StreamInvocationRepository();
+
+    private final Map<Long, StreamIterator<?>> streams = new ConcurrentHashMap<Long, StreamIterator<?>>();
+
+    private final ScheduledExecutorService checkExecutor = Executors.newSingleThreadScheduledExecutor(
+            new DefaultThreadFactory("Pigeon-Client-Stream-Check"));
+
+    private StreamInvocationRepository() {
+        configManager.registerConfigChangeListener(new InnerConfigChangeListener());
+        checkExecutor.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    checkStreams();
+                } catch (Throwable t) {
+                    logger.warn("check streams failed", t);
+                }
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public static StreamInvocationRepository getInstance() {
+        return instance;
+    }
+
+    public void put(long sequence, StreamIterator<?> stream) {
+        streams.put(sequence, stream);
+    }
+
+    public void remove(long sequence) {
+        streams.remove(sequence);
+    }
+
+    /**
+     * @param response
+     * @return 是否是流式调用的响应
+     */
+    public boolean receiveResponse(InvocationResponse response) {
+        StreamIterator<?> stream = streams.get(response.getSequence());
+        if (stream == null) {
+            return false;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("received stream response:" + response);
+        }
+        int messageType = response.getMessageType();
+        if (messageType == Constants.MESSAGE_TYPE_STREAM && response.getReturn() instanceof StreamChunk) {
+            if (stream.onChunk((StreamChunk) response.getReturn())) {
+                streams.remove(response.getSequence());
+            }
+            return true;
+        }
+        if (messageType == Constants.MESSAGE_TYPE_EXCEPTION) {
+            stream.onFailure(InvokerUtils.toRpcException(response));
+        } else if (messageType == Constants.MESSAGE_TYPE_SERVICE_EXCEPTION) {
+            stream.onFailure(InvokerUtils.toApplicationRuntimeException(response));
+        } else {
+            stream.onFailure(new BadResponseException(response.toString()));
+        }
+        streams.remove(response.getSequence());
+        return true;
+    }
+
+    private void checkStreams() {
+        long now = System.currentTimeMillis();
+        for (Iterator<StreamIterator<?>> it = streams.values().iterator(); it.hasNext(); ) {
+            StreamIterator<?> stream = it.next();
+            if (stream.isDone()) {
+                it.remove();
+            } else if (now - stream.getLastActiveTime() > idleTimeout) {
+                it.remove();
+                stream.onFailure(InvocationUtils.newTimeoutException("stream idle timeout, timeout:" + idleTimeout
+                        + ", request:" + stream.getRequest()));
+            }
+        }
+    }
+
+    private static class InnerConfigChangeListener implements ConfigChangeListener {
+
+        @Override
+        public void onKeyUpdated(String key, String value) {
+            if (key.endsWith(KEY_STREAM_IDLE_TIMEOUT)) {
+                try {
+                    idleTimeout = Long.valueOf(value);
+                } catch (RuntimeException e) {
+                    logger.warn("invalid value for key " + key, e);
+                }
+            }
+        }
+
+        @Override
+        public void onKeyAdded(String key, String value) {
+
+        }
+
+        @Override
+        public void onKeyRemoved(String key) {
+
+        }
+    }
+}
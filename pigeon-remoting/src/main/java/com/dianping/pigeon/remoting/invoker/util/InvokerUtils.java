@@ -1,9 +1,12 @@
 package com.dianping.pigeon.remoting.invoker.util;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.Future;
 
+import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
@@ -13,32 +16,51 @@ import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.channel.Channel;
 import com.dianping.pigeon.remoting.common.domain.generic.GenericRequest;
 import com.dianping.pigeon.remoting.common.exception.ApplicationException;
+import com.dianping.pigeon.remoting.common.exception.BadRequestException;
 import com.dianping.pigeon.remoting.common.exception.NetworkException;
 import com.dianping.pigeon.remoting.common.exception.RpcException;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.common.util.InvocationUtils;
 import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.concurrent.Callback;
+import com.dianping.pigeon.remoting.invoker.concurrent.StreamIterator;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
 import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
 import com.dianping.pigeon.remoting.invoker.exception.RemoteInvocationException;
+import com.dianping.pigeon.remoting.invoker.service.BatchInvocationRepository;
 import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationRepository;
+import com.dianping.pigeon.remoting.invoker.service.StreamInvocationRepository;
 
 public class InvokerUtils {
 
     private static ServiceInvocationRepository invocationRepository = ServiceInvocationRepository.getInstance();
 
+    private static BatchInvocationRepository batchRepository = BatchInvocationRepository.getInstance();
+
+    private static StreamInvocationRepository streamRepository = StreamInvocationRepository.getInstance();
+
+    // 流式调用调用端缓存的chunk数
+    private static final int STREAM_WINDOW = ConfigManagerLoader.getConfigManager().getIntValue(
+            "pigeon.invoker.stream.window", 8);
+
+    private static final Random random = new Random();
+
     private static final Logger logger = LoggerLoader.getLogger(InvokerUtils.class);
 
+    public static InvocationResponse sendRequest(Client client, InvocationRequest request, Callback callback,
+                                                 InvokerConfig<?> invokerConfig) {
+        if (batchRepository.isBatchable(client, request, invokerConfig)) {
+            putInvocation(client, request, callback);
+            batchRepository.add(client, request, invokerConfig);
+            return null;
+        }
+        return sendRequest(client, request, callback);
+    }
+
     public static InvocationResponse sendRequest(Client client, InvocationRequest request, Callback callback) {
         if (request.getCallType() == Constants.CALLTYPE_REPLY) {
-            RemoteInvocationBean invocationBean = new RemoteInvocationBean();
-            invocationBean.request = request;
-            invocationBean.callback = callback;
-            callback.setRequest(request);
-            callback.setClient(client);
-            invocationRepository.put(request.getSequence(), invocationBean);
+            putInvocation(client, request, callback);
         }
         InvocationResponse response = null;
         try {
@@ -55,6 +77,59 @@ public class InvokerUtils {
         return response;
     }
 
+    public static StreamIterator<?> sendStreamRequest(Client client, InvocationRequest request,
+                                                      InvokerConfig<?> invokerConfig) {
+        byte serialize = request.getSerialize();
+        if (!SerializerType.isHessian(serialize) && !SerializerType.isHessian1(serialize)
+                && !SerializerType.isJava(serialize) && !SerializerType.isFst(serialize)) {
+            throw new BadRequestException("stream call is not supported with serialize:" + serialize);
+        }
+        Channel channel = selectStreamChannel(client);
+        if (channel == null) {
+            throw new NetworkException("no available channel for stream call:" + client.getAddress());
+        }
+        request.setMessageType(Constants.MESSAGE_TYPE_STREAM);
+        StreamIterator<?> stream = new StreamIterator<Object>(channel, request, STREAM_WINDOW);
+        streamRepository.put(request.getSequence(), stream);
+        try {
+            channel.write(request);
+        } catch (NetworkException e) {
+            streamRepository.remove(request.getSequence());
+            logger.warn("network exception ocurred:" + request, e);
+            throw e;
+        }
+        stream.start();
+        return stream;
+    }
+
+    /**
+     * 流的请求和额度必须在同一个连接上发送，服务端按连接和sequence识别流
+     */
+    private static Channel selectStreamChannel(Client client) {
+        List<Channel> channels = client.getChannels();
+        if (channels == null || channels.isEmpty()) {
+            return null;
+        }
+        int size = channels.size();
+        int offset = random.nextInt(size);
+        for (int i = 0; i < size; i++) {
+            Channel channel = channels.get((offset + i) % size);
+            if (channel != null && channel.isAvaliable() && channel.isWritable()) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    private static void putInvocation(Client client, InvocationRequest request, Callback callback) {
+        RemoteInvocationBean invocationBean = new RemoteInvocationBean();
+        invocationBean.request = request;
+        invocationBean.callback = callback;
+        callback.setRequest(request);
+        callback.setClient(client);
+        invocationRepository.put(request.getSequence(), invocationBean);
+    }
+
 
     public static void sendRequest(Client client, Channel channel, InvocationRequest request, Callback callback) {
         if (request.getCallType() == Constants.CALLTYPE_REPLY) {
@@ -34,6 +34,12 @@ public final class ProviderProcessHandlerFactory {
 
 	private static List<ServiceInvocationFilter<ProviderContext>> scannerHeartBeatProcessFilters = new LinkedList<ServiceInvocationFilter<ProviderContext>>();
 
+	private static List<ServiceInvocationFilter<ProviderContext>> batchProcessFilters = new LinkedList<ServiceInvocationFilter<ProviderContext>>();
+
+	private static List<ServiceInvocationFilter<ProviderContext>> streamProcessFilters = new LinkedList<ServiceInvocationFilter<ProviderContext>>();
+
+	private static List<ServiceInvocationFilter<ProviderContext>> streamCreditProcessFilters = new LinkedList<ServiceInvocationFilter<ProviderContext>>();
+
 	private static ServiceInvocationHandler bizInvocationHandler = null;
 
 	private static ServiceInvocationHandler heartBeatInvocationHandler = null;
@@ -42,6 +48,12 @@ public final class ProviderProcessHandlerFactory {
 
 	private static ServiceInvocationHandler scannerHeartBeatInvocationHandler = null;
 
+	private static ServiceInvocationHandler batchInvocationHandler = null;
+
+	private static ServiceInvocationHandler streamInvocationHandler = null;
+
+	private static ServiceInvocationHandler streamCreditInvocationHandler = null;
+
 	public static ServiceInvocationHandler selectInvocationHandler(int messageType) {
 		if (Constants.MESSAGE_TYPE_HEART == messageType) {
 			return heartBeatInvocationHandler;
@@ -49,6 +61,12 @@ public final class ProviderProcessHandlerFactory {
 			return healthCheckInvocationHandler;
 		} else if (Constants.MESSAGE_TYPE_SCANNER_HEART == messageType) {
 			return scannerHeartBeatInvocationHandler;
+		} else if (Constants.MESSAGE_TYPE_BATCH == messageType) {
+			return batchInvocationHandler;
+		} else if (Constants.MESSAGE_TYPE_STREAM == messageType) {
+			return streamInvocationHandler;
+		} else if (Constants.MESSAGE_TYPE_STREAM_CREDIT == messageType) {
+			return streamCreditInvocationHandler;
 		} else {
 			return bizInvocationHandler;
 		}
@@ -78,6 +96,25 @@ public final class ProviderProcessHandlerFactory {
 		registerScannerHeartBeatProcessFilter(new WriteResponseProcessFilter());
 		registerScannerHeartBeatProcessFilter(new ScannerHeartBeatProcessFilter());
 		scannerHeartBeatInvocationHandler = createInvocationHandler(scannerHeartBeatProcessFilters);
+
+		// 合并请求中的每个请求、流式请求走业务filter链，响应由外层filter写回
+		List<ServiceInvocationFilter<ProviderContext>> serviceProcessFilters = new ArrayList<ServiceInvocationFilter<ProviderContext>>();
+		for (ServiceInvocationFilter<ProviderContext> filter : bizProcessFilters) {
+			if (!(filter instanceof WriteResponseProcessFilter)) {
+				serviceProcessFilters.add(filter);
+			}
+		}
+		ServiceInvocationHandler serviceInvocationHandler = createInvocationHandler(serviceProcessFilters);
+
+		registerBatchProcessFilter(new WriteResponseProcessFilter());
+		registerBatchProcessFilter(new BatchProcessFilter(serviceInvocationHandler));
+		batchInvocationHandler = createInvocationHandler(batchProcessFilters);
+
+		registerStreamProcessFilter(new StreamProcessFilter(serviceInvocationHandler));
+		streamInvocationHandler = createInvocationHandler(streamProcessFilters);
+
+		registerStreamCreditProcessFilter(new StreamCreditProcessFilter());
+		streamCreditInvocationHandler = createInvocationHandler(streamCreditProcessFilters);
 	}
 
 	@SuppressWarnings({ "rawtypes" })
@@ -116,6 +153,18 @@ public final class ProviderProcessHandlerFactory {
 		scannerHeartBeatProcessFilters.add(filter);
 	}
 
+	private static void registerBatchProcessFilter(ServiceInvocationFilter<ProviderContext> filter) {
+		batchProcessFilters.add(filter);
+	}
+
+	private static void registerStreamProcessFilter(ServiceInvocationFilter<ProviderContext> filter) {
+		streamProcessFilters.add(filter);
+	}
+
+	private static void registerStreamCreditProcessFilter(ServiceInvocationFilter<ProviderContext> filter) {
+		streamCreditProcessFilters.add(filter);
+	}
+
 	public static void destroy() {
 		for (ServiceInvocationFilter<ProviderContext> filter : bizProcessFilters) {
 			if (filter instanceof Disposable) {
@@ -135,5 +184,8 @@ public final class ProviderProcessHandlerFactory {
 		}
 		bizProcessFilters.clear();
 		heartBeatProcessFilters.clear();
+		batchProcessFilters.clear();
+		streamProcessFilters.clear();
+		streamCreditProcessFilters.clear();
 	}
 }
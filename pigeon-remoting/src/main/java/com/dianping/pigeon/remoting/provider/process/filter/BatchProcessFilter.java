@@ -0,0 +1,102 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-${year} All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.provider.process.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.BadRequestException;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationFilter;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.ContextUtils;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.exception.RequestAbortedException;
+import com.dianping.pigeon.remoting.provider.process.ProviderInterceptor;
+import com.dianping.pigeon.remoting.provider.process.ProviderInterceptorFactory;
+import com.dianping.pigeon.remoting.provider.process.ProviderProcessInterceptor;
+import com.dianping.pigeon.remoting.provider.process.ProviderProcessInterceptorFactory;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
+
+/**
+ * 处理合并请求：逐个执行其中的请求，每个请求走完整的业务filter链(不包括写响应)，响应合并后一次写回
+ * 手动回复或异步回复的请求没有同步响应，由业务稍后以各自的sequence单独写回
+ * 每个请求按自己的timeout检查，排在前面的请求耗时过长时后面已超时的请求不再执行，直接返回RequestAbortedException
+ */
+public class BatchProcessFilter implements ServiceInvocationFilter<ProviderContext> {
+
+    private static final Logger logger = LoggerLoader.getLogger(BatchProcessFilter.class);
+
+    private final ServiceInvocationHandler itemHandler;
+
+    public BatchProcessFilter(ServiceInvocationHandler itemHandler) {
+        this.itemHandler = itemHandler;
+    }
+
+    @Override
+    public InvocationResponse invoke(ServiceInvocationHandler handler, ProviderContext invocationContext)
+            throws Throwable {
+        InvocationRequest request = invocationContext.getRequest();
+        if (request.getMessageType() != Constants.MESSAGE_TYPE_BATCH || request.getParameters() == null) {
+            throw new BadRequestException("message type[" + request.getMessageType() + "] is not supported!");
+        }
+        Object[] items = request.getParameters();
+        List<InvocationResponse> responses = new ArrayList<InvocationResponse>(items.length);
+        for (Object item : items) {
+            InvocationRequest itemRequest = (InvocationRequest) item;
+            if (itemRequest.getCreateMillisTime() == 0) {
+                itemRequest.setCreateMillisTime(request.getCreateMillisTime());
+            }
+            ProviderContext itemContext = new DefaultProviderContext(itemRequest, invocationContext.getChannel());
+            itemContext.setThread(Thread.currentThread());
+            InvocationResponse itemResponse = null;
+            try {
+                if (isTimeout(itemRequest, System.currentTimeMillis())) {
+                    RequestAbortedException e = new RequestAbortedException(
+                            "the request has not been executed before timeout in batch:" + itemRequest);
+                    e.setStackTrace(new StackTraceElement[] {});
+                    throw e;
+                }
+                itemResponse = itemHandler.handle(itemContext);
+            } catch (RequestAbortedException e) {
+                if (itemRequest.getCallType() == Constants.CALLTYPE_REPLY) {
+                    itemResponse = ProviderUtils.createFailResponse(itemRequest, e);
+                }
+            } catch (Throwable e) {
+                logger.error(e.getMessage(), e);
+                if (itemRequest.getCallType() == Constants.CALLTYPE_REPLY) {
+                    itemResponse = ProviderUtils.createFailResponse(itemRequest, e);
+                }
+            } finally {
+                ContextUtils.clearLocalContext();
+                ContextUtils.clearRequestContext();
+                ContextUtils.clearGlobalContext();
+                ContextUtils.clearResponseContext();
+            }
+            if (itemResponse != null) {
+                responses.add(itemResponse);
+            }
+            List<ProviderProcessInterceptor> interceptors = ProviderProcessInterceptorFactory.getInterceptors();
+            for (ProviderProcessInterceptor interceptor : interceptors) {
+                interceptor.postInvoke(itemRequest, itemResponse);
+            }
+            List<ProviderInterceptor> contextInterceptors = ProviderInterceptorFactory.getInterceptors();
+            for (ProviderInterceptor interceptor : contextInterceptors) {
+                interceptor.postInvoke(itemContext);
+            }
+        }
+        return ProviderUtils.createBatchResponse(request, responses.toArray());
+    }
+
+    private boolean isTimeout(InvocationRequest request, long now) {
+        return request.getTimeout() > 0 && now - request.getCreateMillisTime() > request.getTimeout();
+    }
+
+}
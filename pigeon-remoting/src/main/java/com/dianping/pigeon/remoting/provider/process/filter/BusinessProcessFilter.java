@@ -10,7 +10,6 @@ import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.exception.BadRequestException;
@@ -39,9 +38,9 @@ public class BusinessProcessFilter implements ServiceInvocationFilter<ProviderCo
     @Override
     public InvocationResponse invoke(ServiceInvocationHandler handler, ProviderContext invocationContext)
             throws Throwable {
-        invocationContext.getTimeline().add(new TimePoint(TimePhase.U));
+        invocationContext.getTimeline().record(TimePhase.U);
         InvocationRequest request = invocationContext.getRequest();
-        if (request.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
+        if (ProviderUtils.isServiceRequest(request)) {
             if (ConfigManagerLoader.getConfigManager().getBooleanValue(KEY_TIMEOUT_RESET, true)
                     && request.getTimeout() > 0) {
                 ContextUtils.putLocalContext(Constants.REQUEST_TIMEOUT, request.getTimeout());
@@ -70,7 +69,7 @@ public class BusinessProcessFilter implements ServiceInvocationFilter<ProviderCo
                 }
             }
             ProviderHelper.setContext(invocationContext);
-            invocationContext.getTimeline().add(new TimePoint(TimePhase.M, System.currentTimeMillis()));
+            invocationContext.getTimeline().record(TimePhase.M, System.currentTimeMillis());
             Object returnObj = null;
             try {
                 returnObj = method.invoke(request.getParameters());
@@ -78,7 +77,7 @@ public class BusinessProcessFilter implements ServiceInvocationFilter<ProviderCo
                 ProviderHelper.clearContext();
             }
 
-            invocationContext.getTimeline().add(new TimePoint(TimePhase.M, System.currentTimeMillis()));
+            invocationContext.getTimeline().record(TimePhase.M, System.currentTimeMillis());
             if (request.getCallType() == Constants.CALLTYPE_REPLY) {
                 response = ProviderUtils.createSuccessResponse(request, returnObj);
             }
@@ -12,7 +12,6 @@ import com.dianping.pigeon.extension.ExtensionLoader;
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.domain.generic.UnifiedRequest;
@@ -34,7 +33,7 @@ public class ContextTransferProcessFilter implements ServiceInvocationFilter<Pro
     @Override
     public InvocationResponse invoke(ServiceInvocationHandler handler, ProviderContext invocationContext)
             throws Throwable {
-        invocationContext.getTimeline().add(new TimePoint(TimePhase.C));
+        invocationContext.getTimeline().record(TimePhase.C);
         InvocationRequest request = invocationContext.getRequest();
         transferContextValueToProcessor(invocationContext, request);
         InvocationResponse response = null;
@@ -24,7 +24,6 @@ import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.Disposable;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.exception.RejectedException;
@@ -43,6 +42,7 @@ import com.dianping.pigeon.threadpool.DefaultThreadPool;
 import com.dianping.pigeon.threadpool.ThreadPool;
 import com.dianping.pigeon.util.CollectionUtils;
 import com.dianping.pigeon.util.ThreadPoolUtils;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
 
 /**
  * @author xiangwu
@@ -157,14 +157,14 @@ public class GatewayProcessFilter implements ServiceInvocationFilter<ProviderCon
 	@Override
 	public InvocationResponse invoke(ServiceInvocationHandler handler, ProviderContext invocationContext)
 			throws Throwable {
-		invocationContext.getTimeline().add(new TimePoint(TimePhase.G));
+		invocationContext.getTimeline().record(TimePhase.G);
 		InvocationRequest request = invocationContext.getRequest();
 		String fromApp = request.getApp();
 		InvocationResponse response = null;
 		final String requestMethod = request.getServiceName() + "#" + request.getMethodName();
 		try {
 			ProviderStatisticsHolder.flowIn(request);
-			if (Constants.MESSAGE_TYPE_SERVICE == request.getMessageType()) {
+			if (ProviderUtils.isServiceRequest(request)) {
 				if (enableMethodThreadsLimit) {
 					incrementRequest(requestMethod);
 				}
@@ -213,7 +213,7 @@ public class GatewayProcessFilter implements ServiceInvocationFilter<ProviderCon
 			response = handler.handle(invocationContext);
 			return response;
 		} finally {
-			if (Constants.MESSAGE_TYPE_SERVICE == request.getMessageType() && enableMethodThreadsLimit) {
+			if (ProviderUtils.isServiceRequest(request) && enableMethodThreadsLimit) {
 				decrementRequest(requestMethod);
 			}
 			if (!(Constants.REPLY_MANUAL || invocationContext.isAsync())) {
@@ -235,7 +235,7 @@ public class GatewayProcessFilter implements ServiceInvocationFilter<ProviderCon
 	}
 
 	public static void checkRequest(final InvocationRequest request) {
-		if (Constants.MESSAGE_TYPE_SERVICE == request.getMessageType() && enableMethodThreadsLimit) {
+		if (ProviderUtils.isServiceRequest(request) && enableMethodThreadsLimit) {
 			final String requestMethod = request.getServiceName() + "#" + request.getMethodName();
 			AtomicInteger count = methodActives.get(requestMethod);
 			if (count != null) {
@@ -20,9 +20,10 @@ import com.dianping.pigeon.monitor.Monitor;
 import com.dianping.pigeon.monitor.MonitorLoader;
 import com.dianping.pigeon.monitor.MonitorTransaction;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.domain.generic.UnifiedRequest;
+import com.dianping.pigeon.remoting.common.monitor.CallSampler;
 import com.dianping.pigeon.remoting.common.monitor.SizeMonitor;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationFilter;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
@@ -43,6 +44,8 @@ public class MonitorProcessFilter implements ServiceInvocationFilter<ProviderCon
 
     private static final Monitor monitor = MonitorLoader.getMonitor();
 
+    private static final CallSampler sampler = new CallSampler("pigeon.provider.monitor.sample");
+
     private static final boolean isAccessLogEnabled = ConfigManagerLoader.getConfigManager()
             .getBooleanValue("pigeon.provider.accesslog.enable", false);
 
@@ -58,11 +61,18 @@ public class MonitorProcessFilter implements ServiceInvocationFilter<ProviderCon
     @Override
     public InvocationResponse invoke(ServiceInvocationHandler handler, ProviderContext invocationContext)
             throws Throwable {
-        invocationContext.getTimeline().add(new TimePoint(TimePhase.O));
+        invocationContext.getTimeline().record(TimePhase.O);
+        long startMillis = System.currentTimeMillis();
         InvocationRequest request = invocationContext.getRequest();
         ProviderChannel channel = invocationContext.getChannel();
         MonitorTransaction transaction = null;
         String fromIp = null;
+        // 调用端传来采样决定时按调用端的记录，保证调用链两端一致
+        int sampleInterval = CallSampler.parseInterval(getUpstreamSample(request));
+        if (sampleInterval < 0) {
+            sampleInterval = sampler.sample(request.getServiceName(), request.getMethodName());
+        }
+        ContextUtils.putLocalContext(Constants.CONTEXT_KEY_MONITOR_SAMPLE, String.valueOf(sampleInterval));
         if (monitor != null) {
             String methodUri = null;
             try {
@@ -79,7 +89,9 @@ public class MonitorProcessFilter implements ServiceInvocationFilter<ProviderCon
                 }
                 invocationContext.setMethodUri(methodUri);
 
-                transaction = monitor.createTransaction("PigeonService", methodUri, invocationContext);
+                if (sampleInterval > 0) {
+                    transaction = monitor.createTransaction("PigeonService", methodUri, invocationContext);
+                }
                 if (transaction != null) {
                     transaction.setStatusOk();
                     monitor.setCurrentServiceTransaction(transaction);
@@ -112,10 +124,12 @@ public class MonitorProcessFilter implements ServiceInvocationFilter<ProviderCon
             }
         }
         InvocationResponse response = null;
+        Throwable failure = null;
         try {
             try {
                 response = handler.handle(invocationContext);
             } catch (RuntimeException e) {
+                failure = e;
                 if (transaction != null) {
                     try {
                         transaction.setStatusError(e);
@@ -167,11 +181,25 @@ public class MonitorProcessFilter implements ServiceInvocationFilter<ProviderCon
             Throwable frameworkError = invocationContext.getFrameworkError();
             if (frameworkError != null && monitor != null) {
                 monitor.logError(frameworkError);
-                transaction.setStatusError(frameworkError);
+                if (transaction != null) {
+                    transaction.setStatusError(frameworkError);
+                }
             }
+            if (failure == null) {
+                failure = frameworkError != null ? frameworkError : serviceError;
+            }
+            long elapsed = System.currentTimeMillis() - startMillis;
+            if (transaction == null && sampleInterval == 0 && monitor != null
+                    && CallSampler.isForced(failure == null, elapsed)) {
+                logForcedTransaction(invocationContext, startMillis, failure);
+            }
+            invocationContext.getTimeline().record(TimePhase.E, System.currentTimeMillis());
             if (transaction != null) {
-                invocationContext.getTimeline().add(new TimePoint(TimePhase.E, System.currentTimeMillis()));
                 try {
+                    if (sampleInterval != 1) {
+                        transaction.addData("SampleWeight",
+                                CallSampler.getWeight(sampleInterval, failure == null, elapsed));
+                    }
                     transaction.complete();
                     if (isAccessLogEnabled) {
                         accessLogger.info(new StringBuilder().append(request.getApp()).append("@").append(fromIp)
@@ -191,4 +219,36 @@ public class MonitorProcessFilter implements ServiceInvocationFilter<ProviderCon
         }
         return response;
     }
+
+    private Object getUpstreamSample(InvocationRequest request) {
+        if (request instanceof UnifiedRequest) {
+            Map<String, String> localContext = ((UnifiedRequest) request).getLocalContext();
+            return localContext != null ? localContext.get(Constants.CONTEXT_KEY_MONITOR_SAMPLE) : null;
+        }
+        Map<String, Serializable> requestValues = request.getRequestValues();
+        return requestValues != null ? requestValues.get(Constants.CONTEXT_KEY_MONITOR_SAMPLE) : null;
+    }
+
+    // 未被采样的失败或慢请求补记一个事务，耗时从进入filter时算起
+    private void logForcedTransaction(ProviderContext invocationContext, long startMillis, Throwable failure) {
+        try {
+            MonitorTransaction transaction = monitor.createTransaction("PigeonService",
+                    invocationContext.getMethodUri(), invocationContext);
+            if (transaction != null) {
+                if (failure != null) {
+                    transaction.setStatusError(failure);
+                } else {
+                    transaction.setStatusOk();
+                }
+                transaction.logEvent("PigeonService.app", invocationContext.getRequest().getApp(), "");
+                if (invocationContext.getChannel() != null) {
+                    transaction.logEvent("PigeonService.client", invocationContext.getChannel().getRemoteAddress(),
+                            "");
+                }
+                transaction.complete(startMillis);
+            }
+        } catch (Throwable e) {
+            monitor.logMonitorError(e);
+        }
+    }
 }
@@ -18,7 +18,6 @@ import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.domain.generic.UnifiedRequest;
@@ -29,6 +28,7 @@ import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.common.util.ContextUtils;
 import com.dianping.pigeon.remoting.common.util.SecurityUtils;
 import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
 
 /**
  * @author xiangwu
@@ -394,9 +394,9 @@ public class SecurityFilter implements ServiceInvocationFilter<ProviderContext>
 
         if (needValidateToken(invocationContext.getRequest().getServiceName(),
                 invocationContext.getRequest().getMethodName())) {
-            invocationContext.getTimeline().add(new TimePoint(TimePhase.A));
+            invocationContext.getTimeline().record(TimePhase.A);
             InvocationRequest request = invocationContext.getRequest();
-            if (request.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
+            if (ProviderUtils.isServiceRequest(request)) {
                 boolean isAuth = false;
                 String from = (String) ContextUtils.getLocalContext("RequestIp");
                 if (from == null) {
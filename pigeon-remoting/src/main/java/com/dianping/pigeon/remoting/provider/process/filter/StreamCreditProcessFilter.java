@@ -0,0 +1,33 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-${year} All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.provider.process.filter;
+
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.BadRequestException;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationFilter;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.process.stream.ProviderStreamRepository;
+
+/**
+ * 调用端发放的流额度，参数为chunk数，小于0表示取消
+ */
+public class StreamCreditProcessFilter implements ServiceInvocationFilter<ProviderContext> {
+
+	@Override
+	public InvocationResponse invoke(ServiceInvocationHandler handler, ProviderContext invocationContext)
+			throws Throwable {
+		InvocationRequest request = invocationContext.getRequest();
+		Object[] parameters = request.getParameters();
+		if (parameters == null || parameters.length != 1 || !(parameters[0] instanceof Number)) {
+			throw new BadRequestException("invalid stream credits:" + request);
+		}
+		ProviderStreamRepository.INSTANCE.addCredits(invocationContext.getChannel(), request.getSequence(),
+				((Number) parameters[0]).intValue());
+		return null;
+	}
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-${year} All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.provider.process.filter;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.BadRequestException;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationFilter;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.process.ProviderInterceptor;
+import com.dianping.pigeon.remoting.provider.process.ProviderInterceptorFactory;
+import com.dianping.pigeon.remoting.provider.process.ProviderProcessInterceptor;
+import com.dianping.pigeon.remoting.provider.process.ProviderProcessInterceptorFactory;
+import com.dianping.pigeon.remoting.provider.process.stream.ProviderStreamRepository;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
+
+/**
+ * 处理流式调用：请求走完整的业务filter链，业务返回的Iterator(或Iterable)按调用端的额度分段写回，
+ * 异常响应直接写回
+ */
+public class StreamProcessFilter implements ServiceInvocationFilter<ProviderContext> {
+
+	private final ServiceInvocationHandler serviceHandler;
+
+	public StreamProcessFilter(ServiceInvocationHandler serviceHandler) {
+		this.serviceHandler = serviceHandler;
+	}
+
+	@Override
+	public InvocationResponse invoke(ServiceInvocationHandler handler, ProviderContext invocationContext)
+			throws Throwable {
+		ProviderChannel channel = invocationContext.getChannel();
+		InvocationRequest request = invocationContext.getRequest();
+		InvocationResponse response = null;
+		if (!Constants.PROTOCOL_DEFAULT.equals(channel.getProtocol())) {
+			response = ProviderUtils.createFailResponse(request, new BadRequestException(
+					"stream call is not supported by protocol:" + channel.getProtocol()));
+		} else {
+			response = serviceHandler.handle(invocationContext);
+			List<ProviderProcessInterceptor> interceptors = ProviderProcessInterceptorFactory.getInterceptors();
+			for (ProviderProcessInterceptor interceptor : interceptors) {
+				interceptor.postInvoke(request, response);
+			}
+			List<ProviderInterceptor> contextInterceptors = ProviderInterceptorFactory.getInterceptors();
+			for (ProviderInterceptor interceptor : contextInterceptors) {
+				interceptor.postInvoke(invocationContext);
+			}
+			if (response != null && response.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
+				ProviderStreamRepository.INSTANCE.open(invocationContext, toIterator(response.getReturn()));
+				return null;
+			}
+		}
+		if (response != null && request.getCallType() == Constants.CALLTYPE_REPLY) {
+			channel.write(invocationContext, response);
+		}
+		return response;
+	}
+
+	private Iterator<?> toIterator(Object returnObj) {
+		if (returnObj == null) {
+			return Collections.emptyList().iterator();
+		} else if (returnObj instanceof Iterator) {
+			return (Iterator<?>) returnObj;
+		} else if (returnObj instanceof Iterable) {
+			return ((Iterable<?>) returnObj).iterator();
+		} else {
+			return Collections.singletonList(returnObj).iterator();
+		}
+	}
+
+}
@@ -8,7 +8,7 @@ import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
-import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
 
 public final class ProviderStatisticsHolder {
 
@@ -156,7 +156,7 @@ public final class ProviderStatisticsHolder {
 	}
 
 	public static boolean checkRequestNeedStat(InvocationRequest request) {
-		if (request == null || request.getMessageType() != Constants.MESSAGE_TYPE_SERVICE) {
+		if (request == null || !ProviderUtils.isServiceRequest(request)) {
 			return false;
 		}
 		return statEnable;
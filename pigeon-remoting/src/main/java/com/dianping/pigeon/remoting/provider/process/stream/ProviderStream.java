@@ -0,0 +1,113 @@
+package com.dianping.pigeon.remoting.provider.process.stream;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.StreamChunk;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
+
+/**
+ * 服务端的一个流，只在有额度时从业务返回的Iterator中读取数据，每次最多读取一个chunk，
+ * 调用端读取慢时不会在服务端堆积数据
+ */
+public class ProviderStream {
+
+    private static final Logger logger = LoggerLoader.getLogger(ProviderStream.class);
+
+    private final ProviderContext context;
+
+    private final InvocationRequest request;
+
+    private final Iterator<?> iterator;
+
+    private final int chunkSize;
+
+    private int credits = 0;
+
+    private long index = 0;
+
+    private boolean closed = false;
+
+    private volatile long lastActiveTime = System.currentTimeMillis();
+
+    public ProviderStream(ProviderContext context, Iterator<?> iterator, int chunkSize) {
+        this.context = context;
+        this.request = context.getRequest();
+        this.iterator = iterator;
+        this.chunkSize = chunkSize;
+    }
+
+    public ProviderContext getContext() {
+        return context;
+    }
+
+    public long getLastActiveTime() {
+        return lastActiveTime;
+    }
+
+    public synchronized void addCredits(int credits) {
+        this.credits += credits;
+        lastActiveTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 按额度发送数据
+     *
+     * @return 流是否已经结束
+     */
+    public synchronized boolean emit() {
+        while (credits > 0 && !closed) {
+            Object[] elements;
+            boolean last;
+            try {
+                int size = 0;
+                Object[] buffer = new Object[chunkSize];
+                while (size < chunkSize && iterator.hasNext()) {
+                    buffer[size++] = iterator.next();
+                }
+                last = !iterator.hasNext();
+                if (size < chunkSize) {
+                    elements = new Object[size];
+                    System.arraycopy(buffer, 0, elements, 0, size);
+                } else {
+                    elements = buffer;
+                }
+            } catch (Throwable e) {
+                logger.error("stream iterate failed:" + request, e);
+                context.getChannel().write(context, ProviderUtils.createServiceExceptionResponse(request, e));
+                close();
+                break;
+            }
+            context.getChannel().write(context,
+                    ProviderUtils.createStreamResponse(request, new StreamChunk(index++, elements, last)));
+            credits--;
+            lastActiveTime = System.currentTimeMillis();
+            if (last) {
+                close();
+            }
+        }
+        return closed;
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (iterator instanceof Closeable) {
+            try {
+                ((Closeable) iterator).close();
+            } catch (Throwable e) {
+                logger.warn("close stream iterator failed:" + request, e);
+            }
+        }
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+}
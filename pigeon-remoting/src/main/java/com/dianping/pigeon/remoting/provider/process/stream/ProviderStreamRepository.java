@@ -0,0 +1,212 @@
+package com.dianping.pigeon.remoting.provider.process.stream;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.dianping.pigeon.config.ConfigChangeListener;
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.Logger;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.threadpool.DefaultThreadFactory;
+
+/**
+ * 服务端正在进行的流，按连接和请求sequence识别，额度消息和流请求可能被不同线程处理，先到的额度暂存
+ */
+public enum ProviderStreamRepository {
+
+    INSTANCE;
+
+    private static final Logger logger = LoggerLoader.getLogger(ProviderStreamRepository.class);
+
+    private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+    private static final String KEY_STREAM_CHUNK_SIZE = "pigeon.provider.stream.chunk.size";
+
+    private static final String KEY_STREAM_IDLE_TIMEOUT = "pigeon.provider.stream.idle.timeout";
+
+    private static volatile int chunkSize = configManager.getIntValue(KEY_STREAM_CHUNK_SIZE, 100);
+
+    // 长时间没有收到额度的流会被关闭(ms)，调用端已经断开时也依赖这个超时清理
+    private static volatile long idleTimeout = configManager.getLongValue(KEY_STREAM_IDLE_TIMEOUT, 60000L);
+
+    private static final ExecutorService checkExecutor = Executors.newFixedThreadPool(1,
+            new DefaultThreadFactory("Pigeon-Server-Stream-Check"));
+
+    private final Map<StreamKey, ProviderStream> streams = new ConcurrentHashMap<StreamKey, ProviderStream>();
+
+    private final Map<StreamKey, PendingCredits> pendingCredits = new ConcurrentHashMap<StreamKey, PendingCredits>();
+
+    static {
+        configManager.registerConfigChangeListener(new InnerConfigChangeListener());
+        checkExecutor.execute(new Checker());
+    }
+
+    public void open(ProviderContext context, Iterator<?> iterator) {
+        StreamKey key = new StreamKey(context.getChannel(), context.getRequest().getSequence());
+        ProviderStream stream = new ProviderStream(context, iterator, chunkSize);
+        PendingCredits pending;
+        synchronized (this) {
+            pending = pendingCredits.remove(key);
+            streams.put(key, stream);
+        }
+        if (pending != null) {
+            if (pending.credits < 0) {
+                cancel(key);
+                return;
+            }
+            stream.addCredits(pending.credits);
+        }
+        if (stream.emit()) {
+            streams.remove(key);
+        }
+    }
+
+    /**
+     * @param channel
+     * @param sequence
+     * @param credits 小于0表示调用端取消
+     */
+    public void addCredits(ProviderChannel channel, long sequence, int credits) {
+        StreamKey key = new StreamKey(channel, sequence);
+        ProviderStream stream = streams.get(key);
+        if (stream == null) {
+            synchronized (this) {
+                stream = streams.get(key);
+                if (stream == null) {
+                    PendingCredits pending = pendingCredits.get(key);
+                    if (pending == null) {
+                        pendingCredits.put(key, new PendingCredits(credits));
+                    } else if (credits < 0 || pending.credits < 0) {
+                        pending.credits = -1;
+                    } else {
+                        pending.credits += credits;
+                    }
+                    return;
+                }
+            }
+        }
+        if (credits < 0) {
+            cancel(key);
+            return;
+        }
+        stream.addCredits(credits);
+        if (stream.emit()) {
+            streams.remove(key);
+        }
+    }
+
+    private void cancel(StreamKey key) {
+        ProviderStream stream = streams.remove(key);
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void checkStreams() {
+        long now = System.currentTimeMillis();
+        for (Iterator<ProviderStream> it = streams.values().iterator(); it.hasNext(); ) {
+            ProviderStream stream = it.next();
+            if (stream.isClosed()) {
+                it.remove();
+            } else if (now - stream.getLastActiveTime() > idleTimeout) {
+                logger.info("close idle stream:" + stream.getContext().getRequest());
+                it.remove();
+                stream.close();
+            }
+        }
+        for (Iterator<PendingCredits> it = pendingCredits.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().createTime > idleTimeout) {
+                it.remove();
+            }
+        }
+    }
+
+    private static class StreamKey {
+
+        private final ProviderChannel channel;
+
+        private final long sequence;
+
+        StreamKey(ProviderChannel channel, long sequence) {
+            this.channel = channel;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StreamKey)) {
+                return false;
+            }
+            StreamKey other = (StreamKey) o;
+            return sequence == other.sequence && channel.equals(other.channel);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * channel.hashCode() + (int) (sequence ^ (sequence >>> 32));
+        }
+    }
+
+    private static class PendingCredits {
+
+        private int credits;
+
+        private final long createTime = System.currentTimeMillis();
+
+        PendingCredits(int credits) {
+            this.credits = credits;
+        }
+    }
+
+    private static class Checker implements Runnable {
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(1000);
+                    INSTANCE.checkStreams();
+                } catch (InterruptedException e) {
+                    break;
+                } catch (Throwable t) {
+                    logger.warn("check streams failed", t);
+                }
+            }
+        }
+    }
+
+    private static class InnerConfigChangeListener implements ConfigChangeListener {
+
+        @Override
+        public void onKeyUpdated(String key, String value) {
+            try {
+                if (key.endsWith(KEY_STREAM_CHUNK_SIZE)) {
+                    chunkSize = Integer.valueOf(value);
+                } else if (key.endsWith(KEY_STREAM_IDLE_TIMEOUT)) {
+                    idleTimeout = Long.valueOf(value);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("invalid value for key " + key, e);
+            }
+        }
+
+        @Override
+        public void onKeyAdded(String key, String value) {
+
+        }
+
+        @Override
+        public void onKeyRemoved(String key) {
+
+        }
+    }
+}
@@ -8,6 +8,8 @@ import com.google.common.collect.Interner;
 import com.google.common.collect.Interners;
 import com.google.common.collect.Maps;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
@@ -80,6 +82,17 @@ public class DynamicThreadPoolFactory {
         }
     }
 
+    /**
+     * @return 线程池名到线程池的映射
+     */
+    public static Map<String, DynamicThreadPool> getThreadPools() {
+        Map<String, DynamicThreadPool> pools = new HashMap<String, DynamicThreadPool>();
+        for (Map.Entry<PoolConfig, DynamicThreadPool> entry : dynamicThreadPools.entrySet()) {
+            pools.put(entry.getKey().getPoolName(), entry.getValue());
+        }
+        return pools;
+    }
+
     private static boolean poolConfigChanged(PoolConfig poolConfig, DynamicThreadPool threadPool) {
         return poolConfig.getCorePoolSize() != threadPool.getCorePoolSize()
                 || poolConfig.getMaxPoolSize() != threadPool.getMaximumPoolSize()
@@ -25,10 +25,11 @@ import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.exception.RejectedException;
+import com.dianping.pigeon.remoting.common.monitor.SlowRequest;
+import com.dianping.pigeon.remoting.common.monitor.SlowRequestRecorder;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
 import com.dianping.pigeon.remoting.provider.process.AbstractRequestProcessor;
@@ -181,31 +182,34 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
 
         startMonitorData(request, providerContext);
 
+        final ThreadPool pool = selectThreadPool(request);
         Callable<InvocationResponse> requestExecutor = new Callable<InvocationResponse>() {
 
             @Override
             public InvocationResponse call() throws Exception {
-                providerContext.getTimeline().add(new TimePoint(TimePhase.T));
+                providerContext.getTimeline().record(TimePhase.T);
+                InvocationResponse response = null;
                 try {
                     ServiceInvocationHandler invocationHandler = ProviderProcessHandlerFactory
                             .selectInvocationHandler(providerContext.getRequest().getMessageType());
                     if (invocationHandler != null) {
                         providerContext.setThread(Thread.currentThread());
-                        return invocationHandler.handle(providerContext);
+                        response = invocationHandler.handle(providerContext);
+                        return response;
                     }
                 } catch (Throwable t) {
                     logger.error("Process request failed with invocation handler, you should never be here.", t);
                 } finally {
                     requestContextMap.remove(request);
+                    recordSlowRequest(providerContext, pool, response);
                 }
                 return null;
             }
         };
-        final ThreadPool pool = selectThreadPool(request);
 
         try {
             checkRequest(pool, request);
-            providerContext.getTimeline().add(new TimePoint(TimePhase.T));
+            providerContext.getTimeline().record(TimePhase.T);
             return pool.submit(requestExecutor);
         } catch (RejectedExecutionException e) {
             requestContextMap.remove(request);
@@ -244,6 +248,43 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
     }
 
 
+    private void recordSlowRequest(ProviderContext providerContext, ThreadPool pool, InvocationResponse response) {
+        long receiveTime = providerContext.getTimeline().getTime(TimePhase.R);
+        long elapsed = System.currentTimeMillis() - receiveTime;
+        if (providerContext.isAsync() || !SlowRequestRecorder.INSTANCE.isSlow(elapsed)) {
+            return;
+        }
+        InvocationRequest request = providerContext.getRequest();
+        if (!MessageType.isService((byte) request.getMessageType())) {
+            return;
+        }
+        SlowRequest slowRequest = new SlowRequest(SlowRequest.SIDE_PROVIDER, request.getServiceName(),
+                request.getMethodName(), receiveTime, elapsed);
+        slowRequest.setSeq(request.getSequence());
+        slowRequest.setApp(request.getApp());
+        slowRequest.setTimeout(request.getTimeout());
+        slowRequest.setRequestSize(request.getSize());
+        if (response != null) {
+            slowRequest.setResponseSize(response.getSize());
+        }
+        if (providerContext.getChannel() != null) {
+            slowRequest.setRemoteAddress(providerContext.getChannel().getRemoteAddress());
+        }
+        // 第一次T为提交到线程池，最后一次为开始执行
+        slowRequest.setQueueWait(providerContext.getTimeline().getLastTime(TimePhase.T)
+                - providerContext.getTimeline().getTime(TimePhase.T));
+        slowRequest.setPoolName(pool instanceof DynamicThreadPool ? ((DynamicThreadPool) pool).getName()
+                : pool.getClass().getSimpleName());
+        slowRequest.setThreadName(Thread.currentThread().getName());
+        Throwable error = providerContext.getServiceError() != null ? providerContext.getServiceError()
+                : providerContext.getFrameworkError();
+        if (error != null) {
+            slowRequest.setError(error.getClass().getName());
+        }
+        slowRequest.setTimeline(providerContext.getTimeline().toTimePoints());
+        SlowRequestRecorder.INSTANCE.record(slowRequest);
+    }
+
     private void checkRequest(final ThreadPool pool, final InvocationRequest request) {
         GatewayProcessFilter.checkRequest(request);
     }
@@ -544,6 +585,21 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
         }
     }
 
+    /**
+     * @return 当前的请求线程池，key为shared、slow、服务或方法名、动态线程池名
+     */
+    public static Map<String, DynamicThreadPool> getThreadPools() {
+        Map<String, DynamicThreadPool> pools = new LinkedHashMap<String, DynamicThreadPool>();
+        if (sharedRequestProcessThreadPool != null) {
+            pools.put("shared", sharedRequestProcessThreadPool);
+        }
+        pools.put("slow", slowRequestProcessThreadPool);
+        pools.putAll(serviceThreadPools);
+        pools.putAll(methodThreadPools);
+        pools.putAll(DynamicThreadPoolFactory.getThreadPools());
+        return pools;
+    }
+
     public static Map<String, String> getMethodPoolConfigKeys() {
         return methodPoolConfigKeys;
     }
@@ -17,6 +17,11 @@ import com.dianping.pigeon.log.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.registry.RegistryManager;
 import com.dianping.pigeon.registry.exception.RegistryException;
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.SerializerType;
+import com.dianping.pigeon.remoting.common.codec.protobuf.Protobuf3TypeRegistry;
+import com.dianping.pigeon.remoting.common.codec.thrift.ThriftSerializer;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.provider.ProviderBootStrap;
 import com.dianping.pigeon.remoting.provider.Server;
@@ -101,6 +106,11 @@ public final class ServicePublisher {
 			((InitializingService) service).initialize();
 		}
 		ServiceMethodFactory.init(url);
+		Protobuf3TypeRegistry.register(providerConfig.getServiceInterface());
+		Serializer thriftSerializer = SerializerFactory.getSerializer(SerializerType.THRIFT.getCode());
+		if (thriftSerializer instanceof ThriftSerializer) {
+			((ThriftSerializer) thriftSerializer).registerService(providerConfig.getServiceInterface());
+		}
 	}
 
 	public static <T> void publishService(ProviderConfig<T> providerConfig) throws RegistryException {
@@ -10,7 +10,6 @@ import com.dianping.pigeon.monitor.Monitor;
 import com.dianping.pigeon.monitor.MonitorLoader;
 import com.dianping.pigeon.monitor.MonitorTransaction;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.monitor.SizeMonitor;
@@ -61,7 +60,7 @@ public final class ProviderHelper {
 		InvocationResponse response = null;
 		if ((Constants.REPLY_MANUAL || context.isAsync()) && request.getCallType() != Constants.CALLTYPE_NOREPLY) {
 			response = ProviderUtils.createSuccessResponse(request, returnObj);
-			context.getTimeline().add(new TimePoint(TimePhase.B, System.currentTimeMillis()));
+			context.getTimeline().record(TimePhase.B, System.currentTimeMillis());
 			ProviderChannel channel = context.getChannel();
 			MonitorTransaction transaction = null;
 			if (Constants.MONITOR_ENABLE) {
@@ -94,7 +93,7 @@ public final class ProviderHelper {
 							}
 						}
 						if (transaction != null) {
-							context.getTimeline().add(new TimePoint(TimePhase.E, System.currentTimeMillis()));
+							context.getTimeline().record(TimePhase.E, System.currentTimeMillis());
 							try {
 								transaction.complete();
 							} catch (Throwable e) {
@@ -17,6 +17,7 @@ import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
 import com.dianping.pigeon.remoting.common.codec.SerializerType;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.domain.StreamChunk;
 import com.dianping.pigeon.remoting.common.domain.generic.UnifiedRequest;
 import com.dianping.pigeon.remoting.common.domain.generic.UnifiedResponse;
 import com.dianping.pigeon.remoting.common.exception.BadRequestException;
@@ -214,6 +215,38 @@ public final class ProviderUtils {
         return response;
     }
 
+    /**
+     * 需要执行业务方法的请求，流式调用的请求与普通调用一样经过业务filter链
+     */
+    public static boolean isServiceRequest(InvocationRequest request) {
+        int messageType = request.getMessageType();
+        return messageType == Constants.MESSAGE_TYPE_SERVICE || messageType == Constants.MESSAGE_TYPE_STREAM;
+    }
+
+    public static InvocationResponse createBatchResponse(InvocationRequest request, Object[] responses) {
+        InvocationResponse response = null;
+        byte serialize = request.getSerialize();
+        response = SerializerFactory.getSerializer(serialize).newResponse();
+        response.setSequence(request.getSequence());
+        response.setSerialize(serialize);
+        response.setMessageType(Constants.MESSAGE_TYPE_BATCH);
+        response.setReturn(responses);
+
+        return response;
+    }
+
+    public static InvocationResponse createStreamResponse(InvocationRequest request, StreamChunk chunk) {
+        InvocationResponse response = null;
+        byte serialize = request.getSerialize();
+        response = SerializerFactory.getSerializer(serialize).newResponse();
+        response.setSequence(request.getSequence());
+        response.setSerialize(serialize);
+        response.setMessageType(Constants.MESSAGE_TYPE_STREAM);
+        response.setReturn(chunk);
+
+        return response;
+    }
+
     public static InvocationResponse createHeartResponse(InvocationRequest request) {
         if (request instanceof UnifiedRequest) {
             return createHeartResponse0((UnifiedRequest) request);
@@ -0,0 +1,89 @@
+package com.dianping.pigeon.remoting.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.AdaptiveCompressSelector;
+import com.dianping.pigeon.remoting.common.codec.SerializerType;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.generic.CompressType;
+import com.dianping.pigeon.remoting.common.domain.generic.GenericResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+
+public class AdaptiveCompressSelectorTest {
+
+	private static DefaultRequest newRequest(String service, String method) {
+		return new DefaultRequest(service, method, new Object[0], SerializerType.HESSIAN.getCode(),
+				Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY, 1);
+	}
+
+	@Test
+	public void testStatsCachedPerMethod() {
+		AdaptiveCompressSelector selector = AdaptiveCompressSelector.INSTANCE;
+		AdaptiveCompressSelector.CompressStats request = selector.getStats(newRequest("cacheService", "echo"));
+		Assert.assertNotNull(request);
+		Assert.assertSame(request, selector.getStats(newRequest("cacheService", "echo")));
+		Assert.assertNotSame(request, selector.getStats(newRequest("cacheService", "echo2")));
+
+		GenericResponse response = new GenericResponse(Constants.MESSAGE_TYPE_SERVICE,
+				SerializerType.THRIFT.getCode());
+		response.setServiceName("cacheService");
+		response.setMethodName("echo");
+		AdaptiveCompressSelector.CompressStats responseStats = selector.getStats(response);
+		Assert.assertNotNull(responseStats);
+		Assert.assertNotSame(request, responseStats);
+		Assert.assertSame(request, selector.getCompressStats().get("cacheService#echo:request"));
+		Assert.assertSame(responseStats, selector.getCompressStats().get("cacheService#echo:response"));
+
+		Assert.assertNull(selector.getStats(null));
+	}
+
+	@Test
+	public void testSampleAndDecide() {
+		AdaptiveCompressSelector.CompressStats stats = new AdaptiveCompressSelector.CompressStats();
+		long now = 1000000;
+		// 采样期间轮流使用各个算法
+		for (int i = 0; i < 4; i++) {
+			Assert.assertTrue(stats.isSampling());
+			CompressType type = stats.select(now);
+			if (type == CompressType.Snappy) {
+				stats.record(type, 10000, 5000, 10000);
+			} else {
+				Assert.assertEquals(CompressType.Gzip, type);
+				stats.record(type, 10000, 3000, 100000);
+			}
+			CompressType other = stats.select(now);
+			Assert.assertNotEquals(type, other);
+			if (other == CompressType.Snappy) {
+				stats.record(other, 10000, 5000, 10000);
+			} else {
+				stats.record(other, 10000, 3000, 100000);
+			}
+		}
+		// snappy每微秒节省500字节，gzip每微秒节省70字节
+		Assert.assertEquals(CompressType.Snappy, stats.select(now));
+		Assert.assertFalse(stats.isSampling());
+		Assert.assertEquals(now, stats.getDecideTime());
+		Assert.assertEquals(500, stats.getSaving(CompressType.Snappy), 1);
+		Assert.assertEquals(70, stats.getSaving(CompressType.Gzip), 1);
+
+		// 决策期间不再记录
+		stats.record(CompressType.Snappy, 10000, 10000, 10000);
+		Assert.assertEquals(0.5f, stats.getSavedRatio(CompressType.Snappy), 0.001);
+		Assert.assertEquals(CompressType.Snappy, stats.select(now + 1000));
+
+		// 超过重新采样间隔后重新采样
+		CompressType type = stats.select(now + 60000);
+		Assert.assertTrue(stats.isSampling());
+		Assert.assertTrue(type == CompressType.Snappy || type == CompressType.Gzip);
+	}
+
+	@Test
+	public void testNoSaving() {
+		AdaptiveCompressSelector.CompressStats stats = new AdaptiveCompressSelector.CompressStats();
+		for (int i = 0; i < 8; i++) {
+			stats.record(stats.select(0), 1000, 1000, 1000);
+		}
+		Assert.assertEquals(CompressType.None, stats.select(0));
+	}
+}
@@ -0,0 +1,203 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.Arrays;
+
+import com.dianping.pigeon.remoting.common.codec.CodecBuffer;
+
+/**
+ * 基于数组的CodecBuffer，用于不依赖传输层测试编解码
+ */
+public class ArrayCodecBuffer implements CodecBuffer {
+
+	private byte[] array;
+
+	private final int offset;
+
+	private final int capacity;
+
+	private final boolean fixed;
+
+	private int readerIndex;
+
+	private int writerIndex;
+
+	public ArrayCodecBuffer(int initialCapacity) {
+		this(new byte[initialCapacity], 0, initialCapacity, false);
+		this.writerIndex = 0;
+	}
+
+	public ArrayCodecBuffer(byte[] data) {
+		this(data, 0, data.length, false);
+	}
+
+	private ArrayCodecBuffer(byte[] array, int offset, int length, boolean fixed) {
+		this.array = array;
+		this.offset = offset;
+		this.capacity = length;
+		this.fixed = fixed;
+		this.writerIndex = length;
+	}
+
+	public byte[] toByteArray() {
+		return Arrays.copyOfRange(array, offset + readerIndex, offset + writerIndex);
+	}
+
+	@Override
+	public int readerIndex() {
+		return readerIndex;
+	}
+
+	@Override
+	public void readerIndex(int readerIndex) {
+		this.readerIndex = readerIndex;
+	}
+
+	@Override
+	public int writerIndex() {
+		return writerIndex;
+	}
+
+	@Override
+	public void writerIndex(int writerIndex) {
+		this.writerIndex = writerIndex;
+	}
+
+	@Override
+	public int readableBytes() {
+		return writerIndex - readerIndex;
+	}
+
+	@Override
+	public int writableBytes() {
+		return (fixed ? capacity : array.length - offset) - writerIndex;
+	}
+
+	@Override
+	public void ensureCapacity(int writableBytes) {
+		if (writableBytes() >= writableBytes) {
+			return;
+		}
+		if (fixed) {
+			throw new IndexOutOfBoundsException("fixed buffer");
+		}
+		array = Arrays.copyOf(array, Math.max(array.length * 2, writerIndex + writableBytes));
+	}
+
+	private int checkRead(int length) {
+		if (readableBytes() < length) {
+			throw new IndexOutOfBoundsException("readable:" + readableBytes() + ", required:" + length);
+		}
+		int index = offset + readerIndex;
+		readerIndex += length;
+		return index;
+	}
+
+	private int checkWrite(int length) {
+		ensureCapacity(length);
+		int index = offset + writerIndex;
+		writerIndex += length;
+		return index;
+	}
+
+	@Override
+	public byte readByte() {
+		return array[checkRead(1)];
+	}
+
+	@Override
+	public short readShort() {
+		int i = checkRead(2);
+		return (short) ((array[i] & 0xff) << 8 | array[i + 1] & 0xff);
+	}
+
+	@Override
+	public int readInt() {
+		int i = checkRead(4);
+		return (array[i] & 0xff) << 24 | (array[i + 1] & 0xff) << 16 | (array[i + 2] & 0xff) << 8
+				| array[i + 3] & 0xff;
+	}
+
+	@Override
+	public long readLong() {
+		return ((long) readInt()) << 32 | readInt() & 0xffffffffL;
+	}
+
+	@Override
+	public void readBytes(byte[] dst, int dstIndex, int length) {
+		System.arraycopy(array, checkRead(length), dst, dstIndex, length);
+	}
+
+	@Override
+	public void skipBytes(int length) {
+		checkRead(length);
+	}
+
+	@Override
+	public void writeByte(int value) {
+		int i = checkWrite(1);
+		array[i] = (byte) value;
+	}
+
+	@Override
+	public void writeShort(int value) {
+		int i = checkWrite(2);
+		array[i] = (byte) (value >>> 8);
+		array[i + 1] = (byte) value;
+	}
+
+	@Override
+	public void writeInt(int value) {
+		int i = checkWrite(4);
+		setInt0(i, value);
+	}
+
+	@Override
+	public void writeLong(long value) {
+		writeInt((int) (value >>> 32));
+		writeInt((int) value);
+	}
+
+	@Override
+	public void writeBytes(byte[] src, int srcIndex, int length) {
+		int i = checkWrite(length);
+		System.arraycopy(src, srcIndex, array, i, length);
+	}
+
+	@Override
+	public void setShort(int index, int value) {
+		array[offset + index] = (byte) (value >>> 8);
+		array[offset + index + 1] = (byte) value;
+	}
+
+	@Override
+	public void setInt(int index, int value) {
+		setInt0(offset + index, value);
+	}
+
+	private void setInt0(int i, int value) {
+		array[i] = (byte) (value >>> 24);
+		array[i + 1] = (byte) (value >>> 16);
+		array[i + 2] = (byte) (value >>> 8);
+		array[i + 3] = (byte) value;
+	}
+
+	@Override
+	public CodecBuffer slice(int index, int length) {
+		return new ArrayCodecBuffer(array, offset + index, length, true);
+	}
+
+	@Override
+	public boolean hasArray() {
+		return true;
+	}
+
+	@Override
+	public byte[] array() {
+		return array;
+	}
+
+	@Override
+	public int arrayOffset() {
+		return offset;
+	}
+}
@@ -0,0 +1,120 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.BufferSerializer;
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.SerializerType;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.domain.MessageType;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.exception.RequestAbortedException;
+import com.dianping.pigeon.remoting.provider.process.filter.BatchProcessFilter;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
+
+public class BatchMessageTest {
+
+	private static final byte SERIALIZE = SerializerType.HESSIAN.getCode();
+
+	private static DefaultRequest newItem(long seq, int timeout) {
+		return new DefaultRequest("echo", "echo", new Object[] { "item" + seq }, SERIALIZE,
+				Constants.MESSAGE_TYPE_SERVICE, timeout, Constants.CALLTYPE_REPLY, seq);
+	}
+
+	private static DefaultRequest newBatch(int timeout, InvocationRequest... items) {
+		return new DefaultRequest("echo", "echo", items, SERIALIZE, Constants.MESSAGE_TYPE_BATCH, timeout,
+				Constants.CALLTYPE_REPLY, Long.MIN_VALUE + 1);
+	}
+
+	@Test
+	public void testMessageType() {
+		Assert.assertEquals(MessageType.BATCH, MessageType.getMessageType((byte) Constants.MESSAGE_TYPE_BATCH));
+		Assert.assertTrue(MessageType.isBatch((byte) Constants.MESSAGE_TYPE_BATCH));
+	}
+
+	@Test
+	public void testRequestRoundTrip() throws Exception {
+		Serializer serializer = SerializerFactory.getSerializer(SERIALIZE);
+		DefaultRequest batch = newBatch(1000, newItem(-1, 1000), newItem(-2, 500));
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		serializer.serializeRequest(os, batch);
+		assertBatchRequest(serializer.deserializeRequest(new ByteArrayInputStream(os.toByteArray())));
+
+		// netty编解码默认使用的缓冲区路径
+		ArrayCodecBuffer buffer = new ArrayCodecBuffer(16);
+		((BufferSerializer) serializer).serializeRequest(buffer, batch);
+		Assert.assertArrayEquals(os.toByteArray(), buffer.toByteArray());
+		assertBatchRequest(((BufferSerializer) serializer).deserializeRequest(buffer));
+	}
+
+	private void assertBatchRequest(Object decoded) {
+		InvocationRequest request = (InvocationRequest) decoded;
+		Assert.assertEquals(Constants.MESSAGE_TYPE_BATCH, request.getMessageType());
+		Assert.assertEquals(Long.MIN_VALUE + 1, request.getSequence());
+		Assert.assertEquals(2, request.getParameters().length);
+		InvocationRequest second = (InvocationRequest) request.getParameters()[1];
+		Assert.assertEquals(Constants.MESSAGE_TYPE_SERVICE, second.getMessageType());
+		Assert.assertEquals(-2, second.getSequence());
+		Assert.assertEquals(500, second.getTimeout());
+		Assert.assertEquals("item-2", second.getParameters()[0]);
+	}
+
+	@Test
+	public void testResponseRoundTrip() throws Exception {
+		Serializer serializer = SerializerFactory.getSerializer(SERIALIZE);
+		DefaultRequest first = newItem(-1, 1000);
+		DefaultRequest second = newItem(-2, 1000);
+		InvocationResponse response = ProviderUtils.createBatchResponse(newBatch(1000, first, second),
+				new Object[] { ProviderUtils.createSuccessResponse(first, "ok"),
+						ProviderUtils.createFailResponse(second, new IllegalStateException("failed")) });
+
+		ArrayCodecBuffer buffer = new ArrayCodecBuffer(16);
+		((BufferSerializer) serializer).serializeResponse(buffer, response);
+		InvocationResponse decoded = (InvocationResponse) ((BufferSerializer) serializer).deserializeResponse(buffer);
+		Assert.assertEquals(Constants.MESSAGE_TYPE_BATCH, decoded.getMessageType());
+		Assert.assertEquals(Long.MIN_VALUE + 1, decoded.getSequence());
+		Object[] items = (Object[]) decoded.getReturn();
+		Assert.assertEquals(2, items.length);
+		Assert.assertEquals("ok", ((InvocationResponse) items[0]).getReturn());
+		Assert.assertEquals(-2, ((InvocationResponse) items[1]).getSequence());
+		Assert.assertNotEquals(Constants.MESSAGE_TYPE_SERVICE, ((InvocationResponse) items[1]).getMessageType());
+	}
+
+	@Test
+	public void testItemTimeout() throws Throwable {
+		final List<Long> executed = new ArrayList<Long>();
+		BatchProcessFilter filter = new BatchProcessFilter(new ServiceInvocationHandler() {
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				InvocationRequest request = invocationContext.getRequest();
+				executed.add(request.getSequence());
+				return ProviderUtils.createSuccessResponse(request, "ok");
+			}
+		});
+		DefaultRequest batch = newBatch(1000, newItem(-1, 1000), newItem(-2, 50), newItem(-3, 0));
+		// 模拟合并请求在服务端排队了100ms
+		batch.setCreateMillisTime(System.currentTimeMillis() - 100);
+
+		InvocationResponse response = filter.invoke(null, new DefaultProviderContext(batch, null));
+		Object[] items = (Object[]) response.getReturn();
+		Assert.assertEquals(3, items.length);
+		Assert.assertEquals(2, executed.size());
+		Assert.assertFalse(executed.contains(-2L));
+		InvocationResponse timeout = (InvocationResponse) items[1];
+		Assert.assertEquals(-2, timeout.getSequence());
+		Assert.assertTrue(timeout.getReturn() instanceof RequestAbortedException);
+	}
+}
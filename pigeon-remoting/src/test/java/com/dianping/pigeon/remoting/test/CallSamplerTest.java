@@ -0,0 +1,195 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.config.ConfigChangeListener;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.codec.SerializerType;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.monitor.CallSampler;
+import com.dianping.pigeon.remoting.common.monitor.SlowRequestRecorder;
+import com.dianping.pigeon.remoting.common.monitor.trace.ApplicationKey;
+import com.dianping.pigeon.remoting.common.monitor.trace.ApplicationTraceRepository;
+import com.dianping.pigeon.remoting.common.monitor.trace.InvokerMonitorData;
+import com.dianping.pigeon.remoting.common.monitor.trace.InvokerTraceData;
+import com.dianping.pigeon.remoting.common.monitor.trace.MethodKey;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.ContextUtils;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.domain.DefaultInvokerContext;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.process.filter.RemoteCallMonitorInvokeFilter;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.process.filter.MonitorProcessFilter;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
+
+public class CallSamplerTest {
+
+	@Test
+	public void testWeight() {
+		long slow = SlowRequestRecorder.INSTANCE.getThreshold();
+		Assert.assertEquals(1, CallSampler.getWeight(1, true, 0));
+		Assert.assertEquals(0, CallSampler.getWeight(0, true, 0));
+		Assert.assertEquals(10, CallSampler.getWeight(10, true, 0));
+		// 失败和慢请求总是按1计数
+		Assert.assertEquals(1, CallSampler.getWeight(0, false, 0));
+		Assert.assertEquals(1, CallSampler.getWeight(10, false, 0));
+		Assert.assertEquals(1, CallSampler.getWeight(0, true, slow));
+	}
+
+	@Test
+	public void testDefaultSampleAll() {
+		CallSampler sampler = new CallSampler("pigeon.test.sample");
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(1, sampler.sample("echo", "echo"));
+		}
+	}
+
+	@Test
+	public void testScaledTrace() {
+		ApplicationTraceRepository repository = new ApplicationTraceRepository("test");
+		ApplicationKey srcKey = new ApplicationKey("test");
+		MethodKey dstKey = new MethodKey("echo", "echo");
+		for (int interval : new int[] { 10, 0, 0, 1 }) {
+			InvokerMonitorData monitorData = new InvokerMonitorData(repository, srcKey, dstKey);
+			monitorData.setSampleInterval(interval);
+			monitorData.start();
+			monitorData.add();
+			monitorData.setIsSuccess(true);
+			monitorData.complete();
+		}
+		InvokerMonitorData failed = new InvokerMonitorData(repository, srcKey, dstKey);
+		failed.setSampleInterval(0);
+		failed.start();
+		failed.setIsSuccess(false);
+		failed.complete();
+
+		InvokerTraceData traceData = repository.getInvokerTraceData().getTraceDatas().values().iterator().next();
+		Assert.assertEquals(12, traceData.getTotalCount());
+		Assert.assertEquals(11, traceData.getTotalSuccess());
+		Assert.assertEquals(1, traceData.getTotalFailed());
+		Assert.assertEquals(12, traceData.getHistogram().getTotalCount());
+	}
+
+	@Test
+	public void testParseInterval() {
+		Assert.assertEquals(-1, CallSampler.parseInterval(null));
+		Assert.assertEquals(-1, CallSampler.parseInterval("x"));
+		Assert.assertEquals(-1, CallSampler.parseInterval("-2"));
+		Assert.assertEquals(0, CallSampler.parseInterval("0"));
+		// 上游全量记录时按未传处理
+		Assert.assertEquals(-1, CallSampler.parseInterval("1"));
+		Assert.assertEquals(10, CallSampler.parseInterval(10));
+	}
+
+	@Test
+	public void testProviderFollowsInvoker() throws Throwable {
+		final Object[] seen = new Object[1];
+		MonitorProcessFilter filter = new MonitorProcessFilter();
+		ServiceInvocationHandler handler = new ServiceInvocationHandler() {
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				seen[0] = ContextUtils.getLocalContext(Constants.CONTEXT_KEY_MONITOR_SAMPLE);
+				return ProviderUtils.createSuccessResponse(invocationContext.getRequest(), "ok");
+			}
+		};
+
+		DefaultRequest request = newRequest();
+		Map<String, Serializable> requestValues = new HashMap<String, Serializable>();
+		requestValues.put(Constants.CONTEXT_KEY_MONITOR_SAMPLE, "0");
+		request.setRequestValues(requestValues);
+		DefaultProviderContext context = new DefaultProviderContext(request, null);
+		filter.invoke(handler, context);
+		// 调用端未采样，服务端的下游调用沿用这个决定
+		Assert.assertEquals("0", seen[0]);
+		// 未采样的请求也记录完成时间
+		Assert.assertTrue(context.getTimeline().getTime(TimePhase.E) > 0);
+
+		filter.invoke(handler, new DefaultProviderContext(newRequest(), null));
+		Assert.assertEquals("1", seen[0]);
+	}
+
+	@Test
+	public void testProviderLocalSample() throws Throwable {
+		final Object[] seen = new Object[1];
+		MonitorProcessFilter filter = new MonitorProcessFilter();
+		ServiceInvocationHandler handler = new ServiceInvocationHandler() {
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				seen[0] = ContextUtils.getLocalContext(Constants.CONTEXT_KEY_MONITOR_SAMPLE);
+				return ProviderUtils.createSuccessResponse(invocationContext.getRequest(), "ok");
+			}
+		};
+		setConfig("pigeon.provider.monitor.sample.rate", "0");
+		try {
+			// 调用端为默认的全量记录，服务端按本地配置采样
+			filter.invoke(handler, new DefaultProviderContext(newRequest(), null));
+			Assert.assertEquals("0", seen[0]);
+
+			DefaultRequest request = newRequest();
+			Map<String, Serializable> requestValues = new HashMap<String, Serializable>();
+			requestValues.put(Constants.CONTEXT_KEY_MONITOR_SAMPLE, "1");
+			request.setRequestValues(requestValues);
+			filter.invoke(handler, new DefaultProviderContext(request, null));
+			Assert.assertEquals("0", seen[0]);
+		} finally {
+			setConfig("pigeon.provider.monitor.sample.rate", "1");
+		}
+	}
+
+	@Test
+	public void testInvokerFollowsUpstream() throws Throwable {
+		final Object[] seen = new Object[1];
+		RemoteCallMonitorInvokeFilter filter = new RemoteCallMonitorInvokeFilter();
+		ServiceInvocationHandler handler = new ServiceInvocationHandler() {
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				seen[0] = ContextUtils.getRequestContext(Constants.CONTEXT_KEY_MONITOR_SAMPLE);
+				return null;
+			}
+		};
+		InvokerConfig<Runnable> config = new InvokerConfig<Runnable>("echo", Runnable.class);
+		try {
+			ContextUtils.putLocalContext(Constants.CONTEXT_KEY_MONITOR_SAMPLE, "0");
+			filter.invoke(handler, newInvokerContext(config));
+			Assert.assertEquals("0", seen[0]);
+
+			// 全量记录时不传，服务端按自己的配置采样
+			ContextUtils.clearRequestContext();
+			ContextUtils.putLocalContext(Constants.CONTEXT_KEY_MONITOR_SAMPLE, "1");
+			filter.invoke(handler, newInvokerContext(config));
+			Assert.assertNull(seen[0]);
+
+			ContextUtils.clearLocalContext();
+			filter.invoke(handler, newInvokerContext(config));
+			Assert.assertNull(seen[0]);
+		} finally {
+			ContextUtils.clearLocalContext();
+			ContextUtils.clearRequestContext();
+		}
+	}
+
+	private static void setConfig(String key, String value) {
+		for (ConfigChangeListener listener : ConfigManagerLoader.getConfigManager().getConfigChangeListeners()) {
+			listener.onKeyUpdated(key, value);
+		}
+	}
+
+	private static InvokerContext newInvokerContext(InvokerConfig<?> config) {
+		return new DefaultInvokerContext(config, "run", new Class<?>[0], new Object[0]);
+	}
+
+	private static DefaultRequest newRequest() {
+		return new DefaultRequest("echo", "echo", new Object[] { "a" }, SerializerType.HESSIAN.getCode(),
+				Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY, -1);
+	}
+}
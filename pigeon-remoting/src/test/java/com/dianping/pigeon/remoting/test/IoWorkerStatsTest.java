@@ -0,0 +1,116 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.monitor.IoWorkerStats;
+import com.dianping.pigeon.remoting.common.monitor.IoWorkerStatsRegistry;
+
+public class IoWorkerStatsTest {
+
+	private static Executor executor(final ExecutorService executorService) {
+		return new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				executorService.execute(command);
+			}
+		};
+	}
+
+	@Test
+	public void testRegister() {
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		try {
+			Object worker = new Object();
+			IoWorkerStats stats = IoWorkerStatsRegistry.INSTANCE.register(worker, "test-register",
+					executor(executorService));
+			Assert.assertEquals("test-register-1", stats.getName());
+			Assert.assertSame(stats, IoWorkerStatsRegistry.INSTANCE.getStats(worker));
+			Assert.assertSame(stats, IoWorkerStatsRegistry.INSTANCE.register(worker, "test-register",
+					executor(executorService)));
+			Assert.assertTrue(IoWorkerStatsRegistry.INSTANCE.getAllStats().contains(stats));
+
+			IoWorkerStats other = IoWorkerStatsRegistry.INSTANCE.register(new Object(), "test-register",
+					executor(executorService));
+			Assert.assertEquals("test-register-2", other.getName());
+			Assert.assertNull(IoWorkerStatsRegistry.INSTANCE.getStats(new Object()));
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testLagProbe() throws Exception {
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		try {
+			final CountDownLatch blocked = new CountDownLatch(1);
+			final CountDownLatch release = new CountDownLatch(1);
+			// 模拟被阻塞的I/O线程
+			executorService.execute(new Runnable() {
+				@Override
+				public void run() {
+					blocked.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+					}
+				}
+			});
+			blocked.await();
+			IoWorkerStats stats = IoWorkerStatsRegistry.INSTANCE.register(new Object(), "test-lag",
+					executor(executorService));
+
+			// 探测每100ms一次，阻塞期间探测任务一直等待
+			long deadline = System.currentTimeMillis() + 5000;
+			while (stats.getPendingProbeMicros() < 200000 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			Assert.assertTrue(stats.getPendingProbeMicros() >= 200000);
+			Assert.assertEquals(0, stats.getLagHistogram().getTotalCount());
+
+			release.countDown();
+			while (stats.getLagHistogram().getTotalCount() == 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			Assert.assertTrue(stats.getLagHistogram().getTotalCount() >= 1);
+			Assert.assertTrue(stats.getLagMicros() >= 200000);
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testIoThread() throws Exception {
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		try {
+			final IoWorkerStats stats = new IoWorkerStats("test-thread", executor(executorService));
+			Assert.assertFalse(stats.isIoThread());
+			boolean inIoThread = executorService.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					stats.markIoThread();
+					return stats.isIoThread();
+				}
+			}).get(5, TimeUnit.SECONDS);
+			Assert.assertTrue(inIoThread);
+			Assert.assertFalse(stats.isIoThread());
+
+			stats.addEncodeNanos(100);
+			stats.addCallerEncodeNanos(200);
+			stats.addCallerEncodeNanos(300);
+			Assert.assertEquals(100, stats.getEncodeNanos());
+			Assert.assertEquals(1, stats.getEncodeCount());
+			Assert.assertEquals(500, stats.getCallerEncodeNanos());
+			Assert.assertEquals(2, stats.getCallerEncodeCount());
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+}
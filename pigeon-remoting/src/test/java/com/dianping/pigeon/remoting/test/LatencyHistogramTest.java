@@ -0,0 +1,99 @@
+package com.dianping.pigeon.remoting.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.monitor.trace.LatencyHistogram;
+import com.dianping.pigeon.remoting.common.monitor.trace.ProviderTraceData;
+
+/**
+ * 分桶直方图的精度、分位计算、快照合并测试
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void testPrecision() {
+		for (long value = 0; value < 1000000; value += 7) {
+			LatencyHistogram histogram = new LatencyHistogram();
+			histogram.record(value);
+			long result = histogram.getValueAtPercentile(1);
+			Assert.assertTrue(value + "->" + result, result >= value);
+			Assert.assertTrue(value + "->" + result, result - value <= value / 32);
+		}
+	}
+
+	@Test
+	public void testPercentile() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 10);
+		}
+		Assert.assertEquals(1000, histogram.getTotalCount());
+		assertNear(5000, histogram.getValueAtPercentile(0.5));
+		assertNear(9900, histogram.getValueAtPercentile(0.99));
+		assertNear(10000, histogram.getValueAtPercentile(1));
+		Assert.assertEquals(0, new LatencyHistogram().getValueAtPercentile(0.99));
+	}
+
+	@Test
+	public void testOutOfRange() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-1);
+		histogram.record(Long.MAX_VALUE);
+		Assert.assertEquals(0, histogram.getValueAtPercentile(0.5));
+		Assert.assertEquals(LatencyHistogram.MAX_VALUE, histogram.getValueAtPercentile(1));
+	}
+
+	@Test
+	public void testMerge() {
+		LatencyHistogram fast = new LatencyHistogram();
+		LatencyHistogram slow = new LatencyHistogram();
+		for (int i = 0; i < 90; i++) {
+			fast.record(100);
+		}
+		for (int i = 0; i < 10; i++) {
+			slow.record(100000);
+		}
+		LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot().merge(fast.snapshot())
+				.merge(slow.snapshot());
+		Assert.assertEquals(100, snapshot.getTotalCount());
+		assertNear(100, snapshot.getValueAtPercentile(0.9));
+		assertNear(100000, snapshot.getValueAtPercentile(0.95));
+
+		fast.record(100000);
+		Assert.assertEquals(100, snapshot.getTotalCount());
+	}
+
+	@Test
+	public void testCumulativeCounts() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 10);
+		}
+		long[] bounds = { 5, 1000, 5000, 20000 };
+		long[] counts = new long[bounds.length];
+		Assert.assertEquals(1000, histogram.getCumulativeCounts(bounds, counts));
+		Assert.assertEquals(0, counts[0]);
+		Assert.assertTrue(String.valueOf(counts[1]), counts[1] <= 100 && counts[1] >= 97);
+		Assert.assertTrue(String.valueOf(counts[2]), counts[2] <= 500 && counts[2] >= 485);
+		Assert.assertEquals(1000, counts[3]);
+	}
+
+	@Test
+	public void testTraceData() {
+		ProviderTraceData traceData = new ProviderTraceData();
+		for (int i = 1; i <= 100; i++) {
+			traceData.setElapsedMicros(i * 100);
+			traceData.incTotalSuccess();
+		}
+		Assert.assertEquals(10, traceData.getMaxElapsed());
+		Assert.assertEquals(0, traceData.getMinElapsed());
+		Assert.assertEquals(5, traceData.getAvgElapsed());
+		assertNear(9900, traceData.getElapsed99thMicros());
+		Assert.assertEquals(9, traceData.getElapsed99th());
+	}
+
+	private static void assertNear(long expected, long actual) {
+		Assert.assertTrue(expected + "->" + actual, actual >= expected && actual - expected <= expected / 32);
+	}
+}
@@ -0,0 +1,166 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.MethodDictionary;
+import com.dianping.pigeon.remoting.common.codec.SerializerType;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.domain.generic.GenericResponse;
+import com.dianping.pigeon.remoting.common.exception.BadRequestException;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
+
+public class MethodDictionaryTest {
+
+	private static DefaultRequest newRequest(String method, long seq, int timeout) {
+		DefaultRequest request = new DefaultRequest("http://service.dianping.com/echoService", method,
+				new Object[] { "hello" }, SerializerType.HESSIAN.getCode(), Constants.MESSAGE_TYPE_SERVICE, timeout,
+				Constants.CALLTYPE_REPLY, seq);
+		request.setVersion("1.0.0");
+		request.setApp("test");
+		return request;
+	}
+
+	// 服务端处理请求并写回响应，调用端解码响应
+	private static InvocationRequest exchange(MethodDictionary invoker, MethodDictionary provider,
+			DefaultRequest request) {
+		InvocationRequest sent = invoker.compact(request);
+		DefaultRequest received = copy(sent);
+		provider.resolve(received);
+		InvocationResponse response = ProviderUtils.createSuccessResponse(received, "ok");
+		provider.ack(response);
+		invoker.receiveAck(response);
+		return sent;
+	}
+
+	private static DefaultRequest copy(InvocationRequest request) {
+		DefaultRequest copy = new DefaultRequest(request.getServiceName(), request.getMethodName(),
+				request.getParameters(), request.getSerialize(), request.getMessageType(), request.getTimeout(),
+				request.getCallType(), request.getSequence());
+		copy.setVersion(request.getVersion());
+		copy.setApp(request.getApp());
+		if (request.getRequestValues() != null) {
+			copy.setRequestValues(new HashMap<String, Serializable>(request.getRequestValues()));
+		}
+		return copy;
+	}
+
+	@Test
+	public void testDefineAndAck() {
+		MethodDictionary invoker = new MethodDictionary();
+		MethodDictionary provider = new MethodDictionary();
+
+		InvocationRequest first = exchange(invoker, provider, newRequest("echo", 1, 1000));
+		Assert.assertEquals("http://service.dianping.com/echoService", first.getServiceName());
+		Assert.assertEquals("1", first.getRequestValues().get(MethodDictionary.KEY_DEFINE));
+
+		InvocationRequest second = invoker.compact(newRequest("echo", 2, 1000));
+		Assert.assertEquals("#1", second.getServiceName());
+		Assert.assertNull(second.getVersion());
+		DefaultRequest received = copy(second);
+		provider.resolve(received);
+		Assert.assertEquals("http://service.dianping.com/echoService", received.getServiceName());
+		Assert.assertEquals("echo", received.getMethodName());
+		Assert.assertEquals("1.0.0", received.getVersion());
+		Assert.assertEquals("test", received.getApp());
+
+		// 另一个方法分配新的id
+		InvocationRequest other = exchange(invoker, provider, newRequest("echo2", 3, 1000));
+		Assert.assertEquals("2", other.getRequestValues().get(MethodDictionary.KEY_DEFINE));
+		Assert.assertEquals("#2", invoker.compact(newRequest("echo2", 4, 1000)).getServiceName());
+	}
+
+	@Test
+	public void testAckForOtherSequenceIgnored() {
+		MethodDictionary invoker = new MethodDictionary();
+		MethodDictionary provider = new MethodDictionary();
+		InvocationRequest sent = invoker.compact(newRequest("echo", 1, 1000));
+		DefaultRequest received = copy(sent);
+		provider.resolve(received);
+		InvocationResponse response = ProviderUtils.createSuccessResponse(newRequest("echo", 2, 1000), "ok");
+		response.setResponseValues(new HashMap<String, Serializable>());
+		response.getResponseValues().put(MethodDictionary.KEY_ACK, "1");
+		invoker.receiveAck(response);
+		Assert.assertEquals("http://service.dianping.com/echoService",
+				invoker.compact(newRequest("echo", 3, 1000)).getServiceName());
+	}
+
+	@Test
+	public void testConcurrentDefine() {
+		MethodDictionary invoker = new MethodDictionary();
+		MethodDictionary provider = new MethodDictionary();
+		InvocationRequest first = invoker.compact(newRequest("echo", 1, 1000));
+		// 定义的确认返回前，同一方法的其他请求发送完整请求，不再带定义
+		InvocationRequest second = invoker.compact(newRequest("echo", 2, 1000));
+		Assert.assertEquals("1", first.getRequestValues().get(MethodDictionary.KEY_DEFINE));
+		Assert.assertEquals("http://service.dianping.com/echoService", second.getServiceName());
+		Assert.assertTrue(second.getRequestValues() == null
+				|| !second.getRequestValues().containsKey(MethodDictionary.KEY_DEFINE));
+
+		DefaultRequest received = copy(first);
+		provider.resolve(received);
+		InvocationResponse response = ProviderUtils.createSuccessResponse(received, "ok");
+		provider.ack(response);
+		invoker.receiveAck(response);
+		Assert.assertEquals("#1", invoker.compact(newRequest("echo", 3, 1000)).getServiceName());
+	}
+
+	@Test
+	public void testGenericResponse() {
+		MethodDictionary invoker = new MethodDictionary();
+		MethodDictionary provider = new MethodDictionary();
+		invoker.compact(newRequest("echo", 1, 1000));
+		provider.resolve(newDefine("echo", 1, 1, 1000));
+
+		// thrift响应和心跳不支持responseValues，不做处理
+		byte serialize = SerializerType.THRIFT.getCode();
+		for (InvocationResponse response : new InvocationResponse[] {
+				new GenericResponse(serialize, 1, Constants.MESSAGE_TYPE_SERVICE, "ok"),
+				new GenericResponse(serialize, 1, Constants.MESSAGE_TYPE_HEART, null) }) {
+			provider.ack(response);
+			invoker.receiveAck(response);
+		}
+		// 待确认的定义仍由之后的DefaultResponse确认
+		InvocationResponse response = ProviderUtils.createSuccessResponse(newRequest("echo", 1, 1000), "ok");
+		provider.ack(response);
+		Assert.assertEquals("1", response.getResponseValues().get(MethodDictionary.KEY_ACK));
+	}
+
+	@Test(expected = BadRequestException.class)
+	public void testUnknownId() {
+		DefaultRequest request = newRequest("", 1, 1000);
+		request.setServiceName("#7");
+		new MethodDictionary().resolve(request);
+	}
+
+	@Test
+	public void testExpiredPendingAcks() throws Exception {
+		MethodDictionary provider = new MethodDictionary();
+		// 超时未写回响应的定义占满待确认名额
+		for (int i = 0; i < 1024; i++) {
+			provider.resolve(newDefine("echo", 1, 1000 + i, 1));
+		}
+		Thread.sleep(10);
+
+		DefaultRequest request = newDefine("echo2", 2, 1, 1000);
+		provider.resolve(request);
+		InvocationResponse response = ProviderUtils.createSuccessResponse(request, "ok");
+		provider.ack(response);
+		Assert.assertEquals("2", response.getResponseValues().get(MethodDictionary.KEY_ACK));
+	}
+
+	private static DefaultRequest newDefine(String method, int id, long seq, int timeout) {
+		DefaultRequest request = newRequest(method, seq, timeout);
+		Map<String, Serializable> requestValues = new HashMap<String, Serializable>();
+		requestValues.put(MethodDictionary.KEY_DEFINE, String.valueOf(id));
+		request.setRequestValues(requestValues);
+		return request;
+	}
+}
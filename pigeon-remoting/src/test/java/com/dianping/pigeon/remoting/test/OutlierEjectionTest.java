@@ -0,0 +1,136 @@
+package com.dianping.pigeon.remoting.test;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.dianping.pigeon.config.ConfigChangeListener;
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.codec.SerializerType;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.route.quality.OutlierEjectionManager;
+import com.dianping.pigeon.remoting.invoker.route.quality.OutlierEjectionManager.HostStats;
+
+public class OutlierEjectionTest {
+
+	private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	private static final String KEY_ENABLE = "pigeon.invoker.outlier.ejection.enable";
+
+	private static final String KEY_PERCENT_MAX = "pigeon.invoker.outlier.ejection.percent.max";
+
+	private static final long EJECTION_BASE = 30000L;
+
+	@BeforeClass
+	public static void setUp() {
+		// 检查线程不参与，由测试按指定时间触发检查
+		configManager.setLocalStringValue("pigeon.invoker.outlier.check.interval", "3600");
+		setConfig(KEY_ENABLE, "true");
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		setConfig(KEY_ENABLE, "false");
+	}
+
+	private static void setConfig(String key, String value) {
+		OutlierEjectionManager.INSTANCE.isEnableOutlierEjection();
+		for (ConfigChangeListener listener : configManager.getConfigChangeListeners()) {
+			listener.onKeyUpdated(key, value);
+		}
+	}
+
+	// 每个节点记录一个窗口的调用，latencies[i]为第i个节点的耗时
+	private static void record(String serviceName, long... latencies) {
+		DefaultRequest request = new DefaultRequest(serviceName, "echo", new Object[0],
+				SerializerType.HESSIAN.getCode(), Constants.MESSAGE_TYPE_SERVICE, 1000, Constants.CALLTYPE_REPLY, 1);
+		for (int i = 0; i < latencies.length; i++) {
+			for (int j = 0; j < 20; j++) {
+				OutlierEjectionManager.INSTANCE.addClientResponse(request, host(i), latencies[i], false);
+			}
+		}
+	}
+
+	private static String host(int index) {
+		return "127.0.0." + index + ":4040";
+	}
+
+	private static HostStats stats(String serviceName, int index) {
+		return OutlierEjectionManager.INSTANCE.getServiceHostStats().get(serviceName).get(host(index));
+	}
+
+	@Test
+	public void testEjectOutlier() {
+		String serviceName = "outlier.eject";
+		long now = System.currentTimeMillis();
+		record(serviceName, 10, 12, 10, 11, 200);
+		OutlierEjectionManager.INSTANCE.checkOutliers(now);
+
+		Assert.assertTrue(stats(serviceName, 4).isEjected(now));
+		Assert.assertTrue(OutlierEjectionManager.INSTANCE.isEjected(serviceName, host(4)));
+		for (int i = 0; i < 4; i++) {
+			Assert.assertFalse(stats(serviceName, i).isEjected(now));
+			Assert.assertFalse(OutlierEjectionManager.INSTANCE.isEjected(serviceName, host(i)));
+		}
+	}
+
+	@Test
+	public void testEjectionBackoff() {
+		String serviceName = "outlier.backoff";
+		long now = System.currentTimeMillis();
+		record(serviceName, 10, 10, 10, 10, 200);
+		OutlierEjectionManager.INSTANCE.checkOutliers(now);
+		HostStats stats = stats(serviceName, 4);
+		Assert.assertEquals(now + EJECTION_BASE, stats.getEjectedUntil());
+		Assert.assertTrue(stats.isEjected(now + EJECTION_BASE - 1));
+		Assert.assertFalse(stats.isEjected(now + EJECTION_BASE));
+
+		// 恢复后仍然异常，摘除时间翻倍
+		now += EJECTION_BASE;
+		record(serviceName, 10, 10, 10, 10, 200);
+		OutlierEjectionManager.INSTANCE.checkOutliers(now);
+		Assert.assertEquals(now + 2 * EJECTION_BASE, stats.getEjectedUntil());
+		Assert.assertEquals(2, stats.getEjectionCount());
+		Assert.assertEquals(2, stats.getEjectedTimes());
+
+		// 到期后恢复正常的节点不再被摘除，退避次数逐步减少
+		now += 2 * EJECTION_BASE;
+		record(serviceName, 10, 10, 10, 10, 10);
+		OutlierEjectionManager.INSTANCE.checkOutliers(now);
+		Assert.assertFalse(stats.isEjected(now));
+		Assert.assertEquals(1, stats.getEjectionCount());
+	}
+
+	@Test
+	public void testMaxEjectionPercent() {
+		String serviceName = "outlier.percent";
+		setConfig(KEY_PERCENT_MAX, "20");
+		try {
+			long now = System.currentTimeMillis();
+			record(serviceName, 10, 10, 10, 200, 300);
+			OutlierEjectionManager.INSTANCE.checkOutliers(now);
+			Assert.assertEquals(1, countEjected(serviceName, now));
+
+			// 已达到摘除比例上限，另一个异常节点继续保留
+			now += 1000;
+			record(serviceName, 10, 10, 10, 200, 300);
+			OutlierEjectionManager.INSTANCE.checkOutliers(now);
+			Assert.assertEquals(1, countEjected(serviceName, now));
+		} finally {
+			setConfig(KEY_PERCENT_MAX, "50");
+		}
+	}
+
+	private static int countEjected(String serviceName, long now) {
+		int count = 0;
+		for (HostStats stats : OutlierEjectionManager.INSTANCE.getServiceHostStats().get(serviceName).values()) {
+			if (stats.isEjected(now)) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,64 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.invoker.route.quality.QualityWindow;
+import com.dianping.pigeon.remoting.invoker.route.quality.RequestQualityManager;
+
+public class QualityWindowTest {
+
+	@Test
+	public void testRecord() {
+		QualityWindow window = new QualityWindow();
+		for (int i = 0; i < 10; i++) {
+			window.record(100, i % 5 == 0);
+		}
+		window.record(101, true);
+		window.refresh(102, 5);
+		RequestQualityManager.Quality quality = window.getQuality();
+		Assert.assertEquals(11, quality.getTotalValue());
+		Assert.assertEquals(3, quality.getFailedValue());
+
+		// 同一个槽位到了下一轮，旧的计数作废
+		window.record(100 + QualityWindow.SLOTS, false);
+		window.refresh(101 + QualityWindow.SLOTS, 1);
+		Assert.assertEquals(1, window.getQuality().getTotalValue());
+		Assert.assertEquals(0, window.getQuality().getFailedValue());
+	}
+
+	@Test
+	public void testConcurrentRollover() throws Exception {
+		final QualityWindow window = new QualityWindow();
+		final int threads = 8, seconds = QualityWindow.SLOTS - 1, perSecond = 50;
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int second = 0; second < seconds; second++) {
+						for (int j = 0; j < perSecond; j++) {
+							window.record(second, j == 0);
+						}
+					}
+				}
+			};
+			workers[i].start();
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		window.refresh(seconds, 10);
+		Assert.assertEquals(10 * threads * perSecond, window.getQuality().getTotalValue());
+		Assert.assertEquals(10 * threads, window.getQuality().getFailedValue());
+	}
+}
@@ -0,0 +1,72 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.invoker.route.region.LatencyAwareRegionPolicy;
+
+public class RegionStatsTest {
+
+	private static final float ALPHA = 0.2f;
+
+	@Test
+	public void testRecord() {
+		LatencyAwareRegionPolicy.RegionStats stats = new LatencyAwareRegionPolicy.RegionStats();
+		Assert.assertEquals(0, stats.getCount());
+		Assert.assertEquals(0, stats.getLatency(), 0);
+
+		stats.record(10, false, ALPHA);
+		Assert.assertEquals(1, stats.getCount());
+		Assert.assertEquals(10, stats.getLatency(), 0);
+		Assert.assertEquals(10, stats.getBaseline(), 0);
+		Assert.assertEquals(0, stats.getFailedPercent(), 0);
+
+		// 延迟升高时基线缓慢上调
+		for (int i = 0; i < 50; i++) {
+			stats.record(100, true, ALPHA);
+		}
+		Assert.assertEquals(100, stats.getLatency(), 1);
+		Assert.assertTrue(stats.getBaseline() < 20);
+		Assert.assertEquals(1, stats.getFailedPercent(), 0.01);
+
+		// 延迟回落到基线以下时基线立即下调
+		for (int i = 0; i < 50; i++) {
+			stats.record(5, false, ALPHA);
+		}
+		Assert.assertEquals(stats.getLatency(), stats.getBaseline(), 0);
+		Assert.assertEquals(101, stats.getCount());
+	}
+
+	@Test
+	public void testConcurrentRecord() throws Exception {
+		final LatencyAwareRegionPolicy.RegionStats stats = new LatencyAwareRegionPolicy.RegionStats();
+		final int threads = 8, perThread = 10000;
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int j = 0; j < perThread; j++) {
+						stats.record(20, false, ALPHA);
+					}
+				}
+			};
+			workers[i].start();
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		Assert.assertEquals(threads * perThread, stats.getCount());
+		Assert.assertEquals(20, stats.getLatency(), 0);
+		Assert.assertEquals(20, stats.getBaseline(), 0);
+	}
+}
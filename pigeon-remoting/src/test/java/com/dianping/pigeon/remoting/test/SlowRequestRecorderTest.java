@@ -0,0 +1,48 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.monitor.SlowRequest;
+import com.dianping.pigeon.remoting.common.monitor.SlowRequestRecorder;
+import com.dianping.pigeon.remoting.common.monitor.SlowRequestRecorder.MethodSlowRequests;
+
+public class SlowRequestRecorderTest {
+
+	@Test
+	public void testRecord() {
+		SlowRequestRecorder recorder = SlowRequestRecorder.INSTANCE;
+		recorder.clear();
+		long threshold = recorder.getThreshold();
+		recorder.record(new SlowRequest(SlowRequest.SIDE_INVOKER, "echo", "fast", 0, threshold - 1));
+		Assert.assertTrue(recorder.getSlowRequests().isEmpty());
+
+		// 耗时先递增后递减，最慢的应保留中间一段
+		int total = 100;
+		for (int i = 0; i < total; i++) {
+			long elapsed = threshold + (i < total / 2 ? i : total - i);
+			recorder.record(new SlowRequest(SlowRequest.SIDE_INVOKER, "echo", "slow", i, elapsed));
+		}
+		List<MethodSlowRequests.Snapshot> snapshots = recorder.getSlowRequests();
+		Assert.assertEquals(1, snapshots.size());
+		MethodSlowRequests.Snapshot snapshot = snapshots.get(0);
+		Assert.assertEquals(total, snapshot.getCount());
+
+		List<SlowRequest> recent = snapshot.getRecent();
+		Assert.assertFalse(recent.isEmpty());
+		for (int i = 0; i < recent.size(); i++) {
+			Assert.assertEquals(total - 1 - i, recent.get(i).getStartTime());
+		}
+
+		List<SlowRequest> slowest = snapshot.getSlowest();
+		Assert.assertFalse(slowest.isEmpty());
+		Assert.assertEquals(threshold + total / 2, slowest.get(0).getElapsed());
+		for (int i = 1; i < slowest.size(); i++) {
+			Assert.assertTrue(slowest.get(i - 1).getElapsed() >= slowest.get(i).getElapsed());
+			Assert.assertTrue(slowest.get(i).getElapsed() >= threshold + total / 2 - slowest.size());
+		}
+		recorder.clear();
+	}
+}
@@ -0,0 +1,265 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.channel.Channel;
+import com.dianping.pigeon.remoting.common.codec.BufferSerializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.SerializerType;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.domain.StreamChunk;
+import com.dianping.pigeon.remoting.common.exception.NetworkException;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.concurrent.StreamIterator;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.process.filter.StreamProcessFilter;
+import com.dianping.pigeon.remoting.provider.process.stream.ProviderStream;
+import com.dianping.pigeon.remoting.provider.process.stream.ProviderStreamRepository;
+import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
+
+public class StreamTest {
+
+	private static final byte SERIALIZE = SerializerType.HESSIAN.getCode();
+
+	private static DefaultRequest newStreamRequest(long seq) {
+		return new DefaultRequest("stream", "list", new Object[] { 10 }, SERIALIZE, Constants.MESSAGE_TYPE_STREAM,
+				1000, Constants.CALLTYPE_REPLY, seq);
+	}
+
+	@Test
+	public void testChunkRoundTrip() throws Exception {
+		BufferSerializer serializer = (BufferSerializer) SerializerFactory.getSerializer(SERIALIZE);
+		InvocationResponse response = ProviderUtils.createStreamResponse(newStreamRequest(-1),
+				new StreamChunk(3, new Object[] { "a", 1, null }, true));
+		ArrayCodecBuffer buffer = new ArrayCodecBuffer(16);
+		serializer.serializeResponse(buffer, response);
+		InvocationResponse decoded = (InvocationResponse) serializer.deserializeResponse(buffer);
+		Assert.assertEquals(Constants.MESSAGE_TYPE_STREAM, decoded.getMessageType());
+		Assert.assertEquals(-1, decoded.getSequence());
+		StreamChunk chunk = (StreamChunk) decoded.getReturn();
+		Assert.assertEquals(3, chunk.getIndex());
+		Assert.assertTrue(chunk.isLast());
+		Assert.assertArrayEquals(new Object[] { "a", 1, null }, chunk.getElements());
+	}
+
+	@Test
+	public void testCreditRoundTrip() throws Exception {
+		BufferSerializer serializer = (BufferSerializer) SerializerFactory.getSerializer(SERIALIZE);
+		for (InvocationRequest request : new InvocationRequest[] { newStreamRequest(-2),
+				new DefaultRequest("stream", "list", new Object[] { -1 }, SERIALIZE,
+						Constants.MESSAGE_TYPE_STREAM_CREDIT, 1000, Constants.CALLTYPE_NOREPLY, -2) }) {
+			ArrayCodecBuffer buffer = new ArrayCodecBuffer(16);
+			serializer.serializeRequest(buffer, request);
+			InvocationRequest decoded = (InvocationRequest) serializer.deserializeRequest(buffer);
+			Assert.assertEquals(request.getMessageType(), decoded.getMessageType());
+			Assert.assertEquals(request.getCallType(), decoded.getCallType());
+			Assert.assertEquals(-2, decoded.getSequence());
+			Assert.assertEquals(request.getParameters()[0], decoded.getParameters()[0]);
+		}
+	}
+
+	@Test
+	public void testProviderEmitsOnlyWithCredits() {
+		RecordingProviderChannel channel = new RecordingProviderChannel();
+		CountingIterator iterator = new CountingIterator(25);
+		ProviderStream stream = new ProviderStream(new DefaultProviderContext(newStreamRequest(-3), channel),
+				iterator, 10);
+
+		Assert.assertFalse(stream.emit());
+		Assert.assertEquals(0, iterator.read);
+
+		stream.addCredits(1);
+		Assert.assertFalse(stream.emit());
+		Assert.assertEquals(1, channel.chunks().size());
+		// 没有额度时不再从业务Iterator读取
+		Assert.assertEquals(10, iterator.read);
+
+		stream.addCredits(5);
+		Assert.assertTrue(stream.emit());
+		List<StreamChunk> chunks = channel.chunks();
+		Assert.assertEquals(3, chunks.size());
+		Assert.assertEquals(2, chunks.get(2).getIndex());
+		Assert.assertEquals(5, chunks.get(2).getElements().length);
+		Assert.assertTrue(chunks.get(2).isLast());
+		Assert.assertTrue(stream.isClosed());
+	}
+
+	@Test
+	public void testCreditsBeforeOpen() throws Throwable {
+		RecordingProviderChannel channel = new RecordingProviderChannel();
+		DefaultRequest request = newStreamRequest(-4);
+		ProviderStreamRepository.INSTANCE.addCredits(channel, request.getSequence(), 1);
+
+		StreamProcessFilter filter = new StreamProcessFilter(new ServiceInvocationHandler() {
+			@Override
+			public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+				InvocationRequest request = invocationContext.getRequest();
+				// 流式请求不改写消息类型
+				Assert.assertEquals(Constants.MESSAGE_TYPE_STREAM, request.getMessageType());
+				return ProviderUtils.createSuccessResponse(request, Arrays.asList(1, 2, 3));
+			}
+		});
+		Assert.assertNull(filter.invoke(null, new DefaultProviderContext(request, channel)));
+		Assert.assertEquals(Constants.MESSAGE_TYPE_STREAM, request.getMessageType());
+		List<StreamChunk> chunks = channel.chunks();
+		Assert.assertEquals(1, chunks.size());
+		Assert.assertTrue(chunks.get(0).isLast());
+		Assert.assertArrayEquals(new Object[] { 1, 2, 3 }, chunks.get(0).getElements());
+	}
+
+	@Test
+	public void testIteratorCredits() {
+		RecordingChannel channel = new RecordingChannel();
+		StreamIterator<Integer> iterator = new StreamIterator<Integer>(channel, newStreamRequest(-5), 4);
+		iterator.start();
+		Assert.assertEquals(Collections.singletonList(4), channel.credits);
+
+		// 乱序到达的chunk按index顺序消费
+		iterator.onChunk(new StreamChunk(1, new Object[] { 3, 4 }, false));
+		iterator.onChunk(new StreamChunk(0, new Object[] { 1, 2 }, false));
+		List<Integer> values = new ArrayList<Integer>();
+		for (int i = 0; i < 4; i++) {
+			values.add(iterator.next());
+		}
+		Assert.assertEquals(Arrays.asList(1, 2, 3, 4), values);
+		// 每消费半个窗口归还一次额度
+		Assert.assertEquals(Arrays.asList(4, 2), channel.credits);
+
+		iterator.onChunk(new StreamChunk(2, new Object[] { 5 }, true));
+		Assert.assertTrue(iterator.hasNext());
+		Assert.assertEquals(Integer.valueOf(5), iterator.next());
+		Assert.assertFalse(iterator.hasNext());
+		iterator.close();
+		Assert.assertEquals(Arrays.asList(4, 2), channel.credits);
+	}
+
+	@Test
+	public void testIteratorCancel() {
+		RecordingChannel channel = new RecordingChannel();
+		StreamIterator<Integer> iterator = new StreamIterator<Integer>(channel, newStreamRequest(-6), 4);
+		iterator.start();
+		iterator.onChunk(new StreamChunk(0, new Object[] { 1 }, false));
+		iterator.close();
+		Assert.assertEquals(Arrays.asList(4, -1), channel.credits);
+		Assert.assertFalse(iterator.hasNext());
+		Assert.assertTrue(iterator.onChunk(new StreamChunk(1, new Object[] { 2 }, false)));
+	}
+
+	private static class CountingIterator implements Iterator<Integer> {
+
+		private final int size;
+
+		private int read = 0;
+
+		CountingIterator(int size) {
+			this.size = size;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return read < size;
+		}
+
+		@Override
+		public Integer next() {
+			return read++;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private static class RecordingProviderChannel implements ProviderChannel {
+
+		private final List<InvocationResponse> responses = new ArrayList<InvocationResponse>();
+
+		@Override
+		public synchronized void write(ProviderContext context, InvocationResponse response) {
+			responses.add(response);
+		}
+
+		synchronized List<StreamChunk> chunks() {
+			List<StreamChunk> chunks = new ArrayList<StreamChunk>();
+			for (InvocationResponse response : responses) {
+				chunks.add((StreamChunk) response.getReturn());
+			}
+			return chunks;
+		}
+
+		@Override
+		public String getRemoteAddress() {
+			return "127.0.0.1:1";
+		}
+
+		@Override
+		public String getProtocol() {
+			return Constants.PROTOCOL_DEFAULT;
+		}
+
+		@Override
+		public int getPort() {
+			return 1;
+		}
+	}
+
+	private static class RecordingChannel implements Channel {
+
+		private final List<Integer> credits = new ArrayList<Integer>();
+
+		@Override
+		public void write(Object message) throws NetworkException {
+			InvocationRequest request = (InvocationRequest) message;
+			Assert.assertEquals(Constants.MESSAGE_TYPE_STREAM_CREDIT, request.getMessageType());
+			credits.add((Integer) request.getParameters()[0]);
+		}
+
+		@Override
+		public void connect() throws NetworkException {
+		}
+
+		@Override
+		public void disConnect() {
+		}
+
+		@Override
+		public boolean isWritable() {
+			return true;
+		}
+
+		@Override
+		public boolean isAvaliable() {
+			return true;
+		}
+
+		@Override
+		public InetSocketAddress getLocalAddress() {
+			return null;
+		}
+
+		@Override
+		public InetSocketAddress getRemoteAddress() {
+			return null;
+		}
+
+		@Override
+		public String getRemoteAddressString() {
+			return "127.0.0.1:1";
+		}
+	}
+}
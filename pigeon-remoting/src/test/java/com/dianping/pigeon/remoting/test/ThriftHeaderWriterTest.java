@@ -0,0 +1,123 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.monitor.MonitorConstants;
+import com.dianping.pigeon.remoting.common.codec.SerializerType;
+import com.dianping.pigeon.remoting.common.codec.thrift.CodecBufferTransport;
+import com.dianping.pigeon.remoting.common.codec.thrift.DynamicByteArrayOutputStream;
+import com.dianping.pigeon.remoting.common.codec.thrift.ThriftHeaderWriter;
+import com.dianping.pigeon.remoting.common.domain.generic.GenericRequest;
+import com.dianping.pigeon.remoting.common.domain.generic.GenericResponse;
+import com.dianping.pigeon.remoting.common.domain.generic.ThriftMapper;
+import com.dianping.pigeon.remoting.common.domain.generic.thrift.Header;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.exception.InvocationFailureException;
+
+/**
+ * 直接写出的thrift头与Header.write的字节一致性测试
+ */
+public class ThriftHeaderWriterTest {
+
+	private static final byte SERIALIZE = SerializerType.THRIFT.getCode();
+
+	@Test
+	public void testRequestHeader() throws Exception {
+		GenericRequest request = newRequest(Constants.MESSAGE_TYPE_SERVICE);
+		Map<String, String> localContext = new HashMap<String, String>();
+		localContext.put(MonitorConstants.ROOT_MSG_ID, "root-1");
+		localContext.put(MonitorConstants.SERVER_MSG_ID, "server-1");
+		localContext.put(MonitorConstants.CURRENT_MSG_ID, "current-1");
+		localContext.put(MonitorConstants.SPAN_ID, "0.1");
+		localContext.put(MonitorConstants.TRACE_ID, "trace-1");
+		localContext.put(MonitorConstants.DEBUG, "true");
+		localContext.put("k", "v");
+		request.setLocalContext(localContext);
+		Map<String, String> globalContext = new HashMap<String, String>();
+		globalContext.put("g", "1");
+		request.setGlobalContext(globalContext);
+		request.setClientIp("10.0.0.1");
+
+		assertRequestHeader(request);
+	}
+
+	@Test
+	public void testRequestHeaderWithoutContext() throws Exception {
+		assertRequestHeader(newRequest(Constants.MESSAGE_TYPE_SERVICE));
+
+		GenericRequest oneway = newRequest(Constants.MESSAGE_TYPE_SERVICE);
+		oneway.setCallType(Constants.CALLTYPE_NOREPLY);
+		assertRequestHeader(oneway);
+
+		assertRequestHeader(newRequest(Constants.MESSAGE_TYPE_HEART));
+	}
+
+	@Test
+	public void testResponseHeader() throws Exception {
+		GenericResponse response = new GenericResponse(SERIALIZE, 7, Constants.MESSAGE_TYPE_SERVICE, "ok");
+		Map<String, String> localContext = new HashMap<String, String>();
+		localContext.put("k", "v");
+		response.setLocalContext(localContext);
+		assertResponseHeader(response);
+
+		assertResponseHeader(new GenericResponse(SERIALIZE, 8,
+				Constants.MESSAGE_TYPE_SERVICE_EXCEPTION, new InvocationFailureException("failed")));
+
+		assertResponseHeader(new GenericResponse(SERIALIZE, 9, Constants.MESSAGE_TYPE_HEART, null));
+	}
+
+	private GenericRequest newRequest(int messageType) {
+		GenericRequest request = new GenericRequest("echo", "echo", new Object[0], SERIALIZE, messageType,
+				1000);
+		request.setSequence(5);
+		request.setCallType(Constants.CALLTYPE_REPLY);
+		request.setApp("app-test");
+		return request;
+	}
+
+	private void assertRequestHeader(GenericRequest request) throws Exception {
+		byte[] expected = writeHeader(ThriftMapper.convertRequestToHeader(request));
+
+		DynamicByteArrayOutputStream bos = new DynamicByteArrayOutputStream();
+		ThriftHeaderWriter.writeRequestHeader(new TBinaryProtocol(new TIOStreamTransport(bos)), bos, request);
+		Assert.assertArrayEquals(expected, bos.toByteArray());
+
+		ArrayCodecBuffer buffer = new ArrayCodecBuffer(16);
+		CodecBufferTransport transport = new CodecBufferTransport(buffer);
+		ThriftHeaderWriter.writeRequestHeader(new TBinaryProtocol(transport), transport, request);
+		Assert.assertArrayEquals(expected, buffer.toByteArray());
+	}
+
+	private void assertResponseHeader(GenericResponse response) throws Exception {
+		byte[] expected = writeHeader(ThriftMapper.convertResponseToHeader(response));
+		byte status = ThriftMapper.getStatus(response);
+
+		DynamicByteArrayOutputStream bos = new DynamicByteArrayOutputStream();
+		ThriftHeaderWriter.writeResponseHeader(new TBinaryProtocol(new TIOStreamTransport(bos)), bos, response,
+				status);
+		Assert.assertArrayEquals(expected, bos.toByteArray());
+
+		ArrayCodecBuffer buffer = new ArrayCodecBuffer(16);
+		CodecBufferTransport transport = new CodecBufferTransport(buffer);
+		ThriftHeaderWriter.writeResponseHeader(new TBinaryProtocol(transport), transport, response, status);
+		Assert.assertArrayEquals(expected, buffer.toByteArray());
+	}
+
+	private byte[] writeHeader(Header header) throws Exception {
+		DynamicByteArrayOutputStream bos = new DynamicByteArrayOutputStream();
+		TBinaryProtocol protocol = new TBinaryProtocol(new TIOStreamTransport(bos));
+		protocol.writeI16(Short.MAX_VALUE);
+		header.write(protocol);
+		int length = bos.size();
+		bos.setWriteIndex(0);
+		protocol.writeI16((short) (length - 2));
+		bos.setWriteIndex(length);
+		return bos.toByteArray();
+	}
+}
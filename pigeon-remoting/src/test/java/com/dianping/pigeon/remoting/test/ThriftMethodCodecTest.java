@@ -0,0 +1,285 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.thrift.annotation.ThriftClientMetadata;
+import com.dianping.pigeon.remoting.common.codec.thrift.annotation.ThriftMethodHandler;
+import com.dianping.pigeon.remoting.common.codec.thrift.annotation.ThriftMethodProcessor;
+import com.dianping.pigeon.remoting.common.codec.thrift.annotation.ThriftServerMetadata;
+import com.facebook.swift.codec.ThriftCodec;
+import com.facebook.swift.codec.ThriftCodecManager;
+import com.facebook.swift.codec.ThriftField;
+import com.facebook.swift.codec.ThriftStruct;
+import com.facebook.swift.codec.internal.TProtocolWriter;
+import com.facebook.swift.service.ThriftMethod;
+import com.facebook.swift.service.ThriftService;
+
+/**
+ * 方法编解码器与swift通用写法的输出一致性、往返测试
+ */
+public class ThriftMethodCodecTest {
+
+	private ThriftCodecManager codecManager = new ThriftCodecManager();
+
+	private ThriftClientMetadata clientMetadata = new ThriftClientMetadata(CodecService.class,
+			CodecService.class.getName(), codecManager);
+
+	private ThriftServerMetadata serverMetadata = new ThriftServerMetadata(CodecService.class,
+			CodecService.class.getName(), codecManager);
+
+	@Test
+	public void testArgumentsRoundTrip() throws Exception {
+		Map<String, Long> values = new HashMap<String, Long>();
+		values.put("k", 9L);
+		Object[] args = new Object[] { newItem("a", 3), 5, Arrays.asList("x", "y"), values };
+
+		byte[] bytes = writeArguments("echo", 7, args);
+		Assert.assertArrayEquals(writeArgumentsGeneric("echo", 7, args), bytes);
+
+		TProtocol in = newInput(bytes);
+		TMessage message = in.readMessageBegin();
+		Assert.assertEquals("echo", message.name);
+		Assert.assertEquals(TMessageType.CALL, message.type);
+		Assert.assertEquals(7, message.seqid);
+		Object[] result = serverMetadata.getMethodProcessor("echo").readArguments(in);
+		Assert.assertEquals(Arrays.asList(args), Arrays.asList(result));
+	}
+
+	@Test
+	public void testArgumentsDefaultValue() throws Exception {
+		Object[] args = new Object[] { null, null, null, null };
+
+		byte[] bytes = writeArguments("echo", 1, args);
+		Assert.assertArrayEquals(writeArgumentsGeneric("echo", 1, args), bytes);
+
+		TProtocol in = newInput(bytes);
+		in.readMessageBegin();
+		Object[] result = serverMetadata.getMethodProcessor("echo").readArguments(in);
+		Assert.assertEquals(Arrays.asList(null, 0, null, null), Arrays.asList(result));
+	}
+
+	@Test
+	public void testArgumentsOutOfOrderId() throws Exception {
+		Object[] args = new Object[] { "a", true, 1.5d };
+
+		byte[] bytes = writeArguments("name", 1, args);
+		Assert.assertArrayEquals(writeArgumentsGeneric("name", 1, args), bytes);
+
+		TProtocol in = newInput(bytes);
+		in.readMessageBegin();
+		Object[] result = serverMetadata.getMethodProcessor("name").readArguments(in);
+		Assert.assertEquals(Arrays.asList(args), Arrays.asList(result));
+	}
+
+	@Test
+	public void testResponseRoundTrip() throws Exception {
+		CodecItem item = newItem("b", 4);
+
+		byte[] bytes = writeResponse("echo", item, false);
+		Assert.assertArrayEquals(writeResponseGeneric("echo_result", "success", (short) 0, CodecItem.class, item), bytes);
+		Assert.assertEquals(item, clientMetadata.getMethodHandler("echo").readResponse(newInput(bytes)));
+
+		bytes = writeResponse("ping", null, false);
+		Assert.assertNull(clientMetadata.getMethodHandler("ping").readResponse(newInput(bytes)));
+	}
+
+	@Test
+	public void testUserException() throws Exception {
+		ThriftMethodProcessor processor = serverMetadata.getMethodProcessor("echo");
+		CodecException exception = new CodecException();
+		exception.setReason("bad");
+
+		Assert.assertTrue(processor.isUserException(exception));
+		Assert.assertFalse(processor.isUserException(new RuntimeException()));
+
+		byte[] bytes = writeResponse("echo", exception, true);
+		Assert.assertArrayEquals(
+				writeResponseGeneric("echo_result", "exception", (short) 1, CodecException.class, exception), bytes);
+		Object result = clientMetadata.getMethodHandler("echo").readResponse(newInput(bytes));
+		Assert.assertTrue(result instanceof CodecException);
+		Assert.assertEquals("bad", ((CodecException) result).getReason());
+	}
+
+	@Test(expected = TApplicationException.class)
+	public void testMissingResult() throws Exception {
+		byte[] bytes = writeResponse("name", null, false);
+		clientMetadata.getMethodHandler("name").readResponse(newInput(bytes));
+	}
+
+	private byte[] writeArguments(String methodName, int sequenceId, Object[] args) throws Exception {
+		ThriftMethodHandler handler = clientMetadata.getMethodHandler(methodName);
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		handler.writeArguments(newOutput(os), sequenceId, args);
+		return os.toByteArray();
+	}
+
+	private byte[] writeResponse(String methodName, Object result, boolean isException) throws Exception {
+		ThriftMethodProcessor processor = serverMetadata.getMethodProcessor(methodName);
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		processor.writeResponse(newOutput(os), result, isException);
+		return os.toByteArray();
+	}
+
+	private byte[] writeArgumentsGeneric(String methodName, int sequenceId, Object[] args) throws Exception {
+		java.lang.reflect.Type[] types = findMethod(methodName).getGenericParameterTypes();
+		short[] ids = findIds(methodName);
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		TProtocol out = newOutput(os);
+		out.writeMessageBegin(new TMessage(methodName, TMessageType.CALL, sequenceId));
+		TProtocolWriter writer = new TProtocolWriter(out);
+		writer.writeStructBegin(methodName + "_args");
+		for (int i = 0; i < args.length; i++) {
+			// binary协议不写字段名
+			ThriftCodec<Object> codec = (ThriftCodec<Object>) codecManager.getCodec(types[i]);
+			writer.writeField("arg" + ids[i], ids[i], codec, args[i]);
+		}
+		writer.writeStructEnd();
+		out.writeMessageEnd();
+		return os.toByteArray();
+	}
+
+	private byte[] writeResponseGeneric(String structName, String fieldName, short id, Class<?> type, Object value)
+			throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		TProtocolWriter writer = new TProtocolWriter(newOutput(os));
+		writer.writeStructBegin(structName);
+		writer.writeField(fieldName, id, (ThriftCodec<Object>) codecManager.getCodec(type), value);
+		writer.writeStructEnd();
+		return os.toByteArray();
+	}
+
+	private java.lang.reflect.Method findMethod(String methodName) {
+		for (java.lang.reflect.Method method : CodecService.class.getMethods()) {
+			if (method.getName().equals(methodName)) {
+				return method;
+			}
+		}
+		throw new IllegalArgumentException(methodName);
+	}
+
+	private short[] findIds(String methodName) {
+		java.lang.annotation.Annotation[][] annotations = findMethod(methodName).getParameterAnnotations();
+		short[] ids = new short[annotations.length];
+		for (int i = 0; i < annotations.length; i++) {
+			ids[i] = ((ThriftField) annotations[i][0]).value();
+		}
+		return ids;
+	}
+
+	private static TProtocol newOutput(ByteArrayOutputStream os) {
+		return new TBinaryProtocol(new TIOStreamTransport(os));
+	}
+
+	private static TProtocol newInput(byte[] bytes) {
+		return new TBinaryProtocol(new TIOStreamTransport(new ByteArrayInputStream(bytes)));
+	}
+
+	private static CodecItem newItem(String name, int count) {
+		CodecItem item = new CodecItem();
+		item.setName(name);
+		item.setCount(count);
+		item.setIds(Arrays.asList(1L, 2L));
+		return item;
+	}
+
+	@ThriftService
+	public interface CodecService {
+
+		@ThriftMethod
+		CodecItem echo(@ThriftField(1) CodecItem item, @ThriftField(2) int count, @ThriftField(3) List<String> tags,
+				@ThriftField(4) Map<String, Long> values) throws CodecException;
+
+		@ThriftMethod
+		void ping(@ThriftField(1) long time);
+
+		@ThriftMethod
+		String name(@ThriftField(1) String name, @ThriftField(3) boolean flag, @ThriftField(2) double weight);
+	}
+
+	@ThriftStruct
+	public static final class CodecItem {
+
+		private String name;
+
+		private int count;
+
+		private List<Long> ids;
+
+		@ThriftField(1)
+		public String getName() {
+			return name;
+		}
+
+		@ThriftField
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		@ThriftField(2)
+		public int getCount() {
+			return count;
+		}
+
+		@ThriftField
+		public void setCount(int count) {
+			this.count = count;
+		}
+
+		@ThriftField(3)
+		public List<Long> getIds() {
+			return ids;
+		}
+
+		@ThriftField
+		public void setIds(List<Long> ids) {
+			this.ids = ids;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof CodecItem)) {
+				return false;
+			}
+			CodecItem that = (CodecItem) o;
+			return count == that.count && (name == null ? that.name == null : name.equals(that.name))
+					&& (ids == null ? that.ids == null : ids.equals(that.ids));
+		}
+
+		@Override
+		public int hashCode() {
+			return name == null ? count : name.hashCode() * 31 + count;
+		}
+	}
+
+	@ThriftStruct
+	public static final class CodecException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+
+		private String reason;
+
+		@ThriftField(1)
+		public String getReason() {
+			return reason;
+		}
+
+		@ThriftField
+		public void setReason(String reason) {
+			this.reason = reason;
+		}
+	}
+}
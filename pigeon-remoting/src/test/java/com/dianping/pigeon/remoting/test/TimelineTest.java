@@ -0,0 +1,31 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePhase;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext.TimePoint;
+import com.dianping.pigeon.remoting.common.domain.Timeline;
+
+public class TimelineTest {
+
+	@Test
+	public void testRecord() {
+		Timeline timeline = new Timeline();
+		timeline.record(TimePhase.S, 100);
+		timeline.record(TimePhase.Q, 110);
+		timeline.record(TimePhase.Q, 120);
+		timeline.record(TimePhase.Q, 130);
+		timeline.record(TimePhase.N, 105);
+
+		Assert.assertEquals(110, timeline.getTime(TimePhase.Q));
+		Assert.assertEquals(130, timeline.getLastTime(TimePhase.Q));
+		Assert.assertEquals(100, timeline.getLastTime(TimePhase.S));
+		Assert.assertEquals(0, timeline.getTime(TimePhase.E));
+
+		List<TimePoint> timePoints = timeline.toTimePoints();
+		Assert.assertEquals("[S100, N105, Q110, Q130]", timePoints.toString());
+	}
+}